@@ -8,10 +8,9 @@ import java.util.Arrays;
 import java.util.Scanner;
 import java.util.TreeMap;
 
-import edu.osu.slate.experiments.synonym.RelVertex;
-import edu.osu.slate.experiments.synonym.RelVertexComparator;
 import edu.osu.slate.relatedness.Configuration;
 import edu.osu.slate.relatedness.swwr.algorithm.SourcedPageRank;
+import edu.osu.slate.relatedness.swwr.algorithm.TopKHeap;
 import edu.osu.slate.relatedness.swwr.data.graph.IDIDRedirect;
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
@@ -113,33 +112,32 @@ public class TopNGraphManipulation {
     
     SourcedPageRank spr = new SourcedPageRank(wgp);
     int size = spr.getNumVertices();
-    RelVertex[] rels = new RelVertex[size];
-    for(int i = 0; i < rels.length; i++)
-    {
-      rels[i] = new RelVertex(-10, i);
-    }
-      
+    double[] rels = new double[size];
+    Arrays.fill(rels, -10);
 
+    // Only the top 20 of each source can be in the top 20 overall
+    TopKHeap top = new TopKHeap(20);
     VertexCount [] vc = arr[0].getVertexCounts();
     for(int i = 0; i < vc.length; i++)
     {
       int v = vc[i].getVertex();
-      double[] vals = spr.getRelatedness(v);
-      for(int j = 0; j < vals.length; j++)
+      spr.getTopRelated(new int[] {v}, null, top, SourcedPageRank.TOP_K_STABLE_SWEEPS, spr.getConvergencePolicy());
+      for(int r = 0; r < top.size(); r++)
       {
-        if(rels[j].getRel() < vals[j] && j != v)
+        int j = top.getVertex(r);
+        if(rels[j] < top.getValue(r))
         {
-          rels[j].setRel(vals[j]);
+          rels[j] = top.getValue(r);
         }
       }
     }
     
-    Arrays.sort(rels, new RelVertexComparator());
-    for(int i = 0; i < 20; i++)
+    top = TopKHeap.select(rels, 20);
+    for(int i = 0; i < top.size(); i++)
     {
-      for(int j=0; j<vertex2Term.getTermMappings(rels[i].getVertex()).length; j++)
+      for(int j=0; j<vertex2Term.getTermMappings(top.getVertex(i)).length; j++)
       {
-        System.out.print(vertex2Term.getTermMappings(rels[i].getVertex())[j].getTerm() + " ");
+        System.out.print(vertex2Term.getTermMappings(top.getVertex(i))[j].getTerm() + " ");
       }
       System.out.println();
     }
@@ -0,0 +1,93 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.experiments.performance;
+
+import edu.osu.slate.relatedness.swwr.algorithm.PageRank;
+import edu.osu.slate.relatedness.swwr.algorithm.SourcedPageRank;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Compares the iteration modes of PageRank and Sourced PageRank on a graph.
+ * <p>
+ * For each mode (plain Jacobi, Jacobi with quadratic extrapolation, Gauss-Seidel, BiCGSTAB and fused Jacobi)
+ * the program prints the number of sweeps and the wall time of a PageRank computation and of
+ * an SPR distribution, and the savings over plain Jacobi iteration.
+ * <p>
+ * Usage: <code>ConvergenceBenchmark &lt;graph file&gt; [source vertex] [extrapolation period]</code>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class ConvergenceBenchmark
+{
+  /**
+   * @param args Graph file (.wgp or .wgpx), SPR source vertex (default 0) and extrapolation period (default 6).
+   */
+  public static void main(String[] args)
+  {
+    if(args.length < 1)
+    {
+      System.err.println("Usage: ConvergenceBenchmark <graph file> [source vertex] [extrapolation period]");
+      System.exit(1);
+    }
+    int source = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+    int period = (args.length > 2) ? Integer.parseInt(args[2]) : 6;
+
+    System.out.println("Opening Wiki Graph");
+    WikiGraph wgp = new WikiGraph(args[0]);
+    SourcedPageRank spr = new SourcedPageRank(wgp);
+
+    String[] names = {"jacobi", "extrapolated", "gauss-seidel", "bicgstab", "fused"};
+    int[] modes = {PageRank.JACOBI, PageRank.JACOBI, PageRank.GAUSS_SEIDEL, PageRank.BICGSTAB, PageRank.FUSED};
+    int[] periods = {0, period, 0, 0, 0};
+
+    int baseIterations = 0, baseSPRIterations = 0;
+    double baseTime = 0, baseSPRTime = 0;
+    for(int m = 0; m < names.length; m++)
+    {
+      spr.setIterationMode(modes[m], 1);
+      spr.setExtrapolation(periods[m]);
+
+      // Warm up, so the timed runs use compiled code and built structures
+      spr.calculatePageRank(0.85);
+      spr.getRelatedness(source);
+
+      long start = System.nanoTime();
+      spr.calculatePageRank(0.85);
+      double ms = (System.nanoTime() - start) / 1.0e6;
+      int iterations = spr.getIterations();
+
+      start = System.nanoTime();
+      spr.getRelatedness(source);
+      double sprMs = (System.nanoTime() - start) / 1.0e6;
+      int sprIterations = spr.getIterations();
+
+      if(m == 0)
+      {
+        baseIterations = iterations;
+        baseTime = ms;
+        baseSPRIterations = sprIterations;
+        baseSPRTime = sprMs;
+      }
+
+      System.out.println(names[m] + ":");
+      System.out.println("  PageRank: " + iterations + " sweeps, " + ms + " ms (" +
+                         (baseIterations - iterations) + " sweeps saved, speedup " + (baseTime / ms) + ")");
+      System.out.println("  SPR:      " + sprIterations + " sweeps, " + sprMs + " ms (" +
+                         (baseSPRIterations - sprIterations) + " sweeps saved, speedup " + (baseSPRTime / sprMs) + ")");
+    }//end: for(m)
+  }//end: main(String[])
+}//end: ConvergenceBenchmark
@@ -0,0 +1,193 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.experiments.performance;
+
+import java.util.Arrays;
+
+import edu.osu.slate.relatedness.swwr.algorithm.ConvergencePolicy;
+import edu.osu.slate.relatedness.swwr.algorithm.DenseKernels;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Measures the share of an SPR iteration spent in the per-vertex work after the sweep.
+ * <p>
+ * Each iteration sweeps the edges and then combines the models, measures the change,
+ * copies the new values and clears the propagation array.  The program times the sweep,
+ * the per-vertex work written as four separate loops (as the solvers used to run it) and
+ * the single-pass {@link DenseKernels#combine(double[], double[], double, double, double, double[], double, int, int, int)},
+ * and prints the share of the iteration each version of the per-vertex work takes.
+ * <p>
+ * Usage: <code>DenseKernelBenchmark &lt;graph file&gt; [number of iterations]</code>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class DenseKernelBenchmark
+{
+  /**
+   * Gives access to the sweep kernel of a graph.
+   */
+  private static class Sweep extends WikiGraph
+  {
+    /* Used for serialization */
+    private static final long serialVersionUID = 1L;
+
+    Sweep(WikiGraph wg)
+    {
+      super(wg);
+    }
+
+    double sweep(double[] from, double[] to)
+    {
+      return propagate(from, to);
+    }
+  }//end: Sweep
+
+  /* Model weights of the timed iterations */
+  private static final double ALPHA = 0.85;
+
+  /**
+   * @param args Graph file (.wgp or .wgpx) and number of iterations to time (default 20).
+   */
+  public static void main(String[] args)
+  {
+    if(args.length < 1)
+    {
+      System.err.println("Usage: DenseKernelBenchmark <graph file> [number of iterations]");
+      System.exit(1);
+    }
+    int numIterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+    System.out.println("Opening Wiki Graph");
+    run(new WikiGraph(args[0]), numIterations);
+  }//end: main(String[])
+
+  /**
+   * Times the parts of an SPR iteration on a graph and prints the results.
+   *
+   * @param wg Graph.
+   * @param numIterations Number of iterations to time.
+   */
+  public static void run(WikiGraph wg, int numIterations)
+  {
+    Sweep s = new Sweep(wg);
+    int n = s.getNumVertices();
+    double[] x = new double[n];
+    double[] y = new double[n];
+    double[] source = new double[n];
+    Arrays.fill(source, -1.0 / n);
+    source[0] += 1;
+
+    // Warm up, so the timed iterations run compiled code
+    double sink = 0;
+    for(int i = 0; i < numIterations; i++)
+    {
+      sink += s.sweep(x, y);
+      sink += separate(x, y, source, 0);
+      sink += s.sweep(x, y);
+      sink += fused(x, y, source, 0);
+    }
+
+    double sweepTime = 0, separateTime = 0, fusedTime = 0;
+    for(int i = 0; i < numIterations; i++)
+    {
+      long start = System.nanoTime();
+      double randomSurfer = s.sweep(x, y) / n;
+      sweepTime += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      sink += separate(x, y, source, randomSurfer);
+      separateTime += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      randomSurfer = s.sweep(x, y) / n;
+      sweepTime += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      sink += fused(x, y, source, randomSurfer);
+      fusedTime += System.nanoTime() - start;
+    }//end: for(i)
+
+    double sweepMs = sweepTime / 1.0e6 / (2 * numIterations);
+    double separateMs = separateTime / 1.0e6 / numIterations;
+    double fusedMs = fusedTime / 1.0e6 / numIterations;
+
+    System.out.println("Vertices: " + n + ", edges: " + wg.getNumEdges());
+    System.out.println("  Kernels:                " + (DenseKernels.isVectorized() ? "Vector API" : "scalar"));
+    System.out.println("  Sweep:                  " + sweepMs + " ms");
+    System.out.println("  Separate loops:         " + separateMs + " ms (" +
+                       share(separateMs, sweepMs) + "% of the iteration)");
+    System.out.println("  Single-pass kernel:     " + fusedMs + " ms (" +
+                       share(fusedMs, sweepMs) + "% of the iteration)");
+    System.out.println("  Per-vertex speedup:     " + (separateMs / fusedMs));
+    System.out.println("  (checksum " + sink + ")");
+  }//end: run(WikiGraph, int)
+
+  /**
+   * Runs the per-vertex work as four separate loops.
+   *
+   * @param x Old values
+   * @param y Propagated values
+   * @param source Source values
+   * @param randomSurfer Dangling value given to every vertex
+   * @return Sum of the absolute changes
+   */
+  private static double separate(double[] x, double[] y, double[] source, double randomSurfer)
+  {
+    int n = x.length;
+    for(int v = 0; v < n; v++)
+    {
+      y[v] = ALPHA * (y[v] + randomSurfer) + ((1-ALPHA) / n) + ALPHA * source[v];
+    }
+
+    double diff = 0;
+    for(int v = 0; v < n; v++)
+    {
+      diff += Math.abs(x[v] - y[v]);
+    }
+
+    System.arraycopy(y, 0, x, 0, n);
+    Arrays.fill(y, 0.0);
+    return diff;
+  }//end: separate(double[], double[], double[], double)
+
+  /**
+   * Runs the per-vertex work as a single pass.
+   *
+   * @param x Old values
+   * @param y Propagated values
+   * @param source Source values
+   * @param randomSurfer Dangling value given to every vertex
+   * @return Sum of the absolute changes
+   */
+  private static double fused(double[] x, double[] y, double[] source, double randomSurfer)
+  {
+    return DenseKernels.combine(x, y, ALPHA, randomSurfer, (1-ALPHA) / x.length, source, ALPHA,
+                                ConvergencePolicy.L1, 0, x.length);
+  }
+
+  /**
+   * Gets the share of an iteration taken by the per-vertex work.
+   *
+   * @param dense Time of the per-vertex work
+   * @param sweep Time of the sweep
+   * @return Percentage of the iteration
+   */
+  private static double share(double dense, double sweep)
+  {
+    return Math.round(1000.0 * dense / (dense + sweep)) / 10.0;
+  }
+}//end: DenseKernelBenchmark
@@ -0,0 +1,180 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.experiments.performance;
+
+import java.util.Random;
+import java.util.Vector;
+
+import edu.osu.slate.experiments.Spearman;
+import edu.osu.slate.relatedness.swwr.algorithm.SourcedPageRank;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Reports how far Sourced PageRank results drift when the transition probabilities are quantized.
+ * <p>
+ * For a random sample of source vertices, the SPR distribution on the full-precision graph is compared against
+ * the distributions on the 16-bit and 8-bit quantized graphs.  For each width the program prints:
+ * <ul>
+ *   <li>the mean L1 distance between the distributions</li>
+ *   <li>the largest absolute difference for a single vertex</li>
+ *   <li>the mean overlap of the top-N vertices</li>
+ *   <li>the mean Spearman correlation of the values of the full-precision top-N vertices</li>
+ * </ul>
+ * Usage: <code>QuantizationDrift &lt;graph file&gt; [number of sources] [N]</code>
+ * 
+ * @author weale
+ * @version 1.0
+ */
+public class QuantizationDrift
+{
+  /**
+   * @param args Graph file (.wgp or .wgpx), number of sources (default 20) and N (default 20).
+   */
+  public static void main(String[] args)
+  {
+    if(args.length < 1)
+    {
+      System.err.println("Usage: QuantizationDrift <graph file> [number of sources] [N]");
+      System.exit(1);
+    }
+
+    int numSources = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+    int topN = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+
+    System.out.println("Opening Wiki Graph");
+    WikiGraph wgp = new WikiGraph(args[0]);
+    if(wgp.isUniformTransition())
+    {
+      System.out.println("Graph has uniform transitions; nothing to quantize.");
+      return;
+    }
+
+    /* Pick source vertices with out-bound links */
+    Random rand = new Random(1);
+    int[] sources = new int[numSources];
+    for(int i = 0; i < sources.length; i++)
+    {
+      do
+      {
+        sources[i] = rand.nextInt(wgp.getNumVertices());
+      }while(wgp.getOutDegree(sources[i]) == 0);
+    }//end: for(i)
+
+    /* Full-precision distributions */
+    System.out.println("Calculating full-precision SPR");
+    SourcedPageRank spr = new SourcedPageRank(wgp);
+    double[][] exact = new double[sources.length][];
+    for(int i = 0; i < sources.length; i++)
+    {
+      exact[i] = spr.getRelatedness(sources[i]).clone();
+    }//end: for(i)
+    spr = null;
+
+    int[] widths = {16, 8};
+    for(int w = 0; w < widths.length; w++)
+    {
+      WikiGraph quantized = new WikiGraph(wgp);
+      quantized.quantizeTransitions(widths[w]);
+      SourcedPageRank qspr = new SourcedPageRank(quantized);
+
+      double l1 = 0.0;
+      double maxDiff = 0.0;
+      double overlap = 0.0;
+      double rho = 0.0;
+      for(int i = 0; i < sources.length; i++)
+      {
+        double[] approx = qspr.getRelatedness(sources[i]);
+
+        for(int j = 0; j < approx.length; j++)
+        {
+          double diff = Math.abs(exact[i][j] - approx[j]);
+          l1 += diff;
+          maxDiff = Math.max(maxDiff, diff);
+        }//end: for(j)
+
+        int[] exactTop = topVertices(exact[i], topN);
+        int[] approxTop = topVertices(approx, topN);
+        overlap += countShared(exactTop, approxTop) / (double) topN;
+
+        Vector<Double> x = new Vector<Double>();
+        Vector<Double> y = new Vector<Double>();
+        for(int j = 0; j < exactTop.length; j++)
+        {
+          x.add(exact[i][exactTop[j]]);
+          y.add(approx[exactTop[j]]);
+        }//end: for(j)
+        rho += Spearman.GetCorrelation(x, y);
+      }//end: for(i)
+
+      System.out.println(widths[w] + "-bit transitions:");
+      System.out.println("  Mean L1 distance:      " + (l1 / sources.length));
+      System.out.println("  Max vertex difference: " + maxDiff);
+      System.out.println("  Mean top-" + topN + " overlap:   " + (overlap / sources.length));
+      System.out.println("  Mean top-" + topN + " Spearman:  " + (rho / sources.length));
+    }//end: for(w)
+  }//end: main(String[])
+
+  /**
+   * Finds the vertices with the largest values, largest first.
+   * 
+   * @param vals Relatedness values.
+   * @param n Number of vertices to return.
+   * @return Vertex numbers.
+   */
+  private static int[] topVertices(double[] vals, int n)
+  {
+    int[] top = new int[Math.min(n, vals.length)];
+    int size = 0;
+    for(int v = 0; v < vals.length; v++)
+    {
+      if(size < top.length || vals[v] > vals[top[size-1]])
+      {
+        // Insertion into the sorted list
+        int pos = (size < top.length) ? size++ : size - 1;
+        while(pos > 0 && vals[top[pos-1]] < vals[v])
+        {
+          top[pos] = top[pos-1];
+          pos--;
+        }
+        top[pos] = v;
+      }
+    }//end: for(v)
+    return top;
+  }//end: topVertices(double[], int)
+
+  /**
+   * Counts the vertices found in both lists.
+   * 
+   * @param a First vertex list.
+   * @param b Second vertex list.
+   * @return Number of shared vertices.
+   */
+  private static int countShared(int[] a, int[] b)
+  {
+    int count = 0;
+    for(int i = 0; i < a.length; i++)
+    {
+      for(int j = 0; j < b.length; j++)
+      {
+        if(a[i] == b[j])
+        {
+          count++;
+        }
+      }//end: for(j)
+    }//end: for(i)
+    return count;
+  }//end: countShared(int[], int[])
+}//end: QuantizationDrift
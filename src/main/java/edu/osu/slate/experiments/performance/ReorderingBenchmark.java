@@ -0,0 +1,141 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.experiments.performance;
+
+import java.util.Arrays;
+
+import edu.osu.slate.relatedness.swwr.data.graph.NeighborIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.VertexPermutation;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Measures the time of one power iteration on the graph under each vertex ordering.
+ * <p>
+ * Every solver spends its time in the same sweep over the edges, so the time of one
+ * sweep is the per-iteration cost of PageRank and all of the Sourced PageRank variants.
+ * For each ordering the program prints the mean distance between linked vertex numbers,
+ * the time per sweep and the speedup over the original order.
+ * <p>
+ * Usage: <code>ReorderingBenchmark &lt;graph file&gt; [number of sweeps]</code>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class ReorderingBenchmark
+{
+  /**
+   * Gives access to the sweep kernel of a graph.
+   */
+  private static class Sweep extends WikiGraph
+  {
+    /* Used for serialization */
+    private static final long serialVersionUID = 1L;
+
+    Sweep(WikiGraph wg)
+    {
+      super(wg);
+    }
+
+    double sweep(double[] from, double[] to)
+    {
+      return propagate(from, to);
+    }
+  }//end: Sweep
+
+  /**
+   * @param args Graph file (.wgp or .wgpx) and number of sweeps to time (default 20).
+   */
+  public static void main(String[] args)
+  {
+    if(args.length < 1)
+    {
+      System.err.println("Usage: ReorderingBenchmark <graph file> [number of sweeps]");
+      System.exit(1);
+    }
+    int numSweeps = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+    System.out.println("Opening Wiki Graph");
+    WikiGraph wgp = new WikiGraph(args[0]);
+
+    String[] names = {"original", "degree", "bfs", "rcm"};
+    double baseTime = 0.0;
+    for(int o = 0; o < names.length; o++)
+    {
+      WikiGraph g = wgp;
+      if(names[o].equals("degree"))
+      {
+        g = wgp.permute(VertexPermutation.degreeOrder(wgp));
+      }
+      else if(names[o].equals("bfs"))
+      {
+        g = wgp.permute(VertexPermutation.bfsOrder(wgp));
+      }
+      else if(names[o].equals("rcm"))
+      {
+        g = wgp.permute(VertexPermutation.rcmOrder(wgp));
+      }
+
+      Sweep s = new Sweep(g);
+      double[] x = new double[s.getNumVertices()];
+      double[] y = new double[s.getNumVertices()];
+      Arrays.fill(x, 1.0 / x.length);
+
+      // Warm up, so the timed sweeps run compiled code
+      for(int i = 0; i < numSweeps; i++)
+      {
+        Arrays.fill(y, 0.0);
+        s.sweep(x, y);
+      }
+
+      long start = System.nanoTime();
+      for(int i = 0; i < numSweeps; i++)
+      {
+        Arrays.fill(y, 0.0);
+        s.sweep(x, y);
+      }
+      double ms = (System.nanoTime() - start) / 1.0e6 / numSweeps;
+      if(o == 0)
+      {
+        baseTime = ms;
+      }
+
+      System.out.println(names[o] + ":");
+      System.out.println("  Mean link distance: " + meanGap(g));
+      System.out.println("  Time per sweep:     " + ms + " ms");
+      System.out.println("  Speedup:            " + (baseTime / ms));
+    }//end: for(o)
+  }//end: main(String[])
+
+  /**
+   * Computes the mean absolute difference between the vertex numbers of linked vertices.
+   *
+   * @param wg Graph.
+   * @return Mean link distance.
+   */
+  private static double meanGap(WikiGraph wg)
+  {
+    double total = 0.0;
+    NeighborIterator it = wg.getNeighborIterator();
+    for(int i = 0; i < wg.getNumVertices(); i++)
+    {
+      for(it.reset(i); it.hasNext(); )
+      {
+        total += Math.abs(it.next() - i);
+      }
+    }//end: for(i)
+    return total / Math.max(1, wg.getNumEdges());
+  }//end: meanGap(WikiGraph)
+}//end: ReorderingBenchmark
@@ -0,0 +1,6 @@
+/**
+ * Programs for measuring the speed and accuracy trade-offs of the relatedness solvers and graph storage options.
+ *
+ * @author weale
+ */
+package edu.osu.slate.experiments.performance;
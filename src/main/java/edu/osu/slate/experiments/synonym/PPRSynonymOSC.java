@@ -20,6 +20,7 @@ import java.util.LinkedList;
 
 import edu.osu.slate.experiments.wordpair.WordPairSPRThreadOSC;
 import edu.osu.slate.relatedness.Configuration;
+import edu.osu.slate.relatedness.swwr.algorithm.PageRankCache;
 import edu.osu.slate.relatedness.swwr.data.*;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.mapping.algorithm.TermToVertexMapping;
@@ -159,6 +160,9 @@ public class PPRSynonymOSC
       System.exit(1);
     }
     
+    // Share PageRank vectors between the threads, and with later runs on this graph
+    PageRankCache.setDirectory(new File(graphFile).getParent());
+    
     // Start Task Threads
     LinkedList<String> tasks = new LinkedList<String>();
     for(int i=3; i<args.length; i++)
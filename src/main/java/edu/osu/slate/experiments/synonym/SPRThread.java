@@ -85,7 +85,71 @@ public class SPRThread extends Thread
     resultFile = rFile;
     vertexFile = vFile;
   }
+
+ /**
+  * Constructor.
+  * <p>
+  * Uses an existing {@link SourcedPageRank} object, which may be shared with other threads.
+  * 
+  * @param t2v {@link TermToVertexMapping} containing mapping algorithm.
+  * @param solver {@link SourcedPageRank} solver.
+  * @param tFile Task file name.
+  * @param rFile Results file name.
+  * @param vFile Vertex number file name.
+  */
+  public SPRThread(TermToVertexMapping t2v, SourcedPageRank solver, String tFile, String rFile, String vFile)
+  {
+    term2Vertex = t2v;
+    ngd = solver;
+    taskFile = tFile;
+    resultFile = rFile;
+    vertexFile = vFile;
+  }
   
+ /**
+  * Gets the vertex numbers of an array of {@link VertexCount} objects.
+  *
+  * @param vc Array of {@link VertexCount} objects.
+  * @return Array of vertex numbers.
+  */
+  private static int[] getVertexNumbers(VertexCount[] vc)
+  {
+    int[] verts = new int[vc.length];
+    for(int i = 0; i < vc.length; i++)
+    {
+      verts[i] = vc[i].getVertex();
+    }
+    return verts;
+  }
+
+ /**
+  * Gets the vertex numbers of several terms, one term after the other.
+  * <p>
+  * Invalid vertex numbers are replaced by vertex 0, so they can still be looked up.
+  *
+  * @param vc Array of {@link VertexCount} arrays, which may be null.
+  * @return Array of vertex numbers.
+  */
+  private static int[] getVertexNumbers(VertexCount[][] vc)
+  {
+    int total = 0;
+    for(int i = 0; i < vc.length; i++)
+    {
+      total += (vc[i] == null) ? 0 : vc[i].length;
+    }
+
+    int[] verts = new int[total];
+    int pos = 0;
+    for(int i = 0; i < vc.length; i++)
+    {
+      for(int y = 0; vc[i] != null && y < vc[i].length; y++)
+      {
+        verts[pos++] = Math.max(0, vc[i][y].getVertex());
+      }
+    }//end: for(i)
+    return verts;
+  }
+
  /**
   * Runs Sourced PageRank for the given task.
   */
@@ -141,16 +205,21 @@ public class SPRThread extends Thread
       vcTerms[2] = getVertices(arr[3]);
       vcTerms[3] = getVertices(arr[4]);
       
+      /* Get relatedness values at the term vertices for all source vertices at once */
+      double [][] sprValues = null;
+      if(vcSource != null)
+      {
+        sprValues = ngd.getRelatednessBatch(getVertexNumbers(vcSource), getVertexNumbers(vcTerms));
+      }
+
       for(int x = 0; vcSource != null && x < vcSource.length; x++)
       {
-        /* Get relatedness distributions for the vertex */
-        double [] sprValues = ngd.getRelatedness(vcSource[x].getVertex());
-  
         /* For each target term */
-        for(int i = 0; sprValues != null && i < vcTerms.length; i++)
+        int pos = 0;
+        for(int i = 0; i < vcTerms.length; i++)
         {
           /* Check each vertex for the terms */
-          for(int y = 0; vcTerms[i] != null && y < vcTerms[i].length; y++)
+          for(int y = 0; vcTerms[i] != null && y < vcTerms[i].length; y++, pos++)
           {
             int currentVertex = vcTerms[i][y].getVertex();
                 
@@ -158,10 +227,10 @@ public class SPRThread extends Thread
              * - The vertex is valid
              * - Relatedness value is largest seen for the term 
              */
-            if(currentVertex >= 0 && sprValues[currentVertex] > vals[i])
+            if(currentVertex >= 0 && sprValues[x][pos] > vals[i])
             {
               // Top value so far, update value and vertices.
-              vals[i] = sprValues[currentVertex];
+              vals[i] = sprValues[x][pos];
               tVertex[i] = currentVertex;
               sVertex[i] = vcSource[x].getVertex();
             }
@@ -18,6 +18,8 @@ package edu.osu.slate.experiments.synonym;
 import java.io.*;
 
 import edu.osu.slate.relatedness.Configuration;
+import edu.osu.slate.relatedness.swwr.algorithm.PageRankCache;
+import edu.osu.slate.relatedness.swwr.algorithm.SourcedPageRank;
 import edu.osu.slate.relatedness.swwr.data.*;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.mapping.algorithm.TermToVertexMapping;
@@ -196,14 +198,21 @@ public class SPRThreadedCompare
     
     setFiles();
 
-    // Open Wiki Graph
+    // Open Wiki Graph, preferring the memory-mapped copy if one exists
     ObjectInputStream in = null;
     try
     {
       System.out.println("Opening Wiki Graph");
-      in = new ObjectInputStream(new FileInputStream(graphFile));
-      wgp = (WikiGraph) in.readObject();
-      in.close();
+      if(new File(graphFile + "x").exists())
+      {
+        wgp = new WikiGraph(graphFile + "x");
+      }
+      else
+      {
+        in = new ObjectInputStream(new FileInputStream(graphFile));
+        wgp = (WikiGraph) in.readObject();
+        in.close();
+      }
     }
     catch(Exception e)
     {
@@ -217,11 +226,17 @@ public class SPRThreadedCompare
         Configuration.mapsource + "-" + Configuration.stemming);
     term2Vertex = TermToVertexMapping.getMapping(termVertexMapFile);
     
+    // Share PageRank vectors between the threads, and with later runs on this graph
+    PageRankCache.setDirectory(new File(graphFile).getParent());
+    
+    // One solver serves all threads
+    SourcedPageRank spr = new SourcedPageRank(wgp);
+
     // Start Task Threads
-    (new Thread(new SPRThread(term2Vertex, wgp, eslTaskFile, eslResultFile, eslVertexFile))).start();
-    (new Thread(new SPRThread(term2Vertex, wgp, toeflTaskFile, toeflResultFile, toeflVertexFile))).start();
-    (new Thread(new SPRThread(term2Vertex, wgp, rdwp300TaskFile, rdwp300ResultFile, rdwp300VertexFile))).start();
-    (new Thread(new SPRThread(term2Vertex, wgp, rdwp1kTaskFile, rdwp1kResultFile, rdwp1kVertexFile))).start();
+    (new Thread(new SPRThread(term2Vertex, spr, eslTaskFile, eslResultFile, eslVertexFile))).start();
+    (new Thread(new SPRThread(term2Vertex, spr, toeflTaskFile, toeflResultFile, toeflVertexFile))).start();
+    (new Thread(new SPRThread(term2Vertex, spr, rdwp300TaskFile, rdwp300ResultFile, rdwp300VertexFile))).start();
+    (new Thread(new SPRThread(term2Vertex, spr, rdwp1kTaskFile, rdwp1kResultFile, rdwp1kVertexFile))).start();
   }//end: main
   
 }
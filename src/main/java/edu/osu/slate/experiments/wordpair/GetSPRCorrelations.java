@@ -19,7 +19,7 @@ import java.util.*;
 import java.io.*;
 
 import edu.osu.slate.relatedness.Configuration;
-import edu.osu.slate.relatedness.swwr.algorithm.SourcedPageRank;
+import edu.osu.slate.relatedness.swwr.algorithm.BidirectionalSPR;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.mapping.TermToVertexCount;
 import edu.osu.slate.relatedness.swwr.data.mapping.VertexCount;
@@ -143,7 +143,10 @@ public class GetSPRCorrelations
       System.exit(1);
     }
     
-    SourcedPageRank spr = new SourcedPageRank(wgp);
+    // Only word pairs are needed, so estimate each pair instead of whole distributions.
+    // Values are Monte-Carlo estimates (BidirectionalSPR defaults: 1000 walks, rMax 1e-5, seed 0),
+    // not the exact SPR values of SourcedPageRank.
+    BidirectionalSPR spr = new BidirectionalSPR(wgp);
 
 
     String[] tasks = {"MC30", "RG65", "WS1", "WS2", "YP130"};
@@ -179,30 +182,29 @@ public class GetSPRCorrelations
         VertexCount[] vc1 = getVertices(arr[0]);
         VertexCount[] vc2 = getVertices(arr[1]);
         
-        for(int x = 0; vc1 != null && x <vc1.length; x++)
+        // Target vertex in the outer loop, so each reverse push serves every source
+        for(int y = 0; vc2 != null && y <vc2.length; y++)
         {
-          int v1 = vc1[x].getVertex();
-          double[] relValues = spr.getRelatedness(v1);
+          int v2 = vc2[y].getVertex();
             
-          for(int y = 0; vc2 != null && y <vc2.length; y++)
+          for(int x = 0; vc1 != null && x <vc1.length; x++)
           {
-            int v2 = vc2[y].getVertex();
-            d12 = Math.max(d12, relValues[v2]);
+            int v1 = vc1[x].getVertex();
+            d12 = Math.max(d12, spr.getRelatedness(v1, v2));
           }
-        }//end: for(x)
+        }//end: for(y)
         
         double d21 = -10;
-        for(int x = 0; vc2 != null && x <vc2.length; x++)
+        for(int y = 0; vc1 != null && y <vc1.length; y++)
         {
-          int v2 = vc2[x].getVertex();
-          double[] relValues = spr.getRelatedness(v2);
+          int v1 = vc1[y].getVertex();
             
-          for(int y = 0; vc1 != null && y <vc1.length; y++)
+          for(int x = 0; vc2 != null && x <vc2.length; x++)
           {
-            int v1 = vc1[y].getVertex();
-            d21 = Math.max(d21, relValues[v1]);
+            int v2 = vc2[x].getVertex();
+            d21 = Math.max(d21, spr.getRelatedness(v2, v1));
           }
-        }//end: for(x)
+        }//end: for(y)
         double max = Math.max(d12, d21);        
 
         double avg = -10;
@@ -166,6 +166,22 @@ public class SPRExperimentThread extends Thread
     return vc;
   }
 
+  /**
+   * Gets the vertex numbers of an array of {@link VertexCount} objects.
+   *
+   * @param vc Array of {@link VertexCount} objects.
+   * @return Array of vertex numbers.
+   */
+  private static int[] getVertexNumbers(VertexCount[] vc)
+  {
+    int[] verts = new int[vc.length];
+    for(int i = 0; i < vc.length; i++)
+    {
+      verts[i] = vc[i].getVertex();
+    }
+    return verts;
+  }
+
   public void run()
   {
     System.out.println("Setting Synonym Task: " + task + ".part" + part);
@@ -202,40 +218,41 @@ public class SPRExperimentThread extends Thread
       VertexCount[] vc1 = getVertices(arr[0]);
       VertexCount[] vc2 = getVertices(arr[1]);
       
-      for(int x = 0; vc1 != null && x <vc1.length; x++)
+      double d21 = -10;
+      if(vc1 != null && vc2 != null)
       {
-        int v1 = vc1[x].getVertex();
-        double[] relValues = spr.getRelatedness(v1);
-          
-        for(int y = 0; vc2 != null && y <vc2.length; y++)
+        int[] verts1 = getVertexNumbers(vc1);
+        int[] verts2 = getVertexNumbers(vc2);
+
+        // All sources of a term are iterated together
+        double[][] relValues = spr.getRelatednessBatch(verts1, verts2);
+        for(int x = 0; x < verts1.length; x++)
         {
-          int v2 = vc2[y].getVertex();
-          if(relValues[v2] > d12)
+          for(int y = 0; y < verts2.length; y++)
           {
-            maxV11 = v1;
-            maxV12 = v2;
-            d12 = relValues[v2];
+            if(relValues[x][y] > d12)
+            {
+              maxV11 = verts1[x];
+              maxV12 = verts2[y];
+              d12 = relValues[x][y];
+            }
           }
-        }
-      }//end: for(x)
-      
-      double d21 = -10;
-      for(int x = 0; vc2 != null && x <vc2.length; x++)
-      {
-        int v2 = vc2[x].getVertex();
-        double[] relValues = spr.getRelatedness(v2);
-          
-        for(int y = 0; vc1 != null && y <vc1.length; y++)
+        }//end: for(x)
+
+        relValues = spr.getRelatednessBatch(verts2, verts1);
+        for(int x = 0; x < verts2.length; x++)
         {
-          int v1 = vc1[y].getVertex();
-          if(relValues[v1] > d21)
+          for(int y = 0; y < verts1.length; y++)
           {
-            maxV21 = v1;
-            maxV22 = v2;
-            d21 = relValues[v1];
+            if(relValues[x][y] > d21)
+            {
+              maxV21 = verts1[y];
+              maxV22 = verts2[x];
+              d21 = relValues[x][y];
+            }
           }
-        }
-      }//end: for(x)
+        }//end: for(x)
+      }//end: if(vc1 && vc2)
       double max = Math.max(d12, d21);        
 
       double avg = -10;
@@ -19,6 +19,7 @@ import java.io.*;
 import java.util.LinkedList;
 
 import edu.osu.slate.relatedness.Configuration;
+import edu.osu.slate.relatedness.swwr.algorithm.PageRankCache;
 import edu.osu.slate.relatedness.swwr.data.*;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.mapping.algorithm.TermToVertexMapping;
@@ -143,6 +144,9 @@ public class SPRWordPairOSC
         Configuration.mapsource + "-" + Configuration.stemming);
     term2Vertex = TermToVertexMapping.getMapping(termVertexMapFile);
     
+    // Share PageRank vectors between the threads, and with later runs on this graph
+    PageRankCache.setDirectory(new File(graphFile).getParent());
+    
     // Start Task Threads
     LinkedList<String> tasks = new LinkedList<String>();
     for(int i=2; i<args.length; i++)
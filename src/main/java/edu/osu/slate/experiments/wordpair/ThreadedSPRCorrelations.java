@@ -102,9 +102,16 @@ public class ThreadedSPRCorrelations
     WikiGraph wgp = null;
     try
     {
-      in = new ObjectInputStream(new FileInputStream(graphFile));
-      wgp = (WikiGraph) in.readObject();
-      in.close();
+      if(new File(graphFile + "x").exists())
+      { // Memory-mapped copy of the graph
+        wgp = new WikiGraph(graphFile + "x");
+      }
+      else
+      {
+        in = new ObjectInputStream(new FileInputStream(graphFile));
+        wgp = (WikiGraph) in.readObject();
+        in.close();
+      }
     }
     catch(Exception e)
     {
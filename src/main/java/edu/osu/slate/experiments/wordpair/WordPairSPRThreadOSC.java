@@ -19,7 +19,7 @@ import java.util.*;
 import java.io.*;
 
 import edu.osu.slate.relatedness.Configuration;
-import edu.osu.slate.relatedness.swwr.algorithm.SourcedPageRank;
+import edu.osu.slate.relatedness.swwr.algorithm.BidirectionalSPR;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.mapping.TermToVertexCount;
 import edu.osu.slate.relatedness.swwr.data.mapping.VertexCount;
@@ -58,7 +58,7 @@ public class WordPairSPRThreadOSC extends Thread
   /* */
   private TermToVertexMapping term2Vertex;
   // Relatedness Algorithm
-  private SourcedPageRank spr;
+  private BidirectionalSPR spr;
   
   /**
    * Sets the names of the files used in this task.
@@ -99,8 +99,9 @@ public class WordPairSPRThreadOSC extends Thread
   /**
    * Constructor.
    * <p>
-   * Initializes a {@link SourcedPageRank} object from the given graph
+   * Initializes a {@link BidirectionalSPR} object from the given graph
    * and writes relatedness/vertex information to files.
+   * Relatedness values are Monte-Carlo estimates (1000 walks, rMax 1e-5, seed 0), not exact SPR values.
    * 
    * @param t2v {@link TermToVertexMapping} containing mapping algorithm.
    * @param spr {@link WikiGraph} with Wiki graph.
@@ -111,7 +112,7 @@ public class WordPairSPRThreadOSC extends Thread
    public WordPairSPRThreadOSC(TermToVertexMapping t2v, WikiGraph wg, String task, int part)
    {
      term2Vertex = t2v;
-     spr = new SourcedPageRank(wg);
+     spr = new BidirectionalSPR(wg);
      this.task = task;
      this.part = part;
      setFiles();
@@ -194,40 +195,41 @@ public class WordPairSPRThreadOSC extends Thread
       VertexCount[] vc1 = getVertices(arr[0]);
       VertexCount[] vc2 = getVertices(arr[1]);
       
-      for(int x = 0; vc1 != null && x <vc1.length; x++)
+      // Target vertex in the outer loop, so each reverse push serves every source
+      for(int y = 0; vc2 != null && y <vc2.length; y++)
       {
-        int v1 = vc1[x].getVertex();
-        double[] relValues = spr.getRelatedness(v1);
+        int v2 = vc2[y].getVertex();
           
-        for(int y = 0; vc2 != null && y <vc2.length; y++)
+        for(int x = 0; vc1 != null && x <vc1.length; x++)
         {
-          int v2 = vc2[y].getVertex();
-          if(relValues[v2] > d12)
+          int v1 = vc1[x].getVertex();
+          double rel = spr.getRelatedness(v1, v2);
+          if(rel > d12)
           {
             maxV11 = v1;
             maxV12 = v2;
-            d12 = relValues[v2];
+            d12 = rel;
           }
         }
-      }//end: for(x)
+      }//end: for(y)
       
       double d21 = -10;
-      for(int x = 0; vc2 != null && x <vc2.length; x++)
+      for(int y = 0; vc1 != null && y <vc1.length; y++)
       {
-        int v2 = vc2[x].getVertex();
-        double[] relValues = spr.getRelatedness(v2);
+        int v1 = vc1[y].getVertex();
           
-        for(int y = 0; vc1 != null && y <vc1.length; y++)
+        for(int x = 0; vc2 != null && x <vc2.length; x++)
         {
-          int v1 = vc1[y].getVertex();
-          if(relValues[v1] > d21)
+          int v2 = vc2[x].getVertex();
+          double rel = spr.getRelatedness(v2, v1);
+          if(rel > d21)
           {
             maxV21 = v1;
             maxV22 = v2;
-            d21 = relValues[v1];
+            d21 = rel;
           }
         }
-      }//end: for(x)
+      }//end: for(y)
       double max = Math.max(d12, d21);        
 
       double avg = -10;
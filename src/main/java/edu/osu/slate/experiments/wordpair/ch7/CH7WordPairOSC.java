@@ -19,6 +19,7 @@ import java.io.*;
 import java.util.LinkedList;
 
 import edu.osu.slate.relatedness.Configuration;
+import edu.osu.slate.relatedness.swwr.algorithm.PageRankCache;
 import edu.osu.slate.relatedness.swwr.data.*;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.mapping.algorithm.TermToVertexMapping;
@@ -150,6 +151,9 @@ public class CH7WordPairOSC
     term2Vertex.setCutoff(cutoff);
     System.out.println("Setting Cutoff: " + cutoff);
     
+    // Share PageRank vectors between the threads, and with later runs on this graph
+    PageRankCache.setDirectory(new File(graphFile).getParent());
+    
     // Start Task Threads
     LinkedList<String> tasks = new LinkedList<String>();
     for(int i=5; i<args.length; i++)
@@ -23,6 +23,8 @@ public class Configuration {
  /**
   * Directory within the baseDir for the XML and SQL files.
   * <p>
+  * SQL files may be left compressed as published (.sql.gz or .sql.bz2).
+  * <p>
   * Default value is "source".
   */
   public static String sourceDir;
@@ -70,6 +72,13 @@ public class Configuration {
   */
   public static String graph;
   
+ /**
+  * Number of threads used to read the SQL dump files and build fingerprint files.
+  * <p>
+  * Default value is the number of available processors.
+  */
+  public static int threads;
+  
   /**
    * Parses the XML configuration file.
    * <p>
@@ -86,6 +95,7 @@ public class Configuration {
        sourceDir = "source";
        binaryDir = "binary";
        tempDir = "tmp";
+       threads = Runtime.getRuntime().availableProcessors();
 
        while(config.hasNext())
        {
@@ -125,6 +135,11 @@ public class Configuration {
            graph = s.substring(s.indexOf("<graph>") + 7,
                s.indexOf("</graph>"));
          }
+         else if(s.contains("<threads>"))
+         {
+           threads = Integer.parseInt(s.substring(s.indexOf("<threads>") + 9,
+               s.indexOf("</threads>")).trim());
+         }
        }//end: while(config)
      }//end: try {}
      catch (IOException e) {
@@ -0,0 +1,392 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.osu.slate.relatedness.swwr.data.graph.InboundIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Bidirectional estimate of the Sourced PageRank <b>(SPR)</b> value of a single vertex pair.
+ * <p>
+ * The sourced part of an SPR value is the Personalized PageRank (PPR) of the <i>to</i> vertex <i>t</i>
+ * from the <i>from</i> vertex <i>s</i> (see {@link MonteCarloSPR}).  It is found from both ends:
+ * <ul>
+ * <li>A reverse push from <i>t</i> along the in-bound edges leaves an estimate <i>p</i> and
+ *     residuals <i>r</i>, no larger than r<sub>max</sub>, such that
+ *     PPR<sub>s</sub>(t) = p(s) + sum<sub>v</sub> PPR<sub>s</sub>(v) r(v).</li>
+ * <li>Random walks from <i>s</i> end at vertices drawn from PPR<sub>s</sub>, so the mean residual
+ *     at their end vertices estimates the sum.</li>
+ * </ul>
+ * The push only touches vertices near <i>t</i> and the walks only need to cover the residuals,
+ * so a pair costs far less than the full distribution computed by {@link SourcedPageRank#getRelatedness(int, int)}.
+ * {@link #getErrorBound(double)} gives the error bound of the last pair.
+ * <p>
+ * The reverse push of the last <i>to</i> vertex is kept, along with the walk end vertices of the
+ * last {@link #WALK_CACHE_SIZE} <i>from</i> vertices.  Looping over the pairs of two vertex sets with the
+ * <i>to</i> vertex in the outer loop therefore pushes once for each <i>to</i> vertex and simulates the
+ * walks once for each <i>from</i> vertex; with the <i>to</i> vertex in the inner loop, every pair pushes.
+ * Walks at vertices without out-bound edges jump uniformly, as in {@link PageRank}.
+ * Distributions (the methods inherited from {@link MonteCarloSPR}) are estimated from the walks alone.
+ * <p>
+ * An object should only be used by one thread at a time.
+ * <p>
+ * Source Paper: P. Lofgren, S. Banerjee and A. Goel, <i>Personalized PageRank Estimation and Search: A Bidirectional Approach.</i>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class BidirectionalSPR extends MonteCarloSPR
+{
+  /* Serialization UID */
+  private static final long serialVersionUID = 1L;
+
+  /* Default largest residual left by the reverse push */
+  public static final double DEFAULT_RMAX = 1e-5;
+
+  /* Default number of walks simulated for each source vertex */
+  public static final int DEFAULT_PAIR_WALKS = 1000;
+
+  /* Number of source vertices whose walk end vertices are kept */
+  public static final int WALK_CACHE_SIZE = 64;
+
+  /* Largest residual left by the reverse push */
+  private double rMax;
+
+  /* Reverse push estimate and residual of each vertex (zero if not touched) */
+  private transient double[] estimate;
+  private transient double[] residual;
+
+  /* Residual shared by all vertices without out-bound edges */
+  private transient double danglingResidual;
+
+  /* Vertices touched by the reverse push */
+  private transient int[] touched;
+  private transient int numTouched;
+
+  /* Circular queue of vertices to push */
+  private transient int[] queue;
+  private transient boolean[] queued;
+
+  /* Target vertex of the reverse push state */
+  private transient int lastTarget;
+  private transient boolean hasLastTarget;
+
+  /* End vertices of the walks of recent source vertices, least recently used first */
+  private transient Map<Integer, int[]> sourceEnds;
+
+  /* Scale of the value returned by the last pair query */
+  private transient double lastScale;
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   */
+  public BidirectionalSPR(WikiGraph graph)
+  {
+    this(graph, 0.85, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param beta Sourcing vector weight
+   */
+  public BidirectionalSPR(WikiGraph graph, double beta)
+  {
+    this(graph, beta, null);
+  }
+
+  /**
+   * Constructor.
+   * <p>
+   * Passing the values of a {@link UniformPageRank} gives the values of {@link DecoupledSPR}.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param beta Sourcing vector weight
+   * @param pageRank PageRank values to use, or null to use the graph's own
+   */
+  public BidirectionalSPR(WikiGraph graph, double beta, double[] pageRank)
+  {
+    super(graph, beta, pageRank);
+    rMax = DEFAULT_RMAX;
+    super.setWalks(DEFAULT_PAIR_WALKS);
+  }
+
+  /**
+   * Sets the accuracy of the reverse push.
+   * <p>
+   * Smaller values push further from the <i>to</i> vertex and need fewer walks for the same error bound.
+   *
+   * @param rMax Largest residual left by the reverse push
+   */
+  public void setMaxResidual(double rMax)
+  {
+    this.rMax = rMax;
+    hasLastTarget = false;
+  }
+
+  /**
+   * Gets the accuracy of the reverse push.
+   *
+   * @return Largest residual left by the reverse push
+   */
+  public double getMaxResidual()
+  {
+    return rMax;
+  }
+
+  /**
+   * Sets the stored walks used by queries.
+   *
+   * @param index Fingerprints of this graph, or null to simulate the walks of each query.
+   */
+  public void setFingerprints(FingerprintIndex index)
+  {
+    super.setFingerprints(index);
+    clearWalks();
+  }
+
+  /**
+   * Sets the number of walks simulated for each query without stored walks.
+   *
+   * @param walks Number of walks
+   */
+  public void setWalks(int walks)
+  {
+    super.setWalks(walks);
+    clearWalks();
+  }
+
+  /**
+   * Sets the seed of the walks simulated for queries.
+   *
+   * @param seed Seed of the random numbers
+   */
+  public void setSeed(long seed)
+  {
+    super.setSeed(seed);
+    clearWalks();
+  }
+
+  /**
+   * Finds the relatedness value between two vertices.
+   *
+   * @param from Vertex number
+   * @param to Vertex number
+   * @return Estimated SPR value of the <i>to</i> vertex
+   */
+  public double getRelatedness(int from, int to)
+  {
+    double ppr = estimatePair(from, to);
+    lastScale = beta / (1-alpha) * Math.log10(1.0/PR[to]);
+    return (background[to] + beta * ppr / (1-alpha)) * Math.log10(1.0/PR[to]);
+  }
+
+  /**
+   * Finds the Personalized PageRank value of a vertex from a source vertex.
+   * <p>
+   * Walks at vertices without out-bound edges jump uniformly, as in {@link #getTopPersonalized(int, int[], double[])},
+   * where {@link PersonalizedPageRank} returns them to the source vertex instead.
+   *
+   * @param from Vertex number
+   * @param to Vertex number
+   * @return Estimated PPR value of the <i>to</i> vertex
+   */
+  public double getPersonalizedPageRank(int from, int to)
+  {
+    lastScale = 1;
+    return estimatePair(from, to);
+  }
+
+  /**
+   * Gets the error bound of the last pair query.
+   * <p>
+   * The residuals at the walk end vertices lie between zero and the largest residual left,
+   * so by Hoeffding's inequality the estimate is within the bound of the exact value
+   * (for the same reverse push) with at least the given probability.
+   *
+   * @param failureProbability Probability the error is larger than the bound
+   * @return Error bound, in the units of the last value returned
+   */
+  public double getErrorBound(double failureProbability)
+  {
+    if(!hasLastTarget)
+    {
+      return Double.NaN;
+    }
+    double range = rMax + danglingResidual;
+    double spread = Math.sqrt(Math.log(2 / failureProbability) / (2.0 * getWalkCount()));
+    return lastScale * range * spread;
+  }//end: getErrorBound(double)
+
+  /**
+   * Estimates the PPR value of a vertex pair.
+   *
+   * @param from Source vertex number
+   * @param to Target vertex number
+   * @return Estimated PPR value
+   */
+  private double estimatePair(int from, int to)
+  {
+    if(!hasLastTarget || to != lastTarget)
+    {
+      reversePush(to);
+      lastTarget = to;
+      hasLastTarget = true;
+    }
+
+    int count = getWalkCount();
+    int[] ends = getSourceEnds(from, count);
+
+    double sum = 0;
+    for(int i = 0; i < count; i++)
+    {
+      int v = ends[i];
+      sum += residual[v];
+      if(getOutDegree(v) == 0)
+      {
+        sum += danglingResidual;
+      }
+    }//end: for(i)
+
+    return estimate[from] + sum / count;
+  }//end: estimatePair(int, int)
+
+  /**
+   * Gets the end vertices of the walks of a source vertex, simulating them if they are not kept.
+   *
+   * @param from Source vertex number
+   * @param count Number of walks
+   * @return End vertex of each walk
+   */
+  private int[] getSourceEnds(int from, int count)
+  {
+    if(sourceEnds == null)
+    {
+      sourceEnds = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest)
+        {
+          return size() > WALK_CACHE_SIZE;
+        }
+      };
+    }
+
+    int[] ends = sourceEnds.get(from);
+    if(ends == null)
+    {
+      ends = new int[count];
+      for(int i = 0; i < count; i++)
+      {
+        ends[i] = getWalkEnd(from, i);
+      }
+      sourceEnds.put(from, ends);
+    }
+    return ends;
+  }//end: getSourceEnds(int, int)
+
+  /**
+   * Drops the kept walks, after a change to the walk settings.
+   */
+  private void clearWalks()
+  {
+    if(sourceEnds != null)
+    {
+      sourceEnds.clear();
+    }
+  }
+
+  /**
+   * Pushes the walk's stopping mass back from a target vertex.
+   * <p>
+   * Pushing a vertex <i>v</i> keeps 1-alpha of its residual as its estimate and gives each in-bound vertex
+   * <i>u</i> alpha P(u,v) of it.  Vertices without out-bound edges move to every vertex
+   * with P(u,v) = 1/n, so their share is kept once in the shared dangling residual.
+   *
+   * @param to Target vertex number
+   */
+  private void reversePush(int to)
+  {
+    int numVertices = getNumVertices();
+    if(estimate == null)
+    {
+      estimate = new double[numVertices];
+      residual = new double[numVertices];
+      touched = new int[numVertices];
+      queue = new int[numVertices];
+      queued = new boolean[numVertices];
+    }
+
+    // Reset the vertices touched by the last push
+    for(int i = 0; i < numTouched; i++)
+    {
+      estimate[touched[i]] = 0;
+      residual[touched[i]] = 0;
+    }
+    numTouched = 0;
+    danglingResidual = 0;
+
+    InboundIterator it = getInboundIterator();
+    touched[numTouched++] = to;
+    residual[to] = 1;
+    int head = 0;
+    int size = 1;
+    queue[0] = to;
+    queued[to] = true;
+
+    while(size > 0)
+    {
+      int v = queue[head];
+      head = (head + 1 == numVertices) ? 0 : head + 1;
+      size--;
+      queued[v] = false;
+
+      double r = residual[v];
+      residual[v] = 0;
+      estimate[v] += (1-alpha) * r;
+      danglingResidual += alpha * r / numVertices;
+
+      it.reset(v);
+      while(it.hasNext())
+      {
+        int u = it.next();
+        double share = alpha * it.transition() * r;
+        if(share == 0)
+        {
+          continue;
+        }
+        if(residual[u] == 0 && estimate[u] == 0)
+        {
+          touched[numTouched++] = u;
+        }
+        residual[u] += share;
+        if(!queued[u] && residual[u] > rMax)
+        {
+          int tail = head + size;
+          queue[(tail >= numVertices) ? tail - numVertices : tail] = u;
+          size++;
+          queued[u] = true;
+        }
+      }//end: while(u)
+    }//end: while(size)
+  }//end: reversePush(int)
+}//end: BidirectionalSPR
@@ -0,0 +1,229 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+/**
+ * Decides when the iterations of a solver stop.
+ * <p>
+ * After each sweep the solver measures the change from the last iterate, in the L1 norm
+ * (sum of the absolute changes) or the L-infinity norm (largest absolute change).  The
+ * iterations stop once the change is at most the tolerance, or when the iteration cap or
+ * the wall-clock budget is reached, whichever comes first.  The {@link IterationStats}
+ * of the computation tell which.
+ * <p>
+ * Policies cannot be changed, so one policy may be shared by any number of solvers and threads.
+ * {@link #PAGERANK} and {@link #RELATEDNESS} hold the thresholds the solvers have always used.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class ConvergencePolicy
+{
+  /* Change measured as the sum of the absolute changes */
+  public static final int L1 = 0;
+
+  /* Change measured as the largest absolute change */
+  public static final int LINF = 1;
+
+  /* Iteration cap of the default policies */
+  public static final int DEFAULT_MAX_ITERATIONS = 1000;
+
+  /* Default policy of the PageRank computations */
+  public static final ConvergencePolicy PAGERANK = new ConvergencePolicy(L1, 0.001, DEFAULT_MAX_ITERATIONS, 0);
+
+  /* Default policy of the relatedness computations */
+  public static final ConvergencePolicy RELATEDNESS = new ConvergencePolicy(L1, 0.002, DEFAULT_MAX_ITERATIONS, 0);
+
+  /* Default policy of the Green measures precomputed by the local and Monte-Carlo solvers */
+  public static final ConvergencePolicy GREEN = new ConvergencePolicy(L1, 1e-10, DEFAULT_MAX_ITERATIONS, 0);
+
+  /* Norm the change is measured in */
+  private final int norm;
+
+  /* Change at which the iterations stop */
+  private final double tolerance;
+
+  /* Largest number of iterations, or 0 for no cap */
+  private final int maxIterations;
+
+  /* Wall-clock budget in nanoseconds, or 0 for none */
+  private final long budgetNanos;
+
+  /**
+   * Constructor.
+   *
+   * @param norm Norm the change is measured in ({@link #L1} or {@link #LINF})
+   * @param tolerance Change at which the iterations stop
+   * @param maxIterations Largest number of iterations, or 0 for no cap
+   * @param budgetMillis Wall-clock budget in milliseconds, or 0 for none
+   */
+  public ConvergencePolicy(int norm, double tolerance, int maxIterations, long budgetMillis)
+  {
+    if(norm != L1 && norm != LINF)
+    {
+      throw new IllegalArgumentException("Unknown norm: " + norm);
+    }
+    if(tolerance < 0)
+    {
+      throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+    }
+    if(maxIterations < 0 || budgetMillis < 0)
+    {
+      throw new IllegalArgumentException("Iteration cap and budget must not be negative");
+    }
+    this.norm = norm;
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+    this.budgetNanos = budgetMillis * 1000000L;
+  }
+
+  /**
+   * Constructor for an L1 tolerance, capped at {@link #DEFAULT_MAX_ITERATIONS} iterations.
+   *
+   * @param tolerance Change at which the iterations stop
+   */
+  public ConvergencePolicy(double tolerance)
+  {
+    this(L1, tolerance, DEFAULT_MAX_ITERATIONS, 0);
+  }
+
+  /**
+   * Gets the norm the change is measured in.
+   *
+   * @return {@link #L1} or {@link #LINF}
+   */
+  public int getNorm()
+  {
+    return norm;
+  }
+
+  /**
+   * Gets the change at which the iterations stop.
+   *
+   * @return Tolerance
+   */
+  public double getTolerance()
+  {
+    return tolerance;
+  }
+
+  /**
+   * Gets the largest number of iterations.
+   *
+   * @return Iteration cap, or 0 for none
+   */
+  public int getMaxIterations()
+  {
+    return maxIterations;
+  }
+
+  /**
+   * Gets the wall-clock budget.
+   *
+   * @return Budget in milliseconds, or 0 for none
+   */
+  public long getBudgetMillis()
+  {
+    return budgetNanos / 1000000L;
+  }
+
+  /**
+   * Starts the statistics of a computation, and its clock.
+   *
+   * @return Statistics with no iterations
+   */
+  public IterationStats start()
+  {
+    return new IterationStats(this);
+  }
+
+  /**
+   * Adds the absolute change of one value to the change of a sweep.
+   *
+   * @param change Change of the sweep so far
+   * @param diff Absolute change of a value
+   * @return New change of the sweep
+   */
+  public double accumulate(double change, double diff)
+  {
+    return (norm == LINF) ? Math.max(change, diff) : change + diff;
+  }
+
+  /**
+   * Measures the change between two iterates.
+   *
+   * @param a Old values
+   * @param b New values
+   * @return Change in the norm of this policy
+   */
+  public double distance(double[] a, double[] b)
+  {
+    double change = 0;
+    for(int i = 0; i < a.length; i++)
+    {
+      change = accumulate(change, Math.abs(a[i] - b[i]));
+    }
+    return change;
+  }//end: distance(double[], double[])
+
+  /**
+   * Records a sweep and tells whether the iterations go on.
+   *
+   * @param stats Statistics of the computation
+   * @param change Change made by the sweep
+   * @return True if the change is above the tolerance and no limit was reached
+   */
+  boolean proceed(IterationStats stats, double change)
+  {
+    stats.record(stats.getIterations() + 1, change);
+    if(change <= tolerance)
+    {
+      stats.stop(IterationStats.CONVERGED);
+      return false;
+    }
+    return withinLimits(stats);
+  }//end: proceed(IterationStats, double)
+
+  /**
+   * Tells whether a computation is within the iteration cap and the budget.
+   * <p>
+   * Stops the statistics if it is not.
+   *
+   * @param stats Statistics of the computation
+   * @return True if no limit was reached
+   */
+  boolean withinLimits(IterationStats stats)
+  {
+    if(maxIterations > 0 && stats.getIterations() >= maxIterations)
+    {
+      stats.stop(IterationStats.MAX_ITERATIONS);
+      return false;
+    }
+    if(budgetNanos > 0 && stats.getElapsedNanos() >= budgetNanos)
+    {
+      stats.stop(IterationStats.TIME_BUDGET);
+      return false;
+    }
+    return true;
+  }//end: withinLimits(IterationStats)
+
+  public String toString()
+  {
+    return ((norm == LINF) ? "Linf" : "L1") + " <= " + tolerance +
+           ((maxIterations > 0) ? ", at most " + maxIterations + " iterations" : "") +
+           ((budgetNanos > 0) ? ", at most " + getBudgetMillis() + " ms" : "");
+  }
+}//end: ConvergencePolicy
@@ -27,6 +27,9 @@ import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
  * Non-uniform transition probabilities are used for SPR calculation.
  * If this is not desired, use the {@link SourcedPageRank} class.
  * <p>
+ * With {@link #setSinglePrecision(boolean)} the SPR iterations run on float vectors.
+ * The iterations stop by the solver's {@link ConvergencePolicy}.
+ * <p>
  * Source Paper: Y. Ollivier and P. Senellart, <i>Finding Related Pages Using Green Measures: An Illustration with Wikipedia.</i>
  * 
  * @author weale
@@ -127,9 +130,14 @@ public class DecoupledSPR extends UniformPageRank implements RelatednessInterfac
    */
   public double[] getRelatedness(int from) {
 
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    SourceVect = new double[graph.length];
+    if(isSinglePrecision())
+    {
+      return getRelatednessSingle(new int[] {from}, new float[] {1});
+    }
+
+    SPR_old = new double[getNumVertices()];
+    SPR_new = new double[getNumVertices()];
+    SourceVect = new double[getNumVertices()];
 
     for(int j = 0; j < SourceVect.length; j++)
     {
@@ -141,47 +149,22 @@ public class DecoupledSPR extends UniformPageRank implements RelatednessInterfac
     SourceVect[from] = SourceVect[from] + 1;
     SPR_old[from] = SPR_old[from] + 1;
 
-    int numIterations = 0;
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats stats = policy.start();
     double change;
     
     // SOURCED PAGERANK ALGORITHM
     do
     {
-      double randomSurfer = 0;
-
-      // for each graph vertex
-      for(int j = 0; j < graph.length; j++)
-      {
-        if(graph[j] != null && graph[j].length != 0)
-        {
-          // Valid transition array
-          // Propagate values forward in graph
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            SPR_new[graph[j][k]] += (SPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
-        {
-          // No out-bound edges
-          // Add transition values to randomSurfer for universal weight dispersion
-          randomSurfer += SPR_old[j] / graph.length;
-        }
-
-      }//end: for(j)
-
-      // Combine three models
-      for(int x=0; x<SPR_new.length; x++)
-      {
-        SPR_new[x] = alpha * (SPR_new[x] + randomSurfer) + ((1-alpha) / graph.length) + beta * SourceVect[x];
-      }
-
-      change = pageRankDiff(SPR_old, SPR_new);
-      System.arraycopy(SPR_new, 0, SPR_old, 0, SPR_new.length);
-      Arrays.fill(SPR_new, 0.0);
-
-      numIterations++;
-    }while(change > 0.002);
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(SPR_old, SPR_new) / getNumVertices();
+
+      // Combine three models, measure the change and reset the new array
+      change = DenseKernels.combine(SPR_old, SPR_new, alpha, randomSurfer, (1-alpha) / getNumVertices(),
+                                    SourceVect, beta, policy.getNorm(), 0, SPR_old.length);
+    }while(policy.proceed(stats, change));
+    statistics = stats;
 
     for(int j=0; j<SPR_old.length; j++)
     {
@@ -203,10 +186,16 @@ public class DecoupledSPR extends UniformPageRank implements RelatednessInterfac
    */
   public double[] getRelatedness(int[] from) {
 
+    if(isSinglePrecision())
+    {
+      float[] vals = new float[from.length];
+      Arrays.fill(vals, (float) (1.0/from.length));
+      return getRelatednessSingle(from, vals);
+    }
 
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    SourceVect = new double[graph.length];
+    SPR_old = new double[getNumVertices()];
+    SPR_new = new double[getNumVertices()];
+    SourceVect = new double[getNumVertices()];
 
     for(int j = 0; j < SourceVect.length; j++)
     {
@@ -237,9 +226,14 @@ public class DecoupledSPR extends UniformPageRank implements RelatednessInterfac
    */
   public double[] getRelatedness(int[] from, float[] vals)
   {
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    SourceVect = new double[graph.length];
+    if(isSinglePrecision())
+    {
+      return getRelatednessSingle(from, vals);
+    }
+
+    SPR_old = new double[getNumVertices()];
+    SPR_new = new double[getNumVertices()];
+    SourceVect = new double[getNumVertices()];
 
     for(int j = 0; j < SourceVect.length; j++)
     {
@@ -257,6 +251,36 @@ public class DecoupledSPR extends UniformPageRank implements RelatednessInterfac
     return getRelatedness();
   }
 
+  /**
+   * Finds the relatedness distribution sourced at weighted vertices, iterating on single-precision vectors.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Weight of each source vertex
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessSingle(int[] from, float[] vals)
+  {
+    float[] source = new float[getNumVertices()];
+    float[] x = new float[getNumVertices()];
+
+    for(int j = 0; j < source.length; j++)
+    {
+      source[j] = (float) (PR[j] * -1);
+    }
+
+    for(int i = 0; i < from.length; i++)
+    {
+      source[from[i]] = source[from[i]] + vals[i];
+    }
+
+    System.arraycopy(source, 0, x, 0, source.length);
+    IterationStats stats = getConvergencePolicy().start();
+    SinglePrecision.iterate(this, x, new float[x.length], source, alpha, (1-alpha) / getNumVertices(), beta, false, stats);
+    statistics = stats;
+
+    return SinglePrecision.toDouble(x, PR, new double[x.length]);
+  }//end: getRelatednessSingle(int[], float[])
+
   /**
    * Finds the relatedness distribution sourced at a vertex using the exact inference routine.
    * <p>
@@ -268,47 +292,22 @@ public class DecoupledSPR extends UniformPageRank implements RelatednessInterfac
    */
   public double[] getRelatedness()
   {
-    int numIterations = 0;
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats stats = policy.start();
     double change;
     
     // SOURCED PAGERANK ALGORITHM
     do
     {
-      double randomSurfer = 0;
-
-      // for each graph vertex
-      for(int j = 0; j < graph.length; j++)
-      {
-        if(graph[j] != null && graph[j].length != 0)
-        {
-          // Valid transition array
-          // Propagate values forward in graph
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            SPR_new[graph[j][k]] += (SPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
-        {
-          // No out-bound edges
-          // Add transition values to randomSurfer for universal weight dispersion
-          randomSurfer += SPR_old[j] / graph.length;
-        }
-
-      }//end: for(j)
-
-      // Combine three models
-      for(int x = 0; x < SPR_new.length; x++)
-      {
-        SPR_new[x] = alpha * (SPR_new[x] + randomSurfer) + ((1-alpha) / graph.length) + beta * SourceVect[x];
-      }
-
-      change = pageRankDiff(SPR_old, SPR_new);
-      System.arraycopy(SPR_new, 0, SPR_old, 0, SPR_new.length);
-      Arrays.fill(SPR_new, 0.0);
-
-      numIterations++;
-    }while(change > 0.002);
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(SPR_old, SPR_new) / getNumVertices();
+
+      // Combine three models, measure the change and reset the new array
+      change = DenseKernels.combine(SPR_old, SPR_new, alpha, randomSurfer, (1-alpha) / getNumVertices(),
+                                    SourceVect, beta, policy.getNorm(), 0, SPR_old.length);
+    }while(policy.proceed(stats, change));
+    statistics = stats;
 
     for(int j = 0; j < SPR_old.length; j++)
     {
@@ -0,0 +1,298 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+/**
+ * Per-vertex kernels run by the solvers after each sweep over the edges.
+ * <p>
+ * After a sweep the solvers combine the propagated values with the random jump and
+ * source models, measure the change from the last iterate, copy the new values over
+ * the old ones and clear the propagation array.  Written as separate loops this reads
+ * and writes the vectors four times; each kernel here does all of it in one pass.
+ * <p>
+ * When the JVM runs with <code>--add-modules jdk.incubator.vector</code>, the kernels run on
+ * the Vector API, working on as many vertices at a time as the machine's vectors hold.
+ * Otherwise, or when the system property <code>swwr.scalarKernels</code> is <code>true</code>,
+ * they fall back to scalar loops unrolled four ways with one change accumulator per lane,
+ * so the sum of the changes is not a single chain of dependent additions.
+ * Either way each value is computed with the same expression as the loops they replace, so
+ * iterates are unchanged; only the order in which the change is summed differs.
+ * <p>
+ * The change is measured in the norm of the solver's {@link ConvergencePolicy}: the sum of the
+ * absolute changes ({@link ConvergencePolicy#L1}) or the largest one ({@link ConvergencePolicy#LINF}).
+ *
+ * @author weale
+ * @version 1.0
+ */
+public final class DenseKernels
+{
+  /* True if the kernels run on the Vector API */
+  private static final boolean VECTORIZED = vectorAvailable();
+
+  private DenseKernels()
+  {
+  }
+
+  /**
+   * Tells whether the kernels run on the Vector API or on the scalar fallback.
+   *
+   * @return True if the Vector API is used.
+   */
+  public static boolean isVectorized()
+  {
+    return VECTORIZED;
+  }
+
+  /**
+   * Checks that the Vector API kernels load and are wider than one value.
+   *
+   * @return True if they can be used.
+   */
+  private static boolean vectorAvailable()
+  {
+    if(Boolean.getBoolean("swwr.scalarKernels"))
+    {
+      return false;
+    }
+    try
+    {
+      return VectorKernels.lanes() > 1;
+    }
+    catch(LinkageError e)
+    {
+      // jdk.incubator.vector is not in the module graph
+      return false;
+    }
+  }//end: vectorAvailable()
+
+  /**
+   * Combines the models of a sourced random walk over a range of vertices.
+   * <p>
+   * Sets <i>x[v] = follow (y[v] + randomSurfer) + constant + weight source[v]</i> and <i>y[v] = 0</i>.
+   *
+   * @param x Old values, replaced by the new values
+   * @param y Propagated values, cleared
+   * @param follow Weight of the propagated values
+   * @param randomSurfer Dangling value given to every vertex
+   * @param constant Value added to every vertex
+   * @param source Source values, or null for none
+   * @param weight Weight of the source values
+   * @param norm Norm the change is measured in ({@link ConvergencePolicy#L1} or {@link ConvergencePolicy#LINF})
+   * @param start First vertex of the range
+   * @param end Vertex after the range
+   * @return Change of the values
+   */
+  public static double combine(double[] x, double[] y, double follow, double randomSurfer, double constant,
+                               double[] source, double weight, int norm, int start, int end)
+  {
+    if(source == null)
+    {
+      return combine(x, y, follow, randomSurfer, constant, norm, start, end);
+    }
+    if(VECTORIZED)
+    {
+      return VectorKernels.combine(x, y, follow, randomSurfer, constant, source, weight, norm, start, end);
+    }
+
+    double d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+    int v = start;
+    for(; v + 3 < end; v += 4)
+    {
+      double v0 = follow * (y[v] + randomSurfer) + constant + weight * source[v];
+      double v1 = follow * (y[v+1] + randomSurfer) + constant + weight * source[v+1];
+      double v2 = follow * (y[v+2] + randomSurfer) + constant + weight * source[v+2];
+      double v3 = follow * (y[v+3] + randomSurfer) + constant + weight * source[v+3];
+      double a0 = Math.abs(x[v] - v0);
+      double a1 = Math.abs(x[v+1] - v1);
+      double a2 = Math.abs(x[v+2] - v2);
+      double a3 = Math.abs(x[v+3] - v3);
+      if(norm == ConvergencePolicy.LINF)
+      {
+        d0 = Math.max(d0, a0);
+        d1 = Math.max(d1, a1);
+        d2 = Math.max(d2, a2);
+        d3 = Math.max(d3, a3);
+      }
+      else
+      {
+        d0 += a0;
+        d1 += a1;
+        d2 += a2;
+        d3 += a3;
+      }
+      x[v] = v0;
+      x[v+1] = v1;
+      x[v+2] = v2;
+      x[v+3] = v3;
+      y[v] = 0;
+      y[v+1] = 0;
+      y[v+2] = 0;
+      y[v+3] = 0;
+    }//end: for(v)
+    for(; v < end; v++)
+    {
+      double val = follow * (y[v] + randomSurfer) + constant + weight * source[v];
+      d0 = (norm == ConvergencePolicy.LINF) ? Math.max(d0, Math.abs(x[v] - val)) : d0 + Math.abs(x[v] - val);
+      x[v] = val;
+      y[v] = 0;
+    }
+
+    return total(norm, d0, d1, d2, d3);
+  }//end: combine(double[], double[], double, double, double, double[], double, int, int, int)
+
+  /**
+   * Combines the propagated values with the random jump over a range of vertices.
+   * <p>
+   * Sets <i>x[v] = follow (y[v] + randomSurfer) + constant</i> and <i>y[v] = 0</i>.
+   *
+   * @param x Old values, replaced by the new values
+   * @param y Propagated values, cleared
+   * @param follow Weight of the propagated values
+   * @param randomSurfer Dangling value given to every vertex
+   * @param constant Value added to every vertex
+   * @param norm Norm the change is measured in ({@link ConvergencePolicy#L1} or {@link ConvergencePolicy#LINF})
+   * @param start First vertex of the range
+   * @param end Vertex after the range
+   * @return Change of the values
+   */
+  public static double combine(double[] x, double[] y, double follow, double randomSurfer, double constant,
+                               int norm, int start, int end)
+  {
+    if(VECTORIZED)
+    {
+      return VectorKernels.combine(x, y, follow, randomSurfer, constant, norm, start, end);
+    }
+
+    double d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+    int v = start;
+    for(; v + 3 < end; v += 4)
+    {
+      double v0 = (follow * (y[v] + randomSurfer)) + constant;
+      double v1 = (follow * (y[v+1] + randomSurfer)) + constant;
+      double v2 = (follow * (y[v+2] + randomSurfer)) + constant;
+      double v3 = (follow * (y[v+3] + randomSurfer)) + constant;
+      double a0 = Math.abs(x[v] - v0);
+      double a1 = Math.abs(x[v+1] - v1);
+      double a2 = Math.abs(x[v+2] - v2);
+      double a3 = Math.abs(x[v+3] - v3);
+      if(norm == ConvergencePolicy.LINF)
+      {
+        d0 = Math.max(d0, a0);
+        d1 = Math.max(d1, a1);
+        d2 = Math.max(d2, a2);
+        d3 = Math.max(d3, a3);
+      }
+      else
+      {
+        d0 += a0;
+        d1 += a1;
+        d2 += a2;
+        d3 += a3;
+      }
+      x[v] = v0;
+      x[v+1] = v1;
+      x[v+2] = v2;
+      x[v+3] = v3;
+      y[v] = 0;
+      y[v+1] = 0;
+      y[v+2] = 0;
+      y[v+3] = 0;
+    }//end: for(v)
+    for(; v < end; v++)
+    {
+      double val = (follow * (y[v] + randomSurfer)) + constant;
+      d0 = (norm == ConvergencePolicy.LINF) ? Math.max(d0, Math.abs(x[v] - val)) : d0 + Math.abs(x[v] - val);
+      x[v] = val;
+      y[v] = 0;
+    }
+
+    return total(norm, d0, d1, d2, d3);
+  }//end: combine(double[], double[], double, double, double, int, int, int)
+
+  /**
+   * Combines the propagated values with a jump that only reaches the source vertices, as in Personalized PageRank.
+   * <p>
+   * Sets <i>x[v] = follow y[v] + weight (jump[v] + randomSurfer)</i> where <i>jump[v]</i> is not zero,
+   * <i>x[v] = follow y[v]</i> elsewhere, and <i>y[v] = 0</i>.
+   *
+   * @param x Old values, replaced by the new values
+   * @param y Propagated values, cleared
+   * @param follow Weight of the propagated values
+   * @param randomSurfer Dangling value given to every source vertex
+   * @param jump Jump values
+   * @param weight Weight of the jump
+   * @param norm Norm the change is measured in ({@link ConvergencePolicy#L1} or {@link ConvergencePolicy#LINF})
+   * @param start First vertex of the range
+   * @param end Vertex after the range
+   * @return Change of the values
+   */
+  public static double combineJump(double[] x, double[] y, double follow, double randomSurfer,
+                                   double[] jump, double weight, int norm, int start, int end)
+  {
+    if(VECTORIZED)
+    {
+      return VectorKernels.combineJump(x, y, follow, randomSurfer, jump, weight, norm, start, end);
+    }
+
+    double d0 = 0, d1 = 0;
+    int v = start;
+    for(; v + 1 < end; v += 2)
+    {
+      double v0 = (jump[v] == 0.0) ? (follow * y[v]) : (follow * y[v]) + (weight * (jump[v] + randomSurfer));
+      double v1 = (jump[v+1] == 0.0) ? (follow * y[v+1]) : (follow * y[v+1]) + (weight * (jump[v+1] + randomSurfer));
+      double a0 = Math.abs(x[v] - v0);
+      double a1 = Math.abs(x[v+1] - v1);
+      if(norm == ConvergencePolicy.LINF)
+      {
+        d0 = Math.max(d0, a0);
+        d1 = Math.max(d1, a1);
+      }
+      else
+      {
+        d0 += a0;
+        d1 += a1;
+      }
+      x[v] = v0;
+      x[v+1] = v1;
+      y[v] = 0;
+      y[v+1] = 0;
+    }//end: for(v)
+    for(; v < end; v++)
+    {
+      double val = (jump[v] == 0.0) ? (follow * y[v]) : (follow * y[v]) + (weight * (jump[v] + randomSurfer));
+      d0 = (norm == ConvergencePolicy.LINF) ? Math.max(d0, Math.abs(x[v] - val)) : d0 + Math.abs(x[v] - val);
+      x[v] = val;
+      y[v] = 0;
+    }
+
+    return total(norm, d0, d1, 0, 0);
+  }//end: combineJump(double[], double[], double, double, double[], double, int, int, int)
+
+  /**
+   * Adds up the change accumulators of the unrolled lanes.
+   *
+   * @param norm Norm the change is measured in
+   * @return Change of the values
+   */
+  private static double total(int norm, double d0, double d1, double d2, double d3)
+  {
+    if(norm == ConvergencePolicy.LINF)
+    {
+      return Math.max(Math.max(d0, d1), Math.max(d2, d3));
+    }
+    return (d0 + d1) + (d2 + d3);
+  }
+}//end: DenseKernels
@@ -0,0 +1,234 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Stored end vertices ("fingerprints") of random walks from every graph vertex.
+ * <p>
+ * Each vertex holds the same number of walk end vertices, created by
+ * {@link MonteCarloSPR#buildFingerprints(int, long)}.  The fraction of a vertex's
+ * fingerprints that end at another vertex estimates the Personalized PageRank
+ * of that vertex, so relatedness queries only read the stored fingerprints.
+ * <p>
+ * The <i>.wfp file</i> holds a 24-byte header (magic number, version, number of
+ * vertices, walks per vertex, and the {@link WikiGraph#getContentHash() content hash}
+ * of the graph the walks were taken on) followed by the end vertices, as little-endian
+ * ints in vertex order.  The hash ties the walks to one numbering of the vertices:
+ * {@link MonteCarloSPR#setFingerprints(FingerprintIndex)} rejects fingerprints of any
+ * other graph, such as the same graph before it was renumbered.  Version 1 files had
+ * a 16-byte header and no hash; they are read with a hash of 0, which matches no graph.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class FingerprintIndex
+{
+  /* Extension of fingerprint files */
+  public static final String EXTENSION = ".wfp";
+
+  /* Marks a fingerprint file ("WFPX") */
+  private static final int MAGIC = 0x57465058;
+
+  /* Current file version */
+  private static final int VERSION = 2;
+
+  /* Size of the file header */
+  private static final int HEADER_SIZE = 24;
+
+  /* Size of the header of version 1 files, which have no graph hash */
+  private static final int V1_HEADER_SIZE = 16;
+
+  /* Number of ints mapped at once */
+  private static final int MAP_CHUNK = 1 << 24;
+
+  /* Number of graph vertices */
+  private final int numVertices;
+
+  /* Number of walks from each vertex */
+  private final int walks;
+
+  /* Content hash of the graph the walks were taken on, or 0 if unknown */
+  private final long graphHash;
+
+  /* End vertices: walk i of vertex v ends at ends[v*walks + i] */
+  private final int[] ends;
+
+  /**
+   * Constructor.
+   *
+   * @param numVertices Number of graph vertices.
+   * @param walks Number of walks from each vertex.
+   * @param graphHash Content hash of the graph the walks were taken on.
+   * @param ends End vertices, in vertex order.
+   */
+  public FingerprintIndex(int numVertices, int walks, long graphHash, int[] ends)
+  {
+    if((long) numVertices * walks != ends.length)
+    {
+      throw new IllegalArgumentException("Expected " + ((long) numVertices * walks) + " fingerprints, found " + ends.length);
+    }
+    this.numVertices = numVertices;
+    this.walks = walks;
+    this.graphHash = graphHash;
+    this.ends = ends;
+  }//end: FingerprintIndex(int, int, long, int[])
+
+  /**
+   * Reads a fingerprint file.
+   *
+   * @param filename Name of the <i>.wfp file</i>.
+   * @return Fingerprint index.
+   * @throws IOException If the file cannot be read or is not a fingerprint file.
+   */
+  public static FingerprintIndex read(String filename) throws IOException
+  {
+    RandomAccessFile file = new RandomAccessFile(filename, "r");
+    try
+    {
+      FileChannel channel = file.getChannel();
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, V1_HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if(header.getInt() != MAGIC)
+      {
+        throw new IOException("Not a fingerprint file: " + filename);
+      }
+      int version = header.getInt();
+      if(version > VERSION)
+      {
+        throw new IOException("Unsupported fingerprint file version " + version + ": " + filename);
+      }
+      int numVertices = header.getInt();
+      int walks = header.getInt();
+      long graphHash = 0;
+      long pos = V1_HEADER_SIZE;
+      if(version >= 2)
+      {
+        MappedByteBuffer hash = channel.map(FileChannel.MapMode.READ_ONLY, V1_HEADER_SIZE, 8);
+        graphHash = hash.order(ByteOrder.LITTLE_ENDIAN).getLong();
+        pos = HEADER_SIZE;
+      }
+      if((long) numVertices * walks > Integer.MAX_VALUE)
+      {
+        throw new IOException("Too many fingerprints to hold in memory: " + filename);
+      }
+
+      int[] ends = new int[numVertices * walks];
+      for(int done = 0; done < ends.length; )
+      {
+        int count = Math.min(ends.length - done, MAP_CHUNK);
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * count);
+        buf.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(ends, done, count);
+        done += count;
+        pos += 4L * count;
+      }//end: for(done)
+
+      return new FingerprintIndex(numVertices, walks, graphHash, ends);
+    }
+    finally
+    {
+      file.close();
+    }
+  }//end: read(String)
+
+  /**
+   * Writes the fingerprints to a file.
+   *
+   * @param filename Name of the <i>.wfp file</i>.
+   * @throws IOException
+   */
+  public void write(String filename) throws IOException
+  {
+    RandomAccessFile file = new RandomAccessFile(filename, "rw");
+    try
+    {
+      file.setLength(0);
+      FileChannel channel = file.getChannel();
+
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(numVertices);
+      header.putInt(walks);
+      header.putLong(graphHash);
+
+      long pos = HEADER_SIZE;
+      for(int done = 0; done < ends.length; )
+      {
+        int count = Math.min(ends.length - done, MAP_CHUNK);
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, pos, 4L * count);
+        buf.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(ends, done, count);
+        done += count;
+        pos += 4L * count;
+      }//end: for(done)
+
+      channel.force(true);
+    }
+    finally
+    {
+      file.close();
+    }
+  }//end: write(String)
+
+  /**
+   * Gets the number of graph vertices.
+   *
+   * @return Number of vertices.
+   */
+  public int getNumVertices()
+  {
+    return numVertices;
+  }
+
+  /**
+   * Gets the content hash of the graph the walks were taken on.
+   *
+   * @return Hash, or 0 for a version 1 file.
+   */
+  public long getGraphHash()
+  {
+    return graphHash;
+  }
+
+  /**
+   * Gets the number of walks stored for each vertex.
+   *
+   * @return Number of walks.
+   */
+  public int getWalks()
+  {
+    return walks;
+  }
+
+  /**
+   * Gets the end vertex of one walk.
+   *
+   * @param v Start vertex.
+   * @param i Walk number, from 0 to {@link #getWalks()}-1.
+   * @return End vertex.
+   */
+  public int getEnd(int v, int i)
+  {
+    return ends[v * walks + i];
+  }
+}//end: FingerprintIndex
@@ -0,0 +1,171 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+/**
+ * Iteration statistics of one solver computation.
+ * <p>
+ * Gives the number of sweeps, the change left by the last sweep, the wall time and
+ * why the iterations stopped.  A computation stopped by the iteration cap or the
+ * wall-clock budget of its {@link ConvergencePolicy} returns its last iterate, which
+ * is less accurate than the tolerance asked for; {@link #isConverged()} tells them apart.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class IterationStats
+{
+  /* Stop reason: still iterating */
+  public static final int RUNNING = 0;
+
+  /* Stop reason: the change fell to the tolerance */
+  public static final int CONVERGED = 1;
+
+  /* Stop reason: the iteration cap was reached */
+  public static final int MAX_ITERATIONS = 2;
+
+  /* Stop reason: the wall-clock budget ran out */
+  public static final int TIME_BUDGET = 3;
+
+  /* Stop reason: the top-K ranking of a query was fixed */
+  public static final int RANK_STABLE = 4;
+
+  /* Policy the computation runs under */
+  private final ConvergencePolicy policy;
+
+  /* Start of the computation, from System.nanoTime() */
+  private final long startTime;
+
+  /* Number of sweeps */
+  private int iterations;
+
+  /* Change made by the last sweep */
+  private double residual = Double.POSITIVE_INFINITY;
+
+  /* Why the iterations stopped */
+  private int reason = RUNNING;
+
+  /* Wall time of the computation, once stopped */
+  private long elapsed;
+
+  /**
+   * Constructor.  Starts the clock.
+   *
+   * @param policy Policy the computation runs under
+   */
+  IterationStats(ConvergencePolicy policy)
+  {
+    this.policy = policy;
+    startTime = System.nanoTime();
+  }
+
+  /**
+   * Gets the policy the computation runs under.
+   *
+   * @return Convergence policy
+   */
+  public ConvergencePolicy getPolicy()
+  {
+    return policy;
+  }
+
+  /**
+   * Gets the number of sweeps over the graph.
+   * <p>
+   * For {@link PageRank#BICGSTAB} this is the number of matrix products.
+   *
+   * @return Number of iterations
+   */
+  public int getIterations()
+  {
+    return iterations;
+  }
+
+  /**
+   * Gets the change made by the last sweep, in the norm of the policy.
+   * <p>
+   * For {@link PageRank#BICGSTAB} this is the L1 norm of the residual.
+   *
+   * @return Last change, or infinity before the first sweep
+   */
+  public double getResidual()
+  {
+    return residual;
+  }
+
+  /**
+   * Gets why the iterations stopped.
+   *
+   * @return {@link #CONVERGED}, {@link #MAX_ITERATIONS}, {@link #TIME_BUDGET}, {@link #RANK_STABLE}, or {@link #RUNNING}
+   */
+  public int getStopReason()
+  {
+    return reason;
+  }
+
+  /**
+   * Tells whether the change reached the tolerance.
+   *
+   * @return True if the iterations converged
+   */
+  public boolean isConverged()
+  {
+    return reason == CONVERGED;
+  }
+
+  /**
+   * Gets the wall time of the computation, or the time so far while it runs.
+   *
+   * @return Time in nanoseconds
+   */
+  public long getElapsedNanos()
+  {
+    return (reason == RUNNING) ? System.nanoTime() - startTime : elapsed;
+  }
+
+  /**
+   * Records a sweep.
+   *
+   * @param iterations Number of sweeps so far
+   * @param residual Change made by the sweep
+   */
+  void record(int iterations, double residual)
+  {
+    this.iterations = iterations;
+    this.residual = residual;
+  }
+
+  /**
+   * Stops the clock.
+   *
+   * @param reason Why the iterations stopped
+   */
+  void stop(int reason)
+  {
+    if(this.reason == RUNNING)
+    {
+      elapsed = System.nanoTime() - startTime;
+      this.reason = reason;
+    }
+  }
+
+  public String toString()
+  {
+    String[] reasons = {"running", "converged", "iteration cap", "time budget", "ranking stable"};
+    return iterations + " iterations, change " + residual + ", " +
+           (getElapsedNanos() / 1.0e6) + " ms (" + reasons[reason] + ")";
+  }
+}//end: IterationStats
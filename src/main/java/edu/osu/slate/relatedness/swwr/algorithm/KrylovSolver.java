@@ -0,0 +1,204 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Solves a linear system <i>A x = b</i> by the preconditioned BiCGSTAB method.
+ * <p>
+ * The random walk models are fixed points <i>x = alpha M x + c</i>, that is solutions of
+ * <i>(I - alpha M) x = c</i>.  The matrix is only used through {@link #multiply(double[], double[])},
+ * which subclasses give from the graph's propagation, and is preconditioned by its diagonal.
+ * <p>
+ * The iterations stop once the residual <i>b - A x</i> has an L1 norm below the tolerance, or when the
+ * iteration cap or the budget of the computation's {@link ConvergencePolicy} is reached.
+ * When the columns of <i>alpha M</i> sum to at most alpha, the error of the solution is at most
+ * the tolerance divided by 1-alpha.
+ * <p>
+ * Source Paper: H. A. van der Vorst, <i>Bi-CGSTAB: A Fast and Smoothly Converging Variant of Bi-CG for the Solution of Nonsymmetric Linear Systems.</i>
+ *
+ * @author weale
+ * @version 1.0
+ */
+abstract class KrylovSolver
+{
+  /* Largest number of iterations before giving up */
+  private static final int MAX_ITERATIONS = 1000;
+
+  /* One over the diagonal of the matrix */
+  private final double[] invDiagonal;
+
+  /* Number of matrix products of the last solve */
+  private int products;
+
+  /* L1 norm of the residual left by the last solve */
+  private double residualNorm;
+
+  /**
+   * Constructor.
+   *
+   * @param diagonal Diagonal of the matrix (no zero values).
+   */
+  KrylovSolver(double[] diagonal)
+  {
+    invDiagonal = new double[diagonal.length];
+    for(int i = 0; i < diagonal.length; i++)
+    {
+      invDiagonal[i] = 1.0 / diagonal[i];
+    }
+  }
+
+  /**
+   * Multiplies a vector by the matrix.
+   *
+   * @param x Vector to multiply.
+   * @param y Array the product is written to.
+   */
+  abstract void multiply(double[] x, double[] y);
+
+  /**
+   * Gets the number of matrix products made by the last solve.
+   *
+   * @return Number of products.
+   */
+  int getProducts()
+  {
+    return products;
+  }
+
+  /**
+   * Gets the L1 norm of the residual left by the last solve.
+   *
+   * @return Residual norm.
+   */
+  double getResidualNorm()
+  {
+    return residualNorm;
+  }
+
+  /**
+   * Solves the system.
+   *
+   * @param b Right-hand side.
+   * @param x Starting guess, replaced by the solution.
+   * @param tolerance Largest L1 norm of the residual left.
+   * @param stats Statistics of the computation, counting matrix products as iterations.
+   * @return True if the residual reached the tolerance.
+   */
+  boolean solve(double[] b, double[] x, double tolerance, IterationStats stats)
+  {
+    ConvergencePolicy policy = stats.getPolicy();
+    int n = b.length;
+    double[] r = new double[n];
+    double[] rHat = new double[n];
+    double[] p = new double[n];
+    double[] v = new double[n];
+    double[] y = new double[n];
+    double[] t = new double[n];
+
+    multiply(x, r);
+    products = 1;
+    for(int i = 0; i < n; i++)
+    {
+      r[i] = b[i] - r[i];
+      rHat[i] = r[i];
+    }
+    residualNorm = norm1(r);
+    stats.record(products, residualNorm);
+
+    double rho = 1, step = 1, omega = 1;
+    for(int iter = 0; iter < MAX_ITERATIONS && residualNorm > tolerance && policy.withinLimits(stats); iter++)
+    {
+      double rhoNew = dot(rHat, r);
+      if(rhoNew == 0 || omega == 0)
+      {
+        // Breakdown: restart from the current residual
+        System.arraycopy(r, 0, rHat, 0, n);
+        Arrays.fill(p, 0);
+        Arrays.fill(v, 0);
+        rho = step = omega = 1;
+        rhoNew = dot(rHat, r);
+      }
+
+      double beta = (rhoNew / rho) * (step / omega);
+      for(int i = 0; i < n; i++)
+      {
+        p[i] = r[i] + beta * (p[i] - omega * v[i]);
+        y[i] = p[i] * invDiagonal[i];
+      }
+      multiply(y, v);
+      products++;
+
+      step = rhoNew / dot(rHat, v);
+      rho = rhoNew;
+
+      // r becomes the half-step residual s, y the half-step preconditioned direction
+      for(int i = 0; i < n; i++)
+      {
+        x[i] += step * y[i];
+        r[i] -= step * v[i];
+      }
+      residualNorm = norm1(r);
+      stats.record(products, residualNorm);
+      if(residualNorm <= tolerance)
+      {
+        break;
+      }
+
+      for(int i = 0; i < n; i++)
+      {
+        y[i] = r[i] * invDiagonal[i];
+      }
+      multiply(y, t);
+      products++;
+
+      omega = dot(t, r) / dot(t, t);
+      for(int i = 0; i < n; i++)
+      {
+        x[i] += omega * y[i];
+        r[i] -= omega * t[i];
+      }
+      residualNorm = norm1(r);
+      stats.record(products, residualNorm);
+    }//end: for(iter)
+
+    stats.stop((residualNorm <= tolerance) ? IterationStats.CONVERGED : IterationStats.MAX_ITERATIONS);
+    return residualNorm <= tolerance;
+  }//end: solve(double[], double[], double, IterationStats)
+
+  /* Dot product of two vectors */
+  private static double dot(double[] a, double[] b)
+  {
+    double sum = 0;
+    for(int i = 0; i < a.length; i++)
+    {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  /* L1 norm of a vector */
+  private static double norm1(double[] a)
+  {
+    double sum = 0;
+    for(int i = 0; i < a.length; i++)
+    {
+      sum += Math.abs(a[i]);
+    }
+    return sum;
+  }
+}//end: KrylovSolver
@@ -0,0 +1,209 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import edu.osu.slate.relatedness.RelatednessInterface;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Local (push) version of {@link PersonalizedPageRank}.
+ * <p>
+ * Solves for the same distribution as {@link PersonalizedPageRank#getExactRelatedness(int)}
+ * by residual push (see {@link LocalPush}), touching only the vertices the source's
+ * mass reaches.  Vertices that are not reached have a relatedness of zero, so the
+ * result is returned as a {@link SparseVector}.
+ * <p>
+ * The accuracy is set by epsilon: every vertex is left with a residual of at most
+ * epsilon times its out-degree.  Smaller values reach more vertices.
+ * <p>
+ * Source Paper: R. Andersen, F. Chung and K. Lang, <i>Local Graph Partitioning using PageRank Vectors.</i>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class LocalPersonalizedPageRank extends WikiGraph implements RelatednessInterface
+{
+  /* Serialization UID */
+  private static final long serialVersionUID = 1L;
+
+  /* Default largest residual left, per out-bound edge */
+  public static final double DEFAULT_EPSILON = 1e-7;
+
+  /* Probability of following an edge (as in PersonalizedPageRank) */
+  private static final double CONTINUATION = 0.85;
+
+  /* Largest residual left, per out-bound edge */
+  private double epsilon;
+
+  /* Push state, reused between queries */
+  private transient LocalPush push;
+
+  /* Source vertex of the last single-vertex query */
+  private transient int lastSource;
+
+  /* Result of the last single-vertex query */
+  private transient SparseVector lastResult;
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   */
+  public LocalPersonalizedPageRank(WikiGraph graph)
+  {
+    this(graph, DEFAULT_EPSILON);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param epsilon Largest residual left, per out-bound edge
+   */
+  public LocalPersonalizedPageRank(WikiGraph graph, double epsilon)
+  {
+    super(graph);
+    this.epsilon = epsilon;
+  }
+
+  /**
+   * Sets the accuracy of the push.
+   *
+   * @param epsilon Largest residual left, per out-bound edge
+   */
+  public void setEpsilon(double epsilon)
+  {
+    this.epsilon = epsilon;
+    lastResult = null;
+  }
+
+  /**
+   * Gets the accuracy of the push.
+   *
+   * @return Largest residual left, per out-bound edge
+   */
+  public double getEpsilon()
+  {
+    return epsilon;
+  }
+
+  /**
+   * Finds the relatedness value between two vertices.
+   * <p>
+   * The distribution of the source vertex is kept, so calls for the same
+   * source vertex and different <i>to</i> vertices only push once.
+   *
+   * @param from Vertex number
+   * @param to Vertex number
+   * @return PPR value of the <i>to</i> vertex
+   */
+  public double getRelatedness(int from, int to)
+  {
+    if(lastResult == null || from != lastSource)
+    {
+      lastResult = getSparseRelatedness(from);
+      lastSource = from;
+    }
+    return lastResult.get(to);
+  }//end: getRelatedness(int, int)
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex.
+   *
+   * @param from Vertex number
+   * @return Array containing relatedness distribution
+   */
+  public double[] getRelatedness(int from)
+  {
+    return getSparseRelatedness(from).toArray(getNumVertices());
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at set vertices, with uniform weights.
+   *
+   * @param from Array of vertex numbers
+   * @return Array containing relatedness distribution
+   */
+  public double[] getRelatedness(int[] from)
+  {
+    return getSparseRelatedness(from, LocalPush.uniformWeights(from.length)).toArray(getNumVertices());
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at set vertices.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each vertex (assumed to sum to one)
+   * @return Array containing relatedness distribution
+   */
+  public double[] getRelatedness(int[] from, float[] vals)
+  {
+    return getSparseRelatedness(from, vals).toArray(getNumVertices());
+  }
+
+  /**
+   * Finds the relatedness values of the vertices reached from a source vertex.
+   *
+   * @param from Vertex number
+   * @return Relatedness values (zero for the vertices not held)
+   */
+  public SparseVector getSparseRelatedness(int from)
+  {
+    return getSparseRelatedness(new int[] {from}, new float[] {1});
+  }
+
+  /**
+   * Finds the relatedness values of the vertices reached from set vertices.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each vertex (assumed to sum to one)
+   * @return Relatedness values (zero for the vertices not held)
+   */
+  public SparseVector getSparseRelatedness(int[] from, float[] vals)
+  {
+    LocalPush p = getPush();
+    p.clear();
+    for(int i = 0; i < from.length; i++)
+    {
+      p.addStart(from[i], (1 - CONTINUATION) * vals[i]);
+    }
+
+    // Vertices without out-bound edges pass a share of their mass back to every source vertex
+    p.push(CONTINUATION, epsilon, LocalPush.distinct(from), (1 - CONTINUATION) / getNumVertices());
+
+    int[] verts = p.getTouched();
+    double[] values = new double[verts.length];
+    for(int i = 0; i < verts.length; i++)
+    {
+      values[i] = p.getEstimate(verts[i]);
+    }
+    return new SparseVector(verts, values, 0);
+  }//end: getSparseRelatedness(int[], float[])
+
+  /**
+   * Gets the push state, creating it if needed.
+   *
+   * @return Push state.
+   */
+  private LocalPush getPush()
+  {
+    if(push == null)
+    {
+      push = new LocalPush(this);
+    }
+    return push;
+  }
+}//end: LocalPersonalizedPageRank
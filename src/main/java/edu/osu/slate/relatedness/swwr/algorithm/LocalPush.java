@@ -0,0 +1,293 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.util.Arrays;
+
+import edu.osu.slate.relatedness.swwr.data.graph.NeighborIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Residual push for random walks with restarts, as given by Andersen, Chung and Lang.
+ * <p>
+ * Solves <i>x = r + c M x</i> for a sparse start vector <i>r</i>, where <i>M</i> follows the
+ * graph's transition probabilities and <i>c</i> is the continuation probability.
+ * Each vertex holds an estimate and a residual.  Pushing a vertex moves its residual into
+ * its estimate and passes <i>c</i> times the residual on to its out-bound vertices.
+ * Vertices are pushed until no residual is larger than epsilon times the vertex's out-degree.
+ * <p>
+ * Only the vertices the residual reaches are touched, and only those are reset
+ * between runs, so the cost of a run does not depend on the size of the graph.
+ * <p>
+ * Mass reaching a vertex without out-bound edges is either passed on to a set of
+ * restart vertices, or collected in a single uniform total for the caller to spread
+ * over the whole graph.
+ *
+ * @author weale
+ * @version 1.0
+ */
+class LocalPush
+{
+  /* Graph to walk */
+  private final WikiGraph graph;
+
+  /* Walks the out-bound edges of a vertex */
+  private final NeighborIterator it;
+
+  /* Estimated solution of each vertex */
+  private final double[] estimate;
+
+  /* Residual of each vertex */
+  private final double[] residual;
+
+  /* Whether the vertex has been touched in this run */
+  private final boolean[] seen;
+
+  /* Whether the vertex is waiting to be pushed */
+  private final boolean[] queued;
+
+  /* Vertices touched in this run, in the order they were reached */
+  private final int[] touched;
+  private int numTouched;
+
+  /* Vertices waiting to be pushed (circular, each vertex is held at most once) */
+  private final int[] queue;
+  private int head, size;
+
+  /* Mass that reached vertices without out-bound edges, when no restart vertices are given */
+  private double uniform;
+
+  /**
+   * Constructor.
+   *
+   * @param graph Graph to walk.
+   */
+  LocalPush(WikiGraph graph)
+  {
+    this.graph = graph;
+    int n = graph.getNumVertices();
+    it = graph.getNeighborIterator();
+    estimate = new double[n];
+    residual = new double[n];
+    seen = new boolean[n];
+    queued = new boolean[n];
+    touched = new int[n];
+    queue = new int[n];
+  }//end: LocalPush(WikiGraph)
+
+  /**
+   * Resets the vertices touched by the last run.
+   */
+  void clear()
+  {
+    for(int i = 0; i < numTouched; i++)
+    {
+      int v = touched[i];
+      estimate[v] = 0;
+      residual[v] = 0;
+      seen[v] = false;
+      queued[v] = false;
+    }
+    numTouched = 0;
+    head = 0;
+    size = 0;
+    uniform = 0;
+  }//end: clear()
+
+  /**
+   * Adds to the start vector of the next run.
+   *
+   * @param v Vertex number.
+   * @param val Value added to the vertex's residual.
+   */
+  void addStart(int v, double val)
+  {
+    addResidual(v, val, 0);
+  }
+
+  /**
+   * Pushes residuals until every residual is small.
+   *
+   * @param continuation Probability of following an edge (<i>c</i>).
+   * @param epsilon Largest residual left, per out-bound edge.
+   * @param restart Vertices that mass reaching a vertex without out-bound edges is passed to, or null to collect it in {@link #getUniform()}.
+   * @param restartFactor Fraction of that mass passed to each restart vertex.
+   */
+  void push(double continuation, double epsilon, int[] restart, double restartFactor)
+  {
+    // Queue the start vertices that are already over the limit
+    for(int i = 0; i < numTouched; i++)
+    {
+      enqueue(touched[i], epsilon);
+    }
+
+    while(size > 0)
+    {
+      int u = queue[head];
+      head = (head + 1 == queue.length) ? 0 : head + 1;
+      size--;
+      queued[u] = false;
+
+      double r = residual[u];
+      residual[u] = 0;
+      estimate[u] += r;
+
+      if(graph.getOutDegree(u) == 0)
+      {
+        // No out-bound edges
+        if(restart == null)
+        {
+          uniform += continuation * r;
+        }
+        else
+        {
+          for(int i = 0; i < restart.length; i++)
+          {
+            addResidual(restart[i], restartFactor * r, epsilon);
+          }
+        }
+        continue;
+      }
+
+      double val = continuation * r;
+      it.reset(u);
+      while(it.hasNext())
+      {
+        int t = it.next();
+        addResidual(t, val * graph.getTransition(u, it.edge()), epsilon);
+      }
+    }//end: while(size)
+  }//end: push(double, double, int[], double)
+
+  /**
+   * Adds to a vertex's residual, queuing it if the residual becomes too large.
+   *
+   * @param v Vertex number.
+   * @param val Value to add.
+   * @param epsilon Largest residual left, per out-bound edge (0 to never queue).
+   */
+  private void addResidual(int v, double val, double epsilon)
+  {
+    if(!seen[v])
+    {
+      seen[v] = true;
+      touched[numTouched++] = v;
+    }
+    residual[v] += val;
+    if(epsilon > 0)
+    {
+      enqueue(v, epsilon);
+    }
+  }//end: addResidual(int, double, double)
+
+  /**
+   * Queues a vertex if its residual is over the limit.
+   *
+   * @param v Vertex number.
+   * @param epsilon Largest residual left, per out-bound edge.
+   */
+  private void enqueue(int v, double epsilon)
+  {
+    if(!queued[v] && residual[v] > epsilon * Math.max(1, graph.getOutDegree(v)))
+    {
+      queued[v] = true;
+      int tail = head + size;
+      queue[(tail >= queue.length) ? tail - queue.length : tail] = v;
+      size++;
+    }
+  }//end: enqueue(int, double)
+
+  /**
+   * Removes repeated vertex numbers.
+   *
+   * @param from Array of vertex numbers.
+   * @return Array of the distinct vertex numbers, in ascending order.
+   */
+  static int[] distinct(int[] from)
+  {
+    int[] verts = from.clone();
+    Arrays.sort(verts);
+    int count = 0;
+    for(int i = 0; i < verts.length; i++)
+    {
+      if(count == 0 || verts[i] != verts[count-1])
+      {
+        verts[count++] = verts[i];
+      }
+    }
+    return Arrays.copyOf(verts, count);
+  }//end: distinct(int[])
+
+  /**
+   * Creates uniform weights for a set of source vertices.
+   *
+   * @param count Number of source vertices
+   * @return Array of weights summing to one
+   */
+  static float[] uniformWeights(int count)
+  {
+    float[] vals = new float[count];
+    for(int i = 0; i < count; i++)
+    {
+      vals[i] = (float) (1.0 / count);
+    }
+    return vals;
+  }//end: uniformWeights(int)
+
+  /**
+   * Gets the estimated solution of a vertex.
+   *
+   * @param v Vertex number.
+   * @return Estimate (zero for vertices not touched).
+   */
+  double getEstimate(int v)
+  {
+    return estimate[v];
+  }
+
+  /**
+   * Gets the mass collected from vertices without out-bound edges.
+   *
+   * @return Total to be spread over the whole graph.
+   */
+  double getUniform()
+  {
+    return uniform;
+  }
+
+  /**
+   * Gets the number of vertices touched by the last run.
+   *
+   * @return Number of vertices.
+   */
+  int getNumTouched()
+  {
+    return numTouched;
+  }
+
+  /**
+   * Gets the vertices touched by the last run.
+   *
+   * @return Array of vertex numbers, in ascending order.
+   */
+  int[] getTouched()
+  {
+    int[] verts = new int[numTouched];
+    System.arraycopy(touched, 0, verts, 0, numTouched);
+    Arrays.sort(verts);
+    return verts;
+  }//end: getTouched()
+}//end: LocalPush
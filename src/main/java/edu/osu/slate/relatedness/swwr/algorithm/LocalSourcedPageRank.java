@@ -0,0 +1,254 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.util.Arrays;
+
+import edu.osu.slate.relatedness.RelatednessInterface;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Local (push) version of {@link SourcedPageRank}.
+ * <p>
+ * The SPR values of a source vertex <i>s</i> can be split into a part that is the
+ * same for every source and a part that only depends on <i>s</i>:
+ * <pre>
+ * SPR = G((1-alpha)/n - beta PR) + beta G e<sub>s</sub>
+ * </pre>
+ * where <i>G</i> sums the walk over all steps, weighted by alpha.  The first part, and the
+ * walk spread uniformly from vertices without out-bound edges, are found once by power
+ * iteration when the object is created.  The second part is found for each query by
+ * residual push (see {@link LocalPush}), which only touches the vertices the source's mass reaches.
+ * <p>
+ * Single values are cheap: {@link #getRelatedness(int, int)} keeps the push of its source vertex
+ * for the next call.  The values of the reached vertices are given by {@link #getSparseRelatedness(int)}.
+ * <p>
+ * Source Paper: R. Andersen, F. Chung and K. Lang, <i>Local Graph Partitioning using PageRank Vectors.</i>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class LocalSourcedPageRank extends PageRank implements RelatednessInterface
+{
+  /* Serialization UID */
+  private static final long serialVersionUID = 1L;
+
+  /* Default largest residual left, per out-bound edge */
+  public static final double DEFAULT_EPSILON = 1e-7;
+
+  /* Sourcing Vector Weight */
+  private double beta;
+
+  /* Largest residual left, per out-bound edge */
+  private double epsilon;
+
+  /* Part of the SPR values shared by all sources: G((1-alpha)/n - beta PR) */
+  private double[] background;
+
+  /* Walk spread uniformly over the graph: G(1/n) */
+  private double[] uniformWalk;
+
+  /* Push state, reused between queries */
+  private transient LocalPush push;
+
+  /* Source vertex of the push state, if it holds a single-vertex query */
+  private transient int lastSource;
+  private transient boolean hasLastSource;
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   */
+  public LocalSourcedPageRank(WikiGraph graph)
+  {
+    this(graph, 0.85, DEFAULT_EPSILON);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param beta Sourcing vector weight
+   * @param epsilon Largest residual left, per out-bound edge
+   */
+  public LocalSourcedPageRank(WikiGraph graph, double beta, double epsilon)
+  {
+    super(graph);
+    this.beta = beta;
+    this.epsilon = epsilon;
+
+    int numVertices = getNumVertices();
+    double[] start = new double[numVertices];
+    Arrays.fill(start, 1.0 / numVertices);
+    uniformWalk = greenVector(start);
+
+    for(int x = 0; x < numVertices; x++)
+    {
+      start[x] = ((1-alpha) / numVertices) - beta * PR[x];
+    }
+    background = greenVector(start);
+  }//end: LocalSourcedPageRank(WikiGraph, double, double)
+
+  /**
+   * Sets the accuracy of the push.
+   *
+   * @param epsilon Largest residual left, per out-bound edge
+   */
+  public void setEpsilon(double epsilon)
+  {
+    this.epsilon = epsilon;
+    hasLastSource = false;
+  }
+
+  /**
+   * Gets the accuracy of the push.
+   *
+   * @return Largest residual left, per out-bound edge
+   */
+  public double getEpsilon()
+  {
+    return epsilon;
+  }
+
+  /**
+   * Finds the relatedness value between two vertices.
+   * <p>
+   * The push of the source vertex is kept, so calls for the same
+   * source vertex and different <i>to</i> vertices only push once.
+   *
+   * @param from Vertex number
+   * @param to Vertex number
+   * @return SPR value of the <i>to</i> vertex
+   */
+  public double getRelatedness(int from, int to)
+  {
+    if(!hasLastSource || from != lastSource)
+    {
+      run(new int[] {from}, new float[] {1});
+      lastSource = from;
+      hasLastSource = true;
+    }
+    return value(to);
+  }//end: getRelatedness(int, int)
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex.
+   *
+   * @param from Vertex number
+   * @return Array containing relatedness distribution
+   */
+  public double[] getRelatedness(int from)
+  {
+    return getRelatedness(new int[] {from}, new float[] {1});
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at set vertices, with uniform weights.
+   *
+   * @param from Array of vertex numbers
+   * @return Array containing relatedness distribution
+   */
+  public double[] getRelatedness(int[] from)
+  {
+    return getRelatedness(from, LocalPush.uniformWeights(from.length));
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at set vertices.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each vertex (assumed to sum to one)
+   * @return Array containing relatedness distribution
+   */
+  public double[] getRelatedness(int[] from, float[] vals)
+  {
+    run(from, vals);
+    double[] SPR = new double[getNumVertices()];
+    for(int j = 0; j < SPR.length; j++)
+    {
+      SPR[j] = value(j);
+    }
+    return SPR;
+  }//end: getRelatedness(int[], float[])
+
+  /**
+   * Finds the relatedness values of the vertices reached from a source vertex.
+   * <p>
+   * Vertices that are not reached are left out: their values only
+   * hold the part shared by all sources.
+   *
+   * @param from Vertex number
+   * @return Relatedness values of the reached vertices
+   */
+  public SparseVector getSparseRelatedness(int from)
+  {
+    return getSparseRelatedness(new int[] {from}, new float[] {1});
+  }
+
+  /**
+   * Finds the relatedness values of the vertices reached from set vertices.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each vertex (assumed to sum to one)
+   * @return Relatedness values of the reached vertices
+   */
+  public SparseVector getSparseRelatedness(int[] from, float[] vals)
+  {
+    run(from, vals);
+    int[] verts = push.getTouched();
+    double[] values = new double[verts.length];
+    for(int i = 0; i < verts.length; i++)
+    {
+      values[i] = value(verts[i]);
+    }
+    return new SparseVector(verts, values, 0);
+  }//end: getSparseRelatedness(int[], float[])
+
+  /**
+   * Pushes the sourcing vector of a query.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each vertex
+   */
+  private void run(int[] from, float[] vals)
+  {
+    if(push == null)
+    {
+      push = new LocalPush(this);
+    }
+    hasLastSource = false;
+
+    push.clear();
+    for(int i = 0; i < from.length; i++)
+    {
+      push.addStart(from[i], vals[i]);
+    }
+    push.push(alpha, epsilon, null, 0);
+  }//end: run(int[], float[])
+
+  /**
+   * Gets the SPR value of a vertex from the last push.
+   *
+   * @param v Vertex number
+   * @return SPR value, scaled as in {@link SourcedPageRank}
+   */
+  private double value(int v)
+  {
+    double sourced = push.getEstimate(v) + push.getUniform() * uniformWalk[v];
+    return (background[v] + beta * sourced) * Math.log10(1.0/PR[v]);
+  }
+}//end: LocalSourcedPageRank
@@ -0,0 +1,440 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import edu.osu.slate.relatedness.RelatednessInterface;
+import edu.osu.slate.relatedness.swwr.data.graph.VertexRange;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Monte Carlo estimate of Sourced PageRank <b>(SPR)</b> and Personalized PageRank <b>(PPR)</b>.
+ * <p>
+ * Random walks from the source vertex stop with probability 1-alpha at each step
+ * (see {@link RandomWalker}); the fraction of walks ending at a vertex estimates its PPR value.
+ * The SPR values are split as in {@link LocalSourcedPageRank}: the part shared by all
+ * sources is found once by power iteration, and the sourced part is the PPR estimate
+ * divided by 1-alpha.
+ * <p>
+ * Walks are either simulated for each query, or read from a {@link FingerprintIndex}
+ * of walks stored for every vertex, built by {@link #buildFingerprints(int, long)}
+ * (see <code>CreateFingerprintFile</code>).
+ * <p>
+ * The top-N queries write into arrays given by the caller and reuse the object's
+ * work space, so they allocate nothing.  An object should only be used by one thread at a time.
+ * <p>
+ * Source Paper: D. Fogaras, B. R&aacute;cz, K. Csalog&aacute;ny and T. Sarl&oacute;s, <i>Towards Scaling Fully Personalized PageRank.</i>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class MonteCarloSPR extends PageRank implements RelatednessInterface
+{
+  /* Serialization UID */
+  private static final long serialVersionUID = 1L;
+
+  /* Default number of walks simulated for each query */
+  public static final int DEFAULT_WALKS = 10000;
+
+  /* Sourcing Vector Weight */
+  protected double beta;
+
+  /* Part of the SPR values shared by all sources: G((1-alpha)/n - beta PR) */
+  protected double[] background;
+
+  /* Stored walks, or null to simulate the walks of each query */
+  private transient FingerprintIndex index;
+
+  /* Number of walks simulated for each query */
+  private int walks = DEFAULT_WALKS;
+
+  /* Simulates the walks of queries */
+  private transient RandomWalker walker;
+
+  /* Estimated PPR value of each vertex for the current query (zero if not reached) */
+  private transient double[] mass;
+
+  /* Vertices reached by the current query */
+  private transient int[] reached;
+
+  /* True for each vertex in the reached list (its mass may still be zero, as for a source of weight zero) */
+  private transient boolean[] isReached;
+  private transient int numReached;
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   */
+  public MonteCarloSPR(WikiGraph graph)
+  {
+    this(graph, 0.85);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param beta Sourcing vector weight
+   */
+  public MonteCarloSPR(WikiGraph graph, double beta)
+  {
+    this(graph, beta, null);
+  }
+
+  /**
+   * Constructor.
+   * <p>
+   * The PageRank values weight the sourcing vector and scale the results.
+   * Passing the values of a {@link UniformPageRank} gives the values of {@link DecoupledSPR}.
+   *
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param beta Sourcing vector weight
+   * @param pageRank PageRank values to use, or null to use the graph's own
+   */
+  public MonteCarloSPR(WikiGraph graph, double beta, double[] pageRank)
+  {
+    super(graph);
+    this.beta = beta;
+    if(pageRank != null)
+    {
+      if(pageRank.length != getNumVertices())
+      {
+        throw new IllegalArgumentException("Expected " + getNumVertices() + " PageRank values, found " + pageRank.length);
+      }
+      PR = pageRank;
+    }
+
+    int numVertices = getNumVertices();
+    double[] start = new double[numVertices];
+    for(int x = 0; x < numVertices; x++)
+    {
+      start[x] = ((1-alpha) / numVertices) - beta * PR[x];
+    }
+    background = greenVector(start);
+  }//end: MonteCarloSPR(WikiGraph, double, double[])
+
+  /**
+   * Sets the stored walks used by queries.
+   * <p>
+   * The fingerprints must have been taken on this graph, with the same content hash:
+   * fingerprints of another graph, or of this graph before its vertices were renumbered,
+   * are rejected with an IllegalArgumentException.
+   *
+   * @param index Fingerprints of this graph, or null to simulate the walks of each query.
+   */
+  public void setFingerprints(FingerprintIndex index)
+  {
+    if(index != null && index.getNumVertices() != getNumVertices())
+    {
+      throw new IllegalArgumentException("Fingerprints are for " + index.getNumVertices() +
+                                         " vertices, graph has " + getNumVertices());
+    }
+    if(index != null && index.getGraphHash() != getContentHash())
+    {
+      throw new IllegalArgumentException("Fingerprints are for another graph (hash " +
+                                         Long.toHexString(index.getGraphHash()) + ", graph has " +
+                                         Long.toHexString(getContentHash()) + "); create them again");
+    }
+    this.index = index;
+  }//end: setFingerprints(FingerprintIndex)
+
+  /**
+   * Sets the number of walks simulated for each query without stored walks.
+   *
+   * @param walks Number of walks
+   */
+  public void setWalks(int walks)
+  {
+    this.walks = walks;
+  }
+
+  /**
+   * Sets the seed of the walks simulated for queries.
+   *
+   * @param seed Seed of the random numbers
+   */
+  public void setSeed(long seed)
+  {
+    getWalker().setSeed(seed);
+  }
+
+  /**
+   * Gets the walker of the queries, creating it if needed.
+   *
+   * @return Walker
+   */
+  RandomWalker getWalker()
+  {
+    if(walker == null)
+    {
+      walker = new RandomWalker(this, alpha, 0);
+    }
+    return walker;
+  }
+
+  /**
+   * Simulates the walks of every vertex.
+   * <p>
+   * The vertices are split over the threads set by {@link WikiGraph#setThreads(int)}.
+   * The walks of each vertex are seeded from the vertex number, so the fingerprints
+   * do not depend on the number of threads.
+   *
+   * @param walksPerVertex Number of walks stored for each vertex
+   * @param seed Seed of the random numbers
+   * @return Fingerprints of the graph
+   */
+  public FingerprintIndex buildFingerprints(final int walksPerVertex, final long seed)
+  {
+    if((long) getNumVertices() * walksPerVertex > Integer.MAX_VALUE)
+    {
+      throw new IllegalArgumentException("Too many fingerprints to hold in memory: " + walksPerVertex + " per vertex");
+    }
+
+    final int[] ends = new int[getNumVertices() * walksPerVertex];
+    final WikiGraph graph = this;
+    forEachRange(new VertexRange() {
+      public double run(int start, int end)
+      {
+        RandomWalker w = new RandomWalker(graph, alpha, 0);
+        for(int v = start; v < end; v++)
+        {
+          w.setSeed(RandomWalker.mix(seed + v));
+          for(int i = 0; i < walksPerVertex; i++)
+          {
+            ends[v * walksPerVertex + i] = w.walk(v);
+          }
+        }//end: for(v)
+        return 0;
+      }
+    });
+    return new FingerprintIndex(getNumVertices(), walksPerVertex, getContentHash(), ends);
+  }//end: buildFingerprints(int, long)
+
+  /**
+   * Finds the most related vertices of a source vertex.
+   * <p>
+   * Only vertices reached by a walk are ranked.  The results are sorted by decreasing value.
+   *
+   * @param from Vertex number
+   * @param vertices Array the top vertices are written to (its length sets the number of vertices)
+   * @param values Array the SPR values of the top vertices are written to
+   * @return Number of vertices written
+   */
+  public int getTopRelated(int from, int[] vertices, double[] values)
+  {
+    clear();
+    addSource(from, 1);
+    return selectTop(vertices, values, true);
+  }
+
+  /**
+   * Finds the vertices with the largest Personalized PageRank from a source vertex.
+   * <p>
+   * Walks at vertices without out-bound edges jump uniformly, as in {@link PageRank}.
+   * The results are sorted by decreasing value.
+   *
+   * @param from Vertex number
+   * @param vertices Array the top vertices are written to (its length sets the number of vertices)
+   * @param values Array the PPR values of the top vertices are written to
+   * @return Number of vertices written
+   */
+  public int getTopPersonalized(int from, int[] vertices, double[] values)
+  {
+    clear();
+    addSource(from, 1);
+    return selectTop(vertices, values, false);
+  }
+
+  /**
+   * Finds the relatedness value between two vertices.
+   *
+   * @param from Vertex number
+   * @param to Vertex number
+   * @return Estimated SPR value of the <i>to</i> vertex
+   */
+  public double getRelatedness(int from, int to)
+  {
+    clear();
+    addSource(from, 1);
+    return value(to);
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex.
+   *
+   * @param from Vertex number
+   * @return Array containing the estimated relatedness distribution
+   */
+  public double[] getRelatedness(int from)
+  {
+    clear();
+    addSource(from, 1);
+    return distribution();
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at set vertices, with uniform weights.
+   *
+   * @param from Array of vertex numbers
+   * @return Array containing the estimated relatedness distribution
+   */
+  public double[] getRelatedness(int[] from)
+  {
+    return getRelatedness(from, LocalPush.uniformWeights(from.length));
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at set vertices.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each vertex (assumed to sum to one)
+   * @return Array containing the estimated relatedness distribution
+   */
+  public double[] getRelatedness(int[] from, float[] vals)
+  {
+    clear();
+    for(int i = 0; i < from.length; i++)
+    {
+      addSource(from[i], vals[i]);
+    }
+    return distribution();
+  }//end: getRelatedness(int[], float[])
+
+  /**
+   * Resets the vertices reached by the last query.
+   */
+  private void clear()
+  {
+    if(mass == null)
+    {
+      mass = new double[getNumVertices()];
+      reached = new int[getNumVertices()];
+      isReached = new boolean[getNumVertices()];
+    }
+    for(int i = 0; i < numReached; i++)
+    {
+      mass[reached[i]] = 0;
+      isReached[reached[i]] = false;
+    }
+    numReached = 0;
+  }
+
+  /**
+   * Adds the walks of a source vertex to the current query.
+   *
+   * @param from Vertex number
+   * @param weight Weight of the source vertex
+   */
+  private void addSource(int from, double weight)
+  {
+    int count = getWalkCount();
+    double share = weight / count;
+    for(int i = 0; i < count; i++)
+    {
+      int end = getWalkEnd(from, i);
+      if(!isReached[end])
+      {
+        isReached[end] = true;
+        reached[numReached++] = end;
+      }
+      mass[end] += share;
+    }//end: for(i)
+  }//end: addSource(int, double)
+
+  /**
+   * Gets the number of walks from a source vertex used by a query.
+   *
+   * @return Number of stored walks, or of simulated walks if none are stored
+   */
+  int getWalkCount()
+  {
+    return (index == null) ? walks : index.getWalks();
+  }
+
+  /**
+   * Gets the end vertex of a walk from a source vertex.
+   * <p>
+   * Without stored walks a new walk is simulated for every call.
+   *
+   * @param from Vertex number
+   * @param i Walk number, from 0 to {@link #getWalkCount()}-1
+   * @return Vertex the walk stopped at
+   */
+  int getWalkEnd(int from, int i)
+  {
+    return (index == null) ? getWalker().walk(from) : index.getEnd(from, i);
+  }
+
+  /**
+   * Gets the estimated SPR value of a vertex for the current query.
+   *
+   * @param v Vertex number
+   * @return SPR value, scaled as in {@link SourcedPageRank}
+   */
+  private double value(int v)
+  {
+    return (background[v] + beta * mass[v] / (1-alpha)) * Math.log10(1.0/PR[v]);
+  }
+
+  /**
+   * Gets the estimated SPR values of all vertices for the current query.
+   *
+   * @return Array of SPR values
+   */
+  private double[] distribution()
+  {
+    double[] SPR = new double[getNumVertices()];
+    for(int j = 0; j < SPR.length; j++)
+    {
+      SPR[j] = value(j);
+    }
+    return SPR;
+  }
+
+  /**
+   * Writes the reached vertices with the largest values into the given arrays.
+   *
+   * @param vertices Array for the top vertices
+   * @param values Array for the values of the top vertices
+   * @param sourced True to rank by SPR value, false to rank by PPR value
+   * @return Number of vertices written
+   */
+  private int selectTop(int[] vertices, double[] values, boolean sourced)
+  {
+    int size = 0;
+    for(int i = 0; i < numReached; i++)
+    {
+      int v = reached[i];
+      double val = sourced ? value(v) : mass[v];
+      if(size == vertices.length && (size == 0 || val <= values[size-1]))
+      {
+        continue;
+      }
+
+      // Insert in decreasing order, dropping the last entry if full
+      int pos = (size < vertices.length) ? size++ : size - 1;
+      while(pos > 0 && values[pos-1] < val)
+      {
+        vertices[pos] = vertices[pos-1];
+        values[pos] = values[pos-1];
+        pos--;
+      }
+      vertices[pos] = v;
+      values[pos] = val;
+    }//end: for(i)
+    return size;
+  }//end: selectTop(int[], double[], boolean)
+}//end: MonteCarloSPR
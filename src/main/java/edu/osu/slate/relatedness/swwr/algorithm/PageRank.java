@@ -16,11 +16,46 @@
 package edu.osu.slate.relatedness.swwr.algorithm;
 
 import java.io.*;
+import java.util.Arrays;
 
+import edu.osu.slate.relatedness.swwr.data.graph.InboundIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.NeighborIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.VertexRange;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 
 /**
  * Implements PageRank for a graph, as given by Brin and Page.
+ * <p>
+ * When {@link WikiGraph#setThreads(int)} is given more than one thread, every step of the
+ * power iteration (propagation, dangling mass, combining, change and normalization) runs over
+ * vertex ranges on several threads.
+ * <p>
+ * The iterations either update all values from the last sweep ({@link #JACOBI}), or update the
+ * values in place along the in-bound edges, so each vertex already sees the new values of the
+ * vertices before it ({@link #GAUSS_SEIDEL}, with optional over-relaxation).  The in-place sweep
+ * needs no second array and usually reaches the same threshold in fewer sweeps, but always runs on one thread.
+ * The models can also be solved as linear systems by BiCGSTAB ({@link #BICGSTAB}, see {@link KrylovSolver}),
+ * which stops at a residual tolerance rather than a change threshold.
+ * Jacobi iterations can be sped up by periodic quadratic extrapolation ({@link #setExtrapolation(int)}).
+ * The {@link #FUSED} mode gives the Jacobi iterates, but pulls each new value along the in-bound edges and
+ * combines, measures and normalizes it in the same pass, swapping two buffers between sweeps
+ * (see {@link #fusedIterations(double[], double[], double, double, double[], double, boolean, boolean, IterationStats)}).
+ * <p>
+ * Solvers share the arrays of the graph they are built on, and the constructors take the PageRank
+ * values from the {@link PageRankCache} when they were already computed for the same graph and alpha.
+ * The PageRank values may then be shared with other solvers, and must not be changed in place;
+ * {@link #getPageRankValues()} returns a copy.
+ * {@link #getIterations()} gives the number of sweeps of the last computation.
+ * <p>
+ * A {@link ConvergencePolicy} decides when the iterations stop: the norm the change is measured in,
+ * the tolerance, an iteration cap and an optional wall-clock budget.  The PageRank values are found under
+ * {@link ConvergencePolicy#PAGERANK} unless {@link #calculatePageRank(double, ConvergencePolicy)} is given
+ * another policy, and the relatedness solvers use the policy set by {@link #setConvergencePolicy(ConvergencePolicy)},
+ * or one given with a single query.  Each computation records its {@link IterationStats}.
+ * <p>
+ * The relatedness solvers built on this class keep no state between calls: each computation
+ * borrows its scratch vectors from a shared {@link VectorPool}, so one solver can serve many threads.
+ * They may also iterate on single-precision vectors ({@link #setSinglePrecision(boolean)}).
  * 
  * @author weale
  * @version 1.0
@@ -38,6 +73,45 @@ public class PageRank extends WikiGraph {
   protected double[] PR;
 
   protected double alpha;
+
+  /* Iteration mode: new values from the previous sweep's values */
+  public static final int JACOBI = 0;
+
+  /* Iteration mode: values updated in place, in vertex order */
+  public static final int GAUSS_SEIDEL = 1;
+
+  /* Iteration mode: linear system solved by preconditioned BiCGSTAB */
+  public static final int BICGSTAB = 2;
+
+  /* Iteration mode: new values pulled from the previous sweep's values, one pass over the vectors per sweep */
+  public static final int FUSED = 3;
+
+  /* Default largest L1 norm of the residual left by BiCGSTAB */
+  public static final double DEFAULT_KRYLOV_TOLERANCE = 1e-6;
+
+  /* Iteration mode of this solver */
+  private int iterationMode = JACOBI;
+
+  /* Over-relaxation factor of Gauss-Seidel sweeps (1 for plain Gauss-Seidel) */
+  private double relaxation = 1;
+
+  /* Largest L1 norm of the residual left by BiCGSTAB */
+  private double krylovTolerance = DEFAULT_KRYLOV_TOLERANCE;
+
+  /* Jacobi iterations between quadratic extrapolation steps, or 0 for none */
+  private int extrapolationPeriod;
+
+  /* True if the relatedness solvers iterate on single-precision vectors */
+  private boolean singlePrecision;
+
+  /* Convergence policy of the relatedness computations */
+  private ConvergencePolicy convergence = ConvergencePolicy.RELATEDNESS;
+
+  /* Iteration statistics of the last computation */
+  protected volatile IterationStats statistics;
+
+  /* Scratch vectors of the relatedness computations (created when first needed) */
+  private transient VectorPool scratch;
   
   /**
    * Calculates PageRank values for a given graph using the default value for alpha (0.15).
@@ -47,7 +121,7 @@ public class PageRank extends WikiGraph {
   public PageRank(String graphFile)
   {
     super(graphFile);
-    calculatePageRank(0.85);
+    initPageRank(0.85);
   }
 
   /**
@@ -57,21 +131,286 @@ public class PageRank extends WikiGraph {
    */
   public PageRank(WikiGraph graph)
   {
-    super(graph);
+    super(graph, true);
+    initPageRank(0.85);
+  }
+
+  /**
+   * Calculates PageRank values for a given graph using the default value for alpha (0.15).
+   * 
+   * @param graph Previously initialized {@link WikiGraph} structure
+   * @param mode Iteration mode ({@link #JACOBI}, {@link #GAUSS_SEIDEL}, {@link #BICGSTAB} or {@link #FUSED})
+   * @param relaxation Over-relaxation factor of Gauss-Seidel sweeps, between 0 and 2 (1 for none)
+   */
+  public PageRank(WikiGraph graph, int mode, double relaxation)
+  {
+    super(graph, true);
+    setIterationMode(mode, relaxation);
     calculatePageRank(0.85);
   }
 
+  /**
+   * Takes the PageRank values from the cache, or calculates and caches them.
+   * 
+   * @param a Parameter to weight the Random Walk influence on PageRank
+   */
+  private void initPageRank(double a)
+  {
+    String key = PageRankCache.getKey("pagerank", this, a);
+    synchronized(PageRankCache.getLock(key))
+    {
+      double[] vals = PageRankCache.get(key, this, a);
+      if(vals != null)
+      {
+        alpha = a;
+        PR = vals;
+        statistics = null;
+        return;
+      }
+      calculatePageRank(a);
+      PageRankCache.put(key, this, a, PR);
+    }
+  }//end: initPageRank(double)
+
+  /**
+   * Sets how the iterations of this solver update the values.
+   * <p>
+   * Applies to later computations; call {@link #calculatePageRank(double)} to
+   * re-calculate the PageRank values with the new mode.
+   * 
+   * @param mode Iteration mode ({@link #JACOBI}, {@link #GAUSS_SEIDEL}, {@link #BICGSTAB} or {@link #FUSED})
+   * @param relaxation Over-relaxation factor of Gauss-Seidel sweeps, between 0 and 2 (1 for none)
+   */
+  public void setIterationMode(int mode, double relaxation)
+  {
+    if(mode != JACOBI && mode != GAUSS_SEIDEL && mode != BICGSTAB && mode != FUSED)
+    {
+      throw new IllegalArgumentException("Unknown iteration mode: " + mode);
+    }
+    if(relaxation <= 0 || relaxation >= 2)
+    {
+      throw new IllegalArgumentException("Relaxation factor must be between 0 and 2: " + relaxation);
+    }
+    iterationMode = mode;
+    this.relaxation = relaxation;
+  }//end: setIterationMode(int, double)
+
+  /**
+   * Gets the iteration mode of this solver.
+   * 
+   * @return {@link #JACOBI}, {@link #GAUSS_SEIDEL}, {@link #BICGSTAB} or {@link #FUSED}
+   */
+  public int getIterationMode()
+  {
+    return iterationMode;
+  }
+
+  /**
+   * Sets the accuracy of the {@link #BICGSTAB} mode.
+   * <p>
+   * The error of the values is at most the tolerance divided by 1-alpha.
+   * 
+   * @param tolerance Largest L1 norm of the residual left
+   */
+  public void setKrylovTolerance(double tolerance)
+  {
+    krylovTolerance = tolerance;
+  }
+
+  /**
+   * Gets the accuracy of the {@link #BICGSTAB} mode.
+   * 
+   * @return Largest L1 norm of the residual left
+   */
+  public double getKrylovTolerance()
+  {
+    return krylovTolerance;
+  }
+
+  /**
+   * Sets when the iterations of the relatedness computations stop.
+   * <p>
+   * Applies to later computations that are not given a policy of their own.
+   * In the {@link #BICGSTAB} mode the residual tolerance is set by {@link #setKrylovTolerance(double)},
+   * and only the iteration cap and the budget of the policy apply.
+   * 
+   * @param policy Convergence policy (by default {@link ConvergencePolicy#RELATEDNESS})
+   */
+  public void setConvergencePolicy(ConvergencePolicy policy)
+  {
+    if(policy == null)
+    {
+      throw new IllegalArgumentException("Convergence policy must not be null");
+    }
+    convergence = policy;
+  }
+
+  /**
+   * Gets when the iterations of the relatedness computations stop.
+   * 
+   * @return Convergence policy
+   */
+  public ConvergencePolicy getConvergencePolicy()
+  {
+    return convergence;
+  }
+
+  /**
+   * Sets how often Jacobi iterations are extrapolated.
+   * <p>
+   * Every <i>period</i> iterations the values are replaced by a quadratic extrapolation
+   * of the last four iterates (see {@link QuadraticExtrapolation}).  Applies to later
+   * computations in the {@link #JACOBI} mode.
+   * 
+   * @param period Iterations between extrapolation steps (at least four), or 0 to turn extrapolation off
+   */
+  public void setExtrapolation(int period)
+  {
+    if(period != 0 && period < 4)
+    {
+      throw new IllegalArgumentException("Extrapolation needs at least four iterations between steps: " + period);
+    }
+    extrapolationPeriod = period;
+  }
+
+  /**
+   * Gets how often Jacobi iterations are extrapolated.
+   * 
+   * @return Iterations between extrapolation steps, or 0 if extrapolation is off
+   */
+  public int getExtrapolation()
+  {
+    return extrapolationPeriod;
+  }
+
+  /**
+   * Sets whether the relatedness solvers iterate on single-precision vectors.
+   * <p>
+   * Applies to the {@link #JACOBI} iterations of the sourced and personalized solvers
+   * (see {@link SinglePrecision}); the PageRank values stay in double precision.
+   * Single-precision iterations run on the calling thread and are not extrapolated.
+   * 
+   * @param single True for single-precision iterations
+   */
+  public void setSinglePrecision(boolean single)
+  {
+    singlePrecision = single;
+  }
+
+  /**
+   * Tells whether the relatedness solvers iterate on single-precision vectors.
+   * 
+   * @return True for single-precision iterations
+   */
+  public boolean isSinglePrecision()
+  {
+    return singlePrecision;
+  }
+
+  /**
+   * Tells whether a relatedness computation should take the single-precision path.
+   * 
+   * @return True if single precision is set and the iteration mode is {@link #JACOBI}
+   */
+  protected boolean useSinglePrecision()
+  {
+    return singlePrecision && iterationMode == JACOBI;
+  }
+
+  /**
+   * Creates the extrapolation state of a Jacobi computation.
+   * 
+   * @return Extrapolation state, or null if extrapolation is off
+   */
+  protected QuadraticExtrapolation newExtrapolation()
+  {
+    if(extrapolationPeriod == 0)
+    {
+      return null;
+    }
+    return new QuadraticExtrapolation(getNumVertices(), extrapolationPeriod);
+  }
+
+  /**
+   * Gets the scratch vectors shared by the computations of this solver.
+   * <p>
+   * Keeps up to two idle vectors for each available processor, so concurrent
+   * computations on all worker threads allocate no new vectors once warmed up.
+   * 
+   * @return Pool of vectors with one value per vertex
+   */
+  protected synchronized VectorPool getScratch()
+  {
+    if(scratch == null)
+    {
+      scratch = new VectorPool(getNumVertices(), 2 * Runtime.getRuntime().availableProcessors());
+    }
+    return scratch;
+  }
+
+  /**
+   * Gets the number of sweeps over the graph made by the last computation.
+   * <p>
+   * For {@link #BICGSTAB} this is the number of matrix products (two per iteration).
+   * When several threads share the solver, this is the count of the computation that finished last.
+   * 
+   * @return Number of iterations
+   */
+  public int getIterations()
+  {
+    IterationStats stats = statistics;
+    return (stats == null) ? 0 : stats.getIterations();
+  }
+
+  /**
+   * Gets the iteration statistics of the last computation.
+   * <p>
+   * When several threads share the solver, these are the statistics of the computation
+   * that finished last; the query methods taking a {@link ConvergencePolicy} return their own.
+   * 
+   * @return Iteration statistics, or null if the PageRank values came from the cache
+   */
+  public IterationStats getStatistics()
+  {
+    return statistics;
+  }
+
+  /**
+   * Measures the change over all vertex ranges, in the norm of a policy.
+   * 
+   * @param body Work for each range, returning the change of the range
+   * @param norm Norm the change is measured in
+   * @return Sum or largest of the range results
+   */
+  protected double reduce(VertexRange body, int norm)
+  {
+    return (norm == ConvergencePolicy.LINF) ? forEachRangeMax(body) : forEachRange(body);
+  }
+
   /**
    * Re-calculates PageRank values using a non-default value of alpha.
    * 
    * @param alpha Parameter to weight the Random Walk influence on PageRank
    */
   public void calculatePageRank(double a)
+  {
+    calculatePageRank(a, ConvergencePolicy.PAGERANK);
+  }
+
+  /**
+   * Re-calculates PageRank values, stopping the iterations by the given policy.
+   * 
+   * @param alpha Parameter to weight the Random Walk influence on PageRank
+   * @param policy Convergence policy
+   * @return Iteration statistics
+   */
+  public IterationStats calculatePageRank(double a, ConvergencePolicy policy)
   {
     alpha = a;
     // Create new/old PageRank vectors for iteration
-    PR = new double[graph.length];
-    double [] PR_new = new double[graph.length];
+    int numVertices = getNumVertices();
+    PR = new double[numVertices];
+    double [] PR_new = new double[numVertices];
 
     // Initialize Uniform PageRank Vector
     for(int i = 0; i < PR.length; i++)
@@ -79,80 +418,534 @@ public class PageRank extends WikiGraph {
       PR[i] = (float) (1.0 / (float) PR.length);
     }//end: for(i)
 
+    IterationStats stats = policy.start();
+    if(iterationMode == GAUSS_SEIDEL)
+    {
+      calculateGaussSeidel(stats);
+      return finish(stats);
+    }
+    if(iterationMode == FUSED)
+    {
+      fusedIterations(PR, PR_new, alpha, (1-alpha) / numVertices, null, 0, false, true, stats);
+      return finish(stats);
+    }
+    if(iterationMode == BICGSTAB)
+    {
+      double[] b = new double[numVertices];
+      Arrays.fill(b, (1-alpha) / numVertices);
+      solveKrylov(b, PR, alpha, alpha, null, stats);
+
+      // Normalize PR vector
+      double mag = 0;
+      for(int i = 0; i < PR.length; i++)
+      {
+        mag += PR[i];
+      }//end: for(i)
+      for(int i = 0; i < PR.length; i++)
+      {
+        PR[i] = (float) (PR[i] / mag);
+      }//end: for(i)
+      return finish(stats);
+    }
+
+    QuadraticExtrapolation extrapolation = newExtrapolation();
+    if(isParallel())
+    {
+      calculateParallel(PR_new, extrapolation, stats);
+      return finish(stats);
+    }
+
     // PageRank!!!
+    int norm = policy.getNorm();
     double change;
     do {
+      // Update new values for neighbor vertices.
+      // Vertices with no outbound links add to overall graph values.
+      double randomSurfer = propagate(PR, PR_new) / numVertices;
+
+      // Combine, calculate change between PR generations and reset new PR array
+      change = DenseKernels.combine(PR, PR_new, alpha, randomSurfer, (1-alpha) / PR_new.length, norm, 0, numVertices);
+
+      if(extrapolation != null)
+      {
+        extrapolation.update(PR, stats.getIterations() + 1);
+      }
+
+      // Calculate the magnitude for normalization
+      double mag = 0;
+      for(int i = 0; i < PR.length; i++)
+      {
+        mag += PR[i];
+      }//end: for(i)
       
-      // Set the additional randomSurfer parameter
-      double randomSurfer = 0;
+      if(verbose)
+      { // Sanity Check
+        System.out.println("This should be about one: " + mag);
+      }
       
-      for(int i = 0; i < graph.length; i++)
+      // Normalize PR vector
+      for(int i = 0; i < PR.length; i++)
+      {
+        PR[i] = (float) (PR[i] / mag);
+      }//end: for(i)
+
+      if(verbose)
+      { // Sanity Check
+        System.out.println(change);
+      }
+
+    }while(policy.proceed(stats, change));
+    return finish(stats);
+  }//end: calculatePageRank(double, ConvergencePolicy)
+
+  /**
+   * Keeps the statistics of a finished computation as those of the last computation.
+   * 
+   * @param stats Statistics of the computation
+   * @return The statistics
+   */
+  protected IterationStats finish(IterationStats stats)
+  {
+    statistics = stats;
+    return stats;
+  }
+
+  /**
+   * Runs the PageRank iterations as in-place Gauss-Seidel sweeps.
+   * 
+   * @param stats Statistics of the computation
+   */
+  private void calculateGaussSeidel(IterationStats stats)
+  {
+    int numVertices = getNumVertices();
+    double change;
+    do {
+      change = gaussSeidelSweep(PR, (1-alpha) / numVertices, null, 0, stats.getPolicy().getNorm());
+
+      // Calculate the magnitude for normalization
+      double mag = 0;
+      for(int i = 0; i < PR.length; i++)
+      {
+        mag += PR[i];
+      }//end: for(i)
+
+      // Normalize PR vector
+      for(int i = 0; i < PR.length; i++)
+      {
+        PR[i] = (float) (PR[i] / mag);
+      }//end: for(i)
+
+      if(verbose)
+      { // Sanity Check
+        System.out.println(change);
+      }
+
+    }while(stats.getPolicy().proceed(stats, change));
+  }//end: calculateGaussSeidel(IterationStats)
+
+  /**
+   * Updates the values of a random walk model in place, one vertex at a time.
+   * <p>
+   * Each vertex is set to alpha times the value walked into it, plus the constant and the
+   * weighted source value of the vertex, using the values already updated in this sweep.
+   * The value of vertices without out-bound edges is spread uniformly, as in {@link #propagate(double[], double[])},
+   * and kept up to date as those vertices change.  The new value is then over-relaxed by the
+   * solver's relaxation factor.
+   * 
+   * @param x Values to update
+   * @param constant Value added to every vertex
+   * @param source Source values, or null for none
+   * @param weight Weight of the source values
+   * @param norm Norm the change is measured in
+   * @return Change of the values
+   */
+  protected double gaussSeidelSweep(double[] x, double constant, double[] source, double weight, int norm)
+  {
+    return gaussSeidelSweep(x, alpha, constant, source, weight, false, norm);
+  }
+
+  /**
+   * Updates the values of a random walk model in place, one vertex at a time, with a given follow weight.
+   * <p>
+   * The model is the one of {@link #fusedIterations(double[], double[], double, double, double[], double, boolean, boolean, IterationStats)}:
+   * if <i>jumpOnly</i> is set, the dangling value and the source only reach the vertices with a
+   * non-zero source value, as in Personalized PageRank.
+   * 
+   * @param x Values to update
+   * @param follow Weight of the values walked into each vertex
+   * @param constant Value added to every vertex
+   * @param source Source values, or null for none (not null if <i>jumpOnly</i> is set)
+   * @param weight Weight of the source values
+   * @param jumpOnly True if the dangling value and the source only reach the source vertices
+   * @param norm Norm the change is measured in
+   * @return Change of the values
+   */
+  protected double gaussSeidelSweep(double[] x, double follow, double constant, double[] source, double weight,
+                                    boolean jumpOnly, int norm)
+  {
+    int numVertices = getNumVertices();
+    InboundIterator it = getInboundIterator();
+
+    // Value held by vertices without out-bound edges
+    double dangling = 0;
+    for(int v = 0; v < numVertices; v++)
+    {
+      if(getOutDegree(v) == 0)
+      {
+        dangling += x[v];
+      }
+    }
+
+    double change = 0;
+    for(int v = 0; v < numVertices; v++)
+    {
+      double sum = 0;
+      it.reset(v);
+      while(it.hasNext())
       {
-        // Valid out-bound graph
-        if(graph[i] != null && graph[i].length != 0)
+        int u = it.next();
+        sum += x[u] * it.transition();
+      }
+
+      double val;
+      if(!jumpOnly)
+      {
+        val = follow * (sum + dangling / numVertices) + constant;
+        if(source != null)
         {
-          // Update new values for neighbor vertices
-          for(int j = 0; j < graph[i].length; j++)
+          val += weight * source[v];
+        }
+      }
+      else if(source[v] == 0.0)
+      {
+        val = follow * sum;
+      }
+      else
+      {
+        val = follow * sum + weight * (source[v] + dangling / numVertices);
+      }
+      val = x[v] + relaxation * (val - x[v]);
+
+      change = (norm == ConvergencePolicy.LINF) ? Math.max(change, Math.abs(val - x[v])) : change + Math.abs(val - x[v]);
+      if(getOutDegree(v) == 0)
+      {
+        dangling += val - x[v];
+      }
+      x[v] = val;
+    }//end: for(v)
+
+    return change;
+  }//end: gaussSeidelSweep(double[], double, double, double[], double, boolean, int)
+
+  /**
+   * Runs Jacobi iterations of a random walk model with one pass over the vectors per iteration.
+   * <p>
+   * Each new value is pulled along the in-bound edges of its vertex, combined with the jump and
+   * source models and written to the other buffer, in the same pass that sums the change, the value
+   * of vertices without out-bound edges (spread in the next iteration) and, for PageRank, the total
+   * used to normalize.  The buffers are then swapped, so nothing is copied or cleared.  Normalization
+   * is applied as a scale factor when the values are next read, and written out once at the end.
+   * <p>
+   * The model is <i>x = follow (P<sup>T</sup> x + d) + constant + weight s</i>, where <i>d</i> is the value of
+   * vertices without out-bound edges spread over all vertices.  If <i>jumpOnly</i> is set, the dangling value
+   * and the source only reach the vertices with a non-zero source value, as in Personalized PageRank.
+   * The iterations run on the calling thread.
+   * 
+   * @param x Starting values, replaced by the solution
+   * @param y Second buffer (its values are ignored, and left undefined)
+   * @param follow Weight of the propagated values
+   * @param constant Value added to every vertex
+   * @param source Source values, or null for none
+   * @param weight Weight of the source values
+   * @param jumpOnly True if the dangling value and the source only reach the source vertices
+   * @param normalize True to scale the values to sum to one after each iteration
+   * @param stats Statistics of the computation, whose policy stops the iterations
+   */
+  protected void fusedIterations(double[] x, double[] y, double follow, double constant, double[] source,
+                                 double weight, boolean jumpOnly, boolean normalize, IterationStats stats)
+  {
+    int numVertices = getNumVertices();
+    ConvergencePolicy policy = stats.getPolicy();
+    boolean max = (policy.getNorm() == ConvergencePolicy.LINF);
+    InboundIterator it = getInboundIterator();
+
+    // Value held by vertices without out-bound edges
+    double dangling = 0;
+    for(int v = 0; v < numVertices; v++)
+    {
+      if(getOutDegree(v) == 0)
+      {
+        dangling += x[v];
+      }
+    }
+
+    double[] cur = x, next = y;
+    double scale = 1;
+    double change;
+    do
+    {
+      double randomSurfer = dangling * scale / numVertices;
+      double newDangling = 0, mag = 0;
+      change = 0;
+
+      for(int v = 0; v < numVertices; v++)
+      {
+        double sum = 0;
+        it.reset(v);
+        while(it.hasNext())
+        {
+          int u = it.next();
+          sum += cur[u] * it.transition();
+        }
+        sum *= scale;
+
+        double val;
+        if(!jumpOnly)
+        {
+          val = follow * (sum + randomSurfer) + constant;
+          if(source != null)
           {
-            PR_new[graph[i][j]] += (PR[i] * tProb[i][j]);
-          }//end: for(j)
+            val += weight * source[v];
+          }
+        }
+        else if(source[v] == 0.0)
+        {
+          val = follow * sum;
         }
         else
-        { // No outbound links, add to overall graph values
-          randomSurfer += PR[i] / graph.length;
+        {
+          val = follow * sum + weight * (source[v] + randomSurfer);
         }
 
-        if(verbose && i%200000 == 0)
+        change = max ? Math.max(change, Math.abs(cur[v] * scale - val)) : change + Math.abs(cur[v] * scale - val);
+        next[v] = val;
+        mag += val;
+        if(getOutDegree(v) == 0)
         {
-          System.out.print(".");
+          newDangling += val;
         }
-      }//end: for(i)
-      
+      }//end: for(v)
+
+      double[] tmp = cur;
+      cur = next;
+      next = tmp;
+      dangling = newDangling;
+      scale = normalize ? 1.0 / mag : 1;
+
       if(verbose)
-      {
-        System.out.println();
+      { // Sanity Check
+        System.out.println(change);
       }
+    }while(policy.proceed(stats, change));
 
-      for(int x = 0; x < PR_new.length; x++)
+    // Write the values out to x, normalized
+    if(normalize)
+    {
+      for(int v = 0; v < numVertices; v++)
       {
-        PR_new[x] = (alpha * (PR_new[x] + randomSurfer)) + ((1-alpha) / PR_new.length);
-      }//end: for(x)
+        x[v] = (float) (cur[v] * scale);
+      }
+    }
+    else if(cur != x)
+    {
+      System.arraycopy(cur, 0, x, 0, numVertices);
+    }
+  }//end: fusedIterations(double[], double[], double, double, double[], double, boolean, boolean, IterationStats)
 
-      // Calculate change between PR generations
-      change = pageRankDiff(PR, PR_new);
+  /**
+   * Runs the PageRank iterations over vertex ranges on several threads.
+   * <p>
+   * Each pass over the vertices is a single range task: combining the models
+   * also measures the change and resets the new array, and the normalization
+   * sum is a reduction over the ranges.
+   * 
+   * @param PR_new Array for the new PageRank values (all zero).
+   * @param extrapolation Extrapolation state, or null for none.
+   * @param stats Statistics of the computation.
+   */
+  private void calculateParallel(final double[] PR_new, QuadraticExtrapolation extrapolation, IterationStats stats)
+  {
+    final int numVertices = getNumVertices();
+    final int norm = stats.getPolicy().getNorm();
+    double change;
+    do {
+      // Update new values for neighbor vertices.
+      // Vertices with no outbound links add to overall graph values.
+      final double randomSurfer = propagate(PR, PR_new) / numVertices;
+
+      // Combine, measure change and reset the new PR array
+      change = reduce(new VertexRange() {
+        public double run(int start, int end)
+        {
+          return DenseKernels.combine(PR, PR_new, alpha, randomSurfer, (1-alpha) / numVertices, norm, start, end);
+        }
+      }, norm);
 
-      // Reset new PR array.
-      for(int x = 0; x < PR.length; x++)
+      if(extrapolation != null)
       {
-        PR[x] = PR_new[x];
-        PR_new[x] = 0;
+        extrapolation.update(PR, stats.getIterations() + 1);
       }
 
       // Calculate the magnitude for normalization
-      double mag = 0;
-      for(int i = 0; i < PR.length; i++)
-      {
-        mag += PR[i];
-      }//end: for(i)
-      
+      final double mag = forEachRange(new VertexRange() {
+        public double run(int start, int end)
+        {
+          double sum = 0;
+          for(int i = start; i < end; i++)
+          {
+            sum += PR[i];
+          }
+          return sum;
+        }
+      });
+
       if(verbose)
       { // Sanity Check
         System.out.println("This should be about one: " + mag);
       }
-      
+
       // Normalize PR vector
-      for(int i = 0; i < PR.length; i++)
-      {
-        PR[i] = (float) (PR[i] / mag);
-      }//end: for(i)
+      forEachRange(new VertexRange() {
+        public double run(int start, int end)
+        {
+          for(int i = start; i < end; i++)
+          {
+            PR[i] = (float) (PR[i] / mag);
+          }
+          return 0;
+        }
+      });
 
       if(verbose)
       { // Sanity Check
         System.out.println(change);
       }
 
-    }while(change > 0.001);		
-  }//end: calculatePageRank(double)
+    }while(stats.getPolicy().proceed(stats, change));
+  }//end: calculateParallel(double[], QuadraticExtrapolation, IterationStats)
+
+  /**
+   * Solves a random walk model as a linear system.
+   * <p>
+   * The model is <i>x = continuation P<sup>T</sup> x + danglingWeight D(x) t + b</i>,
+   * where <i>D(x)</i> is the value held by vertices without out-bound edges and <i>t</i>
+   * is the vector it is spread over.  The system is solved by BiCGSTAB with the
+   * diagonal of the matrix as preconditioner, to the solver's Krylov tolerance, or until the
+   * iteration cap or budget of the computation's policy is reached.
+   * 
+   * @param b Constant part of the model
+   * @param x Starting values, replaced by the solution
+   * @param continuation Probability of following an edge
+   * @param danglingWeight Weight of the value held by vertices without out-bound edges
+   * @param danglingTarget Vector the dangling value is spread over, or null for 1/n at every vertex
+   * @param stats Statistics of the computation
+   */
+  protected void solveKrylov(double[] b, double[] x, final double continuation,
+                             final double danglingWeight, final double[] danglingTarget, IterationStats stats)
+  {
+    final int numVertices = getNumVertices();
+
+    // Diagonal: self-loops and the vertex's own share of its dangling value
+    double[] diagonal = new double[numVertices];
+    NeighborIterator it = getNeighborIterator();
+    for(int v = 0; v < numVertices; v++)
+    {
+      double self = 0;
+      it.reset(v);
+      while(it.hasNext())
+      {
+        if(it.next() == v)
+        {
+          self += getTransition(v, it.edge());
+        }
+      }
+      diagonal[v] = 1 - continuation * self;
+      if(getOutDegree(v) == 0)
+      {
+        double share = (danglingTarget == null) ? 1.0 / numVertices : danglingTarget[v];
+        diagonal[v] -= danglingWeight * share;
+      }
+    }//end: for(v)
+
+    KrylovSolver solver = new KrylovSolver(diagonal) {
+      void multiply(double[] in, double[] out)
+      {
+        Arrays.fill(out, 0);
+        double dangling = propagate(in, out) * danglingWeight;
+        for(int v = 0; v < numVertices; v++)
+        {
+          double share = (danglingTarget == null) ? 1.0 / numVertices : danglingTarget[v];
+          out[v] = in[v] - continuation * out[v] - dangling * share;
+        }
+      }
+    };
+
+    boolean converged = solver.solve(b, x, krylovTolerance, stats);
+
+    // Stops asked for by the policy are reported in the statistics only
+    ConvergencePolicy policy = stats.getPolicy();
+    boolean limited = stats.getStopReason() == IterationStats.TIME_BUDGET ||
+                      (policy.getMaxIterations() > 0 && stats.getIterations() >= policy.getMaxIterations());
+    if(!converged && !limited)
+    {
+      System.err.println("BiCGSTAB stopped with residual " + solver.getResidualNorm() +
+                         " above tolerance " + krylovTolerance);
+    }
+    if(verbose)
+    {
+      System.out.println("BiCGSTAB residual " + solver.getResidualNorm() + " after " + stats.getIterations() + " products");
+    }
+  }//end: solveKrylov(double[], double[], double, double, double[], IterationStats)
+
+  /**
+   * Sums the walk from a start vector over all steps, weighted by alpha.
+   * <p>
+   * The solution is the Green measure of the start vector, used to split relatedness
+   * measures into parts that can be found once and parts that depend on the source.
+   * <p>
+   * Solves <i>g = r + alpha M g</i> by power iteration, where <i>M</i> spreads the
+   * values of vertices without out-bound edges uniformly over the graph, under
+   * {@link ConvergencePolicy#GREEN}.
+   *
+   * @param start Start vector <i>r</i>
+   * @return Solution <i>g</i>
+   */
+  protected double[] greenVector(double[] start)
+  {
+    return greenVector(start, ConvergencePolicy.GREEN);
+  }
+
+  /**
+   * Sums the walk from a start vector over all steps, weighted by alpha, under a convergence policy.
+   * <p>
+   * The iteration statistics are kept as those of the last computation.  A solution
+   * that stopped short of the tolerance is reported on standard error.
+   *
+   * @param start Start vector <i>r</i>
+   * @param policy Convergence policy of the power iterations
+   * @return Solution <i>g</i>
+   */
+  protected double[] greenVector(double[] start, ConvergencePolicy policy)
+  {
+    int numVertices = getNumVertices();
+    double[] g = start.clone();
+    double[] g_new = new double[numVertices];
+    IterationStats stats = policy.start();
+
+    double change;
+    do
+    {
+      double randomSurfer = propagate(g, g_new) / numVertices;
+      change = DenseKernels.combine(g, g_new, alpha, randomSurfer, 0, start, 1, policy.getNorm(), 0, numVertices);
+    }while(policy.proceed(stats, change));
+
+    if(stats.getStopReason() != IterationStats.CONVERGED)
+    {
+      System.err.println("Green measure stopped short of " + policy + ": " + stats);
+    }
+    finish(stats);
+    return g;
+  }//end: greenVector(double[], ConvergencePolicy)
 
   /**
    * Calculates the absolute change between two PageRank value arrays.
@@ -163,7 +956,7 @@ public class PageRank extends WikiGraph {
    */
   protected static double pageRankDiff(double[] oldPR, double[] newPR)
   {
-    float diff = 0;
+    double diff = 0;
     
     for(int x = 0; x < oldPR.length; x++)
     {
@@ -175,12 +968,15 @@ public class PageRank extends WikiGraph {
 
   /**
    * Returns the array of PageRank values.
+   * <p>
+   * The values may be shared with other solvers through the {@link PageRankCache},
+   * so a copy is returned.
    * 
-   * @return double[] of PageRank values.
+   * @return New double[] of PageRank values.
    */
   public double[] getPageRankValues()
   {
-    return PR;
+    return PR.clone();
   }
   
   /**
@@ -0,0 +1,290 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Global PageRank vectors shared by the solvers built on the same graph.
+ * <p>
+ * Vectors are keyed by the kind of PageRank, the graph's content hash (see {@link WikiGraph#getContentHash()})
+ * and alpha.  They are kept in memory while a solver uses them, so solvers created on several threads
+ * compute each vector once and share it.  The cache only holds weak references: once no solver holds a
+ * vector it may be collected, so the vectors of graphs that were reweighted, quantized or changed
+ * (each of which has a new content hash) are not kept for the life of the program.  If a directory is
+ * set, vectors are also stored there as <i>.wpr files</i> named after their key, and read back by later runs.
+ * <p>
+ * Shared vectors must not be changed in place; the solvers only hand out copies of them.
+ * <p>
+ * The <i>.wpr file</i> holds a 32-byte header (magic number, version, number of vertices, content hash, alpha)
+ * followed by the values as doubles.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class PageRankCache
+{
+  /* Extension of PageRank files */
+  public static final String EXTENSION = ".wpr";
+
+  /* Marks a PageRank file ("WPRV") */
+  private static final int MAGIC = 0x57505256;
+
+  /* Current file version */
+  private static final int VERSION = 1;
+
+  /* Directory of the PageRank files, or null to keep vectors in memory only */
+  private static String directory;
+
+  /* Vectors computed or read by this run, while some solver holds them */
+  private static final HashMap<String, WeakReference<double[]>> vectors = new HashMap<String, WeakReference<double[]>>();
+
+  /* One lock per key, so each vector is computed by a single thread */
+  private static final HashMap<String, Object> locks = new HashMap<String, Object>();
+
+  /**
+   * Sets the directory PageRank files are stored in.
+   *
+   * @param dir Directory name, or null to keep vectors in memory only.
+   */
+  public static synchronized void setDirectory(String dir)
+  {
+    directory = dir;
+  }
+
+  /**
+   * Drops the vectors held in memory.
+   */
+  public static synchronized void clear()
+  {
+    vectors.clear();
+    locks.clear();
+  }
+
+  /**
+   * Gets the key of a vector.
+   *
+   * @param kind Kind of PageRank (for example "pagerank" or "uniform").
+   * @param graph Graph the vector is computed on.
+   * @param alpha Random walk weight.
+   * @return Key.
+   */
+  static String getKey(String kind, WikiGraph graph, double alpha)
+  {
+    return kind + "-" + Long.toHexString(graph.getContentHash()) + "-" + alpha;
+  }
+
+  /**
+   * Gets the lock that guards the computation of a vector.
+   *
+   * @param key Key of the vector.
+   * @return Lock object.
+   */
+  static synchronized Object getLock(String key)
+  {
+    Object lock = locks.get(key);
+    if(lock == null)
+    {
+      lock = new Object();
+      locks.put(key, lock);
+    }
+    return lock;
+  }//end: getLock(String)
+
+  /**
+   * Looks up a vector, in memory and then in the directory.
+   *
+   * @param key Key of the vector.
+   * @param graph Graph the vector is computed on.
+   * @param alpha Random walk weight.
+   * @return Stored vector, or null if there is none.
+   */
+  static double[] get(String key, WikiGraph graph, double alpha)
+  {
+    String dir;
+    synchronized(PageRankCache.class)
+    {
+      WeakReference<double[]> ref = vectors.get(key);
+      double[] vals = (ref == null) ? null : ref.get();
+      if(vals != null)
+      {
+        return vals;
+      }
+      dir = directory;
+    }
+
+    File file = (dir == null) ? null : new File(dir, key + EXTENSION);
+    if(file == null || !file.exists())
+    {
+      return null;
+    }
+
+    try
+    {
+      double[] vals = read(file, graph, alpha);
+      keep(key, vals);
+      return vals;
+    }
+    catch(IOException e)
+    {
+      System.err.println("Ignoring PageRank file " + file + ": " + e.getMessage());
+      return null;
+    }
+  }//end: get(String, WikiGraph, double)
+
+  /**
+   * Stores a vector in memory and, if a directory is set, in a file.
+   *
+   * @param key Key of the vector.
+   * @param graph Graph the vector is computed on.
+   * @param alpha Random walk weight.
+   * @param vals PageRank values.
+   */
+  static void put(String key, WikiGraph graph, double alpha, double[] vals)
+  {
+    keep(key, vals);
+    String dir;
+    synchronized(PageRankCache.class)
+    {
+      dir = directory;
+    }
+    if(dir == null)
+    {
+      return;
+    }
+
+    File file = new File(dir, key + EXTENSION);
+    try
+    {
+      write(file, graph, alpha, vals);
+    }
+    catch(IOException e)
+    {
+      System.err.println("Could not write PageRank file " + file + ": " + e.getMessage());
+    }
+  }//end: put(String, WikiGraph, double, double[])
+
+  /**
+   * Holds a vector in memory, and drops the entries of vectors that have been collected.
+   *
+   * @param key Key of the vector.
+   * @param vals PageRank values.
+   */
+  private static synchronized void keep(String key, double[] vals)
+  {
+    Iterator<WeakReference<double[]>> it = vectors.values().iterator();
+    while(it.hasNext())
+    {
+      if(it.next().get() == null)
+      {
+        it.remove();
+      }
+    }
+    vectors.put(key, new WeakReference<double[]>(vals));
+  }//end: keep(String, double[])
+
+  /**
+   * Reads a PageRank file, checking it belongs to the graph.
+   *
+   * @param file PageRank file.
+   * @param graph Graph the vector is computed on.
+   * @param alpha Random walk weight.
+   * @return PageRank values.
+   * @throws IOException If the file cannot be read or belongs to another graph.
+   */
+  private static double[] read(File file, WikiGraph graph, double alpha) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try
+    {
+      if(in.readInt() != MAGIC)
+      {
+        throw new IOException("not a PageRank file");
+      }
+      int version = in.readInt();
+      if(version > VERSION)
+      {
+        throw new IOException("unsupported version " + version);
+      }
+      int n = in.readInt();
+      in.readInt();
+      long hash = in.readLong();
+      double a = in.readDouble();
+      if(n != graph.getNumVertices() || hash != graph.getContentHash() || a != alpha)
+      {
+        throw new IOException("computed on another graph");
+      }
+
+      double[] vals = new double[n];
+      for(int i = 0; i < n; i++)
+      {
+        vals[i] = in.readDouble();
+      }
+      return vals;
+    }
+    finally
+    {
+      in.close();
+    }
+  }//end: read(File, WikiGraph, double)
+
+  /**
+   * Writes a PageRank file.
+   * <p>
+   * The file is written under a temporary name and then renamed, so other runs never read a partial file.
+   *
+   * @param file PageRank file.
+   * @param graph Graph the vector is computed on.
+   * @param alpha Random walk weight.
+   * @param vals PageRank values.
+   * @throws IOException
+   */
+  private static void write(File file, WikiGraph graph, double alpha, double[] vals) throws IOException
+  {
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(vals.length);
+      out.writeInt(0);
+      out.writeLong(graph.getContentHash());
+      out.writeDouble(alpha);
+      for(int i = 0; i < vals.length; i++)
+      {
+        out.writeDouble(vals[i]);
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+    if(!tmp.renameTo(file))
+    {
+      file.delete();
+      if(!tmp.renameTo(file))
+      {
+        throw new IOException("cannot rename " + tmp);
+      }
+    }
+  }//end: write(File, WikiGraph, double, double[])
+}//end: PageRankCache
@@ -18,6 +18,7 @@ package edu.osu.slate.relatedness.swwr.algorithm;
 import java.util.Arrays;
 
 import edu.osu.slate.relatedness.RelatednessInterface;
+import edu.osu.slate.relatedness.swwr.data.graph.VertexRange;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 
 /**
@@ -25,6 +26,12 @@ import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
  * <p>
  * <i>Exact</i> relatedness methods omit the jump model from the calculation and only take the link structure into account when calculating values.
  * These run slower and are not guaranteed to converge, but may produce higher-quality results.
+ * Their iterations are capped by the solver's {@link ConvergencePolicy} (or one given with a single query),
+ * whose {@link IterationStats} tell whether the tolerance was reached.
+ * <p>
+ * As in {@link SourcedPageRank}, the relatedness methods keep no state in the object: scratch vectors
+ * come from the solver's {@link VectorPool}, and results may be written into caller-supplied arrays.
+ * With {@link #setSinglePrecision(boolean)} the iterations run on float vectors.
  * <p>
  * Source Paper: Y. Ollivier and P. Senellart, <i>Finding Related Pages Using Green Measures: An Illustration with Wikipedia.</i>
  * 
@@ -38,28 +45,6 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    */
   private static final long serialVersionUID = 6168622709678063605L;
 
-  /**
-   * 
-   */
-  private double [] PPR_old;
-
-  /**
-   * 
-   */
-  private double [] PPR_new;
-
-  /**
-   * 
-   */
-  private double [] PR_jump;
-
-  /**
-   * Indicates the use of approximate (faster) or exact (more accurate) calculations.
-   * <br>
-   * Approximate calculations are guaranteed to converge, while exact calculations are not.
-   */
-  protected boolean approximate = false;
-
   /**
    * Constructor for GreenRelatedness.  Calls the {@link PageRank} constructor.
    * 
@@ -87,16 +72,13 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    * This is guaranteed to converge.
    * <p>
    * Requires relatedness calculations on the full-graph.
-   * 
+   *
    * @param from Vertex ID number (compressed)
    * @param to Vertex ID number (compressed)
    * @return GreenMeasure resulting from running relatedness measure.
    */
   public double getRelatedness(int from, int to)
   {
-    // Set Approximate Flag
-    approximate = true;
-
     // Return Results of getRelatedness
     return getExactRelatedness(from, to);
   }
@@ -108,18 +90,23 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    * This is guaranteed to converge.
    * <p>
    * Requires relatedness calculations on the full-graph.
-   * 
+   *
    * @param from Vertex ID number (compressed)
    * @param to Vertex ID number (compressed)
    * @return GreenMeasure resulting from running relatedness measure.
    */
-  public double getRelatedness(int[] from, int to) {
-
-    // Set Approximate Flag
-    approximate = true;
-
-    // Return Results of getRelatedness
-    return getRelatedness(from, to);
+  public double getRelatedness(int[] from, int to)
+  {
+    VectorPool pool = getScratch();
+    double[] GM = pool.borrow();
+    try
+    {
+      return getRelatedness(from, GM)[to];
+    }
+    finally
+    {
+      pool.release(GM);
+    }
   }
 
   /**
@@ -134,13 +121,22 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    * @param to Vertex ID number (compressed)
    * @return GreenMeasure resulting from running relatedness measure.
    */
-  public double getExactRelatedness(int from, int to) {
-
-    //Get distribution
-    double [] GM = getExactRelatedness(from);		
+  public double getExactRelatedness(int from, int to)
+  {
+    //Get distribution in a pooled vector
+    VectorPool pool = getScratch();
+    double[] GM = pool.borrow();
+    try
+    {
+      getExactRelatedness(from, GM);
 
-    // Return value at the 'to' index
-    return GM[to];
+      // Return value at the 'to' index
+      return GM[to];
+    }
+    finally
+    {
+      pool.release(GM);
+    }
   }
 
   /**
@@ -153,11 +149,8 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    * @param from Vertex ID number (compressed)
    * @return Array containing relatedness distribution
    */
-  public double[] getRelatedness(int from) {
-
-    // Set Approximate Flag
-    approximate = true;
-
+  public double[] getRelatedness(int from)
+  {
     // Return Results of getRelatednessDistribution
     return getExactRelatedness(from);
   }
@@ -172,49 +165,123 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    * @param from Vertex ID number (compressed)
    * @return Array containing relatedness distribution
    */
-  public double[] getRelatedness(int[] from) {
+  public double[] getRelatedness(int[] from)
+  {
+    return getRelatedness(from, new double[getNumVertices()]);
+  }
 
-    // Set Approximate Flag
-    approximate = true;
+  /**
+   * Finds the relatedness distribution sourced at set vertices, into a caller-supplied array.
+   * <p>
+   * All source vertices are given uniform weights.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @return The result array
+   */
+  public double[] getRelatedness(int[] from, double[] result)
+  {
+    IterationStats stats = getConvergencePolicy().start();
+    if(useSinglePrecision())
+    {
+      float[] jump = new float[from.length];
+      Arrays.fill(jump, (float) (1.0/from.length));
+      relatednessSingle(from, jump, false, result, stats);
+      finish(stats);
+      return result;
+    }
 
-    PPR_old = new double[graph.length];
-    PPR_new = new double[graph.length];
-    PR_jump = new double[graph.length];
+    VectorPool pool = getScratch();
+    double[] PR_jump = pool.borrow();
+    try
+    {
+      for(int i=0; i<from.length; i++) {
+        PR_jump[from[i]] = PR_jump[from[i]] + (1.0/from.length);
+      }
 
-    for(int j=0;j<PR_jump.length;j++) {
-      PR_jump[j] = 0;
-      PPR_old[j] = PR_jump[j];
+      // Return Results of getRelatednessDistribution
+      System.arraycopy(PR_jump, 0, result, 0, PR_jump.length);
+      solve(result, PR_jump, stats);
+      finish(stats);
+      return result;
     }
-
-    for(int i=0; i<from.length; i++) {
-      PR_jump[from[i]] = PR_jump[from[i]] + (1.0/from.length);
-      PPR_old[from[i]] = PPR_old[from[i]] + (1.0/from.length);
+    finally
+    {
+      pool.release(PR_jump);
     }
-
-    // Return Results of getRelatednessDistribution
-    return getExactRelatedness();
   }
 
   public double[] getRelatedness(int[] from, float[] vals)
   {
-    approximate = true;
+    return getRelatedness(from, vals, new double[getNumVertices()]);
+  }
 
-    PPR_old = new double[graph.length];
-    PPR_new = new double[graph.length];
-    PR_jump = new double[graph.length];
+  /**
+   * Finds the relatedness distribution sourced at weighted vertices, into a caller-supplied array.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Weight of each source vertex
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @return The result array
+   */
+  public double[] getRelatedness(int[] from, float[] vals, double[] result)
+  {
+    relatedness(from, vals, result, getConvergencePolicy().start());
+    return result;
+  }
 
-    for(int j=0;j<PR_jump.length;j++) {
-      PR_jump[j] = PR[j] * -1;
-      PPR_old[j] = PR_jump[j];
-    }
+  /**
+   * Finds the relatedness distribution sourced at weighted vertices, stopping the iterations by the given policy.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Weight of each source vertex
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param policy Convergence policy of this query
+   * @return Iteration statistics of the query
+   */
+  public IterationStats getRelatedness(int[] from, float[] vals, double[] result, ConvergencePolicy policy)
+  {
+    return relatedness(from, vals, result, policy.start());
+  }
 
-    for(int i=0; i<from.length; i++) {
-      PR_jump[from[i]] = PR_jump[from[i]] + vals[i];
-      PPR_old[from[i]] = PPR_old[from[i]] + vals[i];
+  /**
+   * Builds the jump vector from the weighted vertices, offset by the PageRank values, and runs the PPR iterations.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Weight of each source vertex
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param stats Statistics of the computation
+   * @return The statistics
+   */
+  private IterationStats relatedness(int[] from, float[] vals, double[] result, IterationStats stats)
+  {
+    if(useSinglePrecision())
+    {
+      relatednessSingle(from, vals, true, result, stats);
+      return finish(stats);
     }
 
-    return getExactRelatedness();
-  }
+    VectorPool pool = getScratch();
+    double[] PR_jump = pool.borrow();
+    try
+    {
+      for(int j=0;j<PR_jump.length;j++) {
+        PR_jump[j] = PR[j] * -1;
+      }
+
+      for(int i=0; i<from.length; i++) {
+        PR_jump[from[i]] = PR_jump[from[i]] + vals[i];
+      }
+
+      System.arraycopy(PR_jump, 0, result, 0, PR_jump.length);
+      solve(result, PR_jump, stats);
+      return finish(stats);
+    }
+    finally
+    {
+      pool.release(PR_jump);
+    }
+  }//end: relatedness(int[], float[], double[], IterationStats)
 
   /**
    * Finds the relatedness distribution sourced at a vertex using the exact inference routine.
@@ -228,149 +295,272 @@ public class PersonalizedPageRank extends PageRank implements RelatednessInterfa
    */
   public double[] getExactRelatedness(int from)
   {
-    PPR_old = new double[graph.length];
-    PPR_new = new double[graph.length];
-    PR_jump = new double[graph.length];
+    return getExactRelatedness(from, new double[getNumVertices()]);
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex using the exact inference routine,
+   * into a caller-supplied array.
+   *
+   * @param from Vertex ID number (compressed)
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @return The result array
+   */
+  public double[] getExactRelatedness(int from, double[] result)
+  {
+    exactRelatedness(from, result, getConvergencePolicy().start());
+    return result;
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex using the exact inference routine,
+   * stopping the iterations by the given policy.
+   * <p>
+   * A policy with an iteration cap or a budget bounds the time of the query, even where
+   * the iterations would not converge.
+   *
+   * @param from Vertex ID number (compressed)
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param policy Convergence policy of this query
+   * @return Iteration statistics of the query
+   */
+  public IterationStats getExactRelatedness(int from, double[] result, ConvergencePolicy policy)
+  {
+    return exactRelatedness(from, result, policy.start());
+  }
 
-    for(int j = 0; j < PR_jump.length; j++)
+  /**
+   * Builds the jump vector of a single vertex and runs the exact PPR iterations.
+   *
+   * @param from Vertex ID number (compressed)
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param stats Statistics of the computation
+   * @return The statistics
+   */
+  private IterationStats exactRelatedness(int from, double[] result, IterationStats stats)
+  {
+    if(useSinglePrecision())
     {
-      PR_jump[j] = 0;
-      PPR_old[j] = PR_jump[j];
+      relatednessSingle(new int[] {from}, new float[] {1}, false, result, stats);
+      return finish(stats);
     }
 
-    PR_jump[from] = 1;
-    PPR_old[from] = 1;
+    VectorPool pool = getScratch();
+    double[] PR_jump = pool.borrow();
+    try
+    {
+      PR_jump[from] = 1;
 
-    int numIterations = 0;
-    double change;
-    do {
-      double randomSurfer = 0;
+      Arrays.fill(result, 0.0);
+      result[from] = 1;
 
-      for(int j = 0; j < graph.length; j++) {
+      solve(result, PR_jump, stats);
+      return finish(stats);
+    }
+    finally
+    {
+      pool.release(PR_jump);
+    }
+  }//end: exactRelatedness(int, double[], IterationStats)
 
-        if(graph[j] != null && graph[j].length != 0)
-        {
-          // Valid transition array
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            PPR_new[graph[j][k]] += (PPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
+  /**
+   * Builds the jump vector and runs the exact PPR iterations on single-precision vectors.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Jump weight of each source vertex
+   * @param offset True if the jump vector starts at minus the PageRank values
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param stats Statistics of the computation
+   * @return The result array
+   */
+  private double[] relatednessSingle(int[] from, float[] vals, boolean offset, double[] result, IterationStats stats)
+  {
+    VectorPool pool = getScratch();
+    float[] jump = pool.borrowFloat();
+    float[] x = pool.borrowFloat();
+    float[] y = pool.borrowFloat();
+    try
+    {
+      if(offset)
+      {
+        for(int j = 0; j < jump.length; j++)
         {
-          // Add transition values to randomSurfer
-          randomSurfer += PPR_old[j] / PR_jump.length;
+          jump[j] = (float) (PR[j] * -1);
         }
+      }
+
+      for(int i = 0; i < from.length; i++)
+      {
+        jump[from[i]] = jump[from[i]] + vals[i];
+      }
+
+      System.arraycopy(jump, 0, x, 0, jump.length);
+      SinglePrecision.iterate(this, x, y, jump, .85, 0, .15, true, stats);
+      return SinglePrecision.toDouble(x, null, result);
+    }
+    finally
+    {
+      pool.release(jump);
+      pool.release(x);
+      pool.release(y);
+    }
+  }//end: relatednessSingle(int[], float[], boolean, double[], IterationStats)
 
-      }//end: for(j)
+  /**
+   * Runs the exact PPR iterations in the solver's iteration mode.
+   *
+   * @param x Starting values, replaced by the relatedness distribution
+   * @param jump Jump vector
+   * @param stats Statistics of the computation
+   * @return The x array
+   */
+  private double[] solve(double[] x, double[] jump, IterationStats stats)
+  {
+    if(getIterationMode() == GAUSS_SEIDEL)
+    {
+      return getExactRelatednessGaussSeidel(x, jump, stats);
+    }
+    if(getIterationMode() == BICGSTAB)
+    {
+      return getExactRelatednessKrylov(x, jump, stats);
+    }
 
-      for(int x = 0; x < PPR_new.length; x++)
+    VectorPool pool = getScratch();
+    double[] newVals = pool.borrow();
+    try
+    {
+      if(getIterationMode() == FUSED)
       {
-        if(PR_jump[x] == 0.0)
-        {
-          PPR_new[x] = (.85 * PPR_new[x]);
-        }
-        else
-        {
-          PPR_new[x] = (.85 * PPR_new[x]) + (.15 * (PR_jump[x] + randomSurfer));
-        }
+        fusedIterations(x, newVals, .85, 0, jump, .15, true, false, stats);
+        return x;
+      }
+      if(isParallel())
+      {
+        return getExactRelatednessParallel(x, newVals, jump, stats);
       }
+      return getExactRelatednessJacobi(x, newVals, jump, stats);
+    }
+    finally
+    {
+      pool.release(newVals);
+    }
+  }//end: solve(double[], double[], IterationStats)
+
+  /**
+   * Runs the exact PPR iterations, propagating the old values into a second array.
+   *
+   * @param PPR_old Starting values, replaced by the relatedness distribution
+   * @param PPR_new Array for the new values (all zero)
+   * @param PR_jump Jump vector
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getExactRelatednessJacobi(double[] PPR_old, double[] PPR_new, double[] PR_jump, IterationStats stats)
+  {
+    ConvergencePolicy policy = stats.getPolicy();
+    double change;
+    do {
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(PPR_old, PPR_new) / getNumVertices();
+
+      // Combine the models, measure the change and reset the new array
+      change = DenseKernels.combineJump(PPR_old, PPR_new, .85, randomSurfer, PR_jump, .15, policy.getNorm(),
+                                        0, PPR_old.length);
+    }while(policy.proceed(stats, change));
 
-      change = pageRankDiff(PPR_old, PPR_new);
-      
-//      double tmp = 0.0;
-//      for(int x=0; x<PPR_new.length; x++)
-//      {
-//        PPR_old[x] = PPR_new[x];
-//        tmp += PPR_old[x];
-//        PPR_new[x] = 0;
-//      }
-//      System.out.println(tmp);
-      
-      System.arraycopy(PPR_new, 0, PPR_old, 0, PPR_new.length);
-      Arrays.fill(PPR_new, 0.0);
-      
-      numIterations++;
-    }while(change > 0.002);
-
-//    for(int j = 0; j < PPR_old.length; j++)
-//    {
-//      PPR_old[j] = PPR_old[j] * Math.log10(1.0/PR[j]);
-//    }
-
-    approximate = false;
     return PPR_old;
-  }
+  }//end: getExactRelatednessJacobi(double[], double[], double[], IterationStats)
 
   /**
-   * Finds the relatedness distribution sourced at a vertex using the exact inference routine.
-   * <p>
-   * This runs slower than getRelatedness, but should return more accurate results.
+   * Runs the exact PPR iterations as in-place Gauss-Seidel sweeps.
    * <p>
-   * This is NOT guaranteed to converge.
+   * Each vertex is updated from the values already updated in its sweep, with the
+   * solver's over-relaxation factor; the jump and the dangling value only reach the
+   * jump vertices, as in the Jacobi iterations.
    *
-   * @param from Vertex ID number (compressed)
+   * @param PPR Starting values, replaced by the relatedness distribution
+   * @param PR_jump Jump vector
+   * @param stats Statistics of the computation
    * @return Array containing relatedness distribution
    */
-  public double[] getExactRelatedness() {
-
-    int numIterations = 0;
+  private double[] getExactRelatednessGaussSeidel(double[] PPR, double[] PR_jump, IterationStats stats)
+  {
+    ConvergencePolicy policy = stats.getPolicy();
     double change;
     do {
-      double randomSurfer = 0;
-
-      for(int j = 0; j < graph.length; j++)
-      {
-        if(graph[j] != null && graph[j].length != 0)
-        {
-          // Valid transition array
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            PPR_new[graph[j][k]] += (PPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
-        {
-          // Add transition values to randomSurfer
-          randomSurfer += PPR_old[j] / PR_jump.length;
-        }
+      change = gaussSeidelSweep(PPR, .85, 0, PR_jump, .15, true, policy.getNorm());
+    }while(policy.proceed(stats, change));
 
-      }//end: for(j)
+    return PPR;
+  }//end: getExactRelatednessGaussSeidel(double[], double[], IterationStats)
 
-      for(int x = 0; x < PPR_new.length; x++)
+  /**
+   * Solves the exact PPR model as a linear system.
+   * <p>
+   * Unlike the iterations, this is guaranteed to reach the solver's tolerance.
+   *
+   * @param PPR_old Starting values, replaced by the relatedness distribution
+   * @param PR_jump Jump vector
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getExactRelatednessKrylov(double[] PPR_old, double[] PR_jump, IterationStats stats)
+  {
+    // Jump vertices take the dangling value, each getting 1/n of it
+    VectorPool pool = getScratch();
+    double[] b = pool.borrow();
+    double[] target = pool.borrow();
+    try
+    {
+      for(int x = 0; x < b.length; x++)
       {
-        if(PR_jump[x] == 0.0)
-        {
-          PPR_new[x] = (.85 * PPR_new[x]);
-        }
-        else
-        {
-          PPR_new[x] = (.85 * PPR_new[x]) + (.15 * (PR_jump[x] + randomSurfer));
-        }
+        b[x] = .15 * PR_jump[x];
+        target[x] = (PR_jump[x] == 0.0) ? 0 : 1.0 / getNumVertices();
       }
+      solveKrylov(b, PPR_old, .85, .15, target, stats);
+    }
+    finally
+    {
+      pool.release(b);
+      pool.release(target);
+    }
 
-      change = pageRankDiff(PPR_old, PPR_new);
-
-//      double tmp = 0.0;
-//      for(int x=0; x<PPR_new.length; x++) {
-//        PPR_old[x] = PPR_new[x];
-//        tmp += PPR_old[x];
-//        PPR_new[x] = 0;
-//      }
+    return PPR_old;
+  }//end: getExactRelatednessKrylov(double[], double[], IterationStats)
 
-      System.arraycopy(PPR_new, 0, PPR_old, 0, PPR_new.length);
-      Arrays.fill(PPR_new, 0.0);
-      
-      numIterations++;
-    }while(change > 0.002);
+  /**
+   * Runs the exact PPR iterations over vertex ranges on several threads.
+   * <p>
+   * Combining the models also measures the change, copies the new values
+   * into the old array and resets the new array, in a single pass.
+   *
+   * @param oldVals Starting values, replaced by the relatedness distribution
+   * @param newVals Array for the new values (all zero)
+   * @param jump Jump vector
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getExactRelatednessParallel(final double[] oldVals, final double[] newVals, final double[] jump,
+                                               IterationStats stats)
+  {
+    ConvergencePolicy policy = stats.getPolicy();
+    final int norm = policy.getNorm();
+    double change;
+    do {
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      final double randomSurfer = propagate(oldVals, newVals) / getNumVertices();
 
-//    for(int j = 0; j < PPR_old.length; j++)
-//    {
-//      PPR_old[j] = PPR_old[j] * Math.log10(1.0/PR[j]);
-//    }
+      change = reduce(new VertexRange() {
+        public double run(int start, int end)
+        {
+          return DenseKernels.combineJump(oldVals, newVals, .85, randomSurfer, jump, .15, norm, start, end);
+        }
+      }, norm);
+    }while(policy.proceed(stats, change));
 
-    approximate = false;
-    return PPR_old;
-  }//end: getExactRelatedness()
+    return oldVals;
+  }//end: getExactRelatednessParallel(double[], double[], double[], IterationStats)
 
-}//end: PersonalizedPageRank
\ No newline at end of file
+}//end: PersonalizedPageRank
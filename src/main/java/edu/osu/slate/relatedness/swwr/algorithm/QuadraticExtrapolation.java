@@ -0,0 +1,133 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+/**
+ * Periodic quadratic extrapolation of power iterations.
+ * <p>
+ * Every <i>period</i> iterations the current iterate is replaced by a combination of the last
+ * three, chosen so that the error along the three slowest-decaying eigenvectors cancels.
+ * Only the three iterates before each extrapolation step are kept.
+ * <p>
+ * The iterations <i>x = alpha M x + c</i> are treated as power iterations on the vector (x, 1),
+ * so the extrapolated iterate is divided by its last coordinate.  This leaves PageRank iterates
+ * (which sum to one) normalized, and applies the same step to the sourced models.
+ * <p>
+ * Source Paper: S. D. Kamvar, T. H. Haveliwala, C. D. Manning and G. H. Golub, <i>Extrapolation Methods for Accelerating PageRank Computations.</i>
+ *
+ * @author weale
+ * @version 1.0
+ */
+class QuadraticExtrapolation
+{
+  /* Smallest usable determinant of the least-squares system, relative to its scale */
+  private static final double SINGULAR = 1e-12;
+
+  /* Iterations between extrapolation steps */
+  private final int period;
+
+  /* Iterates k-3, k-2 and k-1 before an extrapolation step at iterate k */
+  private final double[][] history;
+
+  /* Number of extrapolation steps made */
+  private int steps;
+
+  /**
+   * Constructor.
+   *
+   * @param numVertices Length of the iterates.
+   * @param period Iterations between extrapolation steps (at least four).
+   */
+  QuadraticExtrapolation(int numVertices, int period)
+  {
+    this.period = period;
+    history = new double[3][numVertices];
+  }
+
+  /**
+   * Gets the number of extrapolation steps made.
+   *
+   * @return Number of steps.
+   */
+  int getSteps()
+  {
+    return steps;
+  }
+
+  /**
+   * Records the iterate of an iteration, and extrapolates it if it is time to.
+   *
+   * @param x Current iterate, replaced by the extrapolated iterate.
+   * @param iteration Number of iterations made so far (starting at one).
+   * @return True if the iterate was extrapolated.
+   */
+  boolean update(double[] x, int iteration)
+  {
+    int phase = iteration % period;
+    if(phase >= period - 3)
+    {
+      System.arraycopy(x, 0, history[phase - (period - 3)], 0, x.length);
+      return false;
+    }
+    if(phase != 0 || iteration < period)
+    {
+      return false;
+    }
+
+    // Differences from iterate k-3
+    double[] x0 = history[0];
+    double[] x1 = history[1];
+    double[] x2 = history[2];
+    double a11 = 0, a12 = 0, a22 = 0, b1 = 0, b2 = 0;
+    for(int i = 0; i < x.length; i++)
+    {
+      double y1 = x1[i] - x0[i];
+      double y2 = x2[i] - x0[i];
+      double y3 = x[i] - x0[i];
+      a11 += y1 * y1;
+      a12 += y1 * y2;
+      a22 += y2 * y2;
+      b1 += y1 * y3;
+      b2 += y2 * y3;
+    }//end: for(i)
+
+    // Least-squares gamma1, gamma2 with gamma3 = 1
+    double det = a11 * a22 - a12 * a12;
+    if(Math.abs(det) <= SINGULAR * a11 * a22)
+    {
+      return false;
+    }
+    double g1 = (-b1 * a22 + b2 * a12) / det;
+    double g2 = (-b2 * a11 + b1 * a12) / det;
+    double g3 = 1;
+
+    double beta0 = g1 + g2 + g3;
+    double beta1 = g2 + g3;
+    double beta2 = g3;
+    double scale = beta0 + beta1 + beta2;
+    if(Math.abs(scale) <= SINGULAR)
+    {
+      return false;
+    }
+
+    for(int i = 0; i < x.length; i++)
+    {
+      x[i] = (beta0 * x1[i] + beta1 * x2[i] + beta2 * x[i]) / scale;
+    }
+    steps++;
+    return true;
+  }//end: update(double[], int)
+}//end: QuadraticExtrapolation
@@ -0,0 +1,153 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import edu.osu.slate.relatedness.swwr.data.graph.NeighborIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Simulates random walks on a graph that stop with a fixed probability at each step.
+ * <p>
+ * A walk follows an out-bound edge (chosen by its transition probability) with probability
+ * alpha, and stops otherwise.  Walks at a vertex without out-bound edges jump to a vertex
+ * chosen uniformly, as in {@link PageRank}.  The vertex a walk stops at is drawn from the
+ * Personalized PageRank distribution of its start vertex.
+ * <p>
+ * The random numbers come from a SplitMix64 generator held in a single field,
+ * so a walk allocates nothing.  A walker is not thread-safe: use one per thread.
+ *
+ * @author weale
+ * @version 1.0
+ */
+class RandomWalker
+{
+  /* Graph to walk */
+  private final WikiGraph graph;
+
+  /* Walks the out-bound edges of a vertex */
+  private final NeighborIterator it;
+
+  /* Probability of following an edge at each step */
+  private final double alpha;
+
+  /* Generator state */
+  private long state;
+
+  /**
+   * Constructor.
+   *
+   * @param graph Graph to walk.
+   * @param alpha Probability of following an edge at each step.
+   * @param seed Seed of the random numbers.
+   */
+  RandomWalker(WikiGraph graph, double alpha, long seed)
+  {
+    this.graph = graph;
+    this.alpha = alpha;
+    it = graph.getNeighborIterator();
+    state = seed;
+  }
+
+  /**
+   * Restarts the random numbers from a new seed.
+   *
+   * @param seed Seed of the random numbers.
+   */
+  void setSeed(long seed)
+  {
+    state = seed;
+  }
+
+  /**
+   * Runs a walk.
+   *
+   * @param v Start vertex.
+   * @return Vertex the walk stopped at.
+   */
+  int walk(int v)
+  {
+    while(nextDouble() < alpha)
+    {
+      int degree = graph.getOutDegree(v);
+      if(degree == 0)
+      {
+        // No out-bound edges: jump anywhere
+        v = nextInt(graph.getNumVertices());
+        continue;
+      }
+
+      it.reset(v);
+      if(graph.isUniformTransition())
+      {
+        int skip = nextInt(degree);
+        for(int i = 0; i < skip; i++)
+        {
+          it.next();
+        }
+        v = it.next();
+      }
+      else
+      {
+        // Walk the cumulative transition probabilities (the last edge takes any rounding left over)
+        double r = nextDouble();
+        int u = v;
+        while(it.hasNext())
+        {
+          u = it.next();
+          r -= graph.getTransition(v, it.edge());
+          if(r < 0)
+          {
+            break;
+          }
+        }
+        v = u;
+      }
+    }//end: while(continue)
+    return v;
+  }//end: walk(int)
+
+  /**
+   * Mixes a number into a well-spread seed.
+   *
+   * @param z Number to mix.
+   * @return Mixed value.
+   */
+  static long mix(long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /* Next 64 random bits */
+  private long nextLong()
+  {
+    state += 0x9E3779B97F4A7C15L;
+    return mix(state);
+  }
+
+  /* Random number in [0, 1) */
+  private double nextDouble()
+  {
+    return (nextLong() >>> 11) * 0x1.0p-53;
+  }
+
+  /* Random number in [0, bound) */
+  private int nextInt(int bound)
+  {
+    return (int) (((nextLong() >>> 33) * bound) >>> 31);
+  }
+}//end: RandomWalker
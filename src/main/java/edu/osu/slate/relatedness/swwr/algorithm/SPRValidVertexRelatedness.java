@@ -18,6 +18,7 @@ package edu.osu.slate.relatedness.swwr.algorithm;
 import java.util.TreeSet;
 
 import edu.osu.slate.relatedness.RelatednessInterface;
+import edu.osu.slate.relatedness.swwr.data.graph.NeighborIterator;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 
 
@@ -183,9 +184,9 @@ public class SPRValidVertexRelatedness extends PageRank implements RelatednessIn
 		// Set Approximate Flag
 		approximate = true;
 		
-		GM_old = new double[graph.length];
-		GM_new = new double[graph.length];
-		PR_init = new double[graph.length];
+		GM_old = new double[getNumVertices()];
+		GM_new = new double[getNumVertices()];
+		PR_init = new double[getNumVertices()];
 
 		for(int j=0;j<PR_init.length;j++) {
 			PR_init[j] = PR[j] * -1;
@@ -208,9 +209,9 @@ public class SPRValidVertexRelatedness extends PageRank implements RelatednessIn
 		
 		approximate = true;
 		
-		GM_old = new double[graph.length];
-		GM_new = new double[graph.length];
-		PR_init = new double[graph.length];
+		GM_old = new double[getNumVertices()];
+		GM_new = new double[getNumVertices()];
+		PR_init = new double[getNumVertices()];
 
 		for(int j=0;j<PR_init.length;j++) {
 			PR_init[j] = PR[j] * -1;
@@ -237,9 +238,9 @@ public class SPRValidVertexRelatedness extends PageRank implements RelatednessIn
 	 */
 	public double[] getRelatedness(int from) {
 		
-		GM_old = new double[graph.length];
-		GM_new = new double[graph.length];
-		PR_init = new double[graph.length];
+		GM_old = new double[getNumVertices()];
+		GM_new = new double[getNumVertices()];
+		PR_init = new double[getNumVertices()];
 
 		for(int j=0;j<PR_init.length;j++) {
 			PR_init[j] = PR[j] * -1;
@@ -264,32 +265,18 @@ public class SPRValidVertexRelatedness extends PageRank implements RelatednessIn
 	 */
 	public double[] getRelatedness() {
 		
-		int numIterations = 0;
+		ConvergencePolicy policy = getConvergencePolicy();
+		IterationStats stats = policy.start();
 		double change;
 		do {
-			double randomSurfer = 0;
-			
-			for(int j = 0; j < graph.length; j++) {
-				
-				if(graph[j] != null && graph[j].length != 0) {
-					// Valid transition array
-					
-					for(int k=0; k<graph[j].length; k++) {
-						GM_new[graph[j][k]] += (GM_old[j] * tProb[j][k]);
-					}//end: for(k)
-				}
-				else {
-					// Add transition values to randomSurfer
-					randomSurfer += GM_old[j] / graph.length;
-				}
-				
-			}//end: for(j)
+			// Add transition values of vertices without out-bound links to randomSurfer
+			double randomSurfer = propagate(GM_old, GM_new) / getNumVertices();
 
 			for(int x=0; x<GM_new.length; x++) {
 				GM_new[x] = .85 * ((GM_new[x] + randomSurfer) + PR_init[x]) + (.15 / PR_init.length);
 			}
 
-			change = PRDiff(GM_old, GM_new);
+			change = policy.distance(GM_old, GM_new);
 
 			double tmp = 0.0;
 			for(int x=0; x<GM_new.length; x++) {
@@ -297,10 +284,8 @@ public class SPRValidVertexRelatedness extends PageRank implements RelatednessIn
 				tmp += GM_old[x];
 				GM_new[x] = 0;
 			}
-
-
-			numIterations++;
-		}while(change > 0.002);
+		}while(policy.proceed(stats, change));
+		statistics = stats;
 		
 		for(int i=0; i<GM_new.length; i++) {
 			GM_new[i] = GM_old[i];
@@ -310,28 +295,30 @@ public class SPRValidVertexRelatedness extends PageRank implements RelatednessIn
 		//do {
 		double randomSurfer = 0;
 		change = 0.0;
-		for(int i=0; i<graph.length; i++) {
+		NeighborIterator it = getNeighborIterator();
+		for(int i=0; i<getNumVertices(); i++) {
 				
 			/* if it's not a valid vertex */
 			if(!validVertex[i]) {
 					
 				/* Spread weight to all valid neighbors */
-				if(graph[i] != null && graph[i].length != 0) {
+				if(getOutDegree(i) != 0) {
 						
 					// Valid transition array
 					int numLocalValid = 0;
-					for(int j=0; j<graph[i].length; j++) {
-						if(validVertex[graph[i][j]]) {
+					for(it.reset(i); it.hasNext(); ) {
+						if(validVertex[it.next()]) {
 							numLocalValid++;
 						}//end: if valid
-					}//end: for(j)
+					}//end: for(it)
 												
 					if(numLocalValid > 0) {
-						for(int j=0; j<graph[i].length; j++) {
-							if(validVertex[graph[i][j]]) {
-								GM_new[graph[i][j]] += GM_old[i] / numLocalValid;
+						for(it.reset(i); it.hasNext(); ) {
+							int to = it.next();
+							if(validVertex[to]) {
+								GM_new[to] += GM_old[i] / numLocalValid;
 							}//end: if valid
-						}//end: for(j)
+						}//end: for(it)
 					}
 				}
 					//else {
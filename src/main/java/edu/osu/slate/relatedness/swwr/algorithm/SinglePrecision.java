@@ -0,0 +1,145 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Single-precision iterations of the sourced random walk models.
+ * <p>
+ * The solvers' vectors are held as floats, which halves the memory read and written in
+ * each sweep.  The graph's transition probabilities are floats already, and the default
+ * tolerance of 0.002 is well above single-precision rounding.  Sums over all vertices
+ * (the dangling value and the change between sweeps) are Kahan-compensated, so their
+ * rounding error does not grow with the number of vertices.
+ * <p>
+ * The iterations always run on the calling thread.
+ *
+ * @author weale
+ * @version 1.0
+ */
+final class SinglePrecision
+{
+  private SinglePrecision()
+  {
+  }
+
+  /**
+   * Runs Jacobi iterations of a sourced random walk model until the policy of the computation stops them.
+   * <p>
+   * Each sweep sets <i>x = follow (P<sup>T</sup> x + d) + constant + weight s</i>, where <i>d</i> is
+   * the value of vertices without out-bound edges spread over all vertices.  If <i>jumpOnly</i> is set,
+   * the model is instead <i>x = follow P<sup>T</sup> x + weight (s + d)</i> at the vertices with a
+   * non-zero source value and <i>follow P<sup>T</sup> x</i> elsewhere, as in Personalized PageRank.
+   *
+   * @param graph Graph the values are propagated over
+   * @param x Starting values, replaced by the solution
+   * @param y Array for the new values (all zero, and zero again on return)
+   * @param source Source values
+   * @param follow Weight of the propagated values
+   * @param constant Value added to every vertex
+   * @param weight Weight of the source values
+   * @param jumpOnly True if the dangling value and the source only reach the source vertices
+   * @param stats Statistics of the computation
+   */
+  static void iterate(WikiGraph graph, float[] x, float[] y, float[] source,
+                      double follow, double constant, double weight, boolean jumpOnly, IterationStats stats)
+  {
+    ConvergencePolicy policy = stats.getPolicy();
+    boolean max = (policy.getNorm() == ConvergencePolicy.LINF);
+    int n = x.length;
+    float f = (float) follow;
+    float c = (float) constant;
+    float w = (float) weight;
+
+    double change;
+    do
+    {
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      float randomSurfer = (float) (graph.propagate(x, y) / n);
+
+      // Combine the models, measuring the change with Kahan summation (or as the largest change)
+      change = 0;
+      double error = 0;
+      for(int v = 0; v < n; v++)
+      {
+        float val;
+        if(!jumpOnly)
+        {
+          val = f * (y[v] + randomSurfer) + c + w * source[v];
+        }
+        else if(source[v] == 0f)
+        {
+          val = f * y[v];
+        }
+        else
+        {
+          val = f * y[v] + w * (source[v] + randomSurfer);
+        }
+
+        if(max)
+        {
+          change = Math.max(change, Math.abs(x[v] - val));
+        }
+        else
+        {
+          double d = Math.abs(x[v] - val) - error;
+          double t = change + d;
+          error = (t - change) - d;
+          change = t;
+        }
+
+        x[v] = val;
+        y[v] = 0f;
+      }//end: for(v)
+
+    }while(policy.proceed(stats, change));
+  }//end: iterate(WikiGraph, float[], float[], float[], double, double, double, boolean, IterationStats)
+
+  /**
+   * Copies single-precision values into a double array, optionally weighting them by PageRank.
+   *
+   * @param x Single-precision values
+   * @param PR PageRank values: each value is multiplied by log10(1/PR), or null to copy unchanged
+   * @param result Array the values are written to
+   * @return The result array
+   */
+  static double[] toDouble(float[] x, double[] PR, double[] result)
+  {
+    for(int j = 0; j < x.length; j++)
+    {
+      result[j] = (PR == null) ? x[j] : x[j] * Math.log10(1.0/PR[j]);
+    }
+    return result;
+  }//end: toDouble(float[], double[], double[])
+
+  /**
+   * Copies double values into a single-precision array.
+   *
+   * @param x Double values
+   * @param result Array the values are written to
+   * @return The result array
+   */
+  static float[] toFloat(double[] x, float[] result)
+  {
+    for(int j = 0; j < x.length; j++)
+    {
+      result[j] = (float) x[j];
+    }
+    return result;
+  }//end: toFloat(double[], float[])
+}//end: SinglePrecision
@@ -15,9 +15,13 @@
 
 package edu.osu.slate.relatedness.swwr.algorithm;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import edu.osu.slate.relatedness.RelatednessInterface;
+import edu.osu.slate.relatedness.swwr.data.graph.VertexRange;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 
 /**
@@ -26,6 +30,14 @@ import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
  * In this version, the same transition probabilities are used for the SPR and the PR algorithms.
  * If this is not desired, use the {@link DecoupledSPR} class.
  * <p>
+ * The relatedness methods keep no state in the object, so one instance may be used by
+ * several threads at once.  Scratch vectors are borrowed from the solver's {@link VectorPool},
+ * and the methods taking a <i>result</i> array write the distribution into it instead of allocating one.
+ * With {@link #setSinglePrecision(boolean)} the single-source iterations run on float vectors.
+ * The iterations stop by the solver's {@link ConvergencePolicy}, or by one given to
+ * {@link #getRelatedness(int[], float[], double[], ConvergencePolicy)} for a single query.
+ * The iteration settings inherited from {@link PageRank} must not be changed while computations run.
+ * <p>
  * 
  * Source Paper: Y. Ollivier and P. Senellart, <i>Finding Related Pages Using Green Measures: An Illustration with Wikipedia.</i>
  * 
@@ -38,17 +50,23 @@ public class SourcedPageRank extends PageRank implements RelatednessInterface
   /* Serialization UID  */
   private static final long serialVersionUID = 6168622709678063605L;
 
-  /* Previous iteration SPR values */
-  private double [] SPR_old;
+  /* Sourcing Vector Weight */
+  private double beta;
+
+  /* Number of source vertices iterated together by getRelatednessBatch */
+  public static final int BATCH_WIDTH = 16;
 
-  /* Current iteration SPR values */
-  private double [] SPR_new;
+  /* Number of sweeps the top-K ranking must stay the same for getTopRelated(int, int) to stop early */
+  public static final int TOP_K_STABLE_SWEEPS = 3;
 
-  /* Sourcing Vector */
-  private double [] SourceVect;
+  /* Weight log(1/PR) of each vertex, for the top-K queries */
+  private transient double[] logWeights;
 
-  /* Sourcing Vector Weight */
-  private double beta;
+  /* Largest weight */
+  private transient double maxLogWeight;
+
+  /* PageRank vector the weights were computed from */
+  private transient double[] logWeightsOf;
   
   /**
    * Indicates the use of approximate (faster) or exact (more accurate) calculations.
@@ -104,11 +122,20 @@ public class SourcedPageRank extends PageRank implements RelatednessInterface
    */
   public double getRelatedness(int from, int to)
   {
-    //Get SPR distribution
-    double [] SPRVals = getRelatedness(from);		
+    //Get SPR distribution in a pooled vector
+    VectorPool pool = getScratch();
+    double[] SPRVals = pool.borrow();
+    try
+    {
+      getRelatedness(from, SPRVals);
 
-    // Return value at the 'to' vertex
-    return SPRVals[to];
+      // Return value at the 'to' vertex
+      return SPRVals[to];
+    }
+    finally
+    {
+      pool.release(SPRVals);
+    }
   }
   
   /**
@@ -121,71 +148,36 @@ public class SourcedPageRank extends PageRank implements RelatednessInterface
    * @param from Vertex number
    * @return Array containing relatedness distribution
    */
-   public double[] getRelatedness(int from)
-   {
-     SPR_old = new double[graph.length];
-     SPR_new = new double[graph.length];
-     SourceVect = new double[graph.length];
-
-     for(int j = 0; j < SourceVect.length; j++)
-     {
-       SourceVect[j] = PR[j] * -1;
-     }//end: for(j)
-     
-     System.arraycopy(SourceVect, 0, SPR_old, 0, SourceVect.length);
-     
-     SourceVect[from] = SourceVect[from] + 1;
-     SPR_old[from] = SPR_old[from] + 1;
-
-     int numIterations = 0;
-     double change;
-     
-     // SOURCED PAGERANK ALGORITHM
-     do
-     {
-       double randomSurfer = 0;
-
-       // for each graph vertex
-       for(int j = 0; j < graph.length; j++)
-       {
-         if(graph[j] != null && graph[j].length != 0)
-         {
-           // Valid transition array
-           // Propagate values forward in graph
-           for(int k = 0; k < graph[j].length; k++)
-           {
-             SPR_new[graph[j][k]] += (SPR_old[j] * tProb[j][k]);
-           }//end: for(k)
-         }
-         else
-         {
-           // No out-bound edges
-           // Add transition values to randomSurfer for universal weight dispersion
-           randomSurfer += SPR_old[j] / graph.length;
-         }
-
-       }//end: for(j)
-
-       // Combine three models
-       for(int x = 0; x < SPR_new.length; x++)
-       {
-         SPR_new[x] = alpha * (SPR_new[x] + randomSurfer) + ((1-alpha) / graph.length) + beta * SourceVect[x];
-       }
-
-       change = pageRankDiff(SPR_old, SPR_new);
-       System.arraycopy(SPR_new, 0, SPR_old, 0, SPR_new.length);
-       Arrays.fill(SPR_new, 0.0);
-
-       numIterations++;
-     }while(change > 0.002);
-
-     for(int j = 0; j < SPR_old.length; j++)
-     {
-       SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
-     }//end: for(j)
-
-     return SPR_old;
-   }
+  public double[] getRelatedness(int from)
+  {
+    return getRelatedness(from, new double[getNumVertices()]);
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex, into a caller-supplied array.
+   *
+   * @param from Vertex number
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @return The result array
+   */
+  public double[] getRelatedness(int from, double[] result)
+  {
+    relatedness(new int[] {from}, null, result, getConvergencePolicy().start());
+    return result;
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at a vertex, stopping the iterations by the given policy.
+   *
+   * @param from Vertex number
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param policy Convergence policy of this query
+   * @return Iteration statistics of the query
+   */
+  public IterationStats getRelatedness(int from, double[] result, ConvergencePolicy policy)
+  {
+    return relatedness(new int[] {from}, null, result, policy.start());
+  }
 
   /**
    * Finds the relatedness distribution sourced at set vertices.
@@ -197,26 +189,22 @@ public class SourcedPageRank extends PageRank implements RelatednessInterface
    */
   public double[] getRelatedness(int[] from)
   {
-    
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    SourceVect = new double[graph.length];
-
-    for(int j = 0; j < SourceVect.length; j++)
-    {
-      SourceVect[j] = PR[j] * -1;
-    }
-    
-    System.arraycopy(SourceVect, 0, SPR_old, 0, SourceVect.length);
-
-    for(int i = 0; i < from.length; i++)
-    {
-      SourceVect[from[i]] = SourceVect[from[i]] + (1.0/from.length);
-      SPR_old[from[i]] = SPR_old[from[i]] + (1.0/from.length);
-    }
+    return getRelatedness(from, new double[getNumVertices()]);
+  }
 
-    // Return Results of getRelatednessDistribution
-    return getRelatedness();
+  /**
+   * Finds the relatedness distribution sourced at set vertices, into a caller-supplied array.
+   * <p>
+   * All source vertices are given uniform weights.
+   * 
+   * @param from Array of vertex numbers
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @return The result array
+   */
+  public double[] getRelatedness(int[] from, double[] result)
+  {
+    relatedness(from, null, result, getConvergencePolicy().start());
+    return result;
   }
 
   /**
@@ -226,85 +214,876 @@ public class SourcedPageRank extends PageRank implements RelatednessInterface
    */
   public double[] getRelatedness(int[] from, float[] vals)
   {
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    SourceVect = new double[graph.length];
+    return getRelatedness(from, vals, new double[getNumVertices()]);
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at weighted vertices, into a caller-supplied array.
+   * <p>
+   * Vals array is assumed to sum to one.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each source vertex
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @return The result array
+   */
+  public double[] getRelatedness(int[] from, float[] vals, double[] result)
+  {
+    relatedness(from, vals, result, getConvergencePolicy().start());
+    return result;
+  }
+
+  /**
+   * Finds the relatedness distribution sourced at weighted vertices, stopping the iterations by the given policy.
+   * <p>
+   * A policy with an iteration cap or a budget bounds the time of the query; the
+   * statistics tell whether the distribution reached the tolerance.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each source vertex (assumed to sum to one), or null for uniform weights
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param policy Convergence policy of this query
+   * @return Iteration statistics of the query
+   */
+  public IterationStats getRelatedness(int[] from, float[] vals, double[] result, ConvergencePolicy policy)
+  {
+    return relatedness(from, vals, result, policy.start());
+  }
+
+  /**
+   * Builds the sourcing vector in a pooled vector and runs the SPR iterations.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each source vertex, or null for uniform weights
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param stats Statistics of the computation
+   * @return The statistics
+   */
+  private IterationStats relatedness(int[] from, float[] vals, double[] result, IterationStats stats)
+  {
+    if(useSinglePrecision())
+    {
+      relatednessSingle(from, vals, result, stats);
+      return finish(stats);
+    }
 
-    for(int j = 0; j < SourceVect.length; j++)
+    VectorPool pool = getScratch();
+    double[] source = pool.borrow();
+    try
     {
-      SourceVect[j] = PR[j] * -1;
+      sourcingVector(from, vals, source);
+
+      // Iterations start at the sourcing vector
+      System.arraycopy(source, 0, result, 0, source.length);
+      solve(result, source, stats);
+      return finish(stats);
+    }
+    finally
+    {
+      pool.release(source);
+    }
+  }//end: relatedness(int[], float[], double[], IterationStats)
+
+  /**
+   * Builds the sourcing vector: minus the PageRank of each vertex, plus the weight of the source vertices.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each source vertex, or null for uniform weights
+   * @param source Array of one value per vertex, overwritten by the sourcing vector
+   */
+  private void sourcingVector(int[] from, float[] vals, double[] source)
+  {
+    for(int j = 0; j < source.length; j++)
+    {
+      source[j] = PR[j] * -1;
     }//end: for(j)
-    
-    System.arraycopy(SourceVect, 0, SPR_old, 0, SourceVect.length);
-    
+
     for(int i = 0; i < from.length; i++)
     {
-      SourceVect[from[i]] = SourceVect[from[i]] + vals[i];
-      SPR_old[from[i]] = SPR_old[from[i]] + vals[i];
+      source[from[i]] = source[from[i]] + ((vals == null) ? (1.0/from.length) : vals[i]);
     }//end: for(i)
+  }//end: sourcingVector(int[], float[], double[])
 
-    return getRelatedness();
-  }
+  /**
+   * Builds the sourcing vector and runs the SPR iterations on single-precision vectors.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each source vertex, or null for uniform weights
+   * @param result Array of one value per vertex, overwritten by the relatedness distribution
+   * @param stats Statistics of the computation
+   * @return The result array
+   */
+  private double[] relatednessSingle(int[] from, float[] vals, double[] result, IterationStats stats)
+  {
+    VectorPool pool = getScratch();
+    float[] source = pool.borrowFloat();
+    float[] x = pool.borrowFloat();
+    float[] y = pool.borrowFloat();
+    try
+    {
+      for(int j = 0; j < source.length; j++)
+      {
+        source[j] = (float) (PR[j] * -1);
+      }//end: for(j)
+
+      for(int i = 0; i < from.length; i++)
+      {
+        source[from[i]] = (float) (source[from[i]] + ((vals == null) ? (1.0/from.length) : vals[i]));
+      }//end: for(i)
+
+      // Iterations start at the sourcing vector
+      System.arraycopy(source, 0, x, 0, source.length);
+      SinglePrecision.iterate(this, x, y, source, alpha, (1-alpha) / getNumVertices(), beta, false, stats);
+      return SinglePrecision.toDouble(x, PR, result);
+    }
+    finally
+    {
+      pool.release(source);
+      pool.release(x);
+      pool.release(y);
+    }
+  }//end: relatednessSingle(int[], float[], double[], IterationStats)
 
   /**
-   * Finds the relatedness distribution sourced at a vertex using the exact inference routine.
-   * <p>
-   * This runs slower than getRelatedness, but should return more accurate results.
-   * <p>
-   * This is NOT guaranteed to converge.
+   * Runs the SPR iterations in the solver's iteration mode.
    *
+   * @param x Starting values, replaced by the relatedness distribution
+   * @param source Sourcing vector
+   * @param stats Statistics of the computation
+   * @return The x array
+   */
+  private double[] solve(double[] x, double[] source, IterationStats stats)
+  {
+    if(getIterationMode() == GAUSS_SEIDEL)
+    {
+      return getRelatednessGaussSeidel(x, source, stats);
+    }
+    if(getIterationMode() == BICGSTAB)
+    {
+      return getRelatednessKrylov(x, source, stats);
+    }
+
+    VectorPool pool = getScratch();
+    double[] newVals = pool.borrow();
+    try
+    {
+      if(getIterationMode() == FUSED)
+      {
+        return getRelatednessFused(x, newVals, source, stats);
+      }
+
+      QuadraticExtrapolation extrapolation = newExtrapolation();
+      if(isParallel())
+      {
+        return getRelatednessParallel(x, newVals, source, extrapolation, stats);
+      }
+      return getRelatednessJacobi(x, newVals, source, extrapolation, stats);
+    }
+    finally
+    {
+      pool.release(newVals);
+    }
+  }//end: solve(double[], double[], IterationStats)
+
+  /**
+   * Runs the SPR iterations, propagating the old values into a second array.
+   *
+   * @param SPR_old Starting values, replaced by the relatedness distribution
+   * @param SPR_new Array for the new values (all zero)
+   * @param SourceVect Sourcing vector
+   * @param extrapolation Extrapolation state, or null for none
+   * @param stats Statistics of the computation
    * @return Array containing relatedness distribution
    */
-  public double[] getRelatedness()
+  private double[] getRelatednessJacobi(double[] SPR_old, double[] SPR_new, double[] SourceVect,
+                                        QuadraticExtrapolation extrapolation, IterationStats stats)
   {
-    int numIterations = 0;
+    ConvergencePolicy policy = stats.getPolicy();
     double change;
     
     // SOURCED PAGERANK ALGORITHM
     do
     {
-      double randomSurfer = 0;
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(SPR_old, SPR_new) / getNumVertices();
+
+      // Combine three models, measure the change and reset the new array
+      change = DenseKernels.combine(SPR_old, SPR_new, alpha, randomSurfer, (1-alpha) / getNumVertices(),
+                                    SourceVect, beta, policy.getNorm(), 0, SPR_old.length);
+
+      if(extrapolation != null)
+      {
+        extrapolation.update(SPR_old, stats.getIterations() + 1);
+      }
+    }while(policy.proceed(stats, change));
+
+    for(int j = 0; j < SPR_old.length; j++)
+    {
+      SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
+    }//end: for(j)
+
+    return SPR_old;
+  }//end: getRelatednessJacobi(double[], double[], double[], QuadraticExtrapolation, IterationStats)
+
+  /**
+   * Runs the SPR iterations with one pass over the vectors per iteration.
+   *
+   * @param SPR_old Starting values, replaced by the relatedness distribution
+   * @param buffer Second buffer
+   * @param SourceVect Sourcing vector
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessFused(double[] SPR_old, double[] buffer, double[] SourceVect, IterationStats stats)
+  {
+    fusedIterations(SPR_old, buffer, alpha, (1-alpha) / getNumVertices(), SourceVect, beta, false, false, stats);
+
+    for(int j = 0; j < SPR_old.length; j++)
+    {
+      SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
+    }//end: for(j)
+
+    return SPR_old;
+  }//end: getRelatednessFused(double[], double[], double[], IterationStats)
+
+  /**
+   * Runs the SPR iterations as in-place Gauss-Seidel sweeps.
+   *
+   * @param SPR_old Starting values, replaced by the relatedness distribution
+   * @param SourceVect Sourcing vector
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessGaussSeidel(double[] SPR_old, double[] SourceVect, IterationStats stats)
+  {
+    ConvergencePolicy policy = stats.getPolicy();
+    double change;
+    do
+    {
+      change = gaussSeidelSweep(SPR_old, (1-alpha) / getNumVertices(), SourceVect, beta, policy.getNorm());
+    }while(policy.proceed(stats, change));
+
+    for(int j = 0; j < SPR_old.length; j++)
+    {
+      SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
+    }//end: for(j)
 
-      // for each graph vertex
-      for(int j = 0; j < graph.length; j++)
+    return SPR_old;
+  }//end: getRelatednessGaussSeidel(double[], double[], IterationStats)
+
+  /**
+   * Solves the SPR model as a linear system.
+   *
+   * @param SPR_old Starting values, replaced by the relatedness distribution
+   * @param SourceVect Sourcing vector
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessKrylov(double[] SPR_old, double[] SourceVect, IterationStats stats)
+  {
+    VectorPool pool = getScratch();
+    double[] b = pool.borrow();
+    try
+    {
+      for(int x = 0; x < b.length; x++)
       {
-        if(graph[j] != null && graph[j].length != 0)
+        b[x] = ((1-alpha) / getNumVertices()) + beta * SourceVect[x];
+      }
+      solveKrylov(b, SPR_old, alpha, alpha, null, stats);
+    }
+    finally
+    {
+      pool.release(b);
+    }
+
+    for(int j = 0; j < SPR_old.length; j++)
+    {
+      SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
+    }//end: for(j)
+
+    return SPR_old;
+  }//end: getRelatednessKrylov(double[], double[], IterationStats)
+
+  /**
+   * Runs the SPR iterations over vertex ranges on several threads.
+   * <p>
+   * Combining the three models also measures the change, copies the new
+   * values into the old array and resets the new array, in a single pass.
+   *
+   * @param oldVals Starting values, replaced by the relatedness distribution
+   * @param newVals Array for the new values (all zero)
+   * @param source Sourcing vector
+   * @param extrapolation Extrapolation state, or null for none
+   * @param stats Statistics of the computation
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessParallel(final double[] oldVals, final double[] newVals, final double[] source,
+                                          QuadraticExtrapolation extrapolation, IterationStats stats)
+  {
+    final int numVertices = getNumVertices();
+    ConvergencePolicy policy = stats.getPolicy();
+    final int norm = policy.getNorm();
+
+    double change;
+    do
+    {
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      final double randomSurfer = propagate(oldVals, newVals) / numVertices;
+
+      // Combine three models
+      change = reduce(new VertexRange() {
+        public double run(int start, int end)
         {
-          // Valid transition array
-          // Propagate values forward in graph
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            SPR_new[graph[j][k]] += (SPR_old[j] * tProb[j][k]);
-          }//end: for(k)
+          return DenseKernels.combine(oldVals, newVals, alpha, randomSurfer, (1-alpha) / numVertices,
+                                      source, beta, norm, start, end);
         }
-        else
+      }, norm);
+
+      if(extrapolation != null)
+      {
+        extrapolation.update(oldVals, stats.getIterations() + 1);
+      }
+    }while(policy.proceed(stats, change));
+
+    forEachRange(new VertexRange() {
+      public double run(int start, int end)
+      {
+        for(int j = start; j < end; j++)
         {
-          // No out-bound edges
-          // Add transition values to randomSurfer for universal weight dispersion
-          randomSurfer += SPR_old[j] / graph.length;
+          oldVals[j] = oldVals[j] * Math.log10(1.0/PR[j]);
         }
+        return 0;
+      }
+    });
 
-      }//end: for(j)
+    return oldVals;
+  }//end: getRelatednessParallel(double[], double[], double[], QuadraticExtrapolation, IterationStats)
+
+  /**
+   * Finds the vertices most related to a vertex.
+   * <p>
+   * The iterations stop by the solver's {@link ConvergencePolicy}, or earlier once the
+   * ranking is fixed, as in {@link #getTopRelated(int[], float[], TopKHeap, int, ConvergencePolicy)}
+   * with {@link #TOP_K_STABLE_SWEEPS} stable sweeps.
+   *
+   * @param from Vertex number
+   * @param k Number of vertices to find
+   * @return Up to <i>k</i> vertex numbers other than <i>from</i>, most related first
+   */
+  public int[] getTopRelated(int from, int k)
+  {
+    TopKHeap top = new TopKHeap(k);
+    getTopRelated(new int[] {from}, null, top, TOP_K_STABLE_SWEEPS, getConvergencePolicy());
+    return top.getVertices();
+  }//end: getTopRelated(int, int)
+
+  /**
+   * Finds the vertices most related to weighted source vertices, stopping once their ranking is fixed.
+   * <p>
+   * Ranking queries only need the order of the leading vertices, which settles long before
+   * the whole distribution reaches the tolerance.  After each sweep the <i>k</i>+1 leading
+   * vertices are selected with a {@link TopKHeap}, and the iterations stop when either
+   * <ul>
+   * <li>the top <i>k</i> set and order are proven: each SPR iterate is within
+   * <i>alpha / (1 - alpha)</i> times the L1 change of its sweep of the converged values, and
+   * the gaps between the leading scores are wider than that bound allows them to move, or</li>
+   * <li>the <i>k</i>+1 leading vertices, in order, have been the same after <i>stableSweeps</i> sweeps
+   * in a row, and their gaps are wider than their scores are expected to move: each by its last
+   * change, shrinking at the rate the sweep changes have been shrinking.</li>
+   * </ul>
+   * or when the policy stops the iterations.  The proof needs the change in the L1 norm, so
+   * it is skipped under an L-infinity policy.  The statistics end in {@link IterationStats#RANK_STABLE}
+   * when the ranking stopped the iterations.
+   * <p>
+   * Source vertices are left out of the ranking; if every vertex is a source the heap is left
+   * empty and no sweep is run.  The values in the heap are the relatedness values of the last
+   * iterate.  The sweeps are Jacobi sweeps, whatever the iteration mode; they and the selection
+   * of the leading vertices run on several threads if the solver has them.
+   *
+   * @param from Array of vertex numbers
+   * @param vals Weight of each source vertex (assumed to sum to one), or null for uniform weights
+   * @param top Heap cleared and filled with the top vertices, in ranked order; its capacity is <i>k</i>
+   * @param stableSweeps Number of sweeps the ranking must stay the same, or 0 to stop only on the proof
+   * @param policy Convergence policy of this query
+   * @return Iteration statistics of the query
+   */
+  public IterationStats getTopRelated(int[] from, float[] vals, TopKHeap top, int stableSweeps,
+                                      ConvergencePolicy policy)
+  {
+    IterationStats stats = policy.start();
+    VectorPool pool = getScratch();
+    double[] source = pool.borrow();
+    double[] oldVals = pool.borrow();
+    double[] newVals = pool.borrow();
+    try
+    {
+      sourcingVector(from, vals, source);
+
+      // Iterations start at the sourcing vector
+      System.arraycopy(source, 0, oldVals, 0, source.length);
+      topRelatedIterations(oldVals, newVals, source, from, top, stableSweeps, stats);
+      return finish(stats);
+    }
+    finally
+    {
+      pool.release(source);
+      pool.release(oldVals);
+      pool.release(newVals);
+    }
+  }//end: getTopRelated(int[], float[], TopKHeap, int, ConvergencePolicy)
+
+  /**
+   * Runs the SPR iterations until the top-K ranking is fixed.
+   *
+   * @param oldVals Starting values
+   * @param newVals Array for the new values (all zero)
+   * @param source Sourcing vector
+   * @param from Source vertices, left out of the ranking
+   * @param top Heap filled with the top vertices
+   * @param stableSweeps Number of sweeps the ranking must stay the same, or 0 for none
+   * @param stats Statistics of the computation
+   */
+  private void topRelatedIterations(final double[] oldVals, final double[] newVals, final double[] source,
+                                    int[] from, TopKHeap top, int stableSweeps, IterationStats stats)
+  {
+    final int numVertices = getNumVertices();
+    ConvergencePolicy policy = stats.getPolicy();
+    final int norm = policy.getNorm();
+    double[] weights = getLogWeights();
+    double maxWeight = maxLogWeight;
+
+    // Sources in order, so the selection can step over them
+    int[] skip = from.clone();
+    Arrays.sort(skip);
+
+    int k = top.getCapacity();
+    top.clear();
+    if(countRanked(skip, numVertices) == 0)
+    {
+      // Every vertex is a source: nothing to rank
+      top.sort();
+      stats.stop(IterationStats.RANK_STABLE);
+      return;
+    }
+
+    TopKHeap leaders = new TopKHeap(k + 1);
+    double[] margins = new double[k + 1];
+
+    // Leading vertices and scores of the last sweep
+    int[] lastVertices = new int[k + 1];
+    double[] lastValues = new double[k + 1];
+    int lastCount = -1;
+    int unchanged = 0;
+
+    // Distance of an iterate to the converged values, as a multiple of the L1 change of its sweep
+    double tail = alpha / (1-alpha);
+    double lastChange = Double.POSITIVE_INFINITY;
+
+    boolean going;
+    do
+    {
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      final double randomSurfer = propagate(oldVals, newVals) / numVertices;
 
       // Combine three models
-      for(int x = 0; x < SPR_new.length; x++)
+      double change = reduce(new VertexRange() {
+        public double run(int start, int end)
+        {
+          return DenseKernels.combine(oldVals, newVals, alpha, randomSurfer, (1-alpha) / numVertices,
+                                      source, beta, norm, start, end);
+        }
+      }, norm);
+      going = policy.proceed(stats, change);
+
+      // Select the leading vertices of this iterate
+      selectLeaders(oldVals, weights, skip, leaders);
+
+      // Estimate the remaining movement of each leader from its last change,
+      // at the rate the changes have been shrinking
+      double rate = Math.min(alpha, change / lastChange);
+      lastChange = change;
+      int count = leaders.size();
+      boolean same = (count == lastCount);
+      for(int r = 0; r < count; r++)
       {
-        SPR_new[x] = alpha * (SPR_new[x] + randomSurfer) + ((1-alpha) / graph.length) + beta * SourceVect[x];
+        same = same && (lastVertices[r] == leaders.getVertex(r));
+        margins[r] = rate / (1-rate) * Math.abs(leaders.getValue(r) - lastValues[r]);
+        lastVertices[r] = leaders.getVertex(r);
+        lastValues[r] = leaders.getValue(r);
       }
+      lastCount = count;
+      unchanged = same ? unchanged + 1 : 0;
+      boolean stable = (stableSweeps > 0 && unchanged >= stableSweeps &&
+                        separated(leaders, margins, margins[count-1]));
 
-      change = pageRankDiff(SPR_old, SPR_new);
-      System.arraycopy(SPR_new, 0, SPR_old, 0, SPR_new.length);
-      Arrays.fill(SPR_new, 0.0);
+      // Bound the error of each leader from the L1 change
+      boolean proven = false;
+      if(!stable && norm == ConvergencePolicy.L1)
+      {
+        double bound = change * tail;
+        for(int r = 0; r < count; r++)
+        {
+          margins[r] = bound * weights[leaders.getVertex(r)];
+        }
+        proven = separated(leaders, margins, bound * maxWeight);
+      }
 
-      numIterations++;
-    }while(change > 0.002);
+      if(going && (stable || proven))
+      {
+        stats.stop(IterationStats.RANK_STABLE);
+        going = false;
+      }
+    }while(going);
 
-    for(int j = 0; j < SPR_old.length; j++)
+    for(int r = 0; r < Math.min(k, lastCount); r++)
     {
-      SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
-    }//end: for(j)
+      top.offer(leaders.getVertex(r), leaders.getValue(r));
+    }
+    top.sort();
+  }//end: topRelatedIterations(double[], double[], double[], int[], TopKHeap, int, IterationStats)
 
-    return SPR_old;
+  /**
+   * Selects the leading vertices of an iterate by their relatedness values.
+   * <p>
+   * Each range of vertices is selected into its own heap, on several threads if the solver
+   * has them, and the range heaps are merged.
+   *
+   * @param vals SPR values
+   * @param weights Weight log(1/PR) of each vertex
+   * @param skip Sorted source vertices, left out of the selection
+   * @param leaders Heap cleared and filled with the leading vertices, in ranked order
+   */
+  private void selectLeaders(final double[] vals, final double[] weights, final int[] skip, TopKHeap leaders)
+  {
+    final int capacity = leaders.getCapacity();
+    final List<TopKHeap> parts = Collections.synchronizedList(new ArrayList<TopKHeap>());
+    forEachRange(new VertexRange() {
+      public double run(int start, int end)
+      {
+        TopKHeap part = new TopKHeap(capacity);
+        int s = 0;
+        while(s < skip.length && skip[s] < start)
+        {
+          s++;
+        }
+        for(int j = start; j < end; j++)
+        {
+          if(s < skip.length && skip[s] == j)
+          {
+            while(s < skip.length && skip[s] == j)
+            {
+              s++;
+            }
+            continue;
+          }
+          part.offer(j, vals[j] * weights[j]);
+        }//end: for(j)
+        part.sort();
+        parts.add(part);
+        return 0;
+      }
+    });
+
+    leaders.clear();
+    for(TopKHeap part : parts)
+    {
+      for(int r = 0; r < part.size(); r++)
+      {
+        if(!leaders.offer(part.getVertex(r), part.getValue(r)))
+        {
+          // The rest of this range ranks lower still
+          break;
+        }
+      }
+    }//end: for(part)
+    leaders.sort();
+  }//end: selectLeaders(double[], double[], int[], TopKHeap)
+
+  /**
+   * Counts the vertices that are not sources.
+   *
+   * @param skip Sorted source vertices
+   * @param numVertices Number of vertices
+   * @return Number of vertices left to rank
+   */
+  private static int countRanked(int[] skip, int numVertices)
+  {
+    int distinct = 0;
+    for(int s = 0; s < skip.length; s++)
+    {
+      if(s == 0 || skip[s] != skip[s-1])
+      {
+        distinct++;
+      }
+    }
+    return numVertices - distinct;
+  }//end: countRanked(int[], int)
+
+  /**
+   * Tells whether the leading scores are far enough apart that the top <i>k</i> ranking cannot change.
+   * <p>
+   * Each score may still move by its margin.  Each of the first <i>k</i> scores must stay above
+   * the next one, and the <i>k</i>-th must stay above the (<i>k</i>+1)-th moved by the outside
+   * margin, which covers every vertex outside the leaders.
+   *
+   * @param leaders Sorted heap of the <i>k</i>+1 leading vertices
+   * @param margins Largest remaining movement of each leading score, by rank
+   * @param outside Largest remaining movement of a score outside the first <i>k</i>
+   * @return True if the top <i>k</i> ranking is fixed
+   */
+  private static boolean separated(TopKHeap leaders, double[] margins, double outside)
+  {
+    int k = leaders.getCapacity() - 1;
+    if(leaders.size() <= k)
+    {
+      // Every vertex is ranked: only the order can change
+      k = leaders.size();
+    }
+
+    for(int r = 0; r + 1 < k; r++)
+    {
+      if(leaders.getValue(r) - margins[r] <= leaders.getValue(r+1) + margins[r+1])
+      {
+        return false;
+      }
+    }//end: for(r)
+
+    if(k < leaders.size() && leaders.getValue(k-1) - margins[k-1] <= leaders.getValue(k) + outside)
+    {
+      return false;
+    }
+    return true;
+  }//end: separated(TopKHeap, double[], double)
+
+  /**
+   * Gets the weight log(1/PR) of each vertex, computed once per PageRank vector.
+   *
+   * @return Weight of each vertex
+   */
+  private synchronized double[] getLogWeights()
+  {
+    if(logWeightsOf != PR)
+    {
+      double[] weights = new double[PR.length];
+      double max = 0;
+      for(int j = 0; j < weights.length; j++)
+      {
+        weights[j] = Math.log10(1.0/PR[j]);
+        max = Math.max(max, weights[j]);
+      }
+      logWeights = weights;
+      maxLogWeight = max;
+      logWeightsOf = PR;
+    }
+    return logWeights;
+  }//end: getLogWeights()
+
+  /**
+   * Finds the relatedness distributions sourced at each of several vertices.
+   * <p>
+   * Gives the same results as calling {@link #getRelatedness(int)} for each vertex.
+   * In the {@link #JACOBI} and {@link #FUSED} modes, without extrapolation or single precision,
+   * up to {@link #BATCH_WIDTH} sources are iterated together as Jacobi sweeps, so each sweep
+   * of the graph serves all of them.  Other settings do not run on blocks of sources, and
+   * each source is then found by its own query in the solver's iteration mode.
+   *
+   * @param from Array of source vertex numbers
+   * @return Relatedness distribution of each source vertex
+   */
+  public double[][] getRelatednessBatch(int[] from)
+  {
+    return getRelatednessBatch(from, null);
   }
 
+  /**
+   * Finds the relatedness values between each of several source vertices and a set of vertices.
+   * <p>
+   * Only the values at the <i>to</i> vertices are kept, so the memory used does not
+   * grow with the number of sources.  Values are the same as those given by {@link #getRelatedness(int)}.
+   *
+   * @param from Array of source vertex numbers
+   * @param to Array of vertex numbers, or null to keep the full distributions
+   * @return Relatedness values: row <i>i</i> holds the values for <i>from[i]</i>, in the order of <i>to</i>
+   */
+  public double[][] getRelatednessBatch(int[] from, int[] to)
+  {
+    double[][] results = new double[from.length][];
+    if(!isBatchable())
+    {
+      // One query per source, so the results follow the iteration mode
+      double[] vals = new double[getNumVertices()];
+      for(int i = 0; i < from.length; i++)
+      {
+        getRelatedness(from[i], vals);
+        results[i] = (to == null) ? vals.clone() : new double[to.length];
+        for(int j = 0; to != null && j < to.length; j++)
+        {
+          results[i][j] = vals[to[j]];
+        }
+      }//end: for(i)
+      return results;
+    }
+
+    for(int first = 0; first < from.length; first += BATCH_WIDTH)
+    {
+      relatednessBlock(from, first, Math.min(BATCH_WIDTH, from.length - first), to, results);
+    }
+    return results;
+  }//end: getRelatednessBatch(int[], int[])
+
+  /**
+   * Tells whether the solver's settings give the Jacobi iterates that the block sweeps compute.
+   *
+   * @return True in the {@link #JACOBI} or {@link #FUSED} mode, without extrapolation or single precision
+   */
+  private boolean isBatchable()
+  {
+    int mode = getIterationMode();
+    return (mode == JACOBI || mode == FUSED) && getExtrapolation() == 0 && !useSinglePrecision();
+  }
+
+  /**
+   * Runs the SPR iterations for a block of source vertices at once.
+   * <p>
+   * The block holds one column of values for each source, stored vertex by vertex,
+   * and is propagated with {@link WikiGraph#propagateBlock(double[], double[], int, double[])}.
+   * Each column stops when the solver's {@link ConvergencePolicy} stops its own iterations: its values
+   * are stored and it is removed from the block, so later sweeps only carry the remaining sources.
+   *
+   * @param from Array of source vertex numbers
+   * @param first Position in <i>from</i> of the first source of the block
+   * @param width Number of sources in the block
+   * @param to Array of vertex numbers to keep, or null to keep the full distributions
+   * @param results Array the relatedness values are stored in, by position in <i>from</i>
+   */
+  private void relatednessBlock(int[] from, int first, int width, int[] to, double[][] results)
+  {
+    int numVertices = getNumVertices();
+    int k = width;
+
+    // Position in the from array of each column still iterating
+    int[] column = new int[k];
+    for(int c = 0; c < k; c++)
+    {
+      column[c] = first + c;
+    }
+
+    double[] oldVals = new double[numVertices * k];
+    double[] newVals = new double[numVertices * k];
+    double[] dangling = new double[k];
+    double[] change = new double[k];
+
+    // Statistics of each column still iterating
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats[] stats = new IterationStats[k];
+    for(int c = 0; c < k; c++)
+    {
+      stats[c] = policy.start();
+    }
+
+    // Each column starts at its sourcing vector
+    for(int x = 0; x < numVertices; x++)
+    {
+      for(int c = 0; c < k; c++)
+      {
+        oldVals[x*k + c] = PR[x] * -1;
+      }
+    }//end: for(x)
+    for(int c = 0; c < k; c++)
+    {
+      oldVals[from[column[c]]*k + c] += 1;
+    }
+
+    while(k > 0)
+    {
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      propagateBlock(oldVals, newVals, k, dangling);
+
+      // Combine three models
+      Arrays.fill(change, 0, k, 0.0);
+      for(int x = 0; x < numVertices; x++)
+      {
+        double source = PR[x] * -1;
+        int row = x * k;
+        for(int c = 0; c < k; c++)
+        {
+          double sourceVal = (from[column[c]] == x) ? source + 1 : source;
+          double val = alpha * (newVals[row + c] + dangling[c] / numVertices) +
+                       ((1-alpha) / numVertices) + beta * sourceVal;
+          change[c] = policy.accumulate(change[c], Math.abs(oldVals[row + c] - val));
+          oldVals[row + c] = val;
+          newVals[row + c] = 0;
+        }//end: for(c)
+      }//end: for(x)
+
+      // Store the stopped columns, and pack the others to the front of each row
+      boolean[] going = new boolean[k];
+      int kept = 0;
+      for(int c = 0; c < k; c++)
+      {
+        going[c] = policy.proceed(stats[c], change[c]);
+        if(going[c])
+        {
+          stats[kept] = stats[c];
+          column[kept++] = column[c];
+        }
+        else
+        {
+          results[column[c]] = columnValues(oldVals, k, c, to);
+          finish(stats[c]);
+        }
+      }//end: for(c)
+
+      if(kept < k)
+      {
+        for(int x = 0; x < numVertices; x++)
+        {
+          int pos = 0;
+          for(int c = 0; c < k; c++)
+          {
+            if(going[c])
+            {
+              oldVals[x*kept + pos] = oldVals[x*k + c];
+              pos++;
+            }
+          }
+        }//end: for(x)
+        k = kept;
+      }
+    }//end: while(k)
+  }//end: relatednessBlock(int[], int, int, int[], double[][])
+
+  /**
+   * Gets the final relatedness values of one column of a block.
+   *
+   * @param block Block of SPR values, stored vertex by vertex
+   * @param k Number of columns in the block
+   * @param c Column number
+   * @param to Array of vertex numbers to keep, or null to keep the full distribution
+   * @return Relatedness values
+   */
+  private double[] columnValues(double[] block, int k, int c, int[] to)
+  {
+    if(to == null)
+    {
+      double[] vals = new double[getNumVertices()];
+      for(int j = 0; j < vals.length; j++)
+      {
+        vals[j] = block[j*k + c] * Math.log10(1.0/PR[j]);
+      }
+      return vals;
+    }
+
+    double[] vals = new double[to.length];
+    for(int i = 0; i < to.length; i++)
+    {
+      vals[i] = block[to[i]*k + c] * Math.log10(1.0/PR[to[i]]);
+    }
+    return vals;
+  }//end: columnValues(double[], int, int, int[])
+
 }//end: SourcedPageRank
\ No newline at end of file
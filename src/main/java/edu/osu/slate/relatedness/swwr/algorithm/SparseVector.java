@@ -0,0 +1,117 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Relatedness values for a subset of the graph vertices.
+ * <p>
+ * The vertices are held in ascending order, with their values in a parallel array.
+ * Vertices not held take a single default value.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class SparseVector
+{
+  /* Vertex numbers, in ascending order */
+  private final int[] vertices;
+
+  /* Value of each vertex */
+  private final double[] values;
+
+  /* Value of the vertices not held */
+  private final double defaultValue;
+
+  /**
+   * Constructor.
+   *
+   * @param vertices Vertex numbers, in ascending order.
+   * @param values Value of each vertex.
+   * @param defaultValue Value of the vertices not held.
+   */
+  public SparseVector(int[] vertices, double[] values, double defaultValue)
+  {
+    this.vertices = vertices;
+    this.values = values;
+    this.defaultValue = defaultValue;
+  }
+
+  /**
+   * Gets the number of vertices held.
+   *
+   * @return Number of vertices.
+   */
+  public int size()
+  {
+    return vertices.length;
+  }
+
+  /**
+   * Gets the vertex at a position.
+   *
+   * @param i Position, from 0 to {@link #size()}-1.
+   * @return Vertex number.
+   */
+  public int getVertex(int i)
+  {
+    return vertices[i];
+  }
+
+  /**
+   * Gets the value at a position.
+   *
+   * @param i Position, from 0 to {@link #size()}-1.
+   * @return Relatedness value.
+   */
+  public double getValue(int i)
+  {
+    return values[i];
+  }
+
+  /**
+   * Gets the value of a vertex.
+   *
+   * @param v Vertex number.
+   * @return Relatedness value, or the default value if the vertex is not held.
+   */
+  public double get(int v)
+  {
+    int pos = Arrays.binarySearch(vertices, v);
+    return (pos >= 0) ? values[pos] : defaultValue;
+  }
+
+  /**
+   * Expands the values to an array over all graph vertices.
+   *
+   * @param numVertices Number of graph vertices.
+   * @return Array of relatedness values.
+   */
+  public double[] toArray(int numVertices)
+  {
+    double[] vals = new double[numVertices];
+    if(defaultValue != 0)
+    {
+      Arrays.fill(vals, defaultValue);
+    }
+    for(int i = 0; i < vertices.length; i++)
+    {
+      vals[vertices[i]] = values[i];
+    }
+    return vals;
+  }//end: toArray(int)
+}//end: SparseVector
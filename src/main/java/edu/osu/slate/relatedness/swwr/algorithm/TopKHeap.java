@@ -0,0 +1,290 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+/**
+ * Keeps the <i>k</i> vertices with the largest values offered to it.
+ * <p>
+ * The vertices and values are held in two parallel primitive arrays, ordered as a
+ * min-heap on the value, so the smallest kept value is at the root.  An offer below
+ * the root of a full heap is rejected with one comparison, and an accepted offer
+ * costs <i>O(log k)</i>: selecting the top <i>k</i> of <i>n</i> values takes
+ * <i>O(n log k)</i> time and no objects, where sorting all of them takes <i>O(n log n)</i>.
+ * <p>
+ * Equal values are ranked by vertex number, smallest first, so the selection does not
+ * depend on the order of the offers.  After {@link #sort()} the vertices are read in
+ * ranked order; the heap must then be cleared before it takes more offers.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class TopKHeap
+{
+  /* Largest number of vertices kept */
+  private final int capacity;
+
+  /* Kept vertices */
+  private final int[] vertices;
+
+  /* Values of the kept vertices */
+  private final double[] values;
+
+  /* Number of vertices kept */
+  private int size;
+
+  /* True once the arrays are in ranked order */
+  private boolean sorted;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity Number of vertices to keep (at least one).
+   */
+  public TopKHeap(int capacity)
+  {
+    if(capacity < 1)
+    {
+      throw new IllegalArgumentException("Capacity must be at least one: " + capacity);
+    }
+    this.capacity = capacity;
+    vertices = new int[capacity];
+    values = new double[capacity];
+  }
+
+  /**
+   * Selects the top vertices of a value array.
+   *
+   * @param vals One value per vertex.
+   * @param k Number of vertices to keep.
+   * @return Heap holding the <i>k</i> largest values, in ranked order.
+   */
+  public static TopKHeap select(double[] vals, int k)
+  {
+    TopKHeap heap = new TopKHeap(k);
+    for(int v = 0; v < vals.length; v++)
+    {
+      heap.offer(v, vals[v]);
+    }
+    heap.sort();
+    return heap;
+  }//end: select(double[], int)
+
+  /**
+   * Removes all vertices.
+   */
+  public void clear()
+  {
+    size = 0;
+    sorted = false;
+  }
+
+  /**
+   * Gets the number of vertices kept.
+   *
+   * @return Number of vertices, at most the capacity.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Gets the largest number of vertices kept.
+   *
+   * @return Capacity.
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Offers a vertex to the heap.
+   *
+   * @param v Vertex number.
+   * @param val Value of the vertex.
+   * @return True if the vertex is kept.
+   */
+  public boolean offer(int v, double val)
+  {
+    if(size < capacity)
+    {
+      if(sorted)
+      {
+        throw new IllegalStateException("Heap must be cleared after sort()");
+      }
+
+      // Sift the new vertex up from the end
+      int pos = size++;
+      while(pos > 0)
+      {
+        int parent = (pos - 1) >>> 1;
+        if(!below(val, v, values[parent], vertices[parent]))
+        {
+          break;
+        }
+        values[pos] = values[parent];
+        vertices[pos] = vertices[parent];
+        pos = parent;
+      }
+      values[pos] = val;
+      vertices[pos] = v;
+      return true;
+    }
+
+    if(!below(values[0], vertices[0], val, v))
+    {
+      return false;
+    }
+    if(sorted)
+    {
+      throw new IllegalStateException("Heap must be cleared after sort()");
+    }
+    siftDown(v, val, size);
+    return true;
+  }//end: offer(int, double)
+
+  /**
+   * Gets the smallest value kept by a full heap.
+   * <p>
+   * Offers below this value are rejected.
+   *
+   * @return Smallest kept value, or negative infinity if the heap is not full.
+   */
+  public double getThreshold()
+  {
+    if(size < capacity)
+    {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return sorted ? values[size - 1] : values[0];
+  }
+
+  /**
+   * Puts the kept vertices in ranked order, largest value first.
+   */
+  public void sort()
+  {
+    if(sorted)
+    {
+      return;
+    }
+
+    // Heapsort: move the smallest vertex to the end and shrink the heap
+    for(int end = size - 1; end > 0; end--)
+    {
+      int v = vertices[end];
+      double val = values[end];
+      vertices[end] = vertices[0];
+      values[end] = values[0];
+      siftDown(v, val, end);
+    }
+    sorted = true;
+  }//end: sort()
+
+  /**
+   * Gets a kept vertex by rank, after {@link #sort()}.
+   *
+   * @param rank Rank, from 0 for the largest value.
+   * @return Vertex number.
+   */
+  public int getVertex(int rank)
+  {
+    checkSorted(rank);
+    return vertices[rank];
+  }
+
+  /**
+   * Gets the value of a kept vertex by rank, after {@link #sort()}.
+   *
+   * @param rank Rank, from 0 for the largest value.
+   * @return Value of the vertex.
+   */
+  public double getValue(int rank)
+  {
+    checkSorted(rank);
+    return values[rank];
+  }
+
+  /**
+   * Gets the kept vertices in ranked order, after {@link #sort()}.
+   *
+   * @return New array of vertex numbers.
+   */
+  public int[] getVertices()
+  {
+    checkSorted(0);
+    int[] ranked = new int[size];
+    System.arraycopy(vertices, 0, ranked, 0, size);
+    return ranked;
+  }
+
+  /**
+   * Places a vertex at the root and sifts it down a heap of the given size.
+   *
+   * @param v Vertex number.
+   * @param val Value of the vertex.
+   * @param n Number of heap positions in use.
+   */
+  private void siftDown(int v, double val, int n)
+  {
+    int pos = 0;
+    while(true)
+    {
+      int child = 2 * pos + 1;
+      if(child >= n)
+      {
+        break;
+      }
+      if(child + 1 < n && below(values[child+1], vertices[child+1], values[child], vertices[child]))
+      {
+        child++;
+      }
+      if(!below(values[child], vertices[child], val, v))
+      {
+        break;
+      }
+      values[pos] = values[child];
+      vertices[pos] = vertices[child];
+      pos = child;
+    }
+    values[pos] = val;
+    vertices[pos] = v;
+  }//end: siftDown(int, double, int)
+
+  /**
+   * Tells whether one vertex ranks below another.
+   *
+   * @return True if vertex <i>a</i> has the smaller value, or the same value and the larger number.
+   */
+  private static boolean below(double aVal, int a, double bVal, int b)
+  {
+    return (aVal < bVal) || (aVal == bVal && a > b);
+  }
+
+  /* Checks that the heap is sorted and the rank is in range */
+  private void checkSorted(int rank)
+  {
+    if(!sorted)
+    {
+      throw new IllegalStateException("Heap must be sorted first");
+    }
+    if(rank < 0 || (rank >= size && size > 0))
+    {
+      throw new IndexOutOfBoundsException("Rank " + rank + " of " + size);
+    }
+  }
+}//end: TopKHeap
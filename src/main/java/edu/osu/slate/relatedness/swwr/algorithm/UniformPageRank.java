@@ -16,12 +16,15 @@
 package edu.osu.slate.relatedness.swwr.algorithm;
 
 import java.io.*;
-import java.util.Arrays;
 
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 
 /**
  * Implements PageRank for a graph, as given by Brin and Page.
+ * <p>
+ * Uniform transitions are used regardless of the graph's transition probabilities.
+ * As in {@link PageRank}, the graph's arrays are shared and the constructors use the {@link PageRankCache},
+ * and a {@link ConvergencePolicy} decides when the iterations stop.
  * 
  * @author weale
  * @version 1.0
@@ -36,11 +39,17 @@ public class UniformPageRank extends WikiGraph
   /* Array of PageRank values */
   protected double[] PR;
 
-  /* Array of transition probabilities */
-  private float[][] uniformTrans;
-  
   /* Model parameter */
   protected double alpha;
+
+  /* True if the relatedness solvers iterate on single-precision vectors */
+  private boolean singlePrecision;
+
+  /* Convergence policy of the relatedness computations */
+  private ConvergencePolicy convergence = ConvergencePolicy.RELATEDNESS;
+
+  /* Iteration statistics of the last computation */
+  protected volatile IterationStats statistics;
   
   /**
    * Calculates PageRank values for a given graph using the default value for alpha (0.15).
@@ -51,24 +60,7 @@ public class UniformPageRank extends WikiGraph
   {
     super(graphFile);
     
-    uniformTrans = new float[tProb.length][];
-    
-    // Set uniform transition probabilities
-    for(int i = 0; i < tProb.length; i++)
-    {
-      if(tProb[i] != null)
-      {
-        uniformTrans[i] = new float[tProb[i].length];
-        
-        for(int j = 0; j < tProb[i].length; j++)
-        {
-          uniformTrans[i][j] = (float) 1.0 / tProb[i].length;
-        }//end: for(j)
-      }//end: if(!null)
-      
-    }//end: for(i)
-    
-    calculatePageRank(0.85);
+    initPageRank(0.85);
   }
 
   /**
@@ -78,40 +70,59 @@ public class UniformPageRank extends WikiGraph
    */
   public UniformPageRank(WikiGraph graph)
   {
-    super(graph);
+    super(graph, true);
 
-    uniformTrans = new float[tProb.length][];
-    
-    // Set PR
-    for(int i = 0; i < tProb.length; i++)
-    {
-      if(tProb[i] != null)
-      {
-        uniformTrans[i] = new float[tProb[i].length];
-        
-        for(int j = 0; j < tProb[i].length; j++)
-        {
-          uniformTrans[i][j] = (float) 1.0 / tProb[i].length;
-        }//end: for(j)
-      }//end: if(!null)
-      
-    }//end: for(i)
-    
-    calculatePageRank(0.85);
+    initPageRank(0.85);
   }
   
+  /**
+   * Takes the PageRank values from the cache, or calculates and caches them.
+   * 
+   * @param a Parameter to weight the Random Walk influence on PageRank
+   */
+  private void initPageRank(double a)
+  {
+    String key = PageRankCache.getKey("uniform", this, a);
+    synchronized(PageRankCache.getLock(key))
+    {
+      double[] vals = PageRankCache.get(key, this, a);
+      if(vals != null)
+      {
+        alpha = a;
+        PR = vals;
+        statistics = null;
+        return;
+      }
+      calculatePageRank(a);
+      PageRankCache.put(key, this, a, PR);
+    }
+  }//end: initPageRank(double)
+
   /**
    * Re-calculates PageRank values using a non-default value of alpha.
    * 
    * @param alpha Parameter to weight the Random Walk influence on PageRank
    */
   public void calculatePageRank(double alpha)
+  {
+    calculatePageRank(alpha, ConvergencePolicy.PAGERANK);
+  }
+
+  /**
+   * Re-calculates PageRank values, stopping the iterations by the given policy.
+   * 
+   * @param alpha Parameter to weight the Random Walk influence on PageRank
+   * @param policy Convergence policy
+   * @return Iteration statistics
+   */
+  public IterationStats calculatePageRank(double alpha, ConvergencePolicy policy)
   {
     this.alpha = alpha;
+    IterationStats stats = policy.start();
 
     // Create new/old PageRank vectors for iteration
-    PR = new double[graph.length];
-    double [] PR_new = new double[graph.length];
+    PR = new double[getNumVertices()];
+    double [] PR_new = new double[getNumVertices()];
 
     // Initialize Uniform PageRank Vector
     for(int i = 0; i < PR.length; i++)
@@ -123,39 +134,14 @@ public class UniformPageRank extends WikiGraph
     double change;
     do {
       
-      // Set the additional randomSurfer parameter
-      double randomSurfer = 0;
+      // Update new values for neighbor vertices.
+      // Vertices with no outbound links add to overall graph values.
+      // Uniform transitions are used regardless of the graph's transition probabilities.
+      double randomSurfer = propagate(PR, PR_new, null) / getNumVertices();
       
-      for(int i = 0; i < graph.length; i++)
-      {
-        // Valid out-bound graph
-        if(graph[i] != null && graph[i].length != 0)
-        {
-          // Update new values for neighbor vertices
-          for(int j = 0; j < graph[i].length; j++)
-          {
-            PR_new[graph[i][j]] += (PR[i] * uniformTrans[i][j]);
-          }//end: for(j)
-        }
-        else
-        { // No outbound links, add to overall graph values
-          randomSurfer += PR[i] / graph.length;
-        }
-
-      }//end: for(i)
-      
-      // Combine the two models
-      for(int x = 0; x < PR_new.length; x++)
-      {
-        PR_new[x] = (alpha * (PR_new[x] + randomSurfer)) + ((1-alpha) / PR_new.length);
-      }//end: for(x)
-
-      // Calculate change between PR generations
-      change = pageRankDiff(PR, PR_new);
-
-      // Reset new PR array.
-      System.arraycopy(PR_new, 0, PR, 0, PR.length);
-      Arrays.fill(PR_new, 0.0);
+      // Combine the two models, calculate change between PR generations and reset new PR array
+      change = DenseKernels.combine(PR, PR_new, alpha, randomSurfer, (1-alpha) / PR_new.length, policy.getNorm(),
+                                    0, PR.length);
 
       // Calculate the magnitude for normalization
       double mag = 0;
@@ -170,8 +156,67 @@ public class UniformPageRank extends WikiGraph
         PR[i] = (float) (PR[i] / mag);
       }//end: for(i)
 
-    } while(change > 0.001);
-  }//end: calculatePageRank(double)
+    } while(policy.proceed(stats, change));
+
+    statistics = stats;
+    return stats;
+  }//end: calculatePageRank(double, ConvergencePolicy)
+
+  /**
+   * Sets whether the relatedness solvers iterate on single-precision vectors (see {@link SinglePrecision}).
+   * <p>
+   * The PageRank values stay in double precision.
+   * 
+   * @param single True for single-precision iterations
+   */
+  public void setSinglePrecision(boolean single)
+  {
+    singlePrecision = single;
+  }
+
+  /**
+   * Tells whether the relatedness solvers iterate on single-precision vectors.
+   * 
+   * @return True for single-precision iterations
+   */
+  public boolean isSinglePrecision()
+  {
+    return singlePrecision;
+  }
+
+  /**
+   * Sets when the iterations of the relatedness computations stop.
+   * 
+   * @param policy Convergence policy (by default {@link ConvergencePolicy#RELATEDNESS})
+   */
+  public void setConvergencePolicy(ConvergencePolicy policy)
+  {
+    if(policy == null)
+    {
+      throw new IllegalArgumentException("Convergence policy must not be null");
+    }
+    convergence = policy;
+  }
+
+  /**
+   * Gets when the iterations of the relatedness computations stop.
+   * 
+   * @return Convergence policy
+   */
+  public ConvergencePolicy getConvergencePolicy()
+  {
+    return convergence;
+  }
+
+  /**
+   * Gets the iteration statistics of the last computation.
+   * 
+   * @return Iteration statistics, or null if the PageRank values came from the cache
+   */
+  public IterationStats getStatistics()
+  {
+    return statistics;
+  }
 
   /**
    * Calculates the absolute change between two PageRank value arrays.
@@ -182,7 +227,7 @@ public class UniformPageRank extends WikiGraph
    */
   protected static double pageRankDiff(double[] oldPR, double[] newPR)
   {
-    float diff = 0;
+    double diff = 0;
     
     for(int x = 0; x < oldPR.length; x++)
     {
@@ -194,12 +239,15 @@ public class UniformPageRank extends WikiGraph
 
   /**
    * Gets the array of PageRank values.
+   * <p>
+   * The values may be shared with other solvers through the {@link PageRankCache},
+   * so a copy is returned.
    * 
-   * @return double[] of PageRank values.
+   * @return New double[] of PageRank values.
    */
   public double[] getPageRankValues()
   {
-    return PR;
+    return PR.clone();
   }
   
   /**
@@ -26,6 +26,8 @@ import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
  * <i>Exact</i> relatedness methods omit the jump model from the calculation and only take the link structure into account when calculating values.
  * These run slower and are not guaranteed to converge, but may produce higher-quality results.
  * <p>
+ * With {@link #setSinglePrecision(boolean)} the iterations run on float vectors.
+ * <p>
  * Source Paper: Y. Ollivier and P. Senellart, <i>Finding Related Pages Using Green Measures: An Illustration with Wikipedia.</i>
  * 
  * @author weale
@@ -204,12 +206,19 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
    */
   public double[] getRelatedness(int[] from) {
 
+    if(isSinglePrecision())
+    {
+      float[] vals = new float[from.length];
+      Arrays.fill(vals, (float) (1.0/from.length));
+      return getRelatednessSingle(from, vals, false);
+    }
+
     // Set Approximate Flag
     approximate = true;
 
-    PPR_old = new double[graph.length];
-    PPR_new = new double[graph.length];
-    PR_jump = new double[graph.length];
+    PPR_old = new double[getNumVertices()];
+    PPR_new = new double[getNumVertices()];
+    PR_jump = new double[getNumVertices()];
 
     for(int j=0;j<PR_jump.length;j++) {
       PR_jump[j] = 0;
@@ -227,11 +236,16 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
 
   public double[] getRelatedness(int[] from, float[] vals)
   {
+    if(isSinglePrecision())
+    {
+      return getRelatednessSingle(from, vals, true);
+    }
+
     approximate = true;
 
-    PPR_old = new double[graph.length];
-    PPR_new = new double[graph.length];
-    PR_jump = new double[graph.length];
+    PPR_old = new double[getNumVertices()];
+    PPR_new = new double[getNumVertices()];
+    PR_jump = new double[getNumVertices()];
 
     for(int j=0;j<PR_jump.length;j++) {
       PR_jump[j] = PR[j] * -1;
@@ -258,9 +272,14 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
    */
   public double[] getExactRelatedness(int from)
   {
-    PPR_old = new double[graph.length];
-    PPR_new = new double[graph.length];
-    PR_jump = new double[graph.length];
+    if(isSinglePrecision())
+    {
+      return getRelatednessSingle(new int[] {from}, new float[] {1}, false);
+    }
+
+    PPR_old = new double[getNumVertices()];
+    PPR_new = new double[getNumVertices()];
+    PR_jump = new double[getNumVertices()];
 
     for(int j = 0; j < PR_jump.length; j++)
     {
@@ -271,28 +290,13 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
     PR_jump[from] = 1;
     PPR_old[from] = 1;
 
-    int numIterations = 0;
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats stats = policy.start();
     double change;
     do {
-      double randomSurfer = 0;
-
-      for(int j = 0; j < graph.length; j++) {
-
-        if(graph[j] != null && graph[j].length != 0)
-        {
-          // Valid transition array
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            PPR_new[graph[j][k]] += (PPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
-        {
-          // Add transition values to randomSurfer
-          randomSurfer += PPR_old[j] / PR_jump.length;
-        }
-
-      }//end: for(j)
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(PPR_old, PPR_new) / getNumVertices();
 
       for(int x = 0; x < PPR_new.length; x++)
       {
@@ -306,12 +310,11 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
         }
       }
 
-      change = pageRankDiff(PPR_old, PPR_new);
+      change = policy.distance(PPR_old, PPR_new);
       System.arraycopy(PPR_new, 0, PPR_old, 0, PPR_new.length);
       Arrays.fill(PPR_new, 0.0);
-      
-      numIterations++;
-    }while(change > 0.002);
+    }while(policy.proceed(stats, change));
+    statistics = stats;
 
     return PPR_old;
   }
@@ -328,28 +331,13 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
    */
   public double[] getExactRelatedness() {
 
-    int numIterations = 0;
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats stats = policy.start();
     double change;
     do {
-      double randomSurfer = 0;
-
-      for(int j = 0; j < graph.length; j++)
-      {
-        if(graph[j] != null && graph[j].length != 0)
-        {
-          // Valid transition array
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            PPR_new[graph[j][k]] += (PPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
-        {
-          // Add transition values to randomSurfer
-          randomSurfer += PPR_old[j] / PR_jump.length;
-        }
-
-      }//end: for(j)
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(PPR_old, PPR_new) / getNumVertices();
 
       for(int x = 0; x < PPR_new.length; x++)
       {
@@ -363,7 +351,7 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
         }
       }
 
-      change = pageRankDiff(PPR_old, PPR_new);
+      change = policy.distance(PPR_old, PPR_new);
 
 //      double tmp = 0.0;
 //      for(int x=0; x<PPR_new.length; x++) {
@@ -374,9 +362,8 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
 
       System.arraycopy(PPR_new, 0, PPR_old, 0, PPR_new.length);
       Arrays.fill(PPR_new, 0.0);
-      
-      numIterations++;
-    }while(change > 0.002);
+    }while(policy.proceed(stats, change));
+    statistics = stats;
 
 //    for(int j = 0; j < PPR_old.length; j++)
 //    {
@@ -387,4 +374,40 @@ public class VectPersonalizedPageRank extends PageRank implements RelatednessInt
     return PPR_old;
   }//end: getExactRelatedness()
 
-}//end: PersonalizedPageRank
\ No newline at end of file
+
+  /**
+   * Finds the relatedness distribution for a jump vector, iterating on single-precision vectors.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Jump weight of each source vertex
+   * @param offset True if the jump vector starts at minus the PageRank values
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessSingle(int[] from, float[] vals, boolean offset)
+  {
+    float[] jump = new float[getNumVertices()];
+    float[] x = new float[getNumVertices()];
+
+    if(offset)
+    {
+      for(int j = 0; j < jump.length; j++)
+      {
+        jump[j] = (float) (PR[j] * -1);
+      }
+    }
+
+    for(int i = 0; i < from.length; i++)
+    {
+      jump[from[i]] = jump[from[i]] + vals[i];
+    }
+
+    System.arraycopy(jump, 0, x, 0, jump.length);
+    IterationStats stats = getConvergencePolicy().start();
+    SinglePrecision.iterate(this, x, new float[x.length], jump, .85, 0, .15, true, stats);
+    statistics = stats;
+
+    approximate = false;
+    return SinglePrecision.toDouble(x, null, new double[x.length]);
+  }//end: getRelatednessSingle(int[], float[], boolean)
+
+}//end: PersonalizedPageRank
@@ -26,6 +26,8 @@ import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
  * <i>Exact</i> relatedness methods omit the jump model from the calculation and only take the link structure into account when calculating values.
  * These run slower and are not guaranteed to converge, but may produce higher-quality results.
  * <p>
+ * With {@link #setSinglePrecision(boolean)} the iterations run on float vectors.
+ * <p>
  * Source Paper: Y. Ollivier and P. Senellart, <i>Finding Related Pages Using Green Measures: An Illustration with Wikipedia.</i>
  * 
  * @author weale
@@ -202,12 +204,19 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
    */
   public double[] getRelatedness(int[] from) {
 
+    if(isSinglePrecision())
+    {
+      float[] vals = new float[from.length];
+      Arrays.fill(vals, (float) (1.0/from.length));
+      return getRelatednessSingle(from, vals, true);
+    }
+
     // Set Approximate Flag
     approximate = true;
 
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    PR_init = new double[graph.length];
+    SPR_old = new double[getNumVertices()];
+    SPR_new = new double[getNumVertices()];
+    PR_init = new double[getNumVertices()];
 
     for(int j=0;j<PR_init.length;j++) {
       PR_init[j] = PR[j] * -1;
@@ -225,11 +234,16 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
 
   public double[] getRelatedness(int[] from, float[] vals) {
 
+    if(isSinglePrecision())
+    {
+      return getRelatednessSingle(from, vals, true);
+    }
+
     approximate = true;
 
-    SPR_old = new double[graph.length];
-    SPR_new = new double[graph.length];
-    PR_init = new double[graph.length];
+    SPR_old = new double[getNumVertices()];
+    SPR_new = new double[getNumVertices()];
+    PR_init = new double[getNumVertices()];
 
     for(int j=0;j<PR_init.length;j++) {
       PR_init[j] = PR[j] * -1;
@@ -256,9 +270,14 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
    */
   public double[] getExactRelatedness(int from)
   {
-    double [] SPR_old = new double[graph.length];
-    double [] SPR_new = new double[graph.length];
-    double [] PR_init = new double[graph.length];
+    if(isSinglePrecision())
+    {
+      return getRelatednessSingle(new int[] {from}, new float[] {1}, true);
+    }
+
+    double [] SPR_old = new double[getNumVertices()];
+    double [] SPR_new = new double[getNumVertices()];
+    double [] PR_init = new double[getNumVertices()];
 
     for(int j = 0; j < PR_init.length; j++)
     {
@@ -269,41 +288,24 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
     PR_init[from] = PR_init[from] + 1;
     SPR_old[from] = SPR_old[from] + 1;
 
-    int numIterations = 0;
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats stats = policy.start();
     double change;
     do {
-      double randomSurfer = 0;
-
-      for(int j = 0; j < graph.length; j++)
-      {
-
-        if(graph[j] != null && graph[j].length != 0) {
-          // Valid transition array
-
-          for(int k = 0; k < graph[j].length; k++)
-          {
-            SPR_new[graph[j][k]] += (SPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else
-        {
-          // Add transition values to randomSurfer
-          randomSurfer += SPR_old[j] / graph.length;
-        }
-
-      }//end: for(j)
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(SPR_old, SPR_new) / getNumVertices();
 
       for(int x = 0; x < SPR_new.length; x++)
       {
         SPR_new[x] = .85 * ((SPR_new[x] + randomSurfer) + PR_init[x]) + (.15 / PR_init.length);
       }
 
-      change = pageRankDiff(SPR_old, SPR_new);
+      change = policy.distance(SPR_old, SPR_new);
       System.arraycopy(SPR_new, 0, SPR_old, 0, SPR_new.length);
       Arrays.fill(SPR_new, 0.0);
-
-      numIterations++;
-    }while(change > 0.002);
+    }while(policy.proceed(stats, change));
+    statistics = stats;
 
     for(int j=0; j<SPR_old.length; j++)
     {
@@ -325,27 +327,13 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
    */
   public double[] getExactRelatedness() {
 
-    int numIterations = 0;
+    ConvergencePolicy policy = getConvergencePolicy();
+    IterationStats stats = policy.start();
     double change;
     do {
-      double randomSurfer = 0;
-
-      for(int j = 0; j < graph.length; j++) {
-
-        if(graph[j] != null && graph[j].length != 0) {
-          // Valid transition array
-
-          for(int k=0; k<graph[j].length; k++) {
-            //						SPR_new[graph[j][k]] += (SPR_old[j] / graph[j].length);
-            SPR_new[graph[j][k]] += (SPR_old[j] * tProb[j][k]);
-          }//end: for(k)
-        }
-        else {
-          // Add transition values to randomSurfer
-          randomSurfer += SPR_old[j] / graph.length;
-        }
-
-      }//end: for(j)
+      // Propagate values forward in graph.
+      // Vertices with no out-bound edges add to randomSurfer for universal weight dispersion.
+      double randomSurfer = propagate(SPR_old, SPR_new) / getNumVertices();
 
       for(int x=0; x<SPR_new.length; x++) {
         if(approximate) {
@@ -356,7 +344,7 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
         }
       }
 
-      change = pageRankDiff(SPR_old, SPR_new);
+      change = policy.distance(SPR_old, SPR_new);
 
       //			double tmp = 0.0;
       //			for(int x=0; x<SPR_new.length; x++) {
@@ -366,9 +354,8 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
       //			}
       System.arraycopy(SPR_new, 0, SPR_old, 0, SPR_new.length);
       Arrays.fill(SPR_new, 0.0);
-
-      numIterations++;
-    }while(change > 0.002);
+    }while(policy.proceed(stats, change));
+    statistics = stats;
 
     for(int j=0; j<SPR_old.length; j++) {
       SPR_old[j] = SPR_old[j] * Math.log10(1.0/PR[j]);
@@ -378,4 +365,44 @@ public class VectSourcedPageRank extends PageRank implements RelatednessInterfac
     return SPR_old;
   }
 
-}//end: GreenRelatedness
\ No newline at end of file
+
+  /**
+   * Finds the relatedness distribution sourced at weighted vertices, iterating on single-precision vectors.
+   *
+   * @param from Array of vertex ID numbers (compressed)
+   * @param vals Weight of each source vertex
+   * @param approx True for the approximate model, false for the exact model
+   * @return Array containing relatedness distribution
+   */
+  private double[] getRelatednessSingle(int[] from, float[] vals, boolean approx)
+  {
+    float[] init = new float[getNumVertices()];
+    float[] x = new float[getNumVertices()];
+
+    for(int j = 0; j < init.length; j++)
+    {
+      init[j] = (float) (PR[j] * -1);
+    }
+
+    for(int i = 0; i < from.length; i++)
+    {
+      init[from[i]] = init[from[i]] + vals[i];
+    }
+
+    System.arraycopy(init, 0, x, 0, init.length);
+    IterationStats stats = getConvergencePolicy().start();
+    if(approx)
+    {
+      SinglePrecision.iterate(this, x, new float[x.length], init, .85, .15 / init.length, .85, false, stats);
+    }
+    else
+    {
+      SinglePrecision.iterate(this, x, new float[x.length], init, 1, 0, 1, false, stats);
+    }
+    statistics = stats;
+
+    approximate = false;
+    return SinglePrecision.toDouble(x, PR, new double[x.length]);
+  }//end: getRelatednessSingle(int[], float[], boolean)
+
+}//end: GreenRelatedness
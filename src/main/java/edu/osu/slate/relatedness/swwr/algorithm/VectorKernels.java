@@ -0,0 +1,169 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the {@link DenseKernels}.
+ * <p>
+ * Each kernel works on as many vertices at a time as the preferred vector shape of the
+ * machine holds, and finishes the range with a scalar loop.  The lanes compute the same
+ * expressions as the scalar kernels, in the same order and without fused multiply-adds,
+ * so the iterates are identical; only the order in which the change is summed differs.
+ * <p>
+ * This class links against the incubating <code>jdk.incubator.vector</code> module and
+ * fails to load when the JVM runs without <code>--add-modules jdk.incubator.vector</code>.
+ * Only {@link DenseKernels} refers to it, and only after checking that it loads.
+ *
+ * @author weale
+ * @version 1.0
+ */
+final class VectorKernels
+{
+  /* Preferred vector shape of the machine */
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  private VectorKernels()
+  {
+  }
+
+  /**
+   * Gets the number of values worked on at a time.
+   *
+   * @return Number of lanes of the preferred vector shape.
+   */
+  static int lanes()
+  {
+    return SPECIES.length();
+  }
+
+  /**
+   * Vector version of {@link DenseKernels#combine(double[], double[], double, double, double, double[], double, int, int, int)}
+   * for a non-null source.
+   */
+  static double combine(double[] x, double[] y, double follow, double randomSurfer, double constant,
+                        double[] source, double weight, int norm, int start, int end)
+  {
+    boolean linf = (norm == ConvergencePolicy.LINF);
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+    DoubleVector acc = zero;
+    int v = start;
+    int upper = start + SPECIES.loopBound(end - start);
+    for(; v < upper; v += SPECIES.length())
+    {
+      DoubleVector yv = DoubleVector.fromArray(SPECIES, y, v);
+      DoubleVector sv = DoubleVector.fromArray(SPECIES, source, v);
+      DoubleVector val = yv.add(randomSurfer).mul(follow).add(constant).add(sv.mul(weight));
+      DoubleVector diff = DoubleVector.fromArray(SPECIES, x, v).sub(val).abs();
+      acc = linf ? acc.max(diff) : acc.add(diff);
+      val.intoArray(x, v);
+      zero.intoArray(y, v);
+    }//end: for(v)
+
+    double d = reduce(acc, linf);
+    for(; v < end; v++)
+    {
+      double val = follow * (y[v] + randomSurfer) + constant + weight * source[v];
+      d = linf ? Math.max(d, Math.abs(x[v] - val)) : d + Math.abs(x[v] - val);
+      x[v] = val;
+      y[v] = 0;
+    }
+    return d;
+  }//end: combine(double[], double[], double, double, double, double[], double, int, int, int)
+
+  /**
+   * Vector version of {@link DenseKernels#combine(double[], double[], double, double, double, int, int, int)}.
+   */
+  static double combine(double[] x, double[] y, double follow, double randomSurfer, double constant,
+                        int norm, int start, int end)
+  {
+    boolean linf = (norm == ConvergencePolicy.LINF);
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+    DoubleVector acc = zero;
+    int v = start;
+    int upper = start + SPECIES.loopBound(end - start);
+    for(; v < upper; v += SPECIES.length())
+    {
+      DoubleVector val = DoubleVector.fromArray(SPECIES, y, v).add(randomSurfer).mul(follow).add(constant);
+      DoubleVector diff = DoubleVector.fromArray(SPECIES, x, v).sub(val).abs();
+      acc = linf ? acc.max(diff) : acc.add(diff);
+      val.intoArray(x, v);
+      zero.intoArray(y, v);
+    }//end: for(v)
+
+    double d = reduce(acc, linf);
+    for(; v < end; v++)
+    {
+      double val = (follow * (y[v] + randomSurfer)) + constant;
+      d = linf ? Math.max(d, Math.abs(x[v] - val)) : d + Math.abs(x[v] - val);
+      x[v] = val;
+      y[v] = 0;
+    }
+    return d;
+  }//end: combine(double[], double[], double, double, double, int, int, int)
+
+  /**
+   * Vector version of {@link DenseKernels#combineJump(double[], double[], double, double, double[], double, int, int, int)}.
+   * <p>
+   * Both values are computed in every lane, and a mask of the zero jump values picks one.
+   */
+  static double combineJump(double[] x, double[] y, double follow, double randomSurfer,
+                            double[] jump, double weight, int norm, int start, int end)
+  {
+    boolean linf = (norm == ConvergencePolicy.LINF);
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+    DoubleVector acc = zero;
+    int v = start;
+    int upper = start + SPECIES.loopBound(end - start);
+    for(; v < upper; v += SPECIES.length())
+    {
+      DoubleVector jv = DoubleVector.fromArray(SPECIES, jump, v);
+      DoubleVector walk = DoubleVector.fromArray(SPECIES, y, v).mul(follow);
+      VectorMask<Double> noJump = jv.compare(VectorOperators.EQ, 0.0);
+      DoubleVector val = walk.add(jv.add(randomSurfer).mul(weight)).blend(walk, noJump);
+      DoubleVector diff = DoubleVector.fromArray(SPECIES, x, v).sub(val).abs();
+      acc = linf ? acc.max(diff) : acc.add(diff);
+      val.intoArray(x, v);
+      zero.intoArray(y, v);
+    }//end: for(v)
+
+    double d = reduce(acc, linf);
+    for(; v < end; v++)
+    {
+      double val = (jump[v] == 0.0) ? (follow * y[v]) : (follow * y[v]) + (weight * (jump[v] + randomSurfer));
+      d = linf ? Math.max(d, Math.abs(x[v] - val)) : d + Math.abs(x[v] - val);
+      x[v] = val;
+      y[v] = 0;
+    }
+    return d;
+  }//end: combineJump(double[], double[], double, double, double[], double, int, int, int)
+
+  /**
+   * Adds up the change accumulated in each lane.
+   *
+   * @param acc Change per lane.
+   * @param linf True for the largest change, false for the sum.
+   * @return Change of the values.
+   */
+  private static double reduce(DoubleVector acc, boolean linf)
+  {
+    return acc.reduceLanes(linf ? VectorOperators.MAX : VectorOperators.ADD);
+  }
+}//end: VectorKernels
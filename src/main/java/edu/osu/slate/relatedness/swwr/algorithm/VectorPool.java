@@ -0,0 +1,153 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.algorithm;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Bounded pool of scratch vectors, shared by the threads using one solver.
+ * <p>
+ * Vectors are borrowed for the length of one computation and returned afterwards.
+ * At most <i>capacity</i> idle vectors are kept: a borrow with no idle vector allocates
+ * a new one, and vectors returned to a full pool are left to the garbage collector.
+ * Borrowed vectors are always zero.
+ * <p>
+ * Single-precision vectors of the same length are pooled separately, with the same capacity.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class VectorPool
+{
+  /* Length of the vectors */
+  private final int length;
+
+  /* Largest number of idle vectors kept */
+  private final int capacity;
+
+  /* Idle vectors */
+  private final ArrayDeque<double[]> idle;
+
+  /* Idle single-precision vectors */
+  private final ArrayDeque<float[]> idleFloat;
+
+  /**
+   * Constructor.
+   *
+   * @param length Length of the vectors.
+   * @param capacity Largest number of idle vectors kept.
+   */
+  public VectorPool(int length, int capacity)
+  {
+    this.length = length;
+    this.capacity = capacity;
+    idle = new ArrayDeque<double[]>(capacity);
+    idleFloat = new ArrayDeque<float[]>(capacity);
+  }
+
+  /**
+   * Borrows a vector from the pool.
+   *
+   * @return Vector of zeros.
+   */
+  public double[] borrow()
+  {
+    synchronized(idle)
+    {
+      double[] v = idle.poll();
+      if(v != null)
+      {
+        return v;
+      }
+    }
+    return new double[length];
+  }//end: borrow()
+
+  /**
+   * Returns a borrowed vector to the pool.
+   * <p>
+   * The vector is cleared first, and must not be used afterwards.
+   *
+   * @param v Vector, or null.
+   */
+  public void release(double[] v)
+  {
+    if(v == null || v.length != length)
+    {
+      return;
+    }
+    Arrays.fill(v, 0.0);
+    synchronized(idle)
+    {
+      if(idle.size() < capacity)
+      {
+        idle.push(v);
+      }
+    }
+  }//end: release(double[])
+
+  /**
+   * Borrows a single-precision vector from the pool.
+   *
+   * @return Vector of zeros.
+   */
+  public float[] borrowFloat()
+  {
+    synchronized(idleFloat)
+    {
+      float[] v = idleFloat.poll();
+      if(v != null)
+      {
+        return v;
+      }
+    }
+    return new float[length];
+  }//end: borrowFloat()
+
+  /**
+   * Returns a borrowed single-precision vector to the pool.
+   * <p>
+   * The vector is cleared first, and must not be used afterwards.
+   *
+   * @param v Vector, or null.
+   */
+  public void release(float[] v)
+  {
+    if(v == null || v.length != length)
+    {
+      return;
+    }
+    Arrays.fill(v, 0f);
+    synchronized(idleFloat)
+    {
+      if(idleFloat.size() < capacity)
+      {
+        idleFloat.push(v);
+      }
+    }
+  }//end: release(float[])
+
+  /**
+   * Gets the length of the vectors.
+   *
+   * @return Vector length.
+   */
+  public int getLength()
+  {
+    return length;
+  }
+}//end: VectorPool
@@ -20,7 +20,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 
+import edu.osu.slate.relatedness.swwr.data.graph.VertexPermutation;
+
 /**
+ * Mapping of surface forms to graph vertices.
+ * <p>
+ * If the graph has been reordered, the vertex numbers are translated through
+ * the {@link VertexPermutation} stored next to the file.
  * 
  * @author weale
  *
@@ -52,6 +58,13 @@ public class AliasSFToID {
 			ObjectInputStream fileIn = new ObjectInputStream(new FileInputStream(filename));
 			sfToID = (int[][]) fileIn.readObject();
 			fileIn.close();
+
+			VertexPermutation perm = VertexPermutation.forFile(filename);
+			for(int i = 0; perm != null && i < sfToID.length; i++) {
+				for(int j = 0; sfToID[i] != null && j < sfToID[i].length; j++) {
+					sfToID[i][j] = perm.getNewVertex(sfToID[i][j]);
+				}
+			}
 		} catch (ClassNotFoundException e) {
 			System.err.println("Problem converting to an integer array: " + filename);
 			e.printStackTrace();
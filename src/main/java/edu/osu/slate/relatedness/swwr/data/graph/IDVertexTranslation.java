@@ -21,13 +21,18 @@ import java.util.*;
 /**
  * This class is contains the mapping of Wiki IDs to Vertex numbers.
  * <p>
- * Vertex numbers are always less than or equal to their Wiki ID.
+ * Unless the graph has been reordered, vertex numbers are always less than or equal to their Wiki ID.
  * <p>
  * <ul>
  *   <li><b>ID</b> -- Original Page number assigned to in the Wiki data set.</li>
  *   <li><b>Vertex</b> -- Internal vertex number used in the PageRank graph.</li>
  * </ul>
  * <p>
+ * If the graph has been reordered by {@link edu.osu.slate.relatedness.swwr.setup.graph.ReorderGraphFiles},
+ * the translation carries the {@link VertexPermutation} and all lookups map through it.
+ * Raw ID lists read with {@link #IDVertexTranslation(String)} pick up the <i>.vpm file</i> of the graph.
+ * Vertex numbers are then no longer tied to the order of the Wiki IDs.
+ * <p>
  * 
  * @author weale
  * @version 2.0-alpha
@@ -50,6 +55,11 @@ public class IDVertexTranslation implements Serializable
   */
   private int[] validList;
 
+ /**
+  * Renumbering of the vertices, or null if the vertex number is the position of the ID in validList.
+  */
+  private VertexPermutation order;
+
  /**
   * Constructor.
   * <p>
@@ -84,6 +94,8 @@ public class IDVertexTranslation implements Serializable
       
       //Ensure a sorted list
       Arrays.sort(validList);
+
+      order = VertexPermutation.forFile(filename);
     }//end: try {}
     catch (ClassNotFoundException e)
     {
@@ -133,7 +145,12 @@ public class IDVertexTranslation implements Serializable
   */
   public int getVertex(int id)
   {
-    return Arrays.binarySearch(validList, id);
+    int pos = Arrays.binarySearch(validList, id);
+    if(pos >= 0 && order != null)
+    {
+      return order.getNewVertex(pos);
+    }
+    return pos;
   }//end: getVertex(int)
 	
  /**
@@ -146,7 +163,7 @@ public class IDVertexTranslation implements Serializable
   {
     if(vertex > -1 && vertex < validList.length)
     {
-      return validList[vertex];
+      return (order == null) ? validList[vertex] : validList[order.getOldVertex(vertex)];
     }
     else
     {
@@ -154,10 +171,32 @@ public class IDVertexTranslation implements Serializable
     }
   }//end: getID(int)
 	
+  /**
+   * Renumbers the vertices.
+   * <p>
+   * The permutation is applied on top of any earlier renumbering.
+   * 
+   * @param perm Renumbering of the current vertex numbers.
+   */
+  public void setVertexOrder(VertexPermutation perm)
+  {
+    order = (order == null) ? perm : order.then(perm);
+  }//end: setVertexOrder(VertexPermutation)
+
+  /**
+   * Gets the renumbering of the vertices.
+   * 
+   * @return Vertex renumbering, or null if the vertices follow the Wiki ID order.
+   */
+  public VertexPermutation getVertexOrder()
+  {
+    return order;
+  }
+
   /**
    * Writes the object to the given {@link ObjectOutputStream}.
    * <p>
-   * Writes the vertex-id integer array to the file.
+   * Writes the vertex-id integer array to the file, followed by the vertex renumbering (if any).
    * 
    * @param out {@link ObjectOutputStream} to be written to.
    * @throws IOException
@@ -165,12 +204,17 @@ public class IDVertexTranslation implements Serializable
   private void writeObject(ObjectOutputStream out) throws IOException
   {
     out.writeObject(validList);
+    if(order != null)
+    {
+      out.writeObject(order);
+    }
   }//end: writeObject(ObjectOutputStream)
 
   /**
    * Reads the object from the given {@link ObjectInputStream}.
    * <p>
-   * Reads the vertex-id integer array.
+   * Reads the vertex-id integer array and the vertex renumbering, if present.
+   * Files written before graph reordering existed contain only the array.
    * 
    * @param in {@link ObjectInputStream} to read from.
    * @throws IOException
@@ -179,6 +223,15 @@ public class IDVertexTranslation implements Serializable
   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
   {
     validList = (int []) in.readObject();
+    try
+    {
+      order = (VertexPermutation) in.readObject();
+    }
+    catch(OptionalDataException e)
+    {
+      // No renumbering stored
+      order = null;
+    }
   }//end: readObject(ObjectInputStream)
   
   public static void main(String[] args) {
@@ -0,0 +1,91 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.data.graph;
+
+/**
+ * Re-usable iterator over the in-bound vertices of a {@link WikiGraph} vertex.
+ * <p>
+ * Each in-bound edge carries the <i>forward</i> transition probability of the
+ * random walk, P(u,v), so values can be pushed backwards along the walk.
+ * (The <i>.iwgp</i> {@link WikiInvGraph} holds in-bound probabilities instead.)
+ * <p>
+ * Iterators are not thread-safe; each thread should get its own from {@link WikiGraph#getInboundIterator()}.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public final class InboundIterator
+{
+  /* Transposed graph being iterated over */
+  private final PullGraph pg;
+
+  /* Position of the next in-bound edge */
+  private int pos;
+
+  /* Position following the last in-bound edge */
+  private int end;
+
+  /**
+   * Constructor.
+   *
+   * @param pg Transposed graph to iterate over.
+   */
+  InboundIterator(PullGraph pg)
+  {
+    this.pg = pg;
+  }
+
+  /**
+   * Positions the iterator on the first in-bound vertex of the given vertex.
+   *
+   * @param v Vertex number.
+   */
+  public void reset(int v)
+  {
+    pos = pg.getInStart(v);
+    end = pg.getInStart(v+1);
+  }
+
+  /**
+   * Returns whether the vertex has more in-bound vertices.
+   *
+   * @return True if {@link #next()} may be called.
+   */
+  public boolean hasNext()
+  {
+    return pos < end;
+  }
+
+  /**
+   * Returns the next in-bound vertex.
+   *
+   * @return Vertex number.
+   */
+  public int next()
+  {
+    return pg.getSource(pos++);
+  }
+
+  /**
+   * Returns the transition probability from the vertex last returned by {@link #next()}.
+   *
+   * @return Probability of the walk moving along the edge.
+   */
+  public double transition()
+  {
+    return pg.getInTransition(pos - 1);
+  }
+}//end: InboundIterator
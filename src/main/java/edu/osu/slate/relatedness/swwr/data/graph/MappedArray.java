@@ -0,0 +1,153 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.data.graph;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only array of 4-byte values held in a memory-mapped file.
+ * <p>
+ * The values are read in place: they live in the OS page cache, which every process
+ * mapping the same file shares, and take no space on the heap.  A mapped buffer holds
+ * at most 2 GB, so the array is mapped in blocks of 2<sup>28</sup> values, and a value
+ * is found by its block and its position in the block.
+ * <p>
+ * The mapping stays valid after the file is closed.  Reads use absolute positions, so
+ * one array may be read by any number of threads.
+ *
+ * @author weale
+ * @version 1.0
+ */
+final class MappedArray
+{
+  /* Values per mapped block is 2^BLOCK_SHIFT */
+  private static final int BLOCK_SHIFT = 28;
+
+  /* Position of a value within its block */
+  private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+  /* Blocks read as int values */
+  private final IntBuffer[] ints;
+
+  /* The same blocks read as float values */
+  private final FloatBuffer[] floats;
+
+  /* Number of values */
+  private final int length;
+
+  /**
+   * Maps a little-endian array from an open file.
+   *
+   * @param channel Open file channel.
+   * @param pos Byte position of the first value.
+   * @param length Number of values.
+   * @throws IOException
+   */
+  MappedArray(FileChannel channel, long pos, int length) throws IOException
+  {
+    this.length = length;
+    int blocks = (int) (((long) length + BLOCK_MASK) >>> BLOCK_SHIFT);
+    ints = new IntBuffer[blocks];
+    floats = new FloatBuffer[blocks];
+    for(int b = 0; b < blocks; b++)
+    {
+      long first = (long) b << BLOCK_SHIFT;
+      int count = (int) Math.min(length - first, 1L << BLOCK_SHIFT);
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos + 4L * first, 4L * count);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      ints[b] = buf.asIntBuffer();
+      floats[b] = buf.asFloatBuffer();
+    }//end: for(b)
+  }//end: MappedArray(FileChannel, long, int)
+
+  /**
+   * Gets the number of values.
+   *
+   * @return Length of the array.
+   */
+  int length()
+  {
+    return length;
+  }
+
+  /**
+   * Reads a value as an int.
+   *
+   * @param i Index of the value.
+   * @return Value.
+   */
+  int getInt(int i)
+  {
+    return ints[i >>> BLOCK_SHIFT].get(i & BLOCK_MASK);
+  }
+
+  /**
+   * Reads a value as a float.
+   *
+   * @param i Index of the value.
+   * @return Value.
+   */
+  float getFloat(int i)
+  {
+    return floats[i >>> BLOCK_SHIFT].get(i & BLOCK_MASK);
+  }
+
+  /**
+   * Copies the values onto the heap as ints.
+   *
+   * @return New array of the values.
+   */
+  int[] toIntArray()
+  {
+    int[] vals = new int[length];
+    int done = 0;
+    for(int b = 0; b < ints.length; b++)
+    {
+      // Duplicates keep the byte order, and leave the shared positions alone
+      IntBuffer block = ints[b].duplicate();
+      block.rewind();
+      int count = block.remaining();
+      block.get(vals, done, count);
+      done += count;
+    }//end: for(b)
+    return vals;
+  }//end: toIntArray()
+
+  /**
+   * Copies the values onto the heap as floats.
+   *
+   * @return New array of the values.
+   */
+  float[] toFloatArray()
+  {
+    float[] vals = new float[length];
+    int done = 0;
+    for(int b = 0; b < floats.length; b++)
+    {
+      FloatBuffer block = floats[b].duplicate();
+      block.rewind();
+      int count = block.remaining();
+      block.get(vals, done, count);
+      done += count;
+    }//end: for(b)
+    return vals;
+  }//end: toFloatArray()
+}//end: MappedArray
@@ -0,0 +1,132 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.data.graph;
+
+/**
+ * Re-usable iterator over the out-bound vertices of a {@link WikiGraph} vertex.
+ * <p>
+ * Works for plain, compressed and memory-mapped graphs.
+ * Compressed adjacency lists are decoded on the fly, so no arrays are created while iterating.
+ * A single iterator is positioned on a vertex with {@link #reset(int)} and can be re-used for every vertex in a sweep.
+ * <p>
+ * Iterators are not thread-safe; each thread should get its own from {@link WikiGraph#getNeighborIterator()}.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public final class NeighborIterator
+{
+  /* Graph being iterated over */
+  private final WikiGraph wg;
+
+  /* Position of the next value (edge index, or byte position if compressed) */
+  private int pos;
+
+  /* Edge index of the next out-bound vertex */
+  private int edge;
+
+  /* Edge index following the last out-bound vertex */
+  private int end;
+
+  /* Last out-bound vertex decoded (compressed graphs only) */
+  private int last;
+
+  /**
+   * Constructor.
+   *
+   * @param wg Graph to iterate over.
+   */
+  NeighborIterator(WikiGraph wg)
+  {
+    this.wg = wg;
+  }
+
+  /**
+   * Positions the iterator on the first out-bound vertex of the given vertex.
+   *
+   * @param v Vertex number.
+   */
+  public void reset(int v)
+  {
+    edge = wg.offsets[v];
+    end = wg.offsets[v+1];
+    last = 0;
+
+    if(wg.packedTargets != null)
+    {
+      pos = wg.packedOffsets[v];
+    }
+    else
+    {
+      pos = edge;
+    }
+  }//end: reset(int)
+
+  /**
+   * Returns whether the vertex has more out-bound vertices.
+   *
+   * @return True if {@link #next()} may be called.
+   */
+  public boolean hasNext()
+  {
+    return edge < end;
+  }
+
+  /**
+   * Returns the next out-bound vertex.
+   *
+   * @return Vertex number.
+   */
+  public int next()
+  {
+    edge++;
+
+    if(wg.targets != null)
+    {
+      return wg.targets[pos++];
+    }
+    if(wg.packedTargets == null)
+    {
+      return wg.mappedTargets.getInt(pos++);
+    }
+
+    // Decode varint
+    byte[] packed = wg.packedTargets;
+    int b = packed[pos++];
+    int val = b & 0x7F;
+    for(int shift = 7; b < 0; shift += 7)
+    {
+      b = packed[pos++];
+      val |= (b & 0x7F) << shift;
+    }//end: for(shift)
+
+    // Undo zig-zag encoding of the gap
+    last += (val >>> 1) ^ -(val & 1);
+    return last;
+  }//end: next()
+
+  /**
+   * Returns the edge index of the vertex last returned by {@link #next()}.
+   * <p>
+   * Edge indices line up with the transition probabilities of the graph.
+   *
+   * @return Edge index.
+   */
+  public int edge()
+  {
+    return edge - 1;
+  }
+}//end: NeighborIterator
@@ -0,0 +1,419 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.data.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * In-bound (transposed) form of a {@link WikiGraph}, used to propagate values on several threads.
+ * <p>
+ * Pushing values along out-bound edges lets two threads write to the same vertex.
+ * Pulling them along in-bound edges instead means each vertex is only written by the
+ * thread that owns it, so the vertices can be split into ranges with no locking.
+ * <p>
+ * The in-bound edges carry the <i>forward</i> transition probabilities of the graph.
+ * (The <i>.iwgp</i> {@link WikiInvGraph} holds in-bound probabilities, which do not
+ * describe the same random walk, so the transpose is built from the graph itself.)
+ * <p>
+ * The vertex ranges are fixed when the transpose is built, and partial results are
+ * added in the same order every time, so results do not depend on the number of threads.
+ * <p>
+ * A quantized graph keeps its 8- or 16-bit codes in the transpose, and each value is
+ * scaled by its source vertex's row scale as it is pulled, as in the serial sweep.
+ *
+ * @author weale
+ * @version 1.0
+ */
+class PullGraph
+{
+  /* Number of vertex ranges (several per thread, to balance the load) */
+  private static final int NUM_RANGES = 512;
+
+  /* Start position of each vertex's in-bound links (length is number of vertices + 1) */
+  private final int[] inOffsets;
+
+  /* In-bound vertices for all graph vertices, in vertex order */
+  private final int[] sources;
+
+  /* Forward transition probability of each in-bound edge, or null for uniform or quantized transitions */
+  private final float[] inWeights;
+
+  /* 8-bit code of each in-bound edge, or null */
+  private final byte[] inCodes8;
+
+  /* 16-bit code of each in-bound edge, or null */
+  private final char[] inCodes16;
+
+  /* Scale of the codes, indexed by source vertex (quantized transitions only) */
+  private final float[] rowScale;
+
+  /* One over the out-degree of each vertex (uniform transitions only) */
+  private final double[] invDegree;
+
+  /* Start position of each vertex's out-bound links in the original graph */
+  private final int[] outOffsets;
+
+  /* First vertex of each range, followed by the number of vertices */
+  private final int[] bounds;
+
+  /**
+   * Constructor.
+   *
+   * @param offsets CSR offsets of the out-bound links.
+   * @param targets CSR targets of the out-bound links.
+   * @param weights Transition probabilities, parallel to the targets, or null for uniform transitions.
+   */
+  PullGraph(int[] offsets, int[] targets, float[] weights)
+  {
+    this(offsets, targets, weights, null, null, null);
+  }
+
+  /**
+   * Constructor for a graph with quantized transition probabilities.
+   *
+   * @param offsets CSR offsets of the out-bound links.
+   * @param targets CSR targets of the out-bound links.
+   * @param codes8 8-bit codes, parallel to the targets, or null.
+   * @param codes16 16-bit codes, parallel to the targets, or null.
+   * @param scale Scale of the codes of each vertex's out-bound links.
+   */
+  PullGraph(int[] offsets, int[] targets, byte[] codes8, char[] codes16, float[] scale)
+  {
+    this(offsets, targets, null, codes8, codes16, scale);
+  }
+
+  /* Builds the transpose with one kind of transition probabilities (or none, for uniform) */
+  private PullGraph(int[] offsets, int[] targets, float[] weights, byte[] codes8, char[] codes16, float[] scale)
+  {
+    int n = offsets.length - 1;
+    outOffsets = offsets;
+
+    /* Count the in-degrees, then turn them into start positions */
+    inOffsets = new int[n + 1];
+    for(int k = 0; k < targets.length; k++)
+    {
+      inOffsets[targets[k] + 1]++;
+    }
+    for(int v = 0; v < n; v++)
+    {
+      inOffsets[v+1] += inOffsets[v];
+    }
+
+    /* Fill the in-bound lists in vertex order, so each list is sorted */
+    int[] fill = new int[n];
+    System.arraycopy(inOffsets, 0, fill, 0, n);
+    sources = new int[targets.length];
+    inWeights = (weights == null) ? null : new float[targets.length];
+    inCodes8 = (codes8 == null) ? null : new byte[targets.length];
+    inCodes16 = (codes16 == null) ? null : new char[targets.length];
+    rowScale = scale;
+    for(int u = 0; u < n; u++)
+    {
+      for(int k = offsets[u]; k < offsets[u+1]; k++)
+      {
+        int pos = fill[targets[k]]++;
+        sources[pos] = u;
+        if(weights != null)
+        {
+          inWeights[pos] = weights[k];
+        }
+        else if(codes8 != null)
+        {
+          inCodes8[pos] = codes8[k];
+        }
+        else if(codes16 != null)
+        {
+          inCodes16[pos] = codes16[k];
+        }
+      }//end: for(k)
+    }//end: for(u)
+
+    if(weights == null && scale == null)
+    {
+      invDegree = new double[n];
+      for(int u = 0; u < n; u++)
+      {
+        int degree = offsets[u+1] - offsets[u];
+        invDegree[u] = (degree == 0) ? 0 : 1.0 / degree;
+      }
+    }
+    else
+    {
+      invDegree = null;
+    }
+
+    bounds = split(n);
+  }//end: PullGraph(int[], int[], float[], byte[], char[], float[])
+
+  /**
+   * Splits the vertices into ranges of about the same number of in-bound edges.
+   *
+   * @param n Number of vertices.
+   * @return First vertex of each range, followed by the number of vertices.
+   */
+  private int[] split(int n)
+  {
+    int ranges = Math.max(1, Math.min(NUM_RANGES, n));
+    int[] b = new int[ranges + 1];
+
+    // Each vertex costs one, plus one for each in-bound edge
+    long total = (long) n + sources.length;
+    int count = 1;
+    for(int v = 0; v < n && count < ranges; v++)
+    {
+      long cost = (long) v + inOffsets[v];
+      if(cost * ranges >= total * count)
+      {
+        if(v > b[count-1])
+        {
+          b[count++] = v;
+        }
+      }
+    }//end: for(v)
+    b[count++] = n;
+
+    if(count < b.length)
+    {
+      int[] shorter = new int[count];
+      System.arraycopy(b, 0, shorter, 0, count);
+      b = shorter;
+    }
+    return b;
+  }//end: split(int)
+
+  /**
+   * Gets the position of a vertex's first in-bound edge.
+   *
+   * @param v Vertex number.
+   * @return Edge position.
+   */
+  int getInStart(int v)
+  {
+    return inOffsets[v];
+  }
+
+  /**
+   * Gets the source vertex of an in-bound edge.
+   *
+   * @param e Edge position.
+   * @return Vertex number.
+   */
+  int getSource(int e)
+  {
+    return sources[e];
+  }
+
+  /**
+   * Gets the forward transition probability of an in-bound edge.
+   *
+   * @param e Edge position.
+   * @return Probability of moving from the source vertex along the edge.
+   */
+  double getInTransition(int e)
+  {
+    if(inWeights != null)
+    {
+      return inWeights[e];
+    }
+    if(rowScale != null)
+    {
+      return code(e) * rowScale[sources[e]];
+    }
+    return invDegree[sources[e]];
+  }
+
+  /**
+   * Gets the quantized code of an in-bound edge.
+   *
+   * @param e Edge position.
+   * @return Code, to be multiplied by the row scale of the source vertex.
+   */
+  private int code(int e)
+  {
+    return (inCodes8 != null) ? (inCodes8[e] & 0xFF) : inCodes16[e];
+  }
+
+  /**
+   * Runs the work over all vertex ranges and adds up the results.
+   *
+   * @param pool Threads to run on.
+   * @param body Work for each range.
+   * @return Sum of the range results.
+   */
+  double forEachRange(ForkJoinPool pool, VertexRange body)
+  {
+    return pool.invoke(new RangeTask(body, false, 0, bounds.length - 1));
+  }
+
+  /**
+   * Runs the work over all vertex ranges and takes the largest result.
+   *
+   * @param pool Threads to run on.
+   * @param body Work for each range.
+   * @return Largest range result.
+   */
+  double forEachRangeMax(ForkJoinPool pool, VertexRange body)
+  {
+    return pool.invoke(new RangeTask(body, true, 0, bounds.length - 1));
+  }
+
+  /**
+   * Splits the ranges in half until a single range is left.
+   * <p>
+   * The halves are always split and added the same way, so the sum
+   * does not depend on which thread ran which range.
+   */
+  private class RangeTask extends RecursiveTask<Double>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final VertexRange body;
+    private final boolean max;
+    private final int lo;
+    private final int hi;
+
+    RangeTask(VertexRange body, boolean max, int lo, int hi)
+    {
+      this.body = body;
+      this.max = max;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    protected Double compute()
+    {
+      if(hi - lo == 1)
+      {
+        return body.run(bounds[lo], bounds[hi]);
+      }
+
+      int mid = (lo + hi) >>> 1;
+      RangeTask left = new RangeTask(body, max, lo, mid);
+      left.fork();
+      double right = new RangeTask(body, max, mid, hi).compute();
+      return max ? Math.max(left.join(), right) : left.join() + right;
+    }
+  }//end: RangeTask
+
+  /**
+   * Pulls vertex values along the in-bound edges.
+   * <p>
+   * Gives the same result as {@link WikiGraph#propagate(double[], double[])}, up to rounding.
+   *
+   * @param pool Threads to run on.
+   * @param from Current vertex values.
+   * @param to Array the propagated values are added to.
+   * @return Total value held by vertices without out-bound edges.
+   */
+  double propagate(ForkJoinPool pool, final double[] from, final double[] to)
+  {
+    return forEachRange(pool, new VertexRange() {
+      public double run(int start, int end)
+      {
+        double dangling = 0;
+        for(int v = start; v < end; v++)
+        {
+          double sum = 0;
+          if(inCodes8 != null)
+          {
+            for(int k = inOffsets[v]; k < inOffsets[v+1]; k++)
+            {
+              int u = sources[k];
+              sum += (from[u] * rowScale[u]) * (inCodes8[k] & 0xFF);
+            }
+          }
+          else if(inCodes16 != null)
+          {
+            for(int k = inOffsets[v]; k < inOffsets[v+1]; k++)
+            {
+              int u = sources[k];
+              sum += (from[u] * rowScale[u]) * inCodes16[k];
+            }
+          }
+          else if(inWeights == null)
+          {
+            for(int k = inOffsets[v]; k < inOffsets[v+1]; k++)
+            {
+              int u = sources[k];
+              sum += from[u] * invDegree[u];
+            }
+          }
+          else
+          {
+            for(int k = inOffsets[v]; k < inOffsets[v+1]; k++)
+            {
+              sum += from[sources[k]] * inWeights[k];
+            }
+          }
+          to[v] += sum;
+
+          // Dangling mass of the range's own vertices
+          if(outOffsets[v] == outOffsets[v+1])
+          {
+            dangling += from[v];
+          }
+        }//end: for(v)
+        return dangling;
+      }
+    });
+  }//end: propagate(ForkJoinPool, double[], double[])
+
+  /**
+   * Pulls a block of <i>k</i> value vectors along the in-bound edges.
+   * <p>
+   * The block is stored vertex by vertex, as in {@link WikiGraph#propagateBlock(double[], double[], int, double[])}.
+   *
+   * @param pool Threads to run on.
+   * @param from Current vertex values of the block.
+   * @param to Array the propagated values are added to.
+   * @param k Number of vectors in the block.
+   */
+  void propagateBlock(ForkJoinPool pool, final double[] from, final double[] to, final int k)
+  {
+    forEachRange(pool, new VertexRange() {
+      public double run(int start, int end)
+      {
+        for(int v = start; v < end; v++)
+        {
+          int row = v * k;
+          for(int e = inOffsets[v]; e < inOffsets[v+1]; e++)
+          {
+            int u = sources[e];
+            int src = u * k;
+            if(rowScale != null)
+            {
+              // Scale each value by its source row, then by the code, as the serial sweep does
+              double scale = rowScale[u];
+              int code = code(e);
+              for(int c = 0; c < k; c++)
+              {
+                to[row + c] += (from[src + c] * scale) * code;
+              }
+              continue;
+            }
+            double w = (inWeights == null) ? invDegree[u] : inWeights[e];
+            for(int c = 0; c < k; c++)
+            {
+              to[row + c] += from[src + c] * w;
+            }
+          }//end: for(e)
+        }//end: for(v)
+        return 0;
+      }
+    });
+  }//end: propagateBlock(ForkJoinPool, double[], double[], int)
+}//end: PullGraph
@@ -0,0 +1,394 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.data.graph;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Relabeling of the vertices of a {@link WikiGraph}.
+ * <p>
+ * Vertex numbers from {@link IDVertexTranslation} follow the order of the Wiki IDs, which has
+ * nothing to do with the link structure.  Renumbering the vertices so that linked vertices
+ * have nearby numbers keeps the solver scatter <code>X_new[to] += ...</code> in cache.
+ * <p>
+ * <ul>
+ *   <li><b>Old vertex</b> -- Vertex number before reordering (position of the Wiki ID in the sorted ID list).</li>
+ *   <li><b>New vertex</b> -- Vertex number in the reordered graph.</li>
+ * </ul>
+ * The permutation of a reordered graph is stored in a <i>.vpm file</i> next to the graph files
+ * (see {@link #forFile(String)}), so files holding old vertex numbers can be translated when read.
+ * <p>
+ * The orderings available are:
+ * <ul>
+ *   <li>{@link #degreeOrder(WikiGraph)} -- Vertices sorted by decreasing total degree.</li>
+ *   <li>{@link #bfsOrder(WikiGraph)} -- Breadth-first traversal of the undirected link structure.</li>
+ *   <li>{@link #rcmOrder(WikiGraph)} -- Reverse Cuthill-McKee ordering.</li>
+ * </ul>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class VertexPermutation implements Serializable
+{
+  /* Used for serialization */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * File extension of a stored vertex permutation.
+   */
+  public static final String EXTENSION = ".vpm";
+
+  /* Old vertex number for each new vertex number */
+  private int[] newToOld;
+
+  /* New vertex number for each old vertex number */
+  private int[] oldToNew;
+
+ /**
+  * Constructor.
+  *
+  * @param newToOld Old vertex number for each new vertex number.
+  */
+  public VertexPermutation(int[] newToOld)
+  {
+    this.newToOld = newToOld.clone();
+    oldToNew = invert(this.newToOld);
+  }//end: VertexPermutation(int[])
+
+ /**
+  * Builds the inverse of a permutation array.
+  *
+  * @param perm Permutation array.
+  * @return Inverse permutation array.
+  */
+  private static int[] invert(int[] perm)
+  {
+    int[] inv = new int[perm.length];
+    Arrays.fill(inv, -1);
+    for(int i = 0; i < perm.length; i++)
+    {
+      if(perm[i] < 0 || perm[i] >= perm.length || inv[perm[i]] != -1)
+      {
+        throw new IllegalArgumentException("Not a permutation: position " + i);
+      }
+      inv[perm[i]] = i;
+    }//end: for(i)
+    return inv;
+  }//end: invert(int[])
+
+ /**
+  * Gets the number of vertices.
+  *
+  * @return Number of vertices.
+  */
+  public int size()
+  {
+    return newToOld.length;
+  }
+
+ /**
+  * Translates an old vertex number to the new vertex number.
+  *
+  * @param oldVertex Vertex number before reordering.
+  * @return Vertex number after reordering.
+  */
+  public int getNewVertex(int oldVertex)
+  {
+    return oldToNew[oldVertex];
+  }
+
+ /**
+  * Translates a new vertex number to the old vertex number.
+  *
+  * @param newVertex Vertex number after reordering.
+  * @return Vertex number before reordering.
+  */
+  public int getOldVertex(int newVertex)
+  {
+    return newToOld[newVertex];
+  }
+
+ /**
+  * Returns the permutation that applies this permutation followed by another.
+  * <p>
+  * Used when an already reordered graph is reordered again.
+  *
+  * @param next Permutation of the vertex numbers produced by this permutation.
+  * @return Combined permutation.
+  */
+  public VertexPermutation then(VertexPermutation next)
+  {
+    int[] combined = new int[newToOld.length];
+    for(int i = 0; i < combined.length; i++)
+    {
+      combined[i] = newToOld[next.newToOld[i]];
+    }//end: for(i)
+    return new VertexPermutation(combined);
+  }//end: then(VertexPermutation)
+
+ /**
+  * Orders the vertices by decreasing total (in + out) degree.
+  * <p>
+  * Ties keep their original order.
+  *
+  * @param wg Graph to reorder.
+  * @return Degree-sorted permutation.
+  */
+  public static VertexPermutation degreeOrder(WikiGraph wg)
+  {
+    final int[] degree = totalDegrees(wg);
+    Integer[] order = new Integer[degree.length];
+    for(int i = 0; i < order.length; i++)
+    {
+      order[i] = i;
+    }
+
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b)
+      {
+        return degree[b] - degree[a];
+      }
+    });
+
+    int[] newToOld = new int[order.length];
+    for(int i = 0; i < newToOld.length; i++)
+    {
+      newToOld[i] = order[i];
+    }
+    return new VertexPermutation(newToOld);
+  }//end: degreeOrder(WikiGraph)
+
+ /**
+  * Orders the vertices by a breadth-first traversal of the undirected link structure.
+  * <p>
+  * Each component is started from its unvisited vertex of highest degree.
+  *
+  * @param wg Graph to reorder.
+  * @return Breadth-first permutation.
+  */
+  public static VertexPermutation bfsOrder(WikiGraph wg)
+  {
+    int[] degree = totalDegrees(wg);
+    int[] starts = degreeOrder(wg).newToOld;
+    return new VertexPermutation(traverse(wg, degree, starts, false));
+  }//end: bfsOrder(WikiGraph)
+
+ /**
+  * Orders the vertices with the Reverse Cuthill-McKee algorithm.
+  * <p>
+  * Each component is started from its unvisited vertex of lowest degree, and the
+  * neighbors of a vertex are visited in order of increasing degree.  The final
+  * order is reversed.
+  *
+  * @param wg Graph to reorder.
+  * @return Reverse Cuthill-McKee permutation.
+  */
+  public static VertexPermutation rcmOrder(WikiGraph wg)
+  {
+    int[] degree = totalDegrees(wg);
+    int[] byDegree = degreeOrder(wg).newToOld;
+
+    /* Lowest degree first */
+    int[] starts = new int[byDegree.length];
+    for(int i = 0; i < starts.length; i++)
+    {
+      starts[i] = byDegree[byDegree.length - 1 - i];
+    }
+
+    int[] order = traverse(wg, degree, starts, true);
+    for(int i = 0, j = order.length - 1; i < j; i++, j--)
+    {
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+    return new VertexPermutation(order);
+  }//end: rcmOrder(WikiGraph)
+
+ /**
+  * Gets the number of in-bound plus out-bound links of every vertex.
+  *
+  * @param wg Graph.
+  * @return Total degree of each vertex.
+  */
+  private static int[] totalDegrees(WikiGraph wg)
+  {
+    int[] degree = new int[wg.getNumVertices()];
+    NeighborIterator it = wg.getNeighborIterator();
+    for(int i = 0; i < degree.length; i++)
+    {
+      degree[i] += wg.getOutDegree(i);
+      for(it.reset(i); it.hasNext(); )
+      {
+        degree[it.next()]++;
+      }
+    }//end: for(i)
+    return degree;
+  }//end: totalDegrees(WikiGraph)
+
+ /**
+  * Breadth-first traversal of the undirected link structure, covering every component.
+  *
+  * @param wg Graph.
+  * @param degree Total degree of each vertex.
+  * @param starts Vertices to start new components from, in order of preference.
+  * @param sortNeighbors Visit the neighbors of each vertex in order of increasing degree.
+  * @return Vertices in visiting order.
+  */
+  private static int[] traverse(WikiGraph wg, int[] degree, int[] starts, boolean sortNeighbors)
+  {
+    int n = wg.getNumVertices();
+
+    /* Build undirected adjacency (out-bound plus in-bound links) */
+    int[] offsets = new int[n + 1];
+    for(int i = 0; i < n; i++)
+    {
+      offsets[i+1] = offsets[i] + degree[i];
+    }
+
+    int[] fill = new int[n];
+    int[] adj = new int[offsets[n]];
+    NeighborIterator it = wg.getNeighborIterator();
+    for(int i = 0; i < n; i++)
+    {
+      for(it.reset(i); it.hasNext(); )
+      {
+        int to = it.next();
+        adj[offsets[i] + fill[i]++] = to;
+        adj[offsets[to] + fill[to]++] = i;
+      }
+    }//end: for(i)
+
+    boolean[] visited = new boolean[n];
+    int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    for(int s = 0; s < starts.length; s++)
+    {
+      if(visited[starts[s]])
+      {
+        continue;
+      }
+
+      visited[starts[s]] = true;
+      queue[tail++] = starts[s];
+      while(head < tail)
+      {
+        int v = queue[head++];
+        int first = tail;
+        for(int k = offsets[v]; k < offsets[v+1]; k++)
+        {
+          if(!visited[adj[k]])
+          {
+            visited[adj[k]] = true;
+            queue[tail++] = adj[k];
+          }
+        }//end: for(k)
+
+        if(sortNeighbors)
+        {
+          // Insertion sort of the newly queued vertices by degree
+          for(int a = first + 1; a < tail; a++)
+          {
+            int u = queue[a];
+            int b = a - 1;
+            while(b >= first && degree[queue[b]] > degree[u])
+            {
+              queue[b+1] = queue[b];
+              b--;
+            }
+            queue[b+1] = u;
+          }//end: for(a)
+        }
+      }//end: while(head)
+    }//end: for(s)
+
+    return queue;
+  }//end: traverse(WikiGraph, int[], int[], boolean)
+
+  /**
+   * Gets the permutation stored next to a data file.
+   * <p>
+   * Data files share the name of the graph they belong to, up to the first '.' of the file name
+   * (<i>enwiki-20080103-M.alf</i> belongs to <i>enwiki-20080103-M.vpm</i>).
+   *
+   * @param filename Name of a data file.
+   * @return Vertex permutation, or null if the graph has not been reordered.
+   */
+  public static VertexPermutation forFile(String filename)
+  {
+    File f = new File(filename);
+    String name = f.getName();
+    if(name.indexOf('.') > 0)
+    {
+      name = name.substring(0, name.indexOf('.'));
+    }
+
+    File permFile = new File(f.getParentFile(), name + EXTENSION);
+    if(!permFile.exists())
+    {
+      return null;
+    }
+
+    try
+    {
+      ObjectInputStream in = new ObjectInputStream(new FileInputStream(permFile));
+      VertexPermutation perm = (VertexPermutation) in.readObject();
+      in.close();
+      return perm;
+    }//end: try {}
+    catch (ClassNotFoundException e)
+    {
+      System.err.println("Problem converting to a vertex permutation: " + permFile);
+      e.printStackTrace();
+    }
+    catch (IOException e)
+    {
+      System.err.println("Problem reading from file: " + permFile);
+      e.printStackTrace();
+    }
+    return null;
+  }//end: forFile(String)
+
+  /**
+   * Writes the object to the given {@link ObjectOutputStream}.
+   * <p>
+   * Writes the new-to-old vertex array (int[]).
+   *
+   * @param out {@link ObjectOutputStream} to be written to.
+   * @throws IOException
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException
+  {
+    out.writeObject(newToOld);
+  }//end: writeObject(ObjectOutputStream)
+
+  /**
+   * Reads the object from the given {@link ObjectInputStream}.
+   * <p>
+   * Reads the new-to-old vertex array (int[]) and rebuilds the inverse.
+   *
+   * @param in {@link ObjectInputStream} to read from.
+   * @throws IOException
+   * @throws ClassNotFoundException
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+  {
+    newToOld = (int[]) in.readObject();
+    oldToNew = invert(newToOld);
+  }//end: readObject(ObjectInputStream)
+}//end: VertexPermutation
@@ -0,0 +1,38 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.data.graph;
+
+/**
+ * Work done over a range of graph vertices.
+ * <p>
+ * Used with {@link WikiGraph#forEachRange(VertexRange)}, which runs the
+ * ranges on several threads and adds up their results.  Each range may
+ * only write array entries of its own vertices.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public abstract class VertexRange
+{
+  /**
+   * Does the work for vertices <i>start</i> through <i>end-1</i>.
+   *
+   * @param start First vertex of the range.
+   * @param end Vertex following the last vertex of the range.
+   * @return Partial result (added up over all ranges).
+   */
+  public abstract double run(int start, int end);
+}//end: VertexRange
@@ -16,7 +16,11 @@
 package edu.osu.slate.relatedness.swwr.data.graph;
 
 import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Contains the graph structure of the Wiki data set.
@@ -24,7 +28,38 @@ import java.util.Arrays;
  * This class keeps track of which pages are linked to by particular page.
  * That is, this contains the outbound list to a page (from, to, to, to,...)
  * <p>
- * Requires the <i>.wgp file</i> created in {@link CreateGraphFiles}.
+ * The link structure is held in compressed sparse row (CSR) form:
+ * the outbound links of vertex <i>v</i> are stored in
+ * <code>targets[offsets[v]]</code> through <code>targets[offsets[v+1]-1]</code>,
+ * with the matching transition probabilities at the same positions in <code>weights</code>.
+ * <p>
+ * Graphs with uniform transition probabilities store no weights at all;
+ * the transition probability of each edge is derived from the out-degree of its vertex.
+ * <p>
+ * Graphs read from a memory-mapped <i>.wgpx file</i> keep their out-bound vertices and transition
+ * probabilities in the mapped file instead of the targets and weights arrays, so processes opening the
+ * same file share one copy in the OS page cache; {@link #loadIntoHeap()} copies them onto the heap.
+ * <p>
+ * Graphs may also be compressed with {@link #compress()}.
+ * Each adjacency list is then stored as zig-zag encoded gaps between successive
+ * vertex numbers, written as variable-length integers.
+ * Use a {@link NeighborIterator} to walk the out-bound vertices of any graph.
+ * <p>
+ * Non-uniform transition probabilities may be quantized to 16 or 8 bits per edge
+ * with {@link #quantizeTransitions(int)}.
+ * <p>
+ * Vertices may be renumbered for better memory locality with {@link #permute(VertexPermutation)}.
+ * <p>
+ * Solvers built on a graph may share its arrays instead of copying them (see {@link #WikiGraph(WikiGraph, boolean)}).
+ * The arrays are never changed in place once shared: {@link #setOutboundTransitions(int, float[])} copies
+ * the transition probabilities first.  {@link #getContentHash()} identifies the link structure and
+ * transition probabilities, for example to find stored results computed on the same graph.
+ * <p>
+ * After {@link #setThreads(int)} is called with more than one thread, values are propagated
+ * on several threads by pulling them along the in-bound edges of a transposed copy of the graph.
+ * Single-precision vectors are propagated with {@link #propagate(float[], float[])}, on the calling thread.
+ * <p>
+ * Requires the <i>.wgp file</i> or the memory-mapped <i>.wgpx file</i> created in {@link CreateGraphFiles}.
  * 
  * @author weale
  * @version 1.0
@@ -37,14 +72,62 @@ public class WikiGraph implements Serializable
   private static final long serialVersionUID = 1L;
 
   /**
-   *  Array of arrays to keep the graph structure in memory.
+   * Start position of each vertex's out-bound links (length is number of vertices + 1).
+   */
+  protected int [] offsets;
+
+  /**
+   * Out-bound vertices for all graph vertices, in vertex order.
+   * <p>
+   * Null for compressed graphs.
+   */
+  protected int [] targets;
+
+  /**
+   * Varint-encoded gaps between out-bound vertices for compressed graphs.
+   */
+  protected byte [] packedTargets;
+
+  /**
+   * Start position of each vertex's encoded links in the packedTargets array.
    */
-  protected int [][] graph;
+  protected int [] packedOffsets;
 
   /** 
-   * Array of transition probabilities
+   * Transition probabilities for all graph edges, parallel to the targets array.
+   * <p>
+   * Null for graphs with uniform or quantized transition probabilities.
+   */
+  protected float [] weights;
+
+  /**
+   * 16-bit transition probability codes, parallel to the targets array.
+   */
+  protected char [] quantized16;
+
+  /**
+   * 8-bit transition probability codes, parallel to the targets array.
+   */
+  protected byte [] quantized8;
+
+  /**
+   * Per-vertex scale that turns a quantized code back into a transition probability.
+   */
+  protected float [] rowScale;
+
+  /**
+   * Out-bound vertices read in place from a memory-mapped file, or null.
+   * <p>
+   * Used when the targets and packedTargets arrays are both null.
    */
-  protected float [][] tProb;
+  transient MappedArray mappedTargets;
+
+  /**
+   * Transition probabilities read in place from a memory-mapped file, or null.
+   * <p>
+   * Used when the weights array is null and the transitions are not quantized.
+   */
+  transient MappedArray mappedWeights;
 
   /* Keeps track of the number of graph edges */
   protected int numEdges;
@@ -60,216 +143,1665 @@ public class WikiGraph implements Serializable
    */
   protected static boolean verbose = false;
 
-  /**
-   * Sets the verbose output flag.
-   * 
-   * @param v Verbose output flag setting.
-   */
-  public static void setVerbose(boolean v)
+  /* Threads used to propagate values, or null to run on the calling thread */
+  private static volatile SharedPool pool;
+
+  /* In-bound form of the graph for parallel propagation (built when first needed) */
+  private transient PullGraph pullGraph;
+
+  /* True if the weights array may be used by another graph */
+  private transient boolean sharedWeights;
+
+  /* Hash of the links and transition probabilities, or 0 if not yet computed */
+  private transient long contentHash;
+
+  /**
+   * File extension of the memory-mapped graph format.
+   */
+  public static final String MAPPED_EXTENSION = ".wgpx";
+
+  /* Identifies a memory-mapped graph file ("WGPX") */
+  private static final int MAPPED_MAGIC = 0x57475058;
+
+  /* Current version of the memory-mapped graph file format */
+  private static final int MAPPED_VERSION = 1;
+
+  /* Size of the memory-mapped file header in bytes */
+  private static final int MAPPED_HEADER_SIZE = 24;
+
+  /* Header flag for graphs with uniform transition probabilities */
+  private static final int FLAG_UNIFORM = 1;
+
+  /* Header flag for graphs forced to be bi-directional */
+  private static final int FLAG_UNDIRECTED = 2;
+
+  /* Largest number of array elements mapped at once */
+  private static final int MAP_CHUNK = 1 << 28;
+
+  /**
+   * Sets the verbose output flag.
+   * 
+   * @param v Verbose output flag setting.
+   */
+  public static void setVerbose(boolean v)
+  {
+    verbose = v;
+  }
+
+  /**
+   * Sets the number of threads used to propagate values in all graphs.
+   * <p>
+   * With more than one thread, each graph builds a transposed copy of its links
+   * the first time it propagates values (about as much memory as the graph itself,
+   * held on the heap even for graphs read in place from a memory-mapped file).
+   * <p>
+   * May be called while solvers run: work already started finishes on the old threads,
+   * which are shut down once it is done, and new work uses the new setting.
+   * 
+   * @param threads Number of threads (one or less runs on the calling thread).
+   */
+  public static synchronized void setThreads(int threads)
+  {
+    SharedPool old = pool;
+    pool = (threads > 1) ? new SharedPool(new ForkJoinPool(threads)) : null;
+    if(old != null)
+    {
+      old.retire();
+    }
+  }//end: setThreads(int)
+
+  /**
+   * Gets the number of threads used to propagate values.
+   * 
+   * @return Number of threads.
+   */
+  public static int getThreads()
+  {
+    SharedPool p = pool;
+    return (p == null) ? 1 : p.threads.getParallelism();
+  }
+
+  /**
+   * Returns whether values are propagated on several threads.
+   * 
+   * @return True if {@link #setThreads(int)} was given more than one thread.
+   */
+  protected static boolean isParallel()
+  {
+    return pool != null;
+  }
+
+ /**
+  * Creates a new WikiGraph from an existing WikiGraph in memory.
+  * <p>
+  * Creates new graph and probability arrays.
+  * 
+  * @param wg Existing WikiGraph.
+  */
+  public WikiGraph(WikiGraph wg)
+  {
+    this(wg, false);
+  }//end: WikiGraph(WikiGraph)
+
+ /**
+  * Creates a new WikiGraph from an existing WikiGraph in memory, optionally sharing its arrays.
+  * <p>
+  * A shared graph costs no memory beyond the object itself, so any number of solvers
+  * (on any number of threads) can be built on one graph.  Neither graph changes the shared
+  * arrays in place; changing the transition probabilities of either graph copies them first.
+  * 
+  * @param wg Existing WikiGraph.
+  * @param share True to share the graph and probability arrays, false to copy them.
+  */
+  protected WikiGraph(WikiGraph wg, boolean share)
+  {
+    if(share)
+    {
+      this.offsets = wg.offsets;
+      this.targets = wg.targets;
+      this.packedTargets = wg.packedTargets;
+      this.packedOffsets = wg.packedOffsets;
+      this.weights = wg.weights;
+      this.quantized16 = wg.quantized16;
+      this.quantized8 = wg.quantized8;
+      this.rowScale = wg.rowScale;
+      this.mappedTargets = wg.mappedTargets;
+      this.mappedWeights = wg.mappedWeights;
+      this.sharedWeights = true;
+      wg.sharedWeights = true;
+    }
+    else
+    {
+      this.offsets = wg.offsets.clone();
+      this.targets = (wg.targets == null) ? null : wg.targets.clone();
+      this.packedTargets = (wg.packedTargets == null) ? null : wg.packedTargets.clone();
+      this.packedOffsets = (wg.packedOffsets == null) ? null : wg.packedOffsets.clone();
+      this.weights = (wg.weights == null) ? null : wg.weights.clone();
+      this.quantized16 = (wg.quantized16 == null) ? null : wg.quantized16.clone();
+      this.quantized8 = (wg.quantized8 == null) ? null : wg.quantized8.clone();
+      this.rowScale = (wg.rowScale == null) ? null : wg.rowScale.clone();
+
+      // Mapped arrays are read-only, so copies share them
+      this.mappedTargets = wg.mappedTargets;
+      this.mappedWeights = wg.mappedWeights;
+    }
+    this.numEdges = offsets[offsets.length - 1];
+
+    this.isUniform = wg.isUniform;
+    this.isDirected = wg.isDirected;
+    this.pullGraph = wg.pullGraph;
+    this.contentHash = wg.contentHash;
+  }//end: WikiGraph(WikiGraph, boolean)
+
+ /**
+  * Reads a WikiGraph from an existing .wgp or .wgpx file.
+  * <p>
+  * Files ending in {@link #MAPPED_EXTENSION} are read through a memory map
+  * instead of being deserialized: the out-bound vertices and transition probabilities
+  * stay in the mapped file, so opening the graph takes no time in proportion to its edges.
+  * 
+  * @param filename Name of the <i>.wgp file</i> or <i>.wgpx file</i>.
+  */
+  public WikiGraph(String filename)
+  {
+    this(filename, false);
+  }//end: WikiGraph(String)
+
+ /**
+  * Reads a WikiGraph from an existing .wgp or .wgpx file, optionally compressing the adjacency lists.
+  * <p>
+  * Compressed graphs read from a <i>.wgpx file</i> are encoded directly from the mapped file,
+  * so the uncompressed link array is never held in memory.
+  * 
+  * @param filename Name of the <i>.wgp file</i> or <i>.wgpx file</i>.
+  * @param compressed Compress the adjacency lists after reading.
+  */
+  public WikiGraph(String filename, boolean compressed)
+  {
+    if(filename.endsWith(MAPPED_EXTENSION))
+    {
+      readMappedFile(filename, compressed);
+      return;
+    }
+
+    try
+    {
+      ObjectInputStream fileIn = new ObjectInputStream(new FileInputStream(filename));
+      int[][] graph = (int[][]) fileIn.readObject();
+      float[][] tProb = (float[][]) fileIn.readObject();
+      fileIn.close();
+
+      /* Check for uniform transition probabilities */
+      boolean uniform = true;
+      for(int i = 0; uniform && i<tProb.length; i++)
+      {
+        if(tProb[i] != null && tProb[i].length > 1)
+        {
+          uniform = false;
+        }
+      }//end: for(i)
+
+      if(uniform)
+      {
+        // Uniform transitions are derived from the out-degree
+        tProb = null;
+      }//end: if(uniform)
+
+      setGraph(graph, tProb);
+
+      if(compressed)
+      {
+        compress();
+      }
+    }//end: try {}
+    catch (ClassNotFoundException e)
+    {
+      System.err.println("Problem converting to an integer array: " + filename);
+      e.printStackTrace();
+    }
+    catch (FileNotFoundException e)
+    {
+      System.err.println("File not found: " + filename);
+      e.printStackTrace();
+    }
+    catch (IOException e)
+    {
+      System.err.println("Problem reading from file: " + filename);
+      e.printStackTrace();
+    }
+  }//end: WikiGraph(String, boolean)
+
+ /**
+  * Creates a new WikiGraph from link and transition arrays.
+  * <p>
+  * A null entry in the link array indicates a vertex with no out-bound links.
+  * 
+  * @param graph2 Out-bound link arrays, one per vertex.
+  * @param graphtrans Out-bound transition probabilities, one array per vertex.
+  */
+  public WikiGraph(int[][] graph2, float[][] graphtrans)
+  {
+    setGraph(graph2, graphtrans);
+  }//end: WikiGraph(int[][], float[][])
+
+ /**
+  * Creates a WikiGraph directly from CSR arrays.
+  * <p>
+  * The arrays are used as given, not copied.
+  *
+  * @param offsets Start position of each vertex's out-bound links (length is number of vertices + 1).
+  * @param targets Out-bound vertices for all graph vertices, in vertex order.
+  * @param weights Transition probabilities parallel to targets, or null for uniform transitions.
+  */
+  public WikiGraph(int[] offsets, int[] targets, float[] weights)
+  {
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+    this.isUniform = (weights == null);
+    this.numEdges = targets.length;
+  }//end: WikiGraph(int[], int[], float[])
+
+ /**
+  * Packs per-vertex link and transition arrays into the CSR arrays.
+  * <p>
+  * No weights are stored if the transitions are null or uniform.
+  * 
+  * @param graph Out-bound link arrays, one per vertex.
+  * @param tProb Out-bound transition probabilities, one array per vertex, or null for uniform transitions.
+  */
+  private void setGraph(int[][] graph, float[][] tProb)
+  {
+    offsets = new int[graph.length + 1];
+    for(int i = 0; i < graph.length; i++)
+    {
+      offsets[i+1] = offsets[i] + (graph[i] == null ? 0 : graph[i].length);
+    }//end: for(i)
+
+    packedTargets = null;
+    packedOffsets = null;
+    mappedTargets = null;
+    mappedWeights = null;
+    targets = new int[offsets[graph.length]];
+    for(int i = 0; i < graph.length; i++)
+    {
+      if(graph[i] != null)
+      {
+        System.arraycopy(graph[i], 0, targets, offsets[i], graph[i].length);
+      }
+    }//end: for(i)
+
+    /* Only keep transition probabilities if they are not uniform */
+    isUniform = true;
+    for(int i = 0; tProb != null && isUniform && i < graph.length; i++)
+    {
+      for(int j = 0; graph[i] != null && j < graph[i].length; j++)
+      {
+        if(tProb[i][j] != (float) (1.0 / graph[i].length))
+        {
+          isUniform = false;
+        }
+      }//end: for(j)
+    }//end: for(i)
+
+    weights = null;
+    quantized16 = null;
+    quantized8 = null;
+    rowScale = null;
+    if(!isUniform)
+    {
+      weights = new float[targets.length];
+      for(int i = 0; i < graph.length; i++)
+      {
+        if(graph[i] != null)
+        {
+          System.arraycopy(tProb[i], 0, weights, offsets[i], graph[i].length);
+        }
+      }//end: for(i)
+    }
+
+    numEdges = targets.length;
+  }//end: setGraph(int[][], float[][])
+
+ /**
+  * Creates the weights array for a graph with uniform transition probabilities.
+  * <p>
+  * Called before the transitions of a uniform graph are modified.
+  */
+  private void materializeWeights()
+  {
+    weights = new float[numEdges];
+    for(int i = 0; i < getNumVertices(); i++)
+    {
+      for(int j = offsets[i]; j < offsets[i+1]; j++)
+      {
+        weights[j] = (float) (1.0 / getOutDegree(i));
+      }//end: for(j)
+    }//end: for(i)
+
+    isUniform = false;
+  }//end: materializeWeights()
+
+ /**
+  * Unpacks the CSR link array into one array per vertex.
+  * 
+  * @return Out-bound link arrays, with null entries for vertices without links.
+  */
+  private int[][] getLinkArrays()
+  {
+    int[][] graph = new int[getNumVertices()][];
+    for(int i = 0; i < graph.length; i++)
+    {
+      graph[i] = getOutboundLinks(i);
+    }//end: for(i)
+    return graph;
+  }//end: getLinkArrays()
+
+ /**
+  * Unpacks the CSR transition array into one array per vertex.
+  * 
+  * @return Out-bound transition arrays, with null entries for vertices without links.
+  */
+  private float[][] getTransitionArrays()
+  {
+    float[][] tProb = new float[getNumVertices()][];
+    for(int i = 0; i < tProb.length; i++)
+    {
+      tProb[i] = getOutboundTransitions(i);
+    }//end: for(i)
+    return tProb;
+  }//end: getTransitionArrays()
+
+/**
+  * Opens the CSR arrays of a memory-mapped <i>.wgpx file</i>.
+  * <p>
+  * The file layout is a little-endian header (magic, version, flags,
+  * vertex count, edge count, reserved) followed by the offsets, targets and
+  * weights arrays.  The weights array is omitted for uniform graphs.
+  * <p>
+  * The targets and weights are read in place from the mapping.  The offsets (one int
+  * per vertex, a small part of the file) are copied onto the heap, since every graph
+  * accessor indexes them.
+  * 
+  * @param filename Name of the <i>.wgpx file</i>.
+  * @param compressed Encode the targets array into compressed form while reading.
+  */
+  private void readMappedFile(String filename, boolean compressed)
+  {
+    try
+    {
+      RandomAccessFile file = new RandomAccessFile(filename, "r");
+      try
+      {
+        FileChannel channel = file.getChannel();
+
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MAPPED_HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(header.getInt() != MAPPED_MAGIC)
+        {
+          throw new IOException("Not a memory-mapped graph file");
+        }
+
+        int version = header.getInt();
+        if(version > MAPPED_VERSION)
+        {
+          throw new IOException("Unsupported graph file version: " + version);
+        }
+
+        int flags = header.getInt();
+        int numVertices = header.getInt();
+        numEdges = header.getInt();
+        isUniform = (flags & FLAG_UNIFORM) != 0;
+        isDirected = (flags & FLAG_UNDIRECTED) == 0;
+
+        long pos = MAPPED_HEADER_SIZE;
+        offsets = new int[numVertices + 1];
+        pos = readMappedInts(channel, pos, offsets);
+
+        /* Map the targets and weights in place; the mappings outlive the file */
+        MappedArray links = new MappedArray(channel, pos, numEdges);
+        pos += 4L * numEdges;
+        if(compressed)
+        {
+          // Two passes over the mapped targets: one to size, one to encode
+          packTargets(new IntSequence(links), new IntSequence(links));
+        }
+        else
+        {
+          mappedTargets = links;
+        }
+
+        if(!isUniform)
+        {
+          mappedWeights = new MappedArray(channel, pos, numEdges);
+        }
+      }
+      finally
+      {
+        file.close();
+      }
+    }//end: try {}
+    catch (FileNotFoundException e)
+    {
+      System.err.println("File not found: " + filename);
+      e.printStackTrace();
+    }
+    catch (IOException e)
+    {
+      System.err.println("Problem reading from file: " + filename);
+      e.printStackTrace();
+    }
+  }//end: readMappedFile(String)
+
+ /**
+  * Copies the out-bound vertices and transition probabilities of a memory-mapped graph onto the heap.
+  * <p>
+  * Sweeps over heap arrays run somewhat faster than reads through the mapping, at the cost
+  * of a private copy of the graph in each process.  Graphs not read from a mapped file are not changed.
+  */
+  public synchronized void loadIntoHeap()
+  {
+    if(mappedTargets != null)
+    {
+      targets = mappedTargets.toIntArray();
+      mappedTargets = null;
+    }
+    if(mappedWeights != null)
+    {
+      weights = mappedWeights.toFloatArray();
+      mappedWeights = null;
+    }
+  }//end: loadIntoHeap()
+
+ /**
+  * Returns whether the graph reads its out-bound vertices or transition probabilities from a mapped file.
+  * 
+  * @return True if any edge array is read in place.
+  */
+  public boolean isMapped()
+  {
+    return mappedTargets != null || mappedWeights != null;
+  }
+
+ /**
+  * Writes the graph to a memory-mapped <i>.wgpx file</i>.
+  * <p>
+  * The file can be opened with {@link #WikiGraph(String)}.
+  * 
+  * @param filename Name of the <i>.wgpx file</i>.
+  * @throws IOException
+  */
+  public void writeMappedFile(String filename) throws IOException
+  {
+    RandomAccessFile file = new RandomAccessFile(filename, "rw");
+    file.setLength(0);
+    FileChannel channel = file.getChannel();
+
+    int flags = 0;
+    if(isUniform)
+    {
+      flags |= FLAG_UNIFORM;
+    }
+    if(!isDirected)
+    {
+      flags |= FLAG_UNDIRECTED;
+    }
+
+    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAPPED_HEADER_SIZE);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAPPED_MAGIC);
+    header.putInt(MAPPED_VERSION);
+    header.putInt(flags);
+    header.putInt(getNumVertices());
+    header.putInt(numEdges);
+    header.putInt(0);
+
+    long pos = MAPPED_HEADER_SIZE;
+    pos = writeMappedInts(channel, pos, offsets);
+    pos = writeMappedInts(channel, pos, getTargetArray());
+    if(!isUniform)
+    {
+      pos = writeMappedFloats(channel, pos, getWeightArray());
+    }
+
+    channel.force(true);
+    file.close();
+  }//end: writeMappedFile(String)
+
+ /**
+  * Compresses the adjacency lists of the graph.
+  * <p>
+  * Each list is stored as the zig-zag encoded gaps between successive vertex numbers,
+  * written as variable-length integers (7 bits per byte).
+  * Sorted lists, as written by {@link CreateGraphFiles}, usually need one or two bytes per edge.
+  * Transition probabilities are not affected.
+  */
+  public void compress()
+  {
+    if(packedTargets != null)
+    {
+      return;
+    }
+
+    try
+    {
+      if(targets != null)
+      {
+        packTargets(new IntSequence(targets), new IntSequence(targets));
+      }
+      else
+      {
+        packTargets(new IntSequence(mappedTargets), new IntSequence(mappedTargets));
+      }
+    }
+    catch (IOException e)
+    {
+      // In-memory sequences do not perform I/O
+      throw new IllegalStateException(e);
+    }
+  }//end: compress()
+
+ /**
+  * Returns whether the adjacency lists are compressed.
+  * 
+  * @return True if the graph has been compressed.
+  */
+  public boolean isCompressed()
+  {
+    return packedTargets != null;
+  }
+
+ /**
+  * Creates an iterator over the out-bound vertices of the graph's vertices.
+  * <p>
+  * The iterator can be re-used for any number of vertices via {@link NeighborIterator#reset(int)}.
+  * 
+  * @return New {@link NeighborIterator}.
+  */
+  public NeighborIterator getNeighborIterator()
+  {
+    return new NeighborIterator(this);
+  }
+
+ /**
+  * Creates an iterator over the in-bound vertices of the graph's vertices.
+  * <p>
+  * The first call builds the transposed graph, which is kept for later calls.
+  * 
+  * @return New {@link InboundIterator}.
+  */
+  public InboundIterator getInboundIterator()
+  {
+    return new InboundIterator(getPullGraph());
+  }
+
+ /**
+  * Encodes the out-bound vertices into the packedTargets array.
+  * <p>
+  * Both sequences must return the same values, in edge order.
+  * 
+  * @param sizing Targets used to size the packed array.
+  * @param encoding Targets used to fill the packed array.
+  * @throws IOException
+  */
+  private void packTargets(IntSequence sizing, IntSequence encoding) throws IOException
+  {
+    int n = getNumVertices();
+
+    /* Find the encoded length of each adjacency list */
+    packedOffsets = new int[n + 1];
+    long size = 0;
+    for(int i = 0; i < n; i++)
+    {
+      int last = 0;
+      for(int j = offsets[i]; j < offsets[i+1]; j++)
+      {
+        int t = sizing.next();
+        size += varintSize(zigzag(t - last));
+        last = t;
+      }//end: for(j)
+
+      if(size > Integer.MAX_VALUE)
+      {
+        throw new IOException("Compressed graph exceeds maximum array size");
+      }
+      packedOffsets[i+1] = (int) size;
+    }//end: for(i)
+
+    /* Encode the adjacency lists */
+    packedTargets = new byte[(int) size];
+    int pos = 0;
+    for(int i = 0; i < n; i++)
+    {
+      int last = 0;
+      for(int j = offsets[i]; j < offsets[i+1]; j++)
+      {
+        int t = encoding.next();
+        int val = zigzag(t - last);
+        while((val & ~0x7F) != 0)
+        {
+          packedTargets[pos++] = (byte) ((val & 0x7F) | 0x80);
+          val >>>= 7;
+        }
+        packedTargets[pos++] = (byte) val;
+        last = t;
+      }//end: for(j)
+    }//end: for(i)
+
+    targets = null;
+    mappedTargets = null;
+  }//end: packTargets(IntSequence, IntSequence)
+
+ /**
+  * Maps a signed gap onto an unsigned value (0, -1, 1, -2, ... to 0, 1, 2, 3, ...).
+  * 
+  * @param gap Difference between two vertex numbers.
+  * @return Zig-zag encoded value.
+  */
+  private static int zigzag(int gap)
+  {
+    return (gap << 1) ^ (gap >> 31);
+  }
+
+ /**
+  * Gets the number of bytes needed to write a value as a varint.
+  * 
+  * @param val Unsigned value.
+  * @return Number of bytes (1 to 5).
+  */
+  private static int varintSize(int val)
+  {
+    int size = 1;
+    while((val & ~0x7F) != 0)
+    {
+      val >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+ /**
+  * Quantizes the transition probabilities to the given number of bits per edge.
+  * <p>
+  * Each vertex gets its own scale (its largest transition probability divided by the largest code),
+  * so every code keeps full resolution relative to the other edges of the vertex.
+  * The largest per-edge error is half the scale of the vertex.
+  * <p>
+  * Graphs with uniform transitions store no weights and are not changed.
+  * Use {@link edu.osu.slate.experiments.performance.QuantizationDrift} to measure the effect on relatedness rankings.
+  * 
+  * @param bits Bits per edge, either 16 or 8.
+  */
+  public void quantizeTransitions(int bits)
+  {
+    if(bits != 16 && bits != 8)
+    {
+      throw new IllegalArgumentException("Unsupported quantization width: " + bits);
+    }
+
+    if(isUniform)
+    {
+      return;
+    }
+
+    float[] w = getWeightArray();
+    int maxCode = (bits == 16) ? 0xFFFF : 0xFF;
+    pullGraph = null;
+    contentHash = 0;
+    int n = getNumVertices();
+
+    float[] scale = new float[n];
+    char[] codes16 = (bits == 16) ? new char[numEdges] : null;
+    byte[] codes8 = (bits == 8) ? new byte[numEdges] : null;
+    for(int i = 0; i < n; i++)
+    {
+      float max = 0;
+      for(int j = offsets[i]; j < offsets[i+1]; j++)
+      {
+        max = Math.max(max, w[j]);
+      }//end: for(j)
+
+      scale[i] = (max == 0) ? 0 : max / maxCode;
+      for(int j = offsets[i]; j < offsets[i+1]; j++)
+      {
+        int code = (max == 0) ? 0 : Math.round(w[j] / scale[i]);
+        code = Math.min(code, maxCode);
+        if(bits == 16)
+        {
+          codes16[j] = (char) code;
+        }
+        else
+        {
+          codes8[j] = (byte) code;
+        }
+      }//end: for(j)
+    }//end: for(i)
+
+    weights = null;
+    mappedWeights = null;
+    quantized16 = codes16;
+    quantized8 = codes8;
+    rowScale = scale;
+  }//end: quantizeTransitions(int)
+
+ /**
+  * Returns whether the transition probabilities are quantized.
+  * 
+  * @return True if the graph has been quantized.
+  */
+  public boolean isQuantized()
+  {
+    return rowScale != null;
+  }
+
+ /**
+  * Turns a quantized code back into a transition probability.
+  * 
+  * @param v Vertex number.
+  * @param edge Edge index.
+  * @return Transition probability.
+  */
+  private float dequantize(int v, int edge)
+  {
+    int code = (quantized8 != null) ? (quantized8[edge] & 0xFF) : quantized16[edge];
+    return code * rowScale[v];
+  }
+
+ /**
+  * Gets the transition probabilities for all graph edges as a single array.
+  * <p>
+  * Uniform, quantized and mapped transitions are expanded into a new array.
+  * 
+  * @return Transition probabilities, in edge order.
+  */
+  private float[] getWeightArray()
+  {
+    if(weights != null)
+    {
+      return weights;
+    }
+    if(rowScale == null && mappedWeights != null)
+    {
+      return mappedWeights.toFloatArray();
+    }
+
+    float[] all = new float[numEdges];
+    for(int i = 0; i < getNumVertices(); i++)
+    {
+      for(int j = offsets[i]; j < offsets[i+1]; j++)
+      {
+        all[j] = (rowScale != null) ? dequantize(i, j) : (float) (1.0 / getOutDegree(i));
+      }//end: for(j)
+    }//end: for(i)
+    return all;
+  }//end: getWeightArray()
+
+ /**
+  * Gets the out-bound vertices for all graph vertices as a single array.
+  * <p>
+  * Compressed and mapped graphs are decoded into a new array.
+  * 
+  * @return Out-bound vertices, in edge order.
+  */
+  private int[] getTargetArray()
+  {
+    if(targets != null)
+    {
+      return targets;
+    }
+    if(packedTargets == null)
+    {
+      return mappedTargets.toIntArray();
+    }
+
+    int[] all = new int[numEdges];
+    NeighborIterator it = getNeighborIterator();
+    for(int i = 0; i < getNumVertices(); i++)
+    {
+      it.reset(i);
+      while(it.hasNext())
+      {
+        int t = it.next();
+        all[it.edge()] = t;
+      }
+    }//end: for(i)
+    return all;
+  }//end: getTargetArray()
+
+ /**
+  * Sequential reader over int values held in memory or in a mapped file.
+  */
+  private static class IntSequence
+  {
+    /* Values in memory, or null for mapped values */
+    private final int[] vals;
+
+    /* Mapped values */
+    private final MappedArray mapped;
+
+    /* Position of the next value */
+    private int pos;
+
+    IntSequence(int[] vals)
+    {
+      this.vals = vals;
+      this.mapped = null;
+    }
+
+    IntSequence(MappedArray mapped)
+    {
+      this.vals = null;
+      this.mapped = mapped;
+    }
+
+    int next()
+    {
+      return (vals != null) ? vals[pos++] : mapped.getInt(pos++);
+    }
+  }//end: IntSequence
+
+ /**
+  * Thread pool shared by all graphs, with a count of the computations running on it.
+  * <p>
+  * A pool replaced by {@link WikiGraph#setThreads(int)} takes no new work, and is shut
+  * down when the last computation running on it leaves.
+  */
+  private static final class SharedPool
+  {
+    /* Worker threads */
+    final ForkJoinPool threads;
+
+    /* Number of computations running on the threads */
+    private int users;
+
+    /* True once the pool has been replaced */
+    private boolean retired;
+
+    SharedPool(ForkJoinPool threads)
+    {
+      this.threads = threads;
+    }
+
+    /**
+     * Starts a computation on the current pool.
+     *
+     * @return Pool to run on, to be left when done, or null to run on the calling thread.
+     */
+    static SharedPool enter()
+    {
+      while(true)
+      {
+        SharedPool p = pool;
+        if(p == null || p.join())
+        {
+          return p;
+        }
+        // Replaced since it was read: try the new one
+      }
+    }//end: enter()
+
+    private synchronized boolean join()
+    {
+      if(retired)
+      {
+        return false;
+      }
+      users++;
+      return true;
+    }
+
+    /**
+     * Ends a computation started by {@link #enter()}.
+     */
+    synchronized void leave()
+    {
+      users--;
+      if(retired && users == 0)
+      {
+        threads.shutdown();
+      }
+    }
+
+    /**
+     * Takes no more work, and shuts the threads down once the running computations finish.
+     */
+    synchronized void retire()
+    {
+      retired = true;
+      if(users == 0)
+      {
+        threads.shutdown();
+      }
+    }
+  }//end: SharedPool
+
+ /**
+  * Fills an int array from a mapped region of the file.
+  * 
+  * @param channel Open file channel.
+  * @param pos Byte position of the first value.
+  * @param vals Array to fill.
+  * @return Byte position following the last value.
+  * @throws IOException
+  */
+  private static long readMappedInts(FileChannel channel, long pos, int[] vals) throws IOException
+  {
+    for(int done = 0; done < vals.length; )
+    {
+      int count = Math.min(vals.length - done, MAP_CHUNK);
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * count);
+      buf.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(vals, done, count);
+      done += count;
+      pos += 4L * count;
+    }//end: for(done)
+    return pos;
+  }//end: readMappedInts(FileChannel, long, int[])
+
+ /**
+  * Writes an int array to a mapped region of the file.
+  * 
+  * @param channel Open file channel.
+  * @param pos Byte position of the first value.
+  * @param vals Array to write.
+  * @return Byte position following the last value.
+  * @throws IOException
+  */
+  private static long writeMappedInts(FileChannel channel, long pos, int[] vals) throws IOException
+  {
+    for(int done = 0; done < vals.length; )
+    {
+      int count = Math.min(vals.length - done, MAP_CHUNK);
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, pos, 4L * count);
+      buf.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(vals, done, count);
+      done += count;
+      pos += 4L * count;
+    }//end: for(done)
+    return pos;
+  }//end: writeMappedInts(FileChannel, long, int[])
+
+ /**
+  * Writes a float array to a mapped region of the file.
+  * 
+  * @param channel Open file channel.
+  * @param pos Byte position of the first value.
+  * @param vals Array to write.
+  * @return Byte position following the last value.
+  * @throws IOException
+  */
+  private static long writeMappedFloats(FileChannel channel, long pos, float[] vals) throws IOException
+  {
+    for(int done = 0; done < vals.length; )
+    {
+      int count = Math.min(vals.length - done, MAP_CHUNK);
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, pos, 4L * count);
+      buf.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(vals, done, count);
+      done += count;
+      pos += 4L * count;
+    }//end: for(done)
+    return pos;
+  }//end: writeMappedFloats(FileChannel, long, float[])
+
+/**
+  * Get the outbound vertices for a given vertex.
+  * <p>
+  * Returns null if there are no outbound vertices.
+  * 
+  * @param v Vertex number.
+  * @return Integer array of outbound vertices.
+  */
+  public int[] getOutboundLinks(int v) {
+    if(v > -1 && v < getNumVertices() && offsets[v] != offsets[v+1])
+    {
+      if(targets == null)
+      { // compressed adjacency list
+        int[] links = new int[getOutDegree(v)];
+        NeighborIterator it = getNeighborIterator();
+        it.reset(v);
+        for(int i = 0; it.hasNext(); i++)
+        {
+          links[i] = it.next();
+        }
+        return links;
+      }
+      return Arrays.copyOfRange(targets, offsets[v], offsets[v+1]);
+    }
+    else
+    {
+      return null;
+    }
+  }//end: getOutbountLinks(int)
+
+ /**
+  * Get the outbound transition probabilities for a given vertex.
+  * <p>
+  * Returns null if there are no outbound vertices.
+  * 
+  * @param v Vertex number.
+  * @return Float array of outbound transition probabilities.
+  */
+  public float[] getOutboundTransitions(int v)
+  {
+    if(v > -1 && v < getNumVertices() && offsets[v] != offsets[v+1])
+    {
+      if(rowScale != null)
+      { // quantized transition probabilities
+        float[] f = new float[getOutDegree(v)];
+        for(int i = 0; i < f.length; i++)
+        {
+          f[i] = dequantize(v, offsets[v] + i);
+        }
+        return f;
+      }
+      if(weights == null && mappedWeights != null)
+      { // mapped transition probabilities
+        float[] f = new float[getOutDegree(v)];
+        for(int i = 0; i < f.length; i++)
+        {
+          f[i] = mappedWeights.getFloat(offsets[v] + i);
+        }
+        return f;
+      }
+      if(weights == null)
+      { // uniform transition probabilities
+        float[] f = new float[getOutDegree(v)];
+        Arrays.fill(f, (float) (1.0 / f.length));
+        return f;
+      }
+      return Arrays.copyOfRange(weights, offsets[v], offsets[v+1]);
+    }
+    else
+    {
+      return null;
+    }
+  }//end: getOutboundTransitions(int)
+
+ /**
+  * Gets the transition probability of a single out-bound edge.
+  * <p>
+  * Used with a {@link NeighborIterator} to walk the edges of one vertex without building arrays.
+  *
+  * @param v Vertex number.
+  * @param edge Edge index, as given by {@link NeighborIterator#edge()}.
+  * @return Transition probability.
+  */
+  public double getTransition(int v, int edge)
+  {
+    if(rowScale != null)
+    { // quantized transition probabilities
+      return dequantize(v, edge);
+    }
+    if(weights != null)
+    {
+      return weights[edge];
+    }
+    if(mappedWeights != null)
+    { // mapped transition probabilities
+      return mappedWeights.getFloat(edge);
+    }
+    // uniform transition probabilities
+    return 1.0 / (offsets[v+1] - offsets[v]);
+  }//end: getTransition(int, int)
+
+  public void setOutboundTransitions(int fromVertex, float[] vals)
+  {
+    if(vals.length != getOutDegree(fromVertex))
+    {
+      System.err.println("Invalid transition manipulation. "
+                         + "Vertex:" + fromVertex);
+    }
+    else
+    {
+      pullGraph = null;
+      contentHash = 0;
+      if(rowScale != null)
+      {
+        weights = getWeightArray();
+        quantized16 = null;
+        quantized8 = null;
+        rowScale = null;
+      }
+      else if(weights == null && mappedWeights != null)
+      {
+        // The mapped file is read-only: copy the probabilities to change them
+        weights = mappedWeights.toFloatArray();
+        mappedWeights = null;
+      }
+      else if(weights == null)
+      {
+        materializeWeights();
+      }
+      else if(sharedWeights)
+      {
+        // Copy on first write, so graphs sharing the array keep their values
+        weights = weights.clone();
+      }
+      sharedWeights = false;
+      System.arraycopy(vals, 0, weights, offsets[fromVertex], vals.length);
+    }
+  }//end: setOutboundTransitions(int, float[])
+
+ /**
+  * Gets the number of out-bound links for a given vertex.
+  * 
+  * @param v Vertex number.
+  * @return Number of out-bound links.
+  */
+  public int getOutDegree(int v)
   {
-    verbose = v;
+    return offsets[v+1] - offsets[v];
   }
 
  /**
-  * Creates a new WikiGraph from an existing WikiGraph in memory.
+  * Pushes vertex values forward along the out-bound edges of the graph.
   * <p>
-  * Creates new graph and probability matrices.
+  * Each vertex adds its value, scaled by the transition probability, to the
+  * entries of the <i>to</i> array for its out-bound vertices.
+  * Values held by vertices without out-bound edges are summed and returned
+  * so the caller can spread them over the whole graph.
   * 
-  * @param wg Existing WikiGraph.
+  * @param from Current vertex values.
+  * @param to Array the propagated values are added to.
+  * @param w Transition probabilities, parallel to the targets array, or null for uniform transitions.
+  * @return Total value held by vertices without out-bound edges.
   */
-  public WikiGraph(WikiGraph wg)
+  protected double propagate(double[] from, double[] to, float[] w)
   {
-    numEdges = 0;
-        
-    // Copy edges to new object
-    this.graph = new int[wg.graph.length][];
-    for(int i = 0; i < this.graph.length; i++)
+    if(packedTargets != null)
+    {
+      return propagateCompressed(from, to, w, null);
+    }
+    if(targets == null)
+    {
+      return propagateMapped(from, to, w, null);
+    }
+
+    double dangling = 0;
+    int n = offsets.length - 1;
+
+    for(int j = 0; j < n; j++)
     {
-      if(wg.graph[i] == null)
-      { // No out-bound links from vertex
-        this.graph[i] = null;
+      int start = offsets[j];
+      int end = offsets[j+1];
+
+      if(start != end && w == null)
+      {
+        // Uniform transitions: split the value over the out-bound edges
+        double val = from[j] / (end - start);
+        for(int k = start; k < end; k++)
+        {
+          to[targets[k]] += val;
+        }//end: for(k)
+      }
+      else if(start != end)
+      {
+        // Valid transition array
+        double val = from[j];
+        for(int k = start; k < end; k++)
+        {
+          to[targets[k]] += val * w[k];
+        }//end: for(k)
       }
       else
       {
-        this.graph[i] = new int[wg.graph[i].length];
-        numEdges += this.graph[i].length;
-        System.arraycopy(wg.graph[i], 0, this.graph[i], 0, wg.graph[i].length);
-      }      
-    }//end: for(i)
+        // No out-bound edges
+        dangling += from[j];
+      }
+    }//end: for(j)
+
+    return dangling;
+  }//end: propagate(double[], double[], float[])
 
-    // Copy transition probabilities to new object
-    this.tProb = new float[wg.tProb.length][];
-    for(int i = 0; i < this.tProb.length; i++)
+ /**
+  * Pushes vertex values forward along the out-bound edges held in a memory-mapped file.
+  * <p>
+  * Targets and mapped transition probabilities are read in place through the mapping.
+  * 
+  * @param from Current vertex values.
+  * @param to Array the propagated values are added to.
+  * @param w Transition probabilities, parallel to the targets, or null.
+  * @param mw Mapped transition probabilities, used if <i>w</i> is null, or null for uniform transitions.
+  * @return Total value held by vertices without out-bound edges.
+  */
+  private double propagateMapped(double[] from, double[] to, float[] w, MappedArray mw)
+  {
+    MappedArray t = mappedTargets;
+    double dangling = 0;
+    int n = offsets.length - 1;
+
+    for(int j = 0; j < n; j++)
     {
-      if(wg.tProb[i] == null)
-      { // No out-bound links from vertex
-        this.tProb[i] = null;
+      int start = offsets[j];
+      int end = offsets[j+1];
+
+      if(start == end)
+      {
+        // No out-bound edges
+        dangling += from[j];
+      }
+      else if(w != null)
+      {
+        // Valid transition array
+        double val = from[j];
+        for(int k = start; k < end; k++)
+        {
+          to[t.getInt(k)] += val * w[k];
+        }//end: for(k)
+      }
+      else if(mw != null)
+      {
+        // Mapped transition probabilities
+        double val = from[j];
+        for(int k = start; k < end; k++)
+        {
+          to[t.getInt(k)] += val * mw.getFloat(k);
+        }//end: for(k)
       }
       else
       {
-        this.tProb[i] = new float[wg.tProb[i].length];
-        System.arraycopy(wg.tProb[i], 0, this.tProb[i], 0, wg.tProb[i].length);
+        // Uniform transitions: split the value over the out-bound edges
+        double val = from[j] / (end - start);
+        for(int k = start; k < end; k++)
+        {
+          to[t.getInt(k)] += val;
+        }//end: for(k)
       }
-    }//end: for(i)
+    }//end: for(j)
 
-    this.isUniform = wg.isUniform;
-    this.isDirected = wg.isDirected;
-  }//end: WikiGraph(WikiGraph)
+    return dangling;
+  }//end: propagateMapped(double[], double[], float[], MappedArray)
 
  /**
-  * Reads a WikiGraph from an existing .wgp file.
+  * Pushes vertex values forward along the edges of a compressed graph.
   * 
-  * @param filename Name of the <i>.wgp file</i>.
+  * @param from Current vertex values.
+  * @param to Array the propagated values are added to.
+  * @param w Transition probabilities, parallel to the edge indices, or null.
+  * @param mw Mapped transition probabilities, used if <i>w</i> is null, or null for uniform transitions.
+  * @return Total value held by vertices without out-bound edges.
   */
-  public WikiGraph(String filename)
+  private double propagateCompressed(double[] from, double[] to, float[] w, MappedArray mw)
   {
-    try
+    double dangling = 0;
+    int n = offsets.length - 1;
+    NeighborIterator it = getNeighborIterator();
+
+    for(int j = 0; j < n; j++)
     {
-      ObjectInputStream fileIn = new ObjectInputStream(new FileInputStream(filename));
-      graph = (int[][]) fileIn.readObject();
-      tProb = (float[][]) fileIn.readObject();
-      fileIn.close();
+      int degree = offsets[j+1] - offsets[j];
+      it.reset(j);
 
-      /* Check for uniform transition probabilities */
-      isUniform = true;
-      for(int i = 0; isUniform && i<tProb.length; i++)
+      if(degree != 0 && w == null && mw == null)
       {
-        if(tProb[i] != null && tProb[i].length > 1)
+        // Uniform transitions: split the value over the out-bound edges
+        double val = from[j] / degree;
+        while(it.hasNext())
         {
-          isUniform = false;
+          to[it.next()] += val;
         }
-      }//end: for(i)
-
-      if(isUniform)
-      { 
-        //Create uniform transition matrix
-        for(int i=0; i<tProb.length; i++)
+      }
+      else if(degree != 0 && w != null)
+      {
+        // Valid transition array
+        double val = from[j];
+        while(it.hasNext())
         {
-          if(graph[i] != null)
-          {
-            tProb[i] = new float[graph[i].length];
-            for(int j=0; j<tProb[i].length; j++)
-            {
-              tProb[i][j] = (float)(1.0 / tProb[i].length);
-            }//end: for(j)
-          }//end: if(graph[i])
-        }//end: for(i)
-      }//end: if(isUniform)
+          int t = it.next();
+          to[t] += val * w[it.edge()];
+        }
+      }
+      else if(degree != 0)
+      {
+        // Mapped transition probabilities
+        double val = from[j];
+        while(it.hasNext())
+        {
+          int t = it.next();
+          to[t] += val * mw.getFloat(it.edge());
+        }
+      }
+      else
+      {
+        // No out-bound edges
+        dangling += from[j];
+      }
+    }//end: for(j)
+
+    return dangling;
+  }//end: propagateCompressed(double[], double[], float[], MappedArray)
+
+ /**
+  * Pushes vertex values forward using quantized transition probabilities.
+  * <p>
+  * Codes are turned back into probabilities inside the loop,
+  * so only the 8 or 16-bit codes are read for each edge.
+  * 
+  * @param from Current vertex values.
+  * @param to Array the propagated values are added to.
+  * @return Total value held by vertices without out-bound edges.
+  */
+  private double propagateQuantized(double[] from, double[] to)
+  {
+    double dangling = 0;
+    int n = offsets.length - 1;
+    NeighborIterator it = getNeighborIterator();
 
-      /* Initialize the number of edges */
-      numEdges = 0;
-      for(int i=0; i<graph.length; i++)
+    for(int j = 0; j < n; j++)
+    {
+      if(offsets[j] != offsets[j+1])
       {
-        if(graph[i] != null)
+        // Fold the row scale into the propagated value
+        double val = from[j] * rowScale[j];
+        it.reset(j);
+
+        if(quantized8 != null)
         {
-          numEdges += graph[i].length;
+          while(it.hasNext())
+          {
+            int t = it.next();
+            to[t] += val * (quantized8[it.edge()] & 0xFF);
+          }
         }
-      }//end: for(i)
+        else
+        {
+          while(it.hasNext())
+          {
+            int t = it.next();
+            to[t] += val * quantized16[it.edge()];
+          }
+        }
+      }
+      else
+      {
+        // No out-bound edges
+        dangling += from[j];
+      }
+    }//end: for(j)
 
-    }//end: try {}
-    catch (ClassNotFoundException e)
+    return dangling;
+  }//end: propagateQuantized(double[], double[])
+
+ /**
+  * Pushes vertex values forward using the graph's transition probabilities.
+  * 
+  * @param from Current vertex values.
+  * @param to Array the propagated values are added to.
+  * @return Total value held by vertices without out-bound edges.
+  */
+  protected double propagate(double[] from, double[] to)
+  {
+    SharedPool p = SharedPool.enter();
+    if(p != null)
     {
-      System.err.println("Problem converting to an integer array: " + filename);
-      e.printStackTrace();
+      try
+      {
+        return getPullGraph().propagate(p.threads, from, to);
+      }
+      finally
+      {
+        p.leave();
+      }
     }
-    catch (FileNotFoundException e)
+    if(rowScale != null)
     {
-      System.err.println("File not found: " + filename);
-      e.printStackTrace();
+      return propagateQuantized(from, to);
     }
-    catch (IOException e)
+    if(weights == null && mappedWeights != null)
     {
-      System.err.println("Problem reading from file: " + filename);
-      e.printStackTrace();
+      // Mapped transition probabilities (targets are mapped or compressed)
+      return (packedTargets != null) ? propagateCompressed(from, to, null, mappedWeights)
+                                     : propagateMapped(from, to, null, mappedWeights);
     }
-  }//end: WikiGraph(String)
+    return propagate(from, to, weights);
+  }//end: propagate(double[], double[])
 
-  public WikiGraph(int[][] graph2, float[][] graphtrans)
+ /**
+  * Pushes single-precision vertex values forward using the graph's transition probabilities.
+  * <p>
+  * Used by the single-precision solvers, and always runs on the calling thread.
+  * The value held by vertices without out-bound edges is summed with Kahan compensation,
+  * so it keeps double precision even though the vectors do not.
+  * 
+  * @param from Current vertex values.
+  * @param to Array the propagated values are added to.
+  * @return Total value held by vertices without out-bound edges.
+  */
+  public double propagate(float[] from, float[] to)
   {
-    graph = new int[graph2.length][];
-    tProb = new float[graphtrans.length][];
-    
-    for(int i = 0; i < graph.length; i++)
+    double dangling = 0, error = 0;
+    int n = offsets.length - 1;
+    boolean direct = (targets != null && rowScale == null);
+    NeighborIterator it = direct ? null : getNeighborIterator();
+
+    for(int j = 0; j < n; j++)
     {
-      if(graph2[i] != null)
+      int start = offsets[j];
+      int end = offsets[j+1];
+
+      if(start == end)
+      {
+        // No out-bound edges
+        double y = from[j] - error;
+        double t = dangling + y;
+        error = (t - dangling) - y;
+        dangling = t;
+      }
+      else if(direct && weights == null)
       {
-        graph[i] = new int[graph2[i].length];
-        tProb[i] = new float[graph2[i].length];
-        
-        for(int j = 0; j < graph2[i].length; j++)
+        // Uniform transitions: split the value over the out-bound edges
+        float val = from[j] / (end - start);
+        for(int k = start; k < end; k++)
         {
-          graph[i][j] = graph2[i][j];
-        }//end: for(j)
-        
-        for(int j = 0; j < graphtrans[i].length; j++)
+          to[targets[k]] += val;
+        }//end: for(k)
+      }
+      else if(direct)
+      {
+        // Valid transition array
+        float val = from[j];
+        for(int k = start; k < end; k++)
         {
-          tProb[i][j] = graphtrans[i][j];
-        }//end: for(j)
+          to[targets[k]] += val * weights[k];
+        }//end: for(k)
       }
       else
       {
-        graph[i] = null;
-        tProb[i] = null;
-      }//end: else
-    }//end: for(i)
-  }//end: WikiGraph(int[][], float[][])
+        // Compressed or quantized graph
+        float val = from[j];
+        it.reset(j);
+        while(it.hasNext())
+        {
+          int t = it.next();
+          to[t] += val * (float) getTransition(j, it.edge());
+        }
+      }
+    }//end: for(j)
 
-/**
-  * Get the outbound vertices for a given vertex.
+    return dangling;
+  }//end: propagate(float[], float[])
+
+ /**
+  * Pushes a block of <i>k</i> value vectors forward in one sweep of the graph.
   * <p>
-  * Returns null if there are no outbound vertices.
-  * 
-  * @param v Vertex number.
-  * @return Integer array of outbound vertices.
+  * The block is stored vertex by vertex: the value of vector <i>c</i> at vertex <i>v</i>
+  * is held at <code>from[v*k + c]</code>.  Each edge is read once for all <i>k</i> vectors,
+  * and each vector gets exactly the values {@link #propagate(double[], double[])} would give it.
+  *
+  * @param from Current vertex values of the block.
+  * @param to Array the propagated values are added to.
+  * @param k Number of vectors in the block.
+  * @param dangling Array set to the total value held by vertices without out-bound edges, for each vector.
   */
-  public int[] getOutboundLinks(int v) {
-    if(v > -1 && v < graph.length)
+  protected void propagateBlock(double[] from, double[] to, int k, double[] dangling)
+  {
+    Arrays.fill(dangling, 0, k, 0.0);
+    int n = offsets.length - 1;
+
+    SharedPool p = SharedPool.enter();
+    if(p != null)
     {
-      return graph[v];
+      try
+      {
+        getPullGraph().propagateBlock(p.threads, from, to, k);
+      }
+      finally
+      {
+        p.leave();
+      }
+      for(int j = 0; j < n; j++)
+      {
+        if(offsets[j] == offsets[j+1])
+        {
+          for(int c = 0; c < k; c++)
+          {
+            dangling[c] += from[j*k + c];
+          }
+        }
+      }//end: for(j)
+      return;
     }
-    else
+
+    double[] val = new double[k];
+    NeighborIterator it = getNeighborIterator();
+
+    for(int j = 0; j < n; j++)
     {
-      return null;
-    }
-  }//end: getOutbountLinks(int)
+      int degree = offsets[j+1] - offsets[j];
+      int row = j * k;
+
+      if(degree == 0)
+      {
+        // No out-bound edges
+        for(int c = 0; c < k; c++)
+        {
+          dangling[c] += from[row + c];
+        }
+        continue;
+      }
+
+      it.reset(j);
+      if(rowScale != null)
+      {
+        // Fold the row scale into the propagated values
+        for(int c = 0; c < k; c++)
+        {
+          val[c] = from[row + c] * rowScale[j];
+        }
+        while(it.hasNext())
+        {
+          int t = it.next() * k;
+          int code = (quantized8 != null) ? (quantized8[it.edge()] & 0xFF) : quantized16[it.edge()];
+          for(int c = 0; c < k; c++)
+          {
+            to[t + c] += val[c] * code;
+          }
+        }//end: while(it)
+      }
+      else if(isUniform)
+      {
+        // Uniform transitions: split the values over the out-bound edges
+        for(int c = 0; c < k; c++)
+        {
+          val[c] = from[row + c] / degree;
+        }
+        while(it.hasNext())
+        {
+          int t = it.next() * k;
+          for(int c = 0; c < k; c++)
+          {
+            to[t + c] += val[c];
+          }
+        }//end: while(it)
+      }
+      else
+      {
+        // Valid transition array
+        while(it.hasNext())
+        {
+          int t = it.next() * k;
+          float w = (weights != null) ? weights[it.edge()] : mappedWeights.getFloat(it.edge());
+          for(int c = 0; c < k; c++)
+          {
+            to[t + c] += from[row + c] * w;
+          }
+        }//end: while(it)
+      }
+    }//end: for(j)
+  }//end: propagateBlock(double[], double[], int, double[])
 
  /**
-  * Get the outbound transition probabilities for a given vertex.
+  * Runs work over every graph vertex, on several threads if {@link #setThreads(int)} was given more than one.
   * <p>
-  * Returns null if there are no outbound vertices.
+  * The vertices are split into fixed ranges, and the range results are added in the same
+  * order every time, so the sum does not depend on the number of threads.
   * 
-  * @param v Vertex number.
-  * @return Float array of outbound transition probabilities.
+  * @param body Work for each range of vertices.
+  * @return Sum of the range results.
   */
-  public float[] getOutboundTransitions(int v)
+  protected double forEachRange(VertexRange body)
   {
-    if(v > -1 && v < graph.length)
+    SharedPool p = SharedPool.enter();
+    if(p == null)
     {
-      return tProb[v];
+      return body.run(0, getNumVertices());
     }
-    else
+    try
     {
-      return null;
+      return getPullGraph().forEachRange(p.threads, body);
     }
-  }//end: getOutboundTransitions(int)
+    finally
+    {
+      p.leave();
+    }
+  }//end: forEachRange(VertexRange)
 
-  public void setOutboundTransitions(int fromVertex, float[] vals)
+ /**
+  * Runs work over every graph vertex like {@link #forEachRange(VertexRange)}, but takes the largest range result.
+  * 
+  * @param body Work for each range of vertices.
+  * @return Largest range result.
+  */
+  protected double forEachRangeMax(VertexRange body)
   {
-    if(vals.length != tProb[fromVertex].length)
+    SharedPool p = SharedPool.enter();
+    if(p == null)
     {
-      System.err.println("Invalid transition manipulation. "
-                         + "Vertex:" + fromVertex);
+      return body.run(0, getNumVertices());
     }
-    else
+    try
+    {
+      return getPullGraph().forEachRangeMax(p.threads, body);
+    }
+    finally
+    {
+      p.leave();
+    }
+  }//end: forEachRangeMax(VertexRange)
+
+ /**
+  * Gets the in-bound form of the graph, building it if needed.
+  * 
+  * @return Transposed graph.
+  */
+  private synchronized PullGraph getPullGraph()
+  {
+    if(pullGraph == null)
     {
-      for(int i=0; i<vals.length; i++)
+      if(rowScale != null)
       {
-        tProb[fromVertex][i] = vals[i];      
+        // Keep the codes, so the transpose stays as small as the quantized graph
+        pullGraph = new PullGraph(offsets, getTargetArray(), quantized8, quantized16, rowScale);
+      }
+      else
+      {
+        float[] w = isUniform ? null : getWeightArray();
+        pullGraph = new PullGraph(offsets, getTargetArray(), w);
       }
     }
-  }//end: setOutboundTransitions(int, float[])
+    return pullGraph;
+  }//end: getPullGraph()
   
- /**
+/**
   * Gets the number of edges in the graph.
   * 
   * @return Number of edges.
@@ -286,7 +1818,7 @@ public class WikiGraph implements Serializable
   */
   public int getNumVertices()
   {
-    return graph.length;
+    return offsets.length - 1;
   }
 
  /**
@@ -306,6 +1838,10 @@ public class WikiGraph implements Serializable
    */
   public void makeUndirected()
   {
+    pullGraph = null;
+    contentHash = 0;
+    int[][] graph = getLinkArrays();
+
     /* For each vertex in the graph */
     for(int i = 0; i < graph.length; i++)
     {
@@ -344,19 +1880,70 @@ public class WikiGraph implements Serializable
       }//end: for(j)
     }//end: for(i)
 
-    /* Update transition probabilities based on new graph */
-    for(int i = 0; i < graph.length; i++)
+    /* New graph has uniform transition probabilities */
+    setGraph(graph, null);
+    isDirected = false;
+  }//end: makeUndirected()
+
+ /**
+  * Creates a copy of the graph with the vertices renumbered.
+  * <p>
+  * Vertex <i>v</i> of this graph becomes vertex <code>perm.getNewVertex(v)</code> of the new graph.
+  * Out-bound links keep their transition probabilities and are sorted by the new vertex numbers.
+  * The new graph is neither compressed nor quantized.
+  *
+  * @param perm Vertex renumbering.
+  * @return Renumbered graph.
+  */
+  public WikiGraph permute(VertexPermutation perm)
+  {
+    int n = getNumVertices();
+    if(perm.size() != n)
+    {
+      throw new IllegalArgumentException("Permutation size " + perm.size() + " does not match graph size " + n);
+    }
+
+    int[] t = getTargetArray();
+    float[] w = isUniform ? null : getWeightArray();
+
+    int[][] graph = new int[n][];
+    float[][] tProb = isUniform ? null : new float[n][];
+    for(int i = 0; i < n; i++)
     {
-      tProb[i] = new float[graph[i].length];
+      int old = perm.getOldVertex(i);
+      int deg = getOutDegree(old);
+      if(deg == 0)
+      {
+        continue;
+      }
 
-      for(int j = 0; j < graph[i].length; j++)
+      /* Sort (new target, edge) pairs packed into longs */
+      long[] row = new long[deg];
+      for(int k = 0; k < deg; k++)
       {
-        tProb[i][j] = (float) 1.0 / tProb[i].length;
-      }//end: for(j)
+        row[k] = ((long) perm.getNewVertex(t[offsets[old] + k]) << 32) | k;
+      }
+      Arrays.sort(row);
+
+      graph[i] = new int[deg];
+      if(tProb != null)
+      {
+        tProb[i] = new float[deg];
+      }
+      for(int k = 0; k < deg; k++)
+      {
+        graph[i][k] = (int) (row[k] >>> 32);
+        if(tProb != null)
+        {
+          tProb[i][k] = w[offsets[old] + (int) row[k]];
+        }
+      }//end: for(k)
     }//end: for(i)
 
-    isDirected = false;
-  }//end: makeUndirected()
+    WikiGraph wg = new WikiGraph(graph, tProb);
+    wg.isDirected = isDirected;
+    return wg;
+  }//end: permute(VertexPermutation)
 
   /** 
    * Returns whether or not the graph has been specifically set to be undirected or not.
@@ -372,14 +1959,7 @@ public class WikiGraph implements Serializable
   
   public void setEdgeCount()
   {
-    numEdges = 0;
-    for(int i=0; i<graph.length; i++)
-    {
-      for(int j=0; graph[i] != null && j < graph[i].length; j++)
-      {
-        numEdges++;
-      }//end: for(j)
-    }//end: for(i)
+    numEdges = offsets[offsets.length - 1];
   }//end: setEdgeCount()
 
   /**
@@ -392,11 +1972,51 @@ public class WikiGraph implements Serializable
    */
   private void writeObject(ObjectOutputStream out) throws IOException
   {
-    out.writeObject(graph);
-    out.writeObject(tProb);	
+    out.writeObject(getLinkArrays());
+    out.writeObject(getTransitionArrays());
     out.writeInt(numEdges);	
   }//end: writeObject(ObjectOutputStream)
 
+  /**
+   * Gets a 64-bit hash of the graph's links and transition probabilities.
+   * <p>
+   * Graphs with the same links and probabilities have the same hash, however they are
+   * stored (compressed, memory-mapped or read from a <i>.wgp file</i>).  The hash is
+   * computed once and kept until the graph is changed.
+   * 
+   * @return Content hash.
+   */
+  public long getContentHash()
+  {
+    long h = contentHash;
+    if(h != 0)
+    {
+      return h;
+    }
+
+    // FNV-1a over 64-bit words, followed by a final mix
+    int n = getNumVertices();
+    h = 0xCBF29CE484222325L;
+    h = (h ^ n) * 0x100000001B3L;
+    NeighborIterator it = getNeighborIterator();
+    for(int v = 0; v < n; v++)
+    {
+      h = (h ^ getOutDegree(v)) * 0x100000001B3L;
+      it.reset(v);
+      while(it.hasNext())
+      {
+        h = (h ^ it.next()) * 0x100000001B3L;
+        h = (h ^ Double.doubleToLongBits(getTransition(v, it.edge()))) * 0x100000001B3L;
+      }
+    }//end: for(v)
+    h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+
+    // Zero marks a hash that has not been computed
+    contentHash = (h == 0) ? 1 : h;
+    return contentHash;
+  }//end: getContentHash()
+
   /**
    * Reads the object from the given {@link ObjectInputStream}.
    * <p>
@@ -408,8 +2028,9 @@ public class WikiGraph implements Serializable
    */
   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
   {
-    graph = (int [][]) in.readObject();
-    tProb = (float [][]) in.readObject();
+    int[][] graph = (int [][]) in.readObject();
+    float[][] tProb = (float [][]) in.readObject();
+    setGraph(graph, tProb);
     numEdges = in.readInt();
   }//end: readObject(ObjectInputStream)
 }
\ No newline at end of file
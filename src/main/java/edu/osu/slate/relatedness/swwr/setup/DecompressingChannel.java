@@ -0,0 +1,334 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Channel over a compressed dump file, decompressed on its own thread.
+ * <p>
+ * The decompression thread fills the buffers of a fixed ring and hands them to
+ * the reading thread, which hands them back once they are parsed.  Inflating and
+ * parsing overlap, and at most {@link #NUM_BUFFERS} buffers of data are held.
+ * <p>
+ * The JDK has no bzip2 decoder, so <code>.bz2</code> files are decompressed by
+ * an external <code>bzip2 -dc</code> process (any command with the same options,
+ * such as <code>lbzip2</code>, can be set with the <code>swwr.bzip2</code> system property).
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class DecompressingChannel implements ReadableByteChannel
+{
+  /* Number of buffers in the ring */
+  public static final int NUM_BUFFERS = 8;
+
+  /* Size of each buffer */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /* Command used to decompress .bz2 files */
+  private static final String BZIP2_COMMAND = System.getProperty("swwr.bzip2", "bzip2");
+
+  /**
+   * Buffer of the ring.
+   */
+  private static class Block
+  {
+    final byte[] data;
+    int length;
+    int pos;
+
+    Block(int size)
+    {
+      data = new byte[size];
+    }
+  }//end: Block
+
+  /* Marks the end of the decompressed data */
+  private static final Block END = new Block(0);
+
+  /* Decompressed input */
+  private final InputStream in;
+
+  /* Empty buffers, waiting to be filled */
+  private final BlockingQueue<Block> empty = new ArrayBlockingQueue<Block>(NUM_BUFFERS);
+
+  /* Filled buffers, waiting to be parsed */
+  private final BlockingQueue<Block> filled = new ArrayBlockingQueue<Block>(NUM_BUFFERS + 1);
+
+  /* Decompression thread */
+  private final Thread inflater;
+
+  /* Problem found by the decompression thread */
+  private volatile IOException error;
+
+  /* Buffer being read */
+  private Block current;
+
+  /* Whether the end of the data has been reached */
+  private boolean ended;
+
+  /* Whether the channel has been closed */
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   * <p>
+   * Starts the decompression thread.
+   *
+   * @param in Decompressing input stream.
+   */
+  public DecompressingChannel(InputStream in)
+  {
+    this.in = in;
+    for(int i = 0; i < NUM_BUFFERS; i++)
+    {
+      empty.add(new Block(BUFFER_SIZE));
+    }
+
+    inflater = new Thread(new Runnable() {
+      public void run()
+      {
+        inflate();
+      }
+    }, "dump-decompressor");
+    inflater.setDaemon(true);
+    inflater.start();
+  }//end: DecompressingChannel(InputStream)
+
+  /**
+   * Opens a gzip compressed file.
+   *
+   * @param filename Name of the .gz file.
+   * @return Channel of the decompressed data.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static DecompressingChannel gzip(String filename) throws IOException
+  {
+    return new DecompressingChannel(new GZIPInputStream(new FileInputStream(filename), 1 << 16));
+  }
+
+  /**
+   * Opens a bzip2 compressed file, using an external bzip2 process.
+   *
+   * @param filename Name of the .bz2 file.
+   * @return Channel of the decompressed data.
+   * @throws IOException If the file is missing or the process cannot be started.
+   */
+  public static DecompressingChannel bzip2(String filename) throws IOException
+  {
+    if(!new File(filename).isFile())
+    {
+      throw new FileNotFoundException(filename);
+    }
+
+    ProcessBuilder pb = new ProcessBuilder(BZIP2_COMMAND, "-dc", filename);
+    pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+    return new DecompressingChannel(new ProcessInputStream(pb.start()));
+  }//end: bzip2(String)
+
+  /**
+   * Fills the buffers of the ring until the end of the input.
+   * <p>
+   * Runs on the decompression thread.
+   */
+  private void inflate()
+  {
+    try
+    {
+      while(true)
+      {
+        Block b = empty.take();
+        b.length = 0;
+        b.pos = 0;
+        int n = 0;
+        while(b.length < b.data.length && (n = in.read(b.data, b.length, b.data.length - b.length)) >= 0)
+        {
+          b.length += n;
+        }
+
+        if(b.length > 0)
+        {
+          filled.put(b);
+        }
+        if(n < 0)
+        {
+          break;
+        }
+      }//end: while(true)
+    }
+    catch(InterruptedException e)
+    {
+      // Channel was closed
+      return;
+    }
+    catch(IOException e)
+    {
+      if(!closed)
+      {
+        error = e;
+      }
+    }
+
+    try
+    {
+      filled.put(END);
+    }
+    catch(InterruptedException e)
+    {
+      // Channel was closed
+    }
+  }//end: inflate()
+
+  /**
+   * Reads decompressed data.
+   *
+   * @param dst Buffer to read into.
+   * @return Number of bytes read, or -1 at the end of the data.
+   * @throws IOException If the data could not be decompressed.
+   */
+  public int read(ByteBuffer dst) throws IOException
+  {
+    if(closed)
+    {
+      throw new IOException("Channel is closed");
+    }
+
+    if(current == null || current.pos == current.length)
+    {
+      if(ended)
+      {
+        return -1;
+      }
+
+      if(current != null)
+      {
+        empty.add(current);
+        current = null;
+      }
+
+      Block b;
+      try
+      {
+        b = filled.take();
+      }
+      catch(InterruptedException e)
+      {
+        throw new InterruptedIOException("Interrupted while reading dump");
+      }
+
+      if(b == END)
+      {
+        ended = true;
+        if(error != null)
+        {
+          throw error;
+        }
+        return -1;
+      }
+      current = b;
+    }//end: if(current)
+
+    int n = Math.min(dst.remaining(), current.length - current.pos);
+    dst.put(current.data, current.pos, n);
+    current.pos += n;
+    return n;
+  }//end: read(ByteBuffer)
+
+  public boolean isOpen()
+  {
+    return !closed;
+  }
+
+  /**
+   * Stops the decompression thread and closes the compressed input.
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException
+  {
+    if(!closed)
+    {
+      closed = true;
+      inflater.interrupt();
+      in.close();
+    }
+  }//end: close()
+
+  /**
+   * Output of an external decompression process.
+   * <p>
+   * A process that fails is reported as an error at the end of its output.
+   */
+  private static class ProcessInputStream extends FilterInputStream
+  {
+    private final Process process;
+
+    ProcessInputStream(Process process)
+    {
+      super(process.getInputStream());
+      this.process = process;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      int n = super.read(b, off, len);
+      if(n < 0)
+      {
+        checkExit();
+      }
+      return n;
+    }
+
+    public int read() throws IOException
+    {
+      int c = super.read();
+      if(c < 0)
+      {
+        checkExit();
+      }
+      return c;
+    }
+
+    /* Throws an exception if the process failed */
+    private void checkExit() throws IOException
+    {
+      try
+      {
+        int status = process.waitFor();
+        if(status != 0)
+        {
+          throw new IOException("Decompression process exited with status " + status);
+        }
+      }
+      catch(InterruptedException e)
+      {
+        throw new InterruptedIOException("Interrupted while waiting for decompression process");
+      }
+    }//end: checkExit()
+
+    public void close() throws IOException
+    {
+      process.destroy();
+      super.close();
+    }
+  }//end: ProcessInputStream
+}//end: DecompressingChannel
@@ -0,0 +1,107 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable array of primitive integers.
+ * <p>
+ * Used by the handlers of a {@link ParallelDumpReader} to collect the values
+ * of their chunk without boxing.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class IntArrayBuffer
+{
+  /* Values */
+  private int[] values = new int[1024];
+
+  /* Number of values */
+  private int size;
+
+  /**
+   * Adds a value to the end of the buffer.
+   *
+   * @param val Value to add.
+   */
+  public void add(int val)
+  {
+    if(size == values.length)
+    {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = val;
+  }//end: add(int)
+
+  /**
+   * Gets a value.
+   *
+   * @param i Position of the value.
+   * @return Value at the position.
+   */
+  public int get(int i)
+  {
+    return values[i];
+  }
+
+  /**
+   * Gets the number of values.
+   *
+   * @return Number of values in the buffer.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Copies the values into an array.
+   *
+   * @param dest Destination array.
+   * @param pos Starting position in the destination array.
+   */
+  public void copyTo(int[] dest, int pos)
+  {
+    System.arraycopy(values, 0, dest, pos, size);
+  }
+
+  /**
+   * Joins a list of buffers, keeping the order of the list.
+   *
+   * @param buffers Buffers to join.
+   * @return Array of all values.
+   */
+  public static int[] concat(List<IntArrayBuffer> buffers)
+  {
+    int total = 0;
+    for(IntArrayBuffer b : buffers)
+    {
+      total += b.size;
+    }
+
+    int[] all = new int[total];
+    int pos = 0;
+    for(IntArrayBuffer b : buffers)
+    {
+      b.copyTo(all, pos);
+      pos += b.size;
+    }
+    return all;
+  }//end: concat(List)
+}//end: IntArrayBuffer
@@ -0,0 +1,107 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.util.*;
+
+import edu.osu.slate.relatedness.swwr.data.TitleID;
+
+/**
+ * Collects the (title, ID) pairs of the pages in one namespace of page.sql.
+ * <p>
+ * One collector is used for each chunk of a {@link ParallelDumpReader}, and
+ * {@link #merge(List)} joins them in file order.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class PageTitleCollector implements SQLTupleHandler
+{
+  /* Namespace of the pages to collect */
+  private final int namespace;
+
+  /* Whether redirect pages are skipped */
+  private final boolean skipRedirects;
+
+  /* Pairs found, in file order */
+  private final List<TitleID> titles = new ArrayList<TitleID>();
+
+  /**
+   * Constructor.
+   *
+   * @param namespace Namespace of the pages to collect.
+   * @param skipRedirects True to skip redirect pages.
+   */
+  public PageTitleCollector(int namespace, boolean skipRedirects)
+  {
+    this.namespace = namespace;
+    this.skipRedirects = skipRedirects;
+  }
+
+  /**
+   * Creates a factory for collectors of the same namespace.
+   *
+   * @param namespace Namespace of the pages to collect.
+   * @param skipRedirects True to skip redirect pages.
+   * @return Factory for the collectors.
+   */
+  public static SQLHandlerFactory<PageTitleCollector> factory(final int namespace, final boolean skipRedirects)
+  {
+    return new SQLHandlerFactory<PageTitleCollector>() {
+      public PageTitleCollector newHandler()
+      {
+        return new PageTitleCollector(namespace, skipRedirects);
+      }
+    };
+  }//end: factory(int, boolean)
+
+  public void tuple(SQLTuple t)
+  {
+    // Check if the information is in the correct format
+    // (page_id, page_namespace, page_title, page_restrictions, page_counter, page_is_redirect, ...)
+    // and add the ID if it's in the needed namespace
+    if(t.size() >= 11 && t.isInt(1, namespace) && (!skipRedirects || t.isInt(5, 0)))
+    {
+      titles.add(new TitleID(t.getString(2), t.getInt(0)));
+    }
+  }//end: tuple(SQLTuple)
+
+  /**
+   * Joins the pairs of several collectors, keeping the order of the list.
+   *
+   * @param collectors Collectors, in file order.
+   * @return Array of all (title, ID) pairs.
+   */
+  public static TitleID[] merge(List<PageTitleCollector> collectors)
+  {
+    int total = 0;
+    for(PageTitleCollector c : collectors)
+    {
+      total += c.titles.size();
+    }
+
+    TitleID[] tids = new TitleID[total];
+    int pos = 0;
+    for(PageTitleCollector c : collectors)
+    {
+      for(TitleID tid : c.titles)
+      {
+        tids[pos++] = tid;
+      }
+    }
+    return tids;
+  }//end: merge(List)
+}//end: PageTitleCollector
@@ -0,0 +1,310 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads a MySQL dump file on several threads.
+ * <p>
+ * The file is split into chunks that start at the beginning of an <code>INSERT INTO</code>
+ * statement, so no statement is split between chunks.  The chunks are parsed by
+ * {@link SQLDumpReader}s in a fork-join pool, each with its own handler from a
+ * {@link SQLHandlerFactory}.
+ * <p>
+ * Compressed dumps cannot be split, so they are read as a single chunk,
+ * with decompression and parsing on separate threads.
+ * <p>
+ * The handlers are returned in file order.  A program that merges the handler
+ * results in that order gets the same result as a single {@link SQLDumpReader}
+ * reading the whole file, no matter how many threads are used.
+ * <p>
+ * Usage:
+ * <pre>
+ * ParallelDumpReader in = new ParallelDumpReader("enwiki-20080103-page.sql", Configuration.threads);
+ * List&lt;IDHandler&gt; chunks = in.read(new SQLHandlerFactory&lt;IDHandler&gt;() {
+ *   public IDHandler newHandler()
+ *   {
+ *     return new IDHandler();
+ *   }
+ * });
+ * for(IDHandler h : chunks) { ... }
+ * </pre>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class ParallelDumpReader
+{
+  /* Number of chunks per thread (smaller chunks balance the load between threads) */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /* Start of a line holding tuples */
+  private static final byte[] STATEMENT = {'\n','I','N','S','E','R','T',' ','I','N','T','O'};
+
+  /* Name of the dump file */
+  private final String filename;
+
+  /* Number of threads */
+  private final int threads;
+
+  /**
+   * Constructor.
+   *
+   * @param filename Name of the dump file (or of its uncompressed version, see {@link SQLDumpReader#findDump(String)}).
+   * @param threads Number of threads to read with.
+   */
+  public ParallelDumpReader(String filename, int threads)
+  {
+    this.filename = filename;
+    this.threads = Math.max(1, threads);
+  }//end: ParallelDumpReader(String, int)
+
+  /**
+   * Reads every tuple of the dump.
+   *
+   * @param factory Creates one handler for each chunk.
+   * @return Handlers, in the order of their chunks in the file.
+   * @throws IOException If the file cannot be read, or a statement is malformed.
+   */
+  public <T extends SQLTupleHandler> List<T> read(SQLHandlerFactory<T> factory) throws IOException
+  {
+    String name = SQLDumpReader.findDump(filename);
+    if(name == null)
+    {
+      throw new FileNotFoundException(filename);
+    }
+
+    if(SQLDumpReader.isCompressed(name))
+    {
+      T handler = factory.newHandler();
+      SQLDumpReader in = SQLDumpReader.open(name);
+      try
+      {
+        in.read(handler);
+      }
+      finally
+      {
+        in.close();
+      }
+      return Collections.singletonList(handler);
+    }
+
+    final FileChannel channel = new FileInputStream(name).getChannel();
+    try
+    {
+      final long[] bounds = split(channel, threads * CHUNKS_PER_THREAD);
+      final List<T> handlers = new ArrayList<T>();
+      for(int c = 0; c < bounds.length - 1; c++)
+      {
+        handlers.add(factory.newHandler());
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try
+      {
+        List<ForkJoinTask<Long>> tasks = new ArrayList<ForkJoinTask<Long>>();
+        for(int c = 0; c < handlers.size(); c++)
+        {
+          final int chunk = c;
+          tasks.add(pool.submit(new Callable<Long>() {
+            public Long call() throws IOException
+            {
+              SQLDumpReader in = new SQLDumpReader(
+                  new RangeChannel(channel, bounds[chunk], bounds[chunk+1]));
+              return in.read(handlers.get(chunk));
+            }
+          }));
+        }//end: for(c)
+
+        for(ForkJoinTask<Long> task : tasks)
+        {
+          join(task);
+        }
+      }
+      finally
+      {
+        pool.shutdownNow();
+      }
+      return handlers;
+    }
+    finally
+    {
+      channel.close();
+    }
+  }//end: read(SQLHandlerFactory)
+
+  /**
+   * Waits for a chunk to finish, passing on any exception it threw.
+   *
+   * @param task Chunk task.
+   * @throws IOException If the chunk could not be read.
+   */
+  private static void join(ForkJoinTask<Long> task) throws IOException
+  {
+    try
+    {
+      task.get();
+    }
+    catch(InterruptedException e)
+    {
+      throw new InterruptedIOException("Interrupted while reading dump");
+    }
+    catch(ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if(cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if(cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }//end: join(ForkJoinTask)
+
+  /**
+   * Splits the file into chunks at the start of <code>INSERT INTO</code> lines.
+   * <p>
+   * Newlines inside strings are escaped in the dumps, so a line starting with
+   * <code>INSERT INTO</code> is always the start of a statement.
+   *
+   * @param channel File to split.
+   * @param numChunks Number of chunks wanted.
+   * @return Chunk boundaries: chunk c covers [bounds[c], bounds[c+1]).
+   * @throws IOException
+   */
+  static long[] split(FileChannel channel, int numChunks) throws IOException
+  {
+    long size = channel.size();
+    long[] bounds = new long[numChunks + 1];
+    int count = 1;
+    for(int c = 1; c < numChunks; c++)
+    {
+      long start = findStatement(channel, size * c / numChunks, size);
+      if(start > bounds[count-1] && start < size)
+      {
+        bounds[count++] = start;
+      }
+    }//end: for(c)
+    bounds[count++] = size;
+    return Arrays.copyOf(bounds, count);
+  }//end: split(FileChannel, int)
+
+  /**
+   * Finds the first <code>INSERT INTO</code> line starting after a position.
+   *
+   * @param channel File to search.
+   * @param from Position to search from.
+   * @param size Size of the file.
+   * @return Start of the line, or the file size if there is none.
+   * @throws IOException
+   */
+  private static long findStatement(FileChannel channel, long from, long size) throws IOException
+  {
+    ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    long pos = Math.max(0, from - 1);
+    int matched = 0;
+    while(pos < size)
+    {
+      buf.clear();
+      int n = channel.read(buf, pos);
+      if(n <= 0)
+      {
+        break;
+      }
+
+      for(int i = 0; i < n; i++)
+      {
+        byte b = buf.get(i);
+        if(b == STATEMENT[matched])
+        {
+          matched++;
+          if(matched == STATEMENT.length)
+          {
+            return pos + i + 1 - (STATEMENT.length - 1);
+          }
+        }
+        else
+        {
+          matched = (b == '\n') ? 1 : 0;
+        }
+      }//end: for(i)
+      pos += n;
+    }//end: while(pos)
+    return size;
+  }//end: findStatement(FileChannel, long, long)
+
+  /**
+   * Reads one range of a file.
+   * <p>
+   * Reads give their position explicitly, so several ranges of the same
+   * file channel can be read at the same time.
+   */
+  private static class RangeChannel implements ReadableByteChannel
+  {
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    RangeChannel(FileChannel channel, long start, long end)
+    {
+      this.channel = channel;
+      this.position = start;
+      this.end = end;
+    }
+
+    public int read(ByteBuffer dst) throws IOException
+    {
+      if(position >= end)
+      {
+        return -1;
+      }
+
+      int oldLimit = dst.limit();
+      dst.limit(dst.position() + (int) Math.min(dst.remaining(), end - position));
+      int n = channel.read(dst, position);
+      dst.limit(oldLimit);
+      if(n < 0)
+      {
+        return -1;
+      }
+      position += n;
+      return n;
+    }//end: read(ByteBuffer)
+
+    public boolean isOpen()
+    {
+      return channel.isOpen();
+    }
+
+    /* The shared file channel is closed by the reader */
+    public void close()
+    {
+    }
+  }//end: RangeChannel
+}//end: ParallelDumpReader
@@ -0,0 +1,435 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streaming reader for the tuples of a MySQL dump file (page.sql, pagelinks.sql, redirect.sql, ...).
+ * <p>
+ * The file is scanned a byte at a time.  Lines starting with <code>INSERT INTO</code> are split
+ * into tuples, and every tuple is passed to a {@link SQLTupleHandler} as a re-used {@link SQLTuple}.
+ * All other lines are skipped.
+ * <p>
+ * Quoted strings may contain commas, parentheses and MySQL escapes (<code>\'</code>, <code>\\</code>,
+ * <code>\n</code>, ...), which are decoded into the tuple.  No objects are created per tuple or field.
+ * <p>
+ * Dumps can be read as published, compressed with gzip (<code>.sql.gz</code>) or bzip2
+ * (<code>.sql.bz2</code>).  These are decompressed on a separate thread by a {@link DecompressingChannel}.
+ * <p>
+ * Usage:
+ * <pre>
+ * SQLDumpReader in = SQLDumpReader.open("enwiki-20080103-page.sql");
+ * in.read(new SQLTupleHandler() {
+ *   public void tuple(SQLTuple t)
+ *   {
+ *     int id = t.getInt(0);
+ *     ...
+ *   }
+ * });
+ * in.close();
+ * </pre>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class SQLDumpReader
+{
+  /* Extension of gzip compressed dumps */
+  public static final String GZIP_EXTENSION = ".gz";
+
+  /* Extension of bzip2 compressed dumps */
+  public static final String BZIP2_EXTENSION = ".bz2";
+
+  /* Size of the read buffer */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /* Start of the statements that hold tuples */
+  private static final byte[] INSERT = {'I','N','S','E','R','T',' ','I','N','T','O'};
+
+  /* Keyword preceding the tuples */
+  private static final byte[] VALUES = {'V','A','L','U','E','S'};
+
+  /* Channel being read */
+  private final ReadableByteChannel channel;
+
+  /* Read buffer */
+  private final ByteBuffer buffer;
+
+  /* Backing array of the read buffer */
+  private final byte[] bytes;
+
+  /* Position of the next byte in the buffer */
+  private int pos;
+
+  /* Number of valid bytes in the buffer */
+  private int limit;
+
+  /* Tuple re-used for each set of fields */
+  private final SQLTuple tuple = new SQLTuple();
+
+  /**
+   * Constructor.
+   *
+   * @param channel Channel to read the dump from.
+   */
+  public SQLDumpReader(ReadableByteChannel channel)
+  {
+    this.channel = channel;
+    this.bytes = new byte[BUFFER_SIZE];
+    this.buffer = ByteBuffer.wrap(bytes);
+  }//end: SQLDumpReader(ReadableByteChannel)
+
+  /**
+   * Opens a dump file for reading.
+   * <p>
+   * If the file is not found, its compressed versions (see {@link #findDump(String)}) are opened instead.
+   *
+   * @param filename Name of the dump file.
+   * @return Reader for the file.
+   * @throws FileNotFoundException If no version of the file is found.
+   * @throws IOException If a compressed file cannot be opened.
+   */
+  public static SQLDumpReader open(String filename) throws IOException
+  {
+    String name = findDump(filename);
+    if(name == null)
+    {
+      throw new FileNotFoundException(filename);
+    }
+
+    if(name.endsWith(GZIP_EXTENSION))
+    {
+      return new SQLDumpReader(DecompressingChannel.gzip(name));
+    }
+    else if(name.endsWith(BZIP2_EXTENSION))
+    {
+      return new SQLDumpReader(DecompressingChannel.bzip2(name));
+    }
+    return new SQLDumpReader(new FileInputStream(name).getChannel());
+  }//end: open(String)
+
+  /**
+   * Finds the version of a dump file on disk.
+   * <p>
+   * Checks for the file itself, then for the file with a <code>.gz</code>
+   * extension, then with a <code>.bz2</code> extension.
+   *
+   * @param filename Name of the (uncompressed) dump file.
+   * @return Name of the file found, or null if there is none.
+   */
+  public static String findDump(String filename)
+  {
+    String[] names = {filename, filename + GZIP_EXTENSION, filename + BZIP2_EXTENSION};
+    for(int i = 0; i < names.length; i++)
+    {
+      if(new File(names[i]).isFile())
+      {
+        return names[i];
+      }
+    }
+    return null;
+  }//end: findDump(String)
+
+  /**
+   * Returns whether a dump file is compressed.
+   *
+   * @param filename Name of the dump file.
+   * @return True for .gz and .bz2 files.
+   */
+  public static boolean isCompressed(String filename)
+  {
+    return filename.endsWith(GZIP_EXTENSION) || filename.endsWith(BZIP2_EXTENSION);
+  }
+
+  /**
+   * Closes the underlying channel.
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException
+  {
+    channel.close();
+  }
+
+  /**
+   * Reads the next byte.
+   *
+   * @return Byte value (0-255), or -1 at the end of the input.
+   * @throws IOException
+   */
+  private int next() throws IOException
+  {
+    if(pos == limit)
+    {
+      buffer.clear();
+      int n;
+      do
+      {
+        n = channel.read(buffer);
+      }while(n == 0);
+
+      if(n < 0)
+      {
+        return -1;
+      }
+      pos = 0;
+      limit = n;
+    }
+    return bytes[pos++] & 0xFF;
+  }//end: next()
+
+  /**
+   * Reads the next byte that is not white space.
+   *
+   * @return Byte value, or -1 at the end of the input.
+   * @throws IOException
+   */
+  private int nextNonSpace() throws IOException
+  {
+    int c = next();
+    while(c != -1 && c <= ' ')
+    {
+      c = next();
+    }
+    return c;
+  }//end: nextNonSpace()
+
+  /**
+   * Reads every tuple of the dump, passing each one to the handler.
+   *
+   * @param handler Receives the tuples.
+   * @return Number of tuples read.
+   * @throws IOException If the input cannot be read, or a statement is malformed.
+   */
+  public long read(SQLTupleHandler handler) throws IOException
+  {
+    long count = 0;
+    boolean lineStart = true;
+    int c = next();
+    while(c != -1)
+    {
+      if(lineStart && c == INSERT[0])
+      {
+        /* Match the rest of "INSERT INTO" */
+        int i = 1;
+        c = next();
+        while(i < INSERT.length && c == INSERT[i])
+        {
+          i++;
+          c = next();
+        }
+
+        if(i == INSERT.length)
+        {
+          skipToValues();
+          count += readTuples(handler);
+          c = next();
+          lineStart = false;
+          continue;
+        }
+      }//end: if(INSERT)
+
+      lineStart = (c == '\n');
+      c = next();
+    }//end: while(c)
+    return count;
+  }//end: read(SQLTupleHandler)
+
+  /**
+   * Skips the table name (and column list) of an <code>INSERT INTO</code> statement.
+   *
+   * @throws IOException If the VALUES keyword is missing.
+   */
+  private void skipToValues() throws IOException
+  {
+    boolean inName = false;
+    int matched = 0;
+    int c = next();
+    while(c != -1)
+    {
+      if(c == '`')
+      {
+        inName = !inName;
+        matched = 0;
+      }
+      else if(!inName && c == VALUES[matched])
+      {
+        matched++;
+        if(matched == VALUES.length)
+        {
+          return;
+        }
+      }
+      else
+      {
+        matched = (!inName && c == VALUES[0]) ? 1 : 0;
+      }
+      c = next();
+    }//end: while(c)
+    throw new IOException("INSERT statement without VALUES");
+  }//end: skipToValues()
+
+  /**
+   * Reads the tuples of one <code>INSERT INTO</code> statement, up to the closing semicolon.
+   *
+   * @param handler Receives the tuples.
+   * @return Number of tuples read.
+   * @throws IOException If the input cannot be read, or the statement is malformed.
+   */
+  private long readTuples(SQLTupleHandler handler) throws IOException
+  {
+    long count = 0;
+    int c = nextNonSpace();
+    while(c == '(')
+    {
+      readTuple();
+      handler.tuple(tuple);
+      count++;
+
+      c = nextNonSpace();
+      if(c == ',')
+      {
+        c = nextNonSpace();
+      }
+    }//end: while(c)
+
+    if(c != ';' && c != -1)
+    {
+      throw new IOException("Unexpected character after tuple: " + (char) c);
+    }
+    return count;
+  }//end: readTuples(SQLTupleHandler)
+
+  /**
+   * Reads the fields of one tuple into the re-used tuple object.
+   * <p>
+   * The opening parenthesis has already been read.
+   *
+   * @throws IOException If the input cannot be read, or the tuple is malformed.
+   */
+  private void readTuple() throws IOException
+  {
+    tuple.clear();
+
+    int c = nextNonSpace();
+    if(c == ')')
+    {
+      return;
+    }
+
+    while(true)
+    {
+      if(c == '\'')
+      {
+        tuple.startField(true);
+        readQuoted();
+        c = nextNonSpace();
+      }
+      else
+      {
+        tuple.startField(false);
+        while(c != ',' && c != ')' && c != -1)
+        {
+          tuple.append(c);
+          c = next();
+        }
+        tuple.trimField();
+      }
+
+      if(c == ')')
+      {
+        return;
+      }
+      else if(c != ',')
+      {
+        throw new IOException("Malformed tuple in INSERT statement");
+      }
+      c = nextNonSpace();
+    }//end: while(true)
+  }//end: readTuple()
+
+  /**
+   * Reads a quoted string into the current field, removing the escapes.
+   * <p>
+   * The opening quote has already been read.
+   *
+   * @throws IOException If the input ends inside the string.
+   */
+  private void readQuoted() throws IOException
+  {
+    while(true)
+    {
+      int c = next();
+      switch(c)
+      {
+        case -1:
+          throw new IOException("Unterminated string in INSERT statement");
+
+        case '\'':
+          // A doubled quote stands for a single quote
+          if(pos < limit || peekable())
+          {
+            if(bytes[pos] == '\'')
+            {
+              pos++;
+              tuple.append('\'');
+              break;
+            }
+          }
+          return;
+
+        case '\\':
+          c = next();
+          switch(c)
+          {
+            case -1:
+              throw new IOException("Unterminated string in INSERT statement");
+            case '0': tuple.append(0); break;
+            case 'b': tuple.append('\b'); break;
+            case 'n': tuple.append('\n'); break;
+            case 'r': tuple.append('\r'); break;
+            case 't': tuple.append('\t'); break;
+            case 'Z': tuple.append(26); break;
+            default: tuple.append(c); break;
+          }
+          break;
+
+        default:
+          tuple.append(c);
+          break;
+      }//end: switch(c)
+    }//end: while(true)
+  }//end: readQuoted()
+
+  /**
+   * Makes sure the next byte is in the buffer, without consuming it.
+   *
+   * @return False at the end of the input.
+   * @throws IOException
+   */
+  private boolean peekable() throws IOException
+  {
+    if(next() == -1)
+    {
+      return false;
+    }
+    pos--;
+    return true;
+  }//end: peekable()
+}//end: SQLDumpReader
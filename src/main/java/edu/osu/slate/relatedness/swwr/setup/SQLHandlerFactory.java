@@ -0,0 +1,35 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+/**
+ * Creates the per-chunk handlers used by a {@link ParallelDumpReader}.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public interface SQLHandlerFactory<T extends SQLTupleHandler>
+{
+  /**
+   * Creates a new handler for one chunk of the dump.
+   * <p>
+   * Each handler is only called from a single thread, so it needs no locking
+   * as long as it only changes its own state.
+   *
+   * @return New handler.
+   */
+  public T newHandler();
+}//end: SQLHandlerFactory
@@ -0,0 +1,229 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * One tuple of an SQL <code>INSERT INTO</code> statement.
+ * <p>
+ * The fields are held as raw bytes, with the escapes of quoted strings already removed.
+ * Values are only converted when asked for, so reading a tuple allocates nothing;
+ * {@link #getString(int)} creates a String for just the field requested.
+ * <p>
+ * A tuple is re-used by the {@link SQLDumpReader} for every tuple it reads.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public final class SQLTuple
+{
+  /* Character set of the dump files */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /* Field bytes, one field after the other */
+  private byte[] data = new byte[1024];
+
+  /* Number of bytes used in the data array */
+  private int length;
+
+  /* Start of each field in the data array */
+  private int[] start = new int[16];
+
+  /* End of each field in the data array */
+  private int[] end = new int[16];
+
+  /* Whether each field was a quoted string */
+  private boolean[] quoted = new boolean[16];
+
+  /* Number of fields */
+  private int size;
+
+  /**
+   * Clears the tuple for the next set of fields.
+   */
+  void clear()
+  {
+    length = 0;
+    size = 0;
+  }
+
+  /**
+   * Starts a new field.
+   *
+   * @param isQuoted Whether the field is a quoted string.
+   */
+  void startField(boolean isQuoted)
+  {
+    if(size == start.length)
+    {
+      start = Arrays.copyOf(start, size * 2);
+      end = Arrays.copyOf(end, size * 2);
+      quoted = Arrays.copyOf(quoted, size * 2);
+    }
+    start[size] = length;
+    end[size] = length;
+    quoted[size] = isQuoted;
+    size++;
+  }//end: startField(boolean)
+
+  /**
+   * Adds a byte to the current field.
+   *
+   * @param b Byte value.
+   */
+  void append(int b)
+  {
+    if(length == data.length)
+    {
+      data = Arrays.copyOf(data, length * 2);
+    }
+    data[length++] = (byte) b;
+    end[size-1] = length;
+  }//end: append(int)
+
+  /**
+   * Removes trailing white space from the current (unquoted) field.
+   */
+  void trimField()
+  {
+    while(end[size-1] > start[size-1] && data[end[size-1]-1] <= ' ')
+    {
+      end[size-1]--;
+    }
+    length = end[size-1];
+  }//end: trimField()
+
+  /**
+   * Gets the number of fields.
+   *
+   * @return Number of fields in the tuple.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns whether a field was a quoted string.
+   *
+   * @param f Field number (starting at 0).
+   * @return True for quoted strings.
+   */
+  public boolean isQuoted(int f)
+  {
+    return quoted[f];
+  }
+
+  /**
+   * Returns whether a field is the SQL <code>NULL</code> value.
+   *
+   * @param f Field number (starting at 0).
+   * @return True for <code>NULL</code>.
+   */
+  public boolean isNull(int f)
+  {
+    return !quoted[f] && end[f] - start[f] == 4 &&
+           data[start[f]] == 'N' && data[start[f]+1] == 'U' &&
+           data[start[f]+2] == 'L' && data[start[f]+3] == 'L';
+  }//end: isNull(int)
+
+  /**
+   * Gets a field as an integer.
+   *
+   * @param f Field number (starting at 0).
+   * @return Integer value.
+   * @throws NumberFormatException If the field is not an integer.
+   */
+  public int getInt(int f)
+  {
+    long val = getLong(f);
+    if(val < Integer.MIN_VALUE || val > Integer.MAX_VALUE)
+    {
+      throw new NumberFormatException("Integer out of range: " + getString(f));
+    }
+    return (int) val;
+  }//end: getInt(int)
+
+  /**
+   * Gets a field as a long integer.
+   *
+   * @param f Field number (starting at 0).
+   * @return Long value.
+   * @throws NumberFormatException If the field is not an integer.
+   */
+  public long getLong(int f)
+  {
+    int pos = start[f];
+    boolean negative = (pos < end[f] && data[pos] == '-');
+    if(negative)
+    {
+      pos++;
+    }
+
+    if(pos == end[f] || end[f] - pos > 19)
+    {
+      throw new NumberFormatException("Not an integer: " + getString(f));
+    }
+
+    long val = 0;
+    for(; pos < end[f]; pos++)
+    {
+      int digit = data[pos] - '0';
+      if(digit < 0 || digit > 9)
+      {
+        throw new NumberFormatException("Not an integer: " + getString(f));
+      }
+      val = val * 10 + digit;
+    }//end: for(pos)
+    return negative ? -val : val;
+  }//end: getLong(int)
+
+  /**
+   * Returns whether a field holds the given integer.
+   * <p>
+   * Fields that are not integers return false instead of throwing an exception.
+   *
+   * @param f Field number (starting at 0).
+   * @param val Integer value.
+   * @return True if the field is the integer value.
+   */
+  public boolean isInt(int f, int val)
+  {
+    try
+    {
+      return getInt(f) == val;
+    }
+    catch(NumberFormatException e)
+    {
+      return false;
+    }
+  }//end: isInt(int, int)
+
+  /**
+   * Gets a field as a String.
+   * <p>
+   * Quoted strings are returned without quotes and escapes.
+   *
+   * @param f Field number (starting at 0).
+   * @return String value.
+   */
+  public String getString(int f)
+  {
+    return new String(data, start[f], end[f] - start[f], UTF8);
+  }
+}//end: SQLTuple
@@ -0,0 +1,37 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup;
+
+import java.io.IOException;
+
+/**
+ * Receives the tuples read by a {@link SQLDumpReader}.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public interface SQLTupleHandler
+{
+  /**
+   * Called once for each tuple of an <code>INSERT INTO</code> statement.
+   * <p>
+   * The tuple is re-used for the next tuple, so values must be extracted before returning.
+   *
+   * @param t Current tuple.
+   * @throws IOException
+   */
+  public void tuple(SQLTuple t) throws IOException;
+}//end: SQLTupleHandler
@@ -16,12 +16,17 @@
 package edu.osu.slate.relatedness.swwr.setup.category;
 
 import java.io.*;
-import java.util.*;
+import java.util.List;
 
 import edu.osu.slate.relatedness.Configuration;
 import edu.osu.slate.relatedness.swwr.data.category.CategoryIDGraph;
 import edu.osu.slate.relatedness.swwr.data.category.CategoryTitleToIDTranslation;
 import edu.osu.slate.relatedness.swwr.data.category.IDToCategoryTitleTranslation;
+import edu.osu.slate.relatedness.swwr.setup.IntArrayBuffer;
+import edu.osu.slate.relatedness.swwr.setup.ParallelDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLHandlerFactory;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 /**
  * Program to create the category tree.
@@ -49,6 +54,40 @@ public class CreateCategoryGraph {
   
   /* Translates category IDs to category titles */
   private static IDToCategoryTitleTranslation ID2Cat;
+
+  /**
+   * Collects the (parent, child) category edges of one chunk of categorylinks.sql.
+   */
+  private static class CategoryLinkHandler implements SQLTupleHandler
+  {
+    private final IntArrayBuffer parents = new IntArrayBuffer();
+    private final IntArrayBuffer children = new IntArrayBuffer();
+
+    public void tuple(SQLTuple t)
+    {
+      // Check if the information is in the correct format
+      // (cl_from, cl_to, cl_sortkey, cl_timestamp, ...)
+      if(t.size() >= 4)
+      {
+        // Extract FROM Page ID and TO Category Title
+        int childID = t.getInt(0);
+        String categoryTitle = t.getString(1);
+
+        /* Add the edge to the category graph if:
+         *  -- CHILD Page ID is a valid category page ID
+         *  -- PARENT Page ID is a valid category page ID
+         */
+        boolean childIsCategory = ID2Cat.isLookupID(childID);
+        boolean parentIsCategory = Cat2ID.isLookupCategory(categoryTitle);
+        if(childIsCategory && parentIsCategory)
+        {
+          // Get the "TO" Category ID
+          parents.add(Cat2ID.getID(categoryTitle));
+          children.add(childID);
+        }//end: if()
+      }//end: if(t.size())
+    }
+  }//end: CategoryLinkHandler
   
   /**
    * Runs the program.
@@ -107,9 +146,6 @@ public class CreateCategoryGraph {
       System.err.println("Invalid root category: " + seed);
       System.exit(1);
     }
-    String str;
-    int tmp;
-
     //Seed the category graph
     CategoryIDGraph categoryGraph = new CategoryIDGraph(Cat2ID.getID(seed));
 
@@ -126,10 +162,24 @@ public class CreateCategoryGraph {
     * Add all edges to the category graph.
     */
     System.out.println("Adding Edges");
-    Scanner categoryLinks = null;
     try
     {
-      categoryLinks = new Scanner(new FileReader(catFileName));
+      ParallelDumpReader categoryLinks = new ParallelDumpReader(catFileName, Configuration.threads);
+      List<CategoryLinkHandler> chunks = categoryLinks.read(new SQLHandlerFactory<CategoryLinkHandler>() {
+        public CategoryLinkHandler newHandler()
+        {
+          return new CategoryLinkHandler();
+        }
+      });
+
+      // Add the edges in file order
+      for(CategoryLinkHandler h : chunks)
+      {
+        for(int k = 0; k < h.parents.size(); k++)
+        {
+          categoryGraph.addEdge(h.parents.get(k), h.children.get(k), ID2Cat);
+        }
+      }
     }
     catch(IOException e)
     {
@@ -137,71 +187,6 @@ public class CreateCategoryGraph {
       System.exit(1);
     }
     
-    str = categoryLinks.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = categoryLinks.nextLine();
-    }
-
-    tmp = 0;
-    while(tmp < 3 && str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\d\\),\\(");
-      for(int i = 0; i < arr.length;i ++)
-      {
-        //System.out.println(arr[i]);
-        String [] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 4)
-        {
-
-          // Extract FROM Page ID
-          String childPageID = info[0];
-
-          // Extract TO Category Title
-          int breakSpot = -1;
-          String categoryTitle = info[1];
-          for(int j=2; breakSpot < 0 && j<info.length; j++)
-          {
-            if(info[j-1].charAt(info[j-1].length()-1) == '\'' &&
-                info[j].charAt(0) == '\'')
-            {
-              breakSpot = j;
-            }
-            else
-            {
-              categoryTitle = categoryTitle + "," + info[j];
-            }
-          }//end: for(j)
-          categoryTitle = categoryTitle.substring(1, categoryTitle.length()-1);
-          
-          /* Add the edge to the category graph if:
-           *  -- CHILD Page ID is a valid category page ID
-           *  -- PARENT Page ID is a valid category page ID
-           */
-          boolean childIsCategory = ID2Cat.isLookupID(Integer.parseInt(childPageID));
-          boolean parentIsCategory = Cat2ID.isLookupCategory(categoryTitle);
-          if(childIsCategory && parentIsCategory)
-          {
-            // Get the "TO" Category ID
-            int parentID = Cat2ID.getID(categoryTitle);
-
-            // Get all "FROM" IDs
-            int childID = Integer.parseInt(childPageID);
-            
-            categoryGraph.addEdge(parentID, childID, ID2Cat);
-          }//end: if()
-        }//end: if(info.length)
-      }//end: for(i)
-      
-      str = categoryLinks.nextLine();
-    }//end: while()    
-    categoryLinks.close();
-    
     //Write Initial .cgraph file
     System.out.println("Writing .cgraph file.");
     outputFileName = Configuration.baseDir + "/" +
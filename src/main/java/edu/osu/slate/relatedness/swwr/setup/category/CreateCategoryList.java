@@ -16,13 +16,15 @@
 package edu.osu.slate.relatedness.swwr.setup.category;
 
 import java.io.*;
-import java.util.*;
 
 import edu.osu.slate.relatedness.Configuration;
 
 import edu.osu.slate.relatedness.swwr.data.TitleID;
 import edu.osu.slate.relatedness.swwr.data.category.CategoryTitleToIDTranslation;
 import edu.osu.slate.relatedness.swwr.data.category.IDToCategoryTitleTranslation;
+import edu.osu.slate.relatedness.swwr.setup.PageTitleCollector;
+import edu.osu.slate.relatedness.swwr.setup.ParallelDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLDumpReader;
 
 /**
  * Creates Category-to-ID translation classes.
@@ -57,9 +59,9 @@ public class CreateCategoryList {
  /**
   * Checks and opens the input file.
   * 
-  * @return Scanner for reading the input file
+  * @return Reader for the input file
   */
-  private static Scanner openInputFile()
+  private static ParallelDumpReader openInputFile()
   {
     inputFileName = Configuration.baseDir + "/" +
                     Configuration.sourceDir + "/" +
@@ -67,19 +69,14 @@ public class CreateCategoryList {
                     Configuration.date+ "/" +
                     Configuration.type + "-" + Configuration.date +
                     "-page.sql";
-    try
+    if(SQLDumpReader.findDump(inputFileName) != null)
     {
-      Scanner in = new Scanner(new FileReader(inputFileName));
-      return in;		
-    }
-    catch (FileNotFoundException e)
-    {
-      System.out.println("File not found: " + inputFileName);
-      e.printStackTrace();
+      return new ParallelDumpReader(inputFileName, Configuration.threads);
     }
 
+    System.out.println("File not found: " + inputFileName);
     System.exit(1);
-    return null;	
+    return null;
   }
 
   /**
@@ -102,119 +99,27 @@ public class CreateCategoryList {
     }
     
     /* STEP: 1
-     * Find the number of categories.
-     */
-    System.out.println("Finding Number of Categories");
-    int numCats = 0;
-
-    /* Open input file */
-    Scanner in = openInputFile();
-    
-    /* Burn intro lines */
-    String str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = in.nextLine();
-    }
-
-    while(str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\d\\),\\(");
-      for(int i = 0; i < arr.length; i++)
-      {
-        String [] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 11)
-        {
-
-          // Extract namespace and redirect information
-          String namespace = info[1];
-          String redirect = info[info.length-6];
-
-          // Add the ID if it's in the needed namespace and not a redirect
-          if(namespace.equals("14") && redirect.equals("0"))
-          {
-            numCats++;
-          }
-        }//end: if(info.length)
-      }//end: for(i)
-      
-      str = in.nextLine();
-    }//end: while()
-    in.close();
-
-    /* STEP: 2
      * 
-     * Create TitleID array
-     */
-    System.out.println("Creating Category Title/ID Array");
-    TitleID[] tids = new TitleID[numCats];
-
-    /* STEP: 3
+     * Fill the Category Title/ID array.
      * 
-     * Fill TitleID[].
+     * Chunks of page.sql are read in parallel; joining them
+     * in file order keeps the array order of a single pass.
      */
-    in = openInputFile();
-    
-    /* Burn intro lines */
-    str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = in.nextLine();
-    }
-
     System.out.println("Filling Category Title/ID Array");
-    int currTitleID = 0;
-
-    while(str != null && !str.trim().equals(""))
+    TitleID[] tids = null;
+    try
     {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\d\\),\\(");
-      for(int i = 0; i < arr.length; i++)
-      {
-        String [] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 11)
-        {
-
-          // Extract page, namespace and redirect information
-          String page = info[0];
-          String namespace = info[1];
-          String redirect = info[info.length-6];
-
-          // Add the ID if it's in the needed namespace and not a redirect
-          if(namespace.equals("14") && redirect.equals("0"))
-          {
-            
-            // Get full title information
-            String title = info[2];
-            for(int j = 3; j < info.length - 8; j++ )
-            {
-              title = title + "," + info[j]; 
-            }//end: for(j)
-            
-            title = title.substring(1, title.length()-1);
-            
-            /* Add TitleID to array */
-            TitleID tid = new TitleID(title,Integer.parseInt(page));
-            tids[currTitleID] = tid;
-            currTitleID++;
-          }//end: if(ns && !redirect)
-        }//end: if(info.length)
-      }//end: for(i)
-
-      str = in.nextLine();
-    }//end: while()
-    in.close();
+      ParallelDumpReader in = openInputFile();
+      tids = PageTitleCollector.merge(in.read(PageTitleCollector.factory(14, true)));
+    }//end: try {}
+    catch (IOException e)
+    {
+      System.err.println("Problem reading from file: " + inputFileName);
+      e.printStackTrace();
+      System.exit(1);
+    }
 
-    /* STEP: 4
+    /* STEP: 2
      * 
      * Create category-id classes.
      */
@@ -232,7 +137,7 @@ public class CreateCategoryList {
 //      System.out.println(arrs[i]);
 //    }
     
-    /* STEP: 5
+    /* STEP: 3
      * 
      * Write .cid file.
      */
@@ -1,7 +1,7 @@
 package edu.osu.slate.relatedness.swwr.setup.category;
 
 import java.io.*;
-import java.util.*;
+import java.util.List;
 
 import edu.osu.slate.relatedness.Configuration;
 
@@ -11,6 +11,11 @@ import edu.osu.slate.relatedness.swwr.data.category.IDToCategoryTitleTranslation
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiInvGraph;
+import edu.osu.slate.relatedness.swwr.setup.IntArrayBuffer;
+import edu.osu.slate.relatedness.swwr.setup.ParallelDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLHandlerFactory;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 /**
  * Program creates counts in the category tree.
@@ -58,6 +63,52 @@ public class CreateGraphCounts {
   
   /* Translates category IDs to category titles */
   private static IDToCategoryTitleTranslation ID2Cat;
+
+  /**
+   * Collects the (category, vertex) pairs of one chunk of categorylinks.sql.
+   */
+  private static class CategoryLinkHandler implements SQLTupleHandler
+  {
+    private final IDVertexTranslation validIDs;
+    private final CategoryGraph categories;
+    private final IntArrayBuffer parents = new IntArrayBuffer();
+    private final IntArrayBuffer vertices = new IntArrayBuffer();
+
+    CategoryLinkHandler(IDVertexTranslation validIDs, CategoryGraph categories)
+    {
+      this.validIDs = validIDs;
+      this.categories = categories;
+    }
+
+    public void tuple(SQLTuple t)
+    {
+      // Check if the information is in the correct format
+      // (cl_from, cl_to, cl_sortkey, cl_timestamp, ...)
+      if(t.size() >= 4)
+      {
+        // Extract page, category information
+        int childPageID = t.getInt(0);
+        String parentCategoryTitle = t.getString(1);
+
+        /* Add vertex if:
+         * 
+         * -- the vertex is a valid page (as defined by being in the VID file)
+         * -- the category title is valid
+         */
+        if(validIDs.isValidWikiID(childPageID) &&
+            Cat2ID.isLookupCategory(parentCategoryTitle)) {
+          int childVertexNum = validIDs.getVertex(childPageID);
+          int parentCategoryID = Cat2ID.getID(parentCategoryTitle);
+          
+          if(categories.isMember(parentCategoryID))
+          { // Parent is found!
+            parents.add(parentCategoryID);
+            vertices.add(childVertexNum);
+          }//end: if(categories)
+        }//end: if(validIDs && Cat2ID)
+      }//end: if(t.size())
+    }
+  }//end: CategoryLinkHandler
   
   /**
    * Sets the names of:<br>
@@ -182,71 +233,30 @@ public class CreateGraphCounts {
      * 
      * Open Category source for reading.
      */		
-    Scanner catIN = new Scanner(new FileReader(catSourceFileName));
-    String str = catIN.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = catIN.nextLine();
-    }
+    ParallelDumpReader catIN = new ParallelDumpReader(catSourceFileName, Configuration.threads);
 
     /* STEP 5
      * 
      * Add vertices to the category graph
      */
     System.out.println("Adding vertices to category graph");
-    int tmp = 0;
-    while(tmp < 3 && str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the category link information
-      String [] arr = str.split("\\d\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+    final IDVertexTranslation validIDs = vids;
+    final CategoryGraph categories = catGraph;
+    List<CategoryLinkHandler> chunks = catIN.read(new SQLHandlerFactory<CategoryLinkHandler>() {
+      public CategoryLinkHandler newHandler()
       {
-        // Split the category link information into its parts
-        String [] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 4)
-        {
-          // Extract page, category information
-          String childPageID = info[0];
+        return new CategoryLinkHandler(validIDs, categories);
+      }
+    });
 
-          int breakSpot = -1;
-          String parentCategoryTitle = info[1];
-          for(int j=2; breakSpot < 0 && j<info.length; j++)
-          {
-            if(info[j-1].charAt(info[j-1].length()-1) == '\'' &&
-                info[j].charAt(0) == '\'') {
-              breakSpot = j;
-            }
-            else {
-              parentCategoryTitle = parentCategoryTitle + "," + info[j];
-            }
-          }
-          
-          /* Add vertex if:
-           * 
-           * -- the vertex is a valid page (as defined by being in the VID file)
-           * -- the category title is valid
-           */
-          if(vids.isValidWikiID(Integer.parseInt(childPageID)) &&
-              Cat2ID.isLookupCategory(parentCategoryTitle)) {
-            int childVertexNum = vids.getVertex(Integer.parseInt(childPageID));
-            int parentCategoryID = Cat2ID.getID(parentCategoryTitle);
-            
-            if(catGraph.isMember(parentCategoryID))
-            { // Parent is found!
-              catGraph.addVertex(parentCategoryID, childVertexNum);
-            }//end: if(catGraph)
-          }//end: if(vids && Cat2ID)
-          
-        }//end: if(info.length)
-      }//end: for(i)
-
-      str = catIN.nextLine();
-    }//end: while()
-    catIN.close();
+    // Add the vertices in file order
+    for(CategoryLinkHandler h : chunks)
+    {
+      for(int k = 0; k < h.parents.size(); k++)
+      {
+        catGraph.addVertex(h.parents.get(k), h.vertices.get(k));
+      }
+    }
 
     /* Step 5:
      * 
@@ -7,11 +7,18 @@ import edu.osu.slate.relatedness.Configuration;
 import edu.osu.slate.relatedness.swwr.data.graph.IDIDRedirect;
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+import edu.osu.slate.relatedness.swwr.setup.SQLDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 /**
  * Creates a list of categories for each graph vertex.
  * <p>
  * Category lists are only of immediate parents.
+ * <p>
+ * The lists are indexed by the vertex numbers of the current .vid file, and are not translated
+ * when the graph is renumbered: run this program after
+ * {@link edu.osu.slate.relatedness.swwr.setup.graph.ReorderGraphFiles}, or again if the graph was reordered since.
  * 
  * @author weale
  *
@@ -28,7 +35,7 @@ public class CreateVertexToCategoryMapping
   private static WikiGraph wgp;
   private static String wgpFileName;
   
-  private static Scanner in;
+  private static SQLDumpReader in;
   private static ObjectOutputStream out;
   
   private static void setFiles()
@@ -110,13 +117,13 @@ public class CreateVertexToCategoryMapping
     }
     
     System.out.println("Opening page.sql File");
-    in = new Scanner(new FileReader(Configuration.baseDir + "/" +
+    in = SQLDumpReader.open(Configuration.baseDir + "/" +
                                     Configuration.sourceDir + "/" +
                                     Configuration.type+ "/" +
                                     Configuration.date + "/" + 
                                     Configuration.type + "-"+ 
                                     Configuration.date + "-" + 
-                                    "page.sql"));
+                                    "page.sql");
     
     System.out.println("Opening .ccf File for Writing");
     out = new ObjectOutputStream(new FileOutputStream(Configuration.baseDir + "/" + 
@@ -128,254 +135,147 @@ public class CreateVertexToCategoryMapping
                                                       Configuration.graph + ".vxc"));
 
     
-    TreeMap<String,Integer> TitleToID = new TreeMap<String,Integer>();
+    final TreeMap<String,Integer> TitleToID = new TreeMap<String,Integer>();
 
     /* Create a title-to-ID lookup for categories. */
-    // Strip beginning lines from file
-    String str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1) {
-      str = in.nextLine();
-    }
-     
-    int tmp = 0;
-    while(tmp < 3 && str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the individual page information
-      String [] arr = str.split("\\d\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+    in.read(new SQLTupleHandler() {
+      public void tuple(SQLTuple t)
       {
-        String [] info = arr[i].split(",");
-           
         // Information is in the correct format if the length == 11
-        if(info.length >= 11)
+        // (page_id, page_namespace, page_title, page_restrictions, page_counter, page_is_redirect, ...)
+        if(t.size() >= 11)
         {
-          // Extract page, namespace and redirect information
-          String page = info[0];
-          String namespace = info[1];
-          String redirect = info[info.length-6];
-               
-          // Extract title information
-          String title = info[2];
-          for(int j = 3; j < info.length-8; j++)
-          {
-            title = title + "," + info[j];
-          }
-          title = title.substring(1, title.length()-1);
-          int pageID = Integer.parseInt(page);
-               
           // Add the Title-to-ID mapping if page is in the category namespace
-          if(namespace.equals("14") && redirect.equals("0"))
+          if(t.isInt(1, 14) && t.isInt(5, 0))
           {
-            TitleToID.put(title, pageID);
+            TitleToID.put(t.getString(2), t.getInt(0));
           }//end: if()
-                 
-        }//end: if(info.length)
-      }//end: for(i)
-       
-      str = in.nextLine();
-    }//end: while()
+        }//end: if(t.size())
+      }
+    });
     in.close();
      
     /* Create the Category to Vertex mapping from categorylinks file. */
-    in = new Scanner(new FileReader(Configuration.baseDir + "/" +
-                                    Configuration.sourceDir + "/" + 
-                                    Configuration.type+ "/" + 
-                                    Configuration.date + "/" +
-                                    Configuration.type + "-"+
-                                    Configuration.date + "-" +
-                                    "categorylinks.sql"));
+    in = SQLDumpReader.open(Configuration.baseDir + "/" +
+                            Configuration.sourceDir + "/" + 
+                            Configuration.type+ "/" + 
+                            Configuration.date + "/" +
+                            Configuration.type + "-"+
+                            Configuration.date + "-" +
+                            "categorylinks.sql");
 
     System.out.println("Initializing Category to Vertex Count Mapping from categorylinks.");      
      
-    int[][] vertexToCategories = new int[wgp.getNumVertices()][];
+    final int[][] vertexToCategories = new int[wgp.getNumVertices()][];
     
-    str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = in.nextLine();
-    }
-   
-    int line = 0;
-   
-    while(str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(") + 1, str.length() - 3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+    in.read(new SQLTupleHandler() {
+      public void tuple(SQLTuple t)
       {
-        String [] info = arr[i].split(",");
-         
         // Check if the information is in the correct format
-        if(info.length >= 3)
+        // (cl_from, cl_to, ...)
+        if(t.size() >= 3)
         {
-          // Extract page, namespace and redirect information
-          int id = Integer.parseInt(info[0]);
-          String namespace = info[1];
-          String title = info[1];
-          for(int j = 2; j < info.length-2; j++)
+          int vertex = getVertex(t.getInt(0));
+          String title = t.getString(1);
+
+          int catID = -1;
+          if(TitleToID.containsKey(title))
           {
-            title = title + "," + info[j];
+            catID = TitleToID.get(title);
           }
-             
-          if(title.length() > 0)
-          {
-            try
-            {
-              title = title.substring(1, title.length()-1);
-            }
-            catch(Exception e)
-            {
-              System.err.println(arr[i]);
-            }
-
-            // Add the ID if it's in the needed namespace and not a redirect
-            if((vid.isValidWikiID(id) || rdr.isRedirectID(id)))
-            {
 
-              int vertex = -1;
-              if(vid.isValidWikiID(id))
-              {
-                vertex = vid.getVertex(id);
-              }
-              else if(rdr.isRedirectID(id))
-              {
-                vertex = vid.getVertex(rdr.redirectIDToValidID(id));
-              }
-              //System.out.println(title);
-              int catID = -1;
-              if(TitleToID.containsKey(title))
-              {
-                catID = TitleToID.get(title);
-              }
-
-              /* Check valid from/to pairing */
-              if(vertex > -1 && catID > -1)
-              {
-                if(vertexToCategories[vertex] == null)
-                {
-                  vertexToCategories[vertex] = new int[1];
-                  vertexToCategories[vertex][0] = catID;
-                }
-                else if(Arrays.binarySearch(vertexToCategories[vertex], catID) < 0)
-                {
-                  int[] newCats = new int[vertexToCategories[vertex].length + 1];
-                  System.arraycopy(vertexToCategories[vertex], 0,
-                                   newCats, 0, vertexToCategories[vertex].length);
-                  newCats[vertexToCategories[vertex].length] = catID;
-                  Arrays.sort(newCats);
-                  vertexToCategories[vertex] = newCats;
-                }
-              }//end: if(vertex && catID)
-            }//end: valid namespace and 'from' page
-          }//end: if(title)
-        }//end: if(info.length)
-      }//end: for(i)
-      
-      str = in.nextLine();
-    }//end: while()
+          /* Check valid from/to pairing */
+          if(vertex > -1 && catID > -1)
+          {
+            addCategory(vertexToCategories, vertex, catID);
+          }
+        }//end: if(t.size())
+      }
+    });
     in.close();
 
     /* Create the Category to Vertex mapping from pagelinks file. */
-    in = new Scanner(new FileReader(Configuration.baseDir + "/" +
+    in = SQLDumpReader.open(Configuration.baseDir + "/" +
          Configuration.sourceDir + "/" +
          Configuration.type+ "/" +
          Configuration.date + "/" +
          Configuration.type + "-"+
          Configuration.date + "-" + 
-         "categorylinks.sql"));
+         "categorylinks.sql");
 
     System.out.println("Initializing Category to Vertex Count Mapping from pagelinks.");
-    str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = in.nextLine();
-    }
-
-    while(str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+    in.read(new SQLTupleHandler() {
+      public void tuple(SQLTuple t)
       {
-        String [] info = arr[i].split(",");
-
         // Check if the information is in the correct format
-        if(info.length >= 3)
+        // (pl_from, pl_namespace, pl_title, ...)
+        // and add the ID if it's in the category namespace
+        if(t.size() >= 3 && t.isInt(1, 14))
         {
-          // Extract page, namespace and redirect information
-          int id = Integer.parseInt(info[0]);
-          String namespace = info[1];
-          String title = info[2];
-          for(int j = 3; j < info.length; j++)
+          int vertex = getVertex(t.getInt(0));
+          String title = t.getString(2);
+
+          int catID = -1;
+          if(TitleToID.containsKey(title))
           {
-            title = title + "," + info[j];
+            catID = TitleToID.get(title);
           }
 
-          if(title.length() > 0)
+          /* Check valid from/to pairing */
+          if(vertex > -1 && catID > -1)
           {
-            try
-            {
-              title = title.substring(1, title.length()-1);
-            }
-            catch(Exception e)
-            {
-              System.err.println(arr[i]);
-            }
-
-            // Add the ID if it's in the needed namespace and not a redirect
-            if(namespace.equals("14") && (vid.isValidWikiID(id) || rdr.isRedirectID(id)))
-            {
-
-              int vertex = -1;
-              if(vid.isValidWikiID(id))
-              {
-                vertex = vid.getVertex(id);
-              }
-              else if(rdr.isRedirectID(id))
-              {
-                vertex = vid.getVertex(rdr.redirectIDToValidID(id));
-              }
-              
-              int catID = -1;
-              if(TitleToID.containsKey(title))
-              {
-                catID = TitleToID.get(title);
-              }
-
-              /* Check valid from/to pairing */
-              if(vertex > -1 && catID > -1)
-              {
-                if(vertexToCategories[vertex] == null)
-                {
-                  vertexToCategories[vertex] = new int[1];
-                  vertexToCategories[vertex][0] = catID;
-                }
-                else if(Arrays.binarySearch(vertexToCategories[vertex], catID) < 0)
-                {
-                  int[] newCats = new int[vertexToCategories[vertex].length + 1];
-                  System.arraycopy(vertexToCategories[vertex], 0,
-                                   newCats, 0, vertexToCategories[vertex].length);
-                  newCats[vertexToCategories[vertex].length] = catID;
-                  Arrays.sort(newCats);
-                  vertexToCategories[vertex] = newCats;
-                }
-              }//end: if(vertex && catID)
-            }//end: valid namespace and 'from' page
-          }//end: if(title)
-        }//end: if(info.length)
-      }//end: for(i)  
-      
-      str = in.nextLine();
-    }//end: while()
+            addCategory(vertexToCategories, vertex, catID);
+          }
+        }//end: if(t.size())
+      }
+    });
     in.close();
     
     out.writeObject(vertexToCategories);
     out.close();
   }//end: main()
+
+  /**
+   * Finds the graph vertex of a page, following redirects.
+   * 
+   * @param id Wiki ID of the page.
+   * @return Vertex number, or -1 if the page is not in the graph.
+   */
+  private static int getVertex(int id)
+  {
+    if(vid.isValidWikiID(id))
+    {
+      return vid.getVertex(id);
+    }
+    else if(rdr.isRedirectID(id))
+    {
+      return vid.getVertex(rdr.redirectIDToValidID(id));
+    }
+    return -1;
+  }//end: getVertex(int)
+
+  /**
+   * Adds a category to the sorted category list of a vertex.
+   * 
+   * @param vertexToCategories Category lists of all vertices.
+   * @param vertex Vertex number.
+   * @param catID Category ID.
+   */
+  private static void addCategory(int[][] vertexToCategories, int vertex, int catID)
+  {
+    if(vertexToCategories[vertex] == null)
+    {
+      vertexToCategories[vertex] = new int[1];
+      vertexToCategories[vertex][0] = catID;
+    }
+    else if(Arrays.binarySearch(vertexToCategories[vertex], catID) < 0)
+    {
+      int[] newCats = new int[vertexToCategories[vertex].length + 1];
+      System.arraycopy(vertexToCategories[vertex], 0,
+                       newCats, 0, vertexToCategories[vertex].length);
+      newCats[vertexToCategories[vertex].length] = catID;
+      Arrays.sort(newCats);
+      vertexToCategories[vertex] = newCats;
+    }
+  }//end: addCategory(int[][], int, int)
 }//end: CreateCategoryCoverage
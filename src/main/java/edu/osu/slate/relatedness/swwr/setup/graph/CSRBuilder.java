@@ -0,0 +1,338 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup.graph;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Builds the compressed sparse row (CSR) form of a graph from a stream of (from, to) edges.
+ * <p>
+ * Edges are packed into a primitive long buffer (<code>from &lt;&lt; 32 | to</code>), so sorting the
+ * buffer orders the edges by from vertex and then by to vertex.  When the buffer fills up,
+ * it is sorted, de-duplicated and written to disk as a sorted run.  {@link #build()} merges
+ * the runs with the remaining buffer, dropping duplicate edges, and fills the CSR arrays
+ * in a single pass.
+ * <p>
+ * Building takes O(E log E) time no matter how the edges are distributed over the vertices.
+ * <p>
+ * Edges may be added from several threads.  The built graph does not depend on the order
+ * the edges were added in.
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class CSRBuilder
+{
+  /* Number of graph vertices */
+  private final int numVertices;
+
+  /* Edges not yet written to a run */
+  private long[] buffer;
+
+  /* Number of edges in the buffer */
+  private int size;
+
+  /* Directory for the sorted run files */
+  private final File tempDir;
+
+  /* Sorted run files */
+  private final List<File> runs = new ArrayList<File>();
+
+  /* Edges written to the run files (including duplicates between runs) */
+  private long spilled;
+
+  /* Start position of each vertex's out-bound links */
+  private int[] offsets;
+
+  /* Out-bound vertices, in vertex order */
+  private int[] targets;
+
+  /**
+   * Constructor.
+   *
+   * @param numVertices Number of graph vertices.
+   * @param bufferSize Number of edges held in memory before spilling a sorted run to disk.
+   * @param tempDir Directory for the sorted run files.
+   */
+  public CSRBuilder(int numVertices, int bufferSize, File tempDir)
+  {
+    this.numVertices = numVertices;
+    this.buffer = new long[bufferSize];
+    this.tempDir = tempDir;
+  }//end: CSRBuilder(int, int, File)
+
+  /**
+   * Adds an edge to the graph.
+   * <p>
+   * Duplicate edges are removed when the graph is built.
+   *
+   * @param from From vertex.
+   * @param to To vertex.
+   * @throws IOException If a sorted run cannot be written.
+   */
+  public synchronized void add(int from, int to) throws IOException
+  {
+    if(size == buffer.length)
+    {
+      spill();
+    }
+    buffer[size++] = ((long) from << 32) | to;
+  }//end: add(int, int)
+
+  /**
+   * Adds a batch of edges to the graph.
+   * <p>
+   * Threads adding many edges should collect them in batches, so the lock
+   * is taken once per batch.
+   *
+   * @param from From vertices.
+   * @param to To vertices.
+   * @param n Number of edges in the batch.
+   * @throws IOException If a sorted run cannot be written.
+   */
+  public synchronized void addAll(int[] from, int[] to, int n) throws IOException
+  {
+    for(int i = 0; i < n; i++)
+    {
+      if(size == buffer.length)
+      {
+        spill();
+      }
+      buffer[size++] = ((long) from[i] << 32) | to[i];
+    }
+  }//end: addAll(int[], int[], int)
+
+  /**
+   * Sorts the buffer and removes duplicate edges.
+   *
+   * @return Number of distinct edges at the front of the buffer.
+   */
+  private int sortBuffer()
+  {
+    Arrays.sort(buffer, 0, size);
+
+    int unique = 0;
+    for(int i = 0; i < size; i++)
+    {
+      if(unique == 0 || buffer[i] != buffer[unique-1])
+      {
+        buffer[unique++] = buffer[i];
+      }
+    }//end: for(i)
+    return unique;
+  }//end: sortBuffer()
+
+  /**
+   * Writes the buffer to disk as a sorted run.
+   *
+   * @throws IOException If the run cannot be written.
+   */
+  private void spill() throws IOException
+  {
+    int unique = sortBuffer();
+
+    File run = File.createTempFile("edges", ".run", tempDir);
+    run.deleteOnExit();
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+    out.writeInt(unique);
+    for(int i = 0; i < unique; i++)
+    {
+      out.writeLong(buffer[i]);
+    }
+    out.close();
+
+    runs.add(run);
+    spilled += unique;
+    size = 0;
+  }//end: spill()
+
+  /**
+   * Sorted run being merged.
+   */
+  private static class RunReader
+  {
+    private final DataInputStream in;
+    private int remaining;
+    private long head;
+
+    RunReader(File run) throws IOException
+    {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+      remaining = in.readInt();
+    }
+
+    /* Moves to the next edge, returning false at the end of the run */
+    boolean advance() throws IOException
+    {
+      if(remaining == 0)
+      {
+        in.close();
+        return false;
+      }
+      head = in.readLong();
+      remaining--;
+      return true;
+    }
+  }//end: RunReader
+
+  /**
+   * Sorts and de-duplicates all of the edges and fills the CSR arrays.
+   *
+   * @throws IOException If the sorted runs cannot be read.
+   */
+  public synchronized void build() throws IOException
+  {
+    offsets = new int[numVertices + 1];
+
+    if(runs.isEmpty())
+    {
+      /* Everything fits in memory */
+      int unique = sortBuffer();
+      targets = new int[unique];
+      for(int i = 0; i < unique; i++)
+      {
+        addEdge(i, buffer[i]);
+      }
+    }
+    else
+    {
+      /* K-way merge of the sorted runs */
+      if(size > 0)
+      {
+        spill();
+      }
+      buffer = null;
+
+      PriorityQueue<RunReader> heads = new PriorityQueue<RunReader>(runs.size(), new Comparator<RunReader>() {
+        public int compare(RunReader a, RunReader b)
+        {
+          return (a.head < b.head) ? -1 : ((a.head == b.head) ? 0 : 1);
+        }
+      });
+      for(File run : runs)
+      {
+        RunReader r = new RunReader(run);
+        if(r.advance())
+        {
+          heads.add(r);
+        }
+      }
+
+      // Spilled count is an upper bound on the number of distinct edges
+      targets = new int[(int) Math.min(spilled, Integer.MAX_VALUE)];
+      int count = 0;
+      long last = -1;
+      while(!heads.isEmpty())
+      {
+        RunReader r = heads.poll();
+        if(r.head != last)
+        {
+          addEdge(count++, r.head);
+          last = r.head;
+        }
+        if(r.advance())
+        {
+          heads.add(r);
+        }
+      }//end: while(heads)
+      targets = Arrays.copyOf(targets, count);
+
+      for(File run : runs)
+      {
+        run.delete();
+      }
+      runs.clear();
+    }//end: else
+
+    /* Degree counts to start positions */
+    for(int i = 0; i < numVertices; i++)
+    {
+      offsets[i+1] += offsets[i];
+    }
+    buffer = null;
+  }//end: build()
+
+  /**
+   * Stores an edge in the CSR arrays while counting the out-degree of its from vertex.
+   *
+   * @param pos Edge index.
+   * @param edge Packed edge.
+   */
+  private void addEdge(int pos, long edge)
+  {
+    offsets[(int) (edge >>> 32) + 1]++;
+    targets[pos] = (int) edge;
+  }//end: addEdge(int, long)
+
+  /**
+   * Gets the start position of each vertex's out-bound links (length is number of vertices + 1).
+   *
+   * @return CSR offsets array.
+   */
+  public int[] getOffsets()
+  {
+    return offsets;
+  }
+
+  /**
+   * Gets the out-bound vertices of all graph vertices, sorted within each vertex.
+   *
+   * @return CSR targets array.
+   */
+  public int[] getTargets()
+  {
+    return targets;
+  }
+
+  /**
+   * Creates the in-bound link lists of a graph in CSR form.
+   * <p>
+   * Each in-bound list is sorted, since the out-bound lists are read in vertex order.
+   *
+   * @param offsets CSR offsets array of the out-bound links.
+   * @param targets CSR targets array of the out-bound links.
+   * @return In-bound link arrays, with null entries for vertices without in-bound links.
+   */
+  public static int[][] invert(int[] offsets, int[] targets)
+  {
+    int n = offsets.length - 1;
+    int[] inDegree = new int[n];
+    for(int k = 0; k < targets.length; k++)
+    {
+      inDegree[targets[k]]++;
+    }
+
+    int[][] igraph = new int[n][];
+    for(int i = 0; i < n; i++)
+    {
+      if(inDegree[i] > 0)
+      {
+        igraph[i] = new int[inDegree[i]];
+        inDegree[i] = 0;
+      }
+    }//end: for(i)
+
+    for(int i = 0; i < n; i++)
+    {
+      for(int k = offsets[i]; k < offsets[i+1]; k++)
+      {
+        igraph[targets[k]][inDegree[targets[k]]++] = i;
+      }
+    }//end: for(i)
+    return igraph;
+  }//end: invert(int[], int[])
+}//end: CSRBuilder
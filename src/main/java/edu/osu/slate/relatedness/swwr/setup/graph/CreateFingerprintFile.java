@@ -0,0 +1,121 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup.graph;
+
+import java.io.*;
+
+import edu.osu.slate.relatedness.Configuration;
+import edu.osu.slate.relatedness.swwr.algorithm.FingerprintIndex;
+import edu.osu.slate.relatedness.swwr.algorithm.MonteCarloSPR;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+
+/**
+ * Stores the end vertices of random walks from every graph vertex, for {@link MonteCarloSPR}.
+ * <p>
+ * The walks are split over <code>Configuration.threads</code> threads.
+ * The fingerprints are written to a .wfp file (see {@link FingerprintIndex}).
+ * <p>
+ * In the Graph creation pipeline, this program is:
+ * <ul>
+ *   <li>Preceded by {@link ReorderGraphFiles}, or by {@link CreateGraphFiles} if the graph is not reordered
+ *   <li>Followed by --none--
+ * </ul>
+ *
+ * Usage: <code>CreateFingerprintFile &lt;configuration file&gt; [walks per vertex] [seed]</code>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class CreateFingerprintFile
+{
+  /* Default number of walks stored for each vertex */
+  private static final int DEFAULT_WALKS = 100;
+
+  /* Name of the graph file generated by CreateGraphFiles (.wgp) */
+  private static String graphFileName;
+
+  /* Name of the output fingerprint file (.wfp) */
+  private static String fingerprintFileName;
+
+  /**
+   * Sets the names of the files used in this program.
+   */
+  private static void setFiles()
+  {
+    String data = Configuration.baseDir + "/" +
+                  Configuration.binaryDir + "/" +
+                  Configuration.type + "/" +
+                  Configuration.date + "/" +
+                  Configuration.type + "-" +
+                  Configuration.date + "-" +
+                  Configuration.graph;
+
+    graphFileName = data + ".wgp";
+    fingerprintFileName = data + FingerprintIndex.EXTENSION;
+  }//end: setFiles()
+
+  /**
+   * Runs the program.
+   *
+   * @param args Configuration file, walks per vertex and seed.
+   */
+  public static void main(String[] args)
+  {
+    if(args.length >= 1)
+    {
+      Configuration.parseConfigurationFile(args[0]);
+    }
+    else
+    {
+      Configuration.parseConfigurationFile("/scratch/weale/data/config/enwiktionary/CreateMappings.xml");
+    }
+    int walks = (args.length >= 2) ? Integer.parseInt(args[1]) : DEFAULT_WALKS;
+    long seed = (args.length >= 3) ? Long.parseLong(args[2]) : 0;
+
+    setFiles();
+
+    /* STEP 1
+     *
+     * Open the graph and find its PageRank values
+     */
+    System.out.println("Opening Wiki Graph");
+    WikiGraph.setThreads(Configuration.threads);
+    MonteCarloSPR mc = new MonteCarloSPR(new WikiGraph(graphFileName));
+
+    /* STEP 2
+     *
+     * Simulate the walks of every vertex
+     */
+    System.out.println("Simulating " + walks + " walks per vertex on " + Configuration.threads + " threads.");
+    FingerprintIndex index = mc.buildFingerprints(walks, seed);
+
+    /* STEP 3
+     *
+     * Print Fingerprint File (.wfp)
+     */
+    System.out.println("Printing File.");
+    try
+    {
+      index.write(fingerprintFileName);
+    }
+    catch(IOException e)
+    {
+      System.err.println("Problem writing to file: " + fingerprintFileName);
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }//end: main(String[])
+}//end: CreateFingerprintFile
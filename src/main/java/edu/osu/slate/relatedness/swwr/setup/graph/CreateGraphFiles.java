@@ -1,7 +1,7 @@
 package edu.osu.slate.relatedness.swwr.setup.graph;
 
 import java.io.*;
-import java.util.*;
+import java.util.List;
 
 import edu.osu.slate.relatedness.Configuration;
 import edu.osu.slate.relatedness.swwr.data.ConvertIDToTitle;
@@ -10,14 +10,27 @@ import edu.osu.slate.relatedness.swwr.data.graph.IDIDRedirect;
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
 import edu.osu.slate.relatedness.swwr.data.graph.WikiInvGraph;
+import edu.osu.slate.relatedness.swwr.setup.ParallelDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLHandlerFactory;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 /**
  * This program is responsible for generating the alias files used as input to {@link wwr.data.WikiGraph} and {@link wwr.data.WikiInvGraph}
+ * <p>
+ * Links are streamed into a {@link CSRBuilder}, which sorts and de-duplicates them once
+ * (spilling sorted runs to the temporary directory if they do not fit in memory)
+ * and produces the out-bound graph in CSR form.  The in-bound graph is its transpose.
+ * <p>
+ * pagelinks.sql is read on {@link Configuration#threads} threads.  Since the builder
+ * sorts the links, the graph does not depend on the number of threads.
+ * <p>
+ * Usage: <code>CreateGraphFiles &lt;configuration file&gt; [edge buffer size in MB]</code>
  * 
  * In the Graph creation pipeline, this program is:
  * <ul>
  *   <li>Preceded by {@link CreateIDToVertexFile}, {@link CreateTitleIDFiles} and {@link CreateRedirectFiles}
- *   <li>Followed by --none--
+ *   <li>Followed by {@link ReorderGraphFiles} (optional)
  * </ul>
  * 
  * @author weale
@@ -43,9 +56,21 @@ public class CreateGraphFiles {
   /* Name of the output file (.wgp) */
   private static String graphFileName;
 
+  /* Name of the output file (.wgpx) */
+  private static String mappedFileName;
+
   /* Name of the output file (.iwgp) */
   private static String invertedFileName;
 
+  /* Directory for the sorted edge runs */
+  private static String tempDirName;
+
+  /* Default memory for the edge buffer, in MB */
+  private static final int DEFAULT_BUFFER_MB = 512;
+
+  /* Number of links each thread collects before adding them to the edge buffer */
+  private static final int BATCH_SIZE = 1 << 14;
+
   private static void setFiles()
   {
     String binaryDir = Configuration.baseDir + "/" +
@@ -83,11 +108,84 @@ public class CreateGraphFiles {
                     Configuration.date + "-" +
                     Configuration.graph + ".wgp";
     
+    mappedFileName = binaryDir +
+                     Configuration.type + "-" +
+                     Configuration.date + "-" +
+                     Configuration.graph + WikiGraph.MAPPED_EXTENSION;
+    
     invertedFileName = binaryDir +
                        Configuration.type + "-" +
                        Configuration.date + "-" +
                        Configuration.graph + ".iwgp";
+
+    tempDirName = Configuration.baseDir + "/" +
+                  Configuration.tempDir;
   }
+
+  /**
+   * Resolves the links of one chunk of pagelinks.sql to (from, to) vertex pairs.
+   * <p>
+   * Pairs are added to the shared edge buffer in batches.
+   */
+  private static class LinkHandler implements SQLTupleHandler
+  {
+    private final IDVertexTranslation validIDs;
+    private final IDIDRedirect redirects;
+    private final ConvertTitleToID titleLookup;
+    private final CSRBuilder edgeBuffer;
+    private final int[] from = new int[BATCH_SIZE];
+    private final int[] to = new int[BATCH_SIZE];
+    private int size;
+
+    LinkHandler(IDVertexTranslation validIDs, IDIDRedirect redirects,
+                ConvertTitleToID titleLookup, CSRBuilder edgeBuffer)
+    {
+      this.validIDs = validIDs;
+      this.redirects = redirects;
+      this.titleLookup = titleLookup;
+      this.edgeBuffer = edgeBuffer;
+    }
+
+    public void tuple(SQLTuple t) throws IOException
+    {
+      // Check if the information is in the correct format
+      // (pl_from, pl_namespace, pl_title, ...)
+      // and add the ID if it's in the needed namespace
+      if(t.size() >= 3 && t.isInt(1, 0))
+      {
+        int fromVertex = validIDs.getVertex(t.getInt(0));
+        int toID = titleLookup.getID(t.getString(2));
+        int toVertex = -1;
+        if(validIDs.isValidWikiID(toID))
+        {
+          toVertex = validIDs.getVertex(toID);
+        }
+        else if(redirects.isRedirectID(toID))
+        {
+          int tmpID = redirects.redirectIDToValidID(toID);
+          toVertex = validIDs.getVertex(tmpID);
+        }
+
+        /* Check valid from/to pairing */
+        if(fromVertex > -1 && toVertex > -1) {
+          from[size] = fromVertex;
+          to[size] = toVertex;
+          size++;
+          if(size == BATCH_SIZE)
+          {
+            flush();
+          }
+        }//end: valid page insert
+      }//end: valid namespace and 'from' page
+    }
+
+    /* Adds the collected pairs to the edge buffer */
+    void flush() throws IOException
+    {
+      edgeBuffer.addAll(from, to, size);
+      size = 0;
+    }
+  }//end: LinkHandler
   
   /**
    * @param args
@@ -95,14 +193,14 @@ public class CreateGraphFiles {
    */
   public static void main(String[] args) throws IOException {
 
-    /* Intialize local variables */
-    int numTitles = 0;
-    Scanner in;
-    String str;
-
-    if(args.length == 1)
+    int bufferMB = DEFAULT_BUFFER_MB;
+    if(args.length >= 1)
     {
       Configuration.parseConfigurationFile(args[0]);
+      if(args.length >= 2)
+      {
+        bufferMB = Integer.parseInt(args[1]);
+      }
     }
     else
     {
@@ -168,23 +266,16 @@ public class CreateGraphFiles {
 
     /* STEP 2
      * 
-     * Create from->to array and the inverted array to->from
+     * Create the edge buffer (8 bytes per edge)
      */
     System.out.println("Creating graph. Size = " + vids.numVertices());
 
-    int [][] graph = new int[vids.numVertices()][];
-    int [][] igraph = new int[vids.numVertices()][];
-    float [][] graphtrans = new float[vids.numVertices()][];
-    float [][] igraphtrans = new float[vids.numVertices()][];
-    for(int i=0; i<graph.length; i++) {
-      graph[i] = null;
-      igraph[i] = null;
-      graphtrans[i] = null;
-      igraphtrans[i] = null;
-    }
+    File tempDir = new File(tempDirName);
+    tempDir.mkdirs();
+    CSRBuilder edges = new CSRBuilder(vids.numVertices(), bufferMB * (1 << 17), tempDir);
 
     /* STEP 3
-     * Populate the graph w/ the 'to' ids.
+     * Stream the (from, to) vertex pairs into the edge buffer.
      * 
      * This is done by:
      * 1. Check the 'from' page as a valid ID or a redirect ID
@@ -194,105 +285,41 @@ public class CreateGraphFiles {
     if(verbose) {
       System.out.println("Initializing graph.");
     }
-    in = new Scanner(new FileReader(inputFileName));
-
-    str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1) {
-      str = in.nextLine();
-    }
-
-    int line = 0;
-
-    while(str != null && !str.trim().equals("")) {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+    final IDVertexTranslation validIDs = vids;
+    final IDIDRedirect redirects = rdl;
+    final ConvertTitleToID titleLookup = tid;
+    final CSRBuilder edgeBuffer = edges;
+    ParallelDumpReader in = new ParallelDumpReader(inputFileName, Configuration.threads);
+
+    List<LinkHandler> chunks = in.read(new SQLHandlerFactory<LinkHandler>() {
+      public LinkHandler newHandler()
       {
-        String[] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 3) {
-
-          // Extract page, namespace and redirect information
-          int fromID = Integer.parseInt(info[0]);
-          String namespace = info[1];
-          String title = info[2];
-          for(int j = 3; j < info.length; j++)
-          {
-            title = title + "," + info[j];
-          }//end: for(j)
-
-          if(title.length() > 0) {
-
-            try
-            {
-              title = title.substring(1, title.length()-1);
-            }
-            catch(Exception e)
-            {
-              System.out.println(arr[i]);
-            }
-
-            // Add the ID if it's in the needed namespace
-            if(namespace.equals("0"))
-            {
-              int fromVertex = vids.getVertex(fromID);
-              int toID = tid.getID(title);
-              int toVertex = -1;
-              if(vids.isValidWikiID(toID))
-              {
-                toVertex = vids.getVertex(toID);
-              }
-              else if(rdl.isRedirectID(toID))
-              {
-                int tmpID = rdl.redirectIDToValidID(toID);
-                toVertex = vids.getVertex(tmpID);
-              }
-
-              /* Check valid from/to pairing */
-              if(fromVertex > -1 && toVertex > -1) {
-
-                /* Add to outbound graph */
-                graph[fromVertex] = checkList(graph[fromVertex], toVertex);
-
-                /* Add to inbound graph */
-                igraph[toVertex] = checkList(graph[toVertex], fromVertex);
-              }//end: valid page insert
-            }//end: valid namespace and 'from' page
-          }
-        }//end: if(info.length)
-      }//end: for(i)
-
-      str = in.nextLine();
-    }//end: while()
-    in.close();
+        return new LinkHandler(validIDs, redirects, titleLookup, edgeBuffer);
+      }
+    });
+    for(LinkHandler h : chunks)
+    {
+      h.flush();
+    }
 
     /* STEP 4
      * 
-     * Sort link arrays.
-     * Also, give a uniform transition to the graph vertices.
+     * Sort and de-duplicate the edges into the out-bound graph (CSR),
+     * then transpose it for the in-bound graph.
+     * Both graphs have uniform transition probabilities.
      */
-    for(int i = 0; i < graph.length; i++)
+    if(verbose) {
+      System.out.println("Sorting links.");
+    }
+    edges.build();
+    WikiGraph wg = new WikiGraph(edges.getOffsets(), edges.getTargets(), null);
+
+    int [][] igraph = CSRBuilder.invert(edges.getOffsets(), edges.getTargets());
+    float [][] igraphtrans = new float[igraph.length][];
+    for(int i = 0; i < igraph.length; i++)
     {
-      // Check for non-null outbound edges
-      if(graph[i] != null)
-      {
-        Arrays.sort(graph[i]);
-        
-        graphtrans[i] = new float[graph[i].length];
-        for(int j = 0; j < graphtrans[i].length; j++)
-        {
-          graphtrans[i][j] = (float) (1.0 / graphtrans[i].length);          
-        }//end: for(j)
-      }
-      
-      // Check for non-null inbound edges
       if(igraph[i] != null)
       {
-        Arrays.sort(igraph[i]);
-        
         igraphtrans[i] = new float[igraph[i].length];
         for(int j = 0; j < igraphtrans[i].length; j++)
         {
@@ -300,10 +327,11 @@ public class CreateGraphFiles {
         }//end: for(j)
       }
     }//end: for(i)
+    edges = null;
 
     /* STEP 5
      * 
-     * Print Object Files (.wgp) (.iwgp)
+     * Print Object Files (.wgp) (.iwgp) and the memory-mapped graph file (.wgpx)
      * 
      * Objects are written as int[][]
      */
@@ -314,10 +342,11 @@ public class CreateGraphFiles {
     ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(graphFileName));
     //out.writeObject(graph);
     //out.writeObject(graphtrans);
-    WikiGraph wg = new WikiGraph(graph, graphtrans);
     out.writeObject(wg);
     out.close();
 
+    wg.writeMappedFile(mappedFileName);
+
     out = new ObjectOutputStream(new FileOutputStream(invertedFileName));
     //out.writeObject(igraph);
     //out.writeObject(igraphtrans);
@@ -326,40 +355,4 @@ public class CreateGraphFiles {
     out.close();
   }
 
-  /**
-   * 
-   * @param curr
-   * @param link
-   * @return
-   */
-  private static int[] checkList(int[] currVertices, int vertex) {
-    if(currVertices == null)
-    {
-      currVertices = new int[1];
-      currVertices[0] = vertex;
-    }
-
-    boolean found = false;
-    for(int i = 0; !found && i < currVertices.length; i++)
-    {
-      if(currVertices[i] == vertex)
-      {
-        found = true;
-      }
-    }
-
-    // vertex number already in list
-    if(found)
-    {
-      return currVertices;
-    }
-
-    int [] newCurr = new int[currVertices.length+1];
-    newCurr[0] = vertex;
-    for(int i=1; i<newCurr.length; i++) {
-      newCurr[i] = currVertices[i-1];
-    }
-    return newCurr;
-  }
-
 }
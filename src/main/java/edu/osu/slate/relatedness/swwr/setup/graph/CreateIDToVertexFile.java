@@ -20,6 +20,12 @@ import java.util.*;
 
 import edu.osu.slate.relatedness.Configuration;
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
+import edu.osu.slate.relatedness.swwr.setup.IntArrayBuffer;
+import edu.osu.slate.relatedness.swwr.setup.ParallelDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLHandlerFactory;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 /**
  * This program generates a list of ID-to-vertex mappings for a wiki data set.
@@ -55,30 +61,48 @@ public class CreateIDToVertexFile
   /**
    * Checks and opens the input file.
    * 
-   * @return Scanner for reading the input file
+   * @return Reader for the input file
    */
-  private static Scanner openInputFile()
+  private static ParallelDumpReader openInputFile()
   {
-    try
+    inputFileName = Configuration.baseDir + "/" +
+                    Configuration.sourceDir + "/" +
+                    Configuration.type + "/" +
+                    Configuration.date + "/" +
+                    Configuration.type + "-" +
+                    Configuration.date + "-" +
+                    "page.sql";
+    if(SQLDumpReader.findDump(inputFileName) != null)
     {
-      inputFileName = Configuration.baseDir + "/" +
-                      Configuration.sourceDir + "/" +
-                      Configuration.type + "/" +
-                      Configuration.date + "/" +
-                      Configuration.type + "-" +
-                      Configuration.date + "-" +
-                      "page.sql";
-      Scanner in = new Scanner(new FileReader(inputFileName));
-      return in;		
+      return new ParallelDumpReader(inputFileName, Configuration.threads);
     }
-    catch (FileNotFoundException e) 
+
+    System.out.println("File not found: " + inputFileName);
+    System.exit(1);
+    return null;
+  }//end: openInputFile()
+
+  /**
+   * Collects the valid IDs of one chunk of page.sql.
+   */
+  private static class ValidIDHandler implements SQLTupleHandler
+  {
+    private final IntArrayBuffer ids = new IntArrayBuffer();
+
+    public void tuple(SQLTuple t)
     {
-      System.out.println("File not found: " + inputFileName);
-      e.printStackTrace();
-      System.exit(1);
+      // Check if the information is in the correct format
+      // (page_id, page_namespace, page_title, page_restrictions, page_counter, page_is_redirect, ...)
+      if(t.size() >= 11)
+      {
+        // Add the ID if it's in the needed namespace and not a redirect
+        if(t.isInt(1, 0) && t.isInt(5, 0))
+        {
+          ids.add(t.getInt(0));
+        }
+      }//end: if(t.size())
     }
-    return null;	
-  }//end: openInputFile()
+  }//end: ValidIDHandler
 
   /**
    * Checks and opens the output file.
@@ -131,68 +155,44 @@ public class CreateIDToVertexFile
     }
 
     /* Open input and output files */
-    Scanner in = openInputFile();
+    ParallelDumpReader in = openInputFile();
     ObjectOutputStream out = openOutputFile();
 
     /* STEP 1
      * 
-     * Create the linked list of valid ids.
+     * Collect the valid ids of each chunk of the file.
      * 
      * IDs are valid if they are:
      * 1. In the main namespace
      * 2. Not redirect pages
      */
-    LinkedList<Integer> ll = new LinkedList<Integer>();
-
-    String str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
+    List<ValidIDHandler> chunks = null;
+    try
     {
-      str = in.nextLine();
-    }
-
-    int tmp = 0;
-    while(tmp < 3 && str != null && !str.trim().equals(""))
+      chunks = in.read(new SQLHandlerFactory<ValidIDHandler>() {
+        public ValidIDHandler newHandler()
+        {
+          return new ValidIDHandler();
+        }
+      });
+    }//end: try {}
+    catch (IOException e)
     {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\d\\),\\(");
-
-      for(int i = 0; i < arr.length; i++)
-      {
-        //System.out.println(arr[i]);
-        String [] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 11) {
-
-          // Extract page, namespace and redirect information
-          String page = info[0];
-          String namespace = info[1];
-          String redirect = info[info.length-6];
-
-          // Add the ID if it's in the needed namespace and not a redirect
-          if(namespace.equals("0") && redirect.equals("0"))
-          {
-            ll.add(new Integer(page));
-          }
-        }//end: if(info.length)
-      }//end: for(i)
-
-      str = in.nextLine();
-    }//end: while()
+      System.err.println("Problem reading from file: " + inputFileName);
+      e.printStackTrace();
+      System.exit(1);
+    }
 
     /* STEP 2
      * 
-     * Create new integer array of identical length.
-     * Copy values into array and sort array.
+     * Join the chunks into one integer array and sort the array.
      */
-    int[] arr = new int[ll.size()];
-    Iterator<Integer> it = ll.iterator();
-    for(int i = 0; i < arr.length; i++)
+    List<IntArrayBuffer> ids = new ArrayList<IntArrayBuffer>();
+    for(ValidIDHandler h : chunks)
     {
-      arr[i] = it.next();
+      ids.add(h.ids);
     }
+    int[] arr = IntArrayBuffer.concat(ids);
     Arrays.sort(arr);
 
     /* STEP 3
@@ -213,7 +213,6 @@ public class CreateIDToVertexFile
     //Close files
     try
     {
-      in.close();
       out.close();
     }//end: try {}
     catch (IOException e)
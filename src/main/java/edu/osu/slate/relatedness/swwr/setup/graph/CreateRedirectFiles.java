@@ -8,6 +8,11 @@ import edu.osu.slate.relatedness.swwr.data.ConvertIDToTitle;
 import edu.osu.slate.relatedness.swwr.data.ConvertTitleToID;
 import edu.osu.slate.relatedness.swwr.data.graph.IDIDRedirect;
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
+import edu.osu.slate.relatedness.swwr.setup.IntArrayBuffer;
+import edu.osu.slate.relatedness.swwr.setup.ParallelDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLHandlerFactory;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 import it.unimi.dsi.fastutil.objects.*;
 import it.unimi.dsi.fastutil.ints.*;
@@ -78,6 +83,52 @@ public class CreateRedirectFiles {
                      Configuration.date + "-" +
                      Configuration.graph + ".rdr";
   }
+
+ /**
+  * Collects the (from, destination) ID pairs of one chunk of redirect.sql.
+  */
+  private static class RedirectHandler implements SQLTupleHandler
+  {
+    private final IDVertexTranslation validIDs;
+    private final ConvertTitleToID titleLookup;
+    private final IntArrayBuffer from = new IntArrayBuffer();
+    private final IntArrayBuffer dest = new IntArrayBuffer();
+
+    RedirectHandler(IDVertexTranslation validIDs, ConvertTitleToID titleLookup)
+    {
+      this.validIDs = validIDs;
+      this.titleLookup = titleLookup;
+    }
+
+    public void tuple(SQLTuple t)
+    {
+      // Check if the information is in the correct format
+      // (rd_from, rd_namespace, rd_title, ...)
+      if(t.size() >= 3)
+      {
+        int fromID = t.getInt(0);
+        if(!t.isInt(1, 0))
+        {
+          return;
+        }
+
+        // Valid namespace and valid title
+        String title = t.getString(2);
+        if(titleLookup.isLookupTitle(title))
+        {
+          if(validIDs.isValidWikiID(fromID))
+          { // 'from' ID is already a vertex ID
+            System.err.println("Vertex ID found");
+          }
+          else
+          { // get destination ID
+            from.add(fromID);
+            dest.add(titleLookup.getID(title));
+          }
+        }//end: if(isLookupTitle)
+      }//end: if(t.size())
+    }
+  }//end: RedirectHandler
   
  /**
   * Runs the program.
@@ -139,59 +190,26 @@ public class CreateRedirectFiles {
      * may or may not be valid for our given graph.
      */
     System.out.println("Populating Initial Redirects");
-    Int2IntAVLTreeMap IDToIDRedirect = new Int2IntAVLTreeMap();
-    Scanner in = new Scanner(new FileReader(redirectFileName));
+    final IDVertexTranslation validIDs = vids;
+    final ConvertTitleToID titleLookup = title2ID;
+    ParallelDumpReader in = new ParallelDumpReader(redirectFileName, Configuration.threads);
 
-    String str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1)
-    {
-      str = in.nextLine();
-    }
+    List<RedirectHandler> chunks = in.read(new SQLHandlerFactory<RedirectHandler>() {
+      public RedirectHandler newHandler()
+      {
+        return new RedirectHandler(validIDs, titleLookup);
+      }
+    });
 
-    while(str != null && !str.trim().equals(""))
+    // Join the chunks in file order, so later redirects replace earlier ones
+    Int2IntAVLTreeMap IDToIDRedirect = new Int2IntAVLTreeMap();
+    for(RedirectHandler h : chunks)
     {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
-
-      // Split the String into the page information
-      String [] arr = str.split("\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+      for(int k = 0; k < h.from.size(); k++)
       {
-        String [] info = arr[i].split(",");
-
-        // Check if the information is in the correct format
-        if(info.length >= 3) {
-
-          // Extract page, namespace and redirect information
-          int fromID = Integer.parseInt(info[0]);
-          String namespace = info[1];
-
-          String title = info[2];
-          for(int j = 3; j < info.length; j++)
-          {
-            title = title + "," + info[j];
-          }
-          
-          title = title.substring(1, title.length()-1);
-
-          // Valid namespace and valid title
-          if( namespace.equals("0") && title2ID.isLookupTitle(title))
-          {
-            if(vids.isValidWikiID(fromID))
-            { // 'from' ID is already a vertex ID
-              System.err.println("Vertex ID found");
-            }
-            else
-            { // get destination ID
-              int destID = title2ID.getID(title);
-              IDToIDRedirect.put(fromID, destID);
-            }
-          }//end: if(namespace==0)
-        }//end: if(info.length)
-      }//end: for(i)
-
-      str = in.nextLine();
-    }//end: while()
-    in.close();
+        IDToIDRedirect.put(h.from.get(k), h.dest.get(k));
+      }
+    }
 
     /* STEP 3
      * 
@@ -0,0 +1,242 @@
+/* Copyright 2010 Speech and Language Technologies Lab, The Ohio State University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.osu.slate.relatedness.swwr.setup.graph;
+
+import java.io.*;
+
+import edu.osu.slate.relatedness.Configuration;
+import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
+import edu.osu.slate.relatedness.swwr.data.graph.NeighborIterator;
+import edu.osu.slate.relatedness.swwr.data.graph.VertexPermutation;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiGraph;
+import edu.osu.slate.relatedness.swwr.data.graph.WikiInvGraph;
+
+/**
+ * Renumbers the graph vertices so that linked vertices have nearby vertex numbers.
+ * <p>
+ * Vertex numbers from {@link CreateIDToVertexFile} follow the order of the Wiki IDs.
+ * This program rewrites the graph files with one of the orderings of {@link VertexPermutation}:
+ * <ul>
+ *   <li><b>degree</b> -- Decreasing total degree.</li>
+ *   <li><b>bfs</b> -- Breadth-first traversal.</li>
+ *   <li><b>rcm</b> -- Reverse Cuthill-McKee (default).</li>
+ * </ul>
+ * The .wgp, .wgpx and .iwgp files are replaced by the renumbered graph.
+ * The .vid file is replaced by an {@link IDVertexTranslation} carrying the permutation,
+ * and the permutation from the original vertex numbers is written to a .vpm file.
+ * <p>
+ * Only two kinds of file created before this step are translated through the .vpm when
+ * read: the .alf files of {@link edu.osu.slate.relatedness.swwr.data.AliasSFToID} and raw
+ * vertex lists read with {@link IDVertexTranslation#IDVertexTranslation(String)}.
+ * Other files that hold vertex numbers are left in the old numbering, and must be created
+ * after this step (or created again, if they already exist):
+ * <ul>
+ *   <li>the word-to-vertex mappings of the <code>setup.wordmapping</code> programs
+ *       ({@link edu.osu.slate.relatedness.swwr.setup.wordmapping.CreateTitleWordMapping} and
+ *       the like, then {@link edu.osu.slate.relatedness.swwr.setup.wordmapping.CreateMappings}), and</li>
+ *   <li>the vertex-to-category lists of
+ *       {@link edu.osu.slate.relatedness.swwr.setup.category.CreateVertexToCategoryMapping}, and</li>
+ *   <li>the .wfp fingerprint files of {@link CreateFingerprintFile}, which read the graph itself
+ *       (a .wfp file of the old graph is rejected when loaded, by its graph hash).</li>
+ * </ul>
+ * These programs read the vertex numbers from the .vid file or the renumbered graph, so running
+ * them again picks up the new order.
+ * <p>
+ * In the Graph creation pipeline, this program is:
+ * <ul>
+ *   <li>Preceded by {@link CreateGraphFiles}
+ *   <li>Followed by {@link CreateFingerprintFile} and the word-mapping and category programs, which must run after it
+ * </ul>
+ *
+ * Usage: <code>ReorderGraphFiles &lt;configuration file&gt; [degree|bfs|rcm]</code>
+ *
+ * @author weale
+ * @version 1.0
+ */
+public class ReorderGraphFiles
+{
+  /* Name of the Valid ID file generated by CreateIDToVertexFile (.vid) */
+  private static String vidFileName;
+
+  /* Name of the graph file generated by CreateGraphFiles (.wgp) */
+  private static String graphFileName;
+
+  /* Name of the memory-mapped graph file (.wgpx) */
+  private static String mappedFileName;
+
+  /* Name of the inverted graph file (.iwgp) */
+  private static String invertedFileName;
+
+  /* Name of the output permutation file (.vpm) */
+  private static String permFileName;
+
+  /**
+   * Sets the names of the files used in this program.
+   */
+  private static void setFiles()
+  {
+    String data = Configuration.baseDir + "/" +
+                  Configuration.binaryDir + "/" +
+                  Configuration.type + "/" +
+                  Configuration.date + "/" +
+                  Configuration.type + "-" +
+                  Configuration.date + "-" +
+                  Configuration.graph;
+
+    vidFileName = data + ".vid";
+    graphFileName = data + ".wgp";
+    mappedFileName = data + WikiGraph.MAPPED_EXTENSION;
+    invertedFileName = data + ".iwgp";
+    permFileName = data + VertexPermutation.EXTENSION;
+  }//end: setFiles()
+
+  /**
+   * Runs the program.
+   *
+   * @param args Configuration file and ordering name.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException
+  {
+    if(args.length >= 1)
+    {
+      Configuration.parseConfigurationFile(args[0]);
+    }
+    else
+    {
+      Configuration.parseConfigurationFile("/scratch/weale/data/config/enwiktionary/CreateMappings.xml");
+    }
+    String ordering = (args.length >= 2) ? args[1] : "rcm";
+
+    setFiles();
+
+    /* STEP 1
+     *
+     * Read the ID to vertex translation and the graph
+     */
+    System.out.println("Initializing Valid IDs.");
+    IDVertexTranslation vids = null;
+    WikiGraph wg = null;
+    try
+    {
+      ObjectInputStream objIn = new ObjectInputStream(new FileInputStream(vidFileName));
+      vids = (IDVertexTranslation) objIn.readObject();
+      objIn.close();
+
+      System.out.println("Opening Wiki Graph");
+      objIn = new ObjectInputStream(new FileInputStream(graphFileName));
+      wg = (WikiGraph) objIn.readObject();
+      objIn.close();
+    }
+    catch(Exception e)
+    {
+      System.out.println("Problem reading graph files: " + vidFileName + ", " + graphFileName);
+      e.printStackTrace();
+      System.exit(1);
+    }
+
+    /* STEP 2
+     *
+     * Find the new vertex order
+     */
+    System.out.println("Computing " + ordering + " ordering.");
+    VertexPermutation perm = null;
+    if(ordering.equals("degree"))
+    {
+      perm = VertexPermutation.degreeOrder(wg);
+    }
+    else if(ordering.equals("bfs"))
+    {
+      perm = VertexPermutation.bfsOrder(wg);
+    }
+    else if(ordering.equals("rcm"))
+    {
+      perm = VertexPermutation.rcmOrder(wg);
+    }
+    else
+    {
+      System.err.println("Unknown ordering: " + ordering);
+      System.exit(1);
+    }
+
+    /* STEP 3
+     *
+     * Renumber the graph and build the matching inverted graph
+     */
+    System.out.println("Renumbering graph.");
+    wg = wg.permute(perm);
+    vids.setVertexOrder(perm);
+
+    int[][] igraph = new int[wg.getNumVertices()][];
+    float[][] igraphtrans = new float[wg.getNumVertices()][];
+    int[] inDegree = new int[igraph.length];
+    NeighborIterator it = wg.getNeighborIterator();
+    for(int i = 0; i < igraph.length; i++)
+    {
+      for(it.reset(i); it.hasNext(); )
+      {
+        inDegree[it.next()]++;
+      }
+    }//end: for(i)
+
+    for(int i = 0; i < igraph.length; i++)
+    {
+      if(inDegree[i] > 0)
+      {
+        igraph[i] = new int[inDegree[i]];
+        igraphtrans[i] = new float[inDegree[i]];
+        for(int j = 0; j < igraphtrans[i].length; j++)
+        {
+          igraphtrans[i][j] = (float) (1.0 / igraphtrans[i].length);
+        }//end: for(j)
+        inDegree[i] = 0;
+      }
+    }//end: for(i)
+
+    // From vertices are visited in increasing order, so each in-bound list is sorted
+    for(int i = 0; i < igraph.length; i++)
+    {
+      for(it.reset(i); it.hasNext(); )
+      {
+        int to = it.next();
+        igraph[to][inDegree[to]++] = i;
+      }
+    }//end: for(i)
+
+    /* STEP 4
+     *
+     * Print Object Files (.wgp) (.wgpx) (.iwgp) (.vid) (.vpm)
+     */
+    System.out.println("Printing Files.");
+    ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(graphFileName));
+    out.writeObject(wg);
+    out.close();
+
+    wg.writeMappedFile(mappedFileName);
+
+    out = new ObjectOutputStream(new FileOutputStream(invertedFileName));
+    out.writeObject(new WikiInvGraph(igraph, igraphtrans));
+    out.close();
+
+    out = new ObjectOutputStream(new FileOutputStream(vidFileName));
+    out.writeObject(vids);
+    out.close();
+
+    out = new ObjectOutputStream(new FileOutputStream(permFileName));
+    out.writeObject(vids.getVertexOrder());
+    out.close();
+  }//end: main(String[])
+}//end: ReorderGraphFiles
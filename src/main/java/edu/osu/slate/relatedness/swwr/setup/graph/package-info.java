@@ -7,6 +7,8 @@
  *   <li>{@link CreateTitleIDFiles}</li>
  *   <li>{@link CreateRedirectFiles}</li>
  *   <li>{@link CreateGraphFiles}</li>
+ *   <li>{@link ReorderGraphFiles} (optional)</li>
+ *   <li>{@link CreateFingerprintFile} (optional)</li>
  * </ol>
  * @author weale
  */
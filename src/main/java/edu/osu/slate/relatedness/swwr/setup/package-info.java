@@ -0,0 +1,11 @@
+/**
+ * Programs for creating the data files used by the relatedness algorithms.
+ * <p>
+ * The sub-packages hold the programs for each kind of file.  This package holds
+ * the {@link SQLDumpReader} shared by all programs that read the Wikipedia SQL dumps,
+ * the {@link ParallelDumpReader} that splits a dump between several threads, and the
+ * {@link DecompressingChannel} used to read compressed dumps.
+ * 
+ * @author weale
+ */
+package edu.osu.slate.relatedness.swwr.setup;
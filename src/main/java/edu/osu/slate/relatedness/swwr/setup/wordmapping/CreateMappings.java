@@ -42,6 +42,9 @@ import edu.osu.slate.relatedness.swwr.data.mapping.algorithm.TermToVertexMapping
  * <li><b>stem</b> -- Allow Porter Stemming? (default: false)</li>
  * </ul>
  * 
+ * If the graph has been reordered with {@link edu.osu.slate.relatedness.swwr.setup.graph.ReorderGraphFiles},
+ * the input list must have been created after the reordering.
+ * <p>
  * The output of this program is a <i>.tvc file</i> and an <i>.vtc file</i> placed in the binary directory.  These files will be used a input files for the {@link VertexToTermMapping} and {@link TermToVertexMapping} classes.
  * 
  * @author weale
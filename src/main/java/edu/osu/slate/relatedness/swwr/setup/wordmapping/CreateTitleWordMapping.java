@@ -16,12 +16,14 @@
 package edu.osu.slate.relatedness.swwr.setup.wordmapping;
 
 import java.io.*;
-import java.util.*;
 import java.util.regex.Pattern;
 
 import edu.osu.slate.relatedness.Configuration;
 import edu.osu.slate.relatedness.swwr.data.graph.IDIDRedirect;
 import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
+import edu.osu.slate.relatedness.swwr.setup.SQLDumpReader;
+import edu.osu.slate.relatedness.swwr.setup.SQLTuple;
+import edu.osu.slate.relatedness.swwr.setup.SQLTupleHandler;
 
 /**
  * Creates a simple word-to-vertex mapping for the Wiki graph using the Page title.
@@ -42,6 +44,9 @@ import edu.osu.slate.relatedness.swwr.data.graph.IDVertexTranslation;
  * </ul>
  * 
  * The output of this program is a .titlewordmap file placed in the temp directory.  It will be used as an input file for the {@link CreateMappings} program.
+ * <p>
+ * Vertex numbers come from the current .vid file: run this program after
+ * {@link edu.osu.slate.relatedness.swwr.setup.graph.ReorderGraphFiles}, or again if the graph was reordered since.
  * 
  * @author weale
  *
@@ -133,7 +138,7 @@ public class CreateTitleWordMapping {
                   "page.sql";
                   
     System.out.println("Opening page.sql File");
-    Scanner in = new Scanner(new FileReader(sqlFileName));
+    SQLDumpReader in = SQLDumpReader.open(sqlFileName);
     
     titleIDFileName = Configuration.baseDir + "/" +
                       Configuration.tempDir + "/" +
@@ -143,52 +148,28 @@ public class CreateTitleWordMapping {
                       ".titlewordmap";
     
     System.out.println("Opening .titlewordmap File for Writing");
-    ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(titleIDFileName));
+    final ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(titleIDFileName));
     
    /* 
     * Create the List of Surface Forms.
     */
     System.out.println("Writing Page Titles and Vertex IDs to File");
-    Pattern p = Pattern.compile("\\([\\p{Graph}\\p{Blank}]+\\)");
-
-    // Strip beginning lines from file
-    String str = in.nextLine();
-    while(str.indexOf("INSERT INTO") == -1) {
-      str = in.nextLine();
-    }
-    
-    while(str != null && !str.trim().equals(""))
-    {
-      str = str.substring(str.indexOf("(")+1, str.length()-3);
+    final Pattern p = Pattern.compile("\\([\\p{Graph}\\p{Blank}]+\\)");
 
-      // Split the String into the individual page information
-      String [] arr = str.split("\\d\\),\\(");
-      for(int i = 0; i < arr.length; i++)
+    in.read(new SQLTupleHandler() {
+      public void tuple(SQLTuple t) throws IOException
       {
-        String [] info = arr[i].split(",");
-          
         // Information is in the correct format if the length == 11
-        if(info.length >= 11)
+        // (page_id, page_namespace, page_title, page_restrictions, page_counter, page_is_redirect, ...)
+        if(t.size() >= 11 && t.isInt(1, 0))
         {
-          // Extract page, namespace and redirect information
-          String page = info[0];
-          String namespace = info[1];
-          String redirect = info[info.length-6];
-              
-          // Extract title information
-          String title = info[2];
-          for(int j=3; j<info.length-8;j++)
-          {
-            title = title + "," + info[j];
-          }
-          
-          // Remove quotes, replace underscore characters
-          title = title.substring(1,title.length()-1).replace('_', ' ').toLowerCase();
+          // Replace underscore characters
+          String title = t.getString(2).replace('_', ' ').toLowerCase();
           
-          int pageID = Integer.parseInt(page);
+          int pageID = t.getInt(0);
               
           // Add the ID if it's in the needed namespace and not a redirect
-          if(namespace.equals("0") && redirect.equals("0") && vid.isValidWikiID(pageID))
+          if(t.isInt(5, 0) && vid.isValidWikiID(pageID))
           {
             // Write title to the file
             title = addAmbiguity(title, p);
@@ -203,8 +184,7 @@ public class CreateTitleWordMapping {
           }//end: if()
               
           // Add the ID after redirect
-          else if(namespace.equals("0") && redirect.equals("1") &&
-                  rdr.isRedirectID(pageID))
+          else if(t.isInt(5, 1) && rdr.isRedirectID(pageID))
           {
             // Write title to the file            
             title = addAmbiguity(title, p);
@@ -218,12 +198,10 @@ public class CreateTitleWordMapping {
             }
             out.writeInt( vid.getVertex(tmpID) );
           }//end: else if()
-              
-        }//end: if(info.length)
-      }//end: for(i)
-      
-      str = in.nextLine();
-    }//end: while(str)
+        }//end: if(t.size())
+      }
+    });
+    in.close();
     
     out.close();
   }//end: main()
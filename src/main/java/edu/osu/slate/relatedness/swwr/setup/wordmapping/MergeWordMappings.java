@@ -49,6 +49,9 @@ import edu.osu.slate.relatedness.swwr.data.mapping.algorithm.TermToVertexMapping
  * </ul>
  * 
  * The output of this program is a .linkwordmap file placed in the temp directory.  It will be used as an input file for the {@link CreateMappings} program.
+ * <p>
+ * Vertex numbers come from the current .vid file: run this program after
+ * {@link edu.osu.slate.relatedness.swwr.setup.graph.ReorderGraphFiles}, or again if the graph was reordered since.
  * 
  * @author weale
  *
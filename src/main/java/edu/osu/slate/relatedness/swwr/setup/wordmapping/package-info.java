@@ -8,6 +8,11 @@
  *   <li>{@link CreateLinkTermMapping} or {@link CreateTitleWordMapping} -- Create a list of words-to-vertex mappings.</li>
  *   <li>{@link CreateMappings} -- Given the list, make it searchable and usable in a program.</li>
  * </ol>
+ * <p>
+ * The mappings hold vertex numbers taken from the .vid file, and are not translated when the
+ * graph is renumbered.  If the graph is reordered with
+ * {@link edu.osu.slate.relatedness.swwr.setup.graph.ReorderGraphFiles}, run this pipeline after it,
+ * and run it again for any mappings created before it.
  * 
  * @author weale
  */